@@ -20,12 +20,45 @@ import jdk.dio.BufferAccess;
  *
  * Attempts to generate optimised ByteBuffers based on device I/O buffers.
  *
+ * Also a per-device pool of such (prepared, direct) buffers: forDevice() hands
+ * out the one pool of a device so that all drivers of the device share it.
+ * Pooled buffers come in power-of-two size classes (1 byte up to
+ * MAX_POOLED_SIZE_BYTES); acquire() takes one of the smallest class that fits
+ * and hands out an exact-size view of it, release() puts it back for the next
+ * acquire() of the same class. Direct memory in use therefore only grows with
+ * the largest number of buffers of each class held at the same time, never
+ * with the number of (re)configurations.
+ *
+ * Requests larger than MAX_POOLED_SIZE_BYTES are not pooled.
+ *
  * @author savvas
  */
 public class ByteBufferAccessOptimisation {
 
+    /**
+     * Largest pooled size class, the MPU-6050 FIFO (the biggest transfer we
+     * have) fits..
+     */
+    public static final int MAX_POOLED_SIZE_BYTES = 1024;
+
+    private static final int SIZE_CLASSES = sizeClass(MAX_POOLED_SIZE_BYTES) + 1;
+
+    private static ByteBufferAccessOptimisation[] pools = new ByteBufferAccessOptimisation[0];
+
     private BufferAccess<ByteBuffer> device;
 
+    // per size class, stack of buffers ready to be handed out
+    private final ByteBuffer[][] free = new ByteBuffer[SIZE_CLASSES][];
+    private final int[] freeCount = new int[SIZE_CLASSES];
+
+    // views handed out and the pooled buffers they are views of
+    private ByteBuffer[] acquired = new ByteBuffer[4];
+    private ByteBuffer[] backing = new ByteBuffer[4];
+    private int acquiredCount;
+
+    private long allocatedBytes;
+    private int allocations;
+
     /**
      * REQUIRES:
      *
@@ -42,6 +75,57 @@ public class ByteBufferAccessOptimisation {
         setDevice(device);
     }
 
+    /**
+     * The pool shared by all drivers of given device, created on first use.
+     *
+     * REQUIRES:
+     *
+     * device != null
+     *
+     * @param device
+     * @return
+     */
+    public static synchronized ByteBufferAccessOptimisation forDevice(BufferAccess<ByteBuffer> device) {
+
+        assert device != null : "Given device is null";
+
+        for (ByteBufferAccessOptimisation p : pools) {
+            if (p.device == device) {
+                return p;
+            }
+        }
+
+        ByteBufferAccessOptimisation created = new ByteBufferAccessOptimisation(device);
+
+        ByteBufferAccessOptimisation[] grown = new ByteBufferAccessOptimisation[pools.length + 1];
+        System.arraycopy(pools, 0, grown, 0, pools.length);
+        grown[pools.length] = created;
+        pools = grown;
+
+        return created;
+    }
+
+    /**
+     * Forgets the pool of given device (e.g. once the device is closed), its
+     * buffers are left to the garbage collector.
+     *
+     * @param device
+     */
+    public static synchronized void discard(BufferAccess<ByteBuffer> device) {
+
+        for (int i = 0; i < pools.length; i++) {
+            if (pools[i].device == device) {
+
+                ByteBufferAccessOptimisation[] shrunk = new ByteBufferAccessOptimisation[pools.length - 1];
+                System.arraycopy(pools, 0, shrunk, 0, i);
+                System.arraycopy(pools, i + 1, shrunk, i, pools.length - i - 1);
+                pools = shrunk;
+
+                return;
+            }
+        }
+    }
+
     /**
      * REQUIRES:
      *
@@ -97,4 +181,143 @@ public class ByteBufferAccessOptimisation {
             throw new RuntimeException(ex);
         }
     }
+
+    /**
+     * A cleared buffer of exactly size bytes, taken from the pool (allocated
+     * and prepared only if none of its size class is free).
+     *
+     * REQUIRES:
+     *
+     * size > 0
+     *
+     * ENSURES:
+     *
+     * 1) result.capacity() == size
+     *
+     * 2) result.remaining() == size
+     *
+     * @param size
+     * @return
+     */
+    public synchronized ByteBuffer acquire(int size) {
+
+        assert size > 0 : "size not positive";
+
+        if (size > MAX_POOLED_SIZE_BYTES) {
+            allocatedBytes += size;
+            allocations++;
+            return optimised(ByteBuffer.allocateDirect(size));
+        }
+
+        int c = sizeClass(size);
+        ByteBuffer pooled;
+
+        if (freeCount[c] > 0) {
+            pooled = free[c][--freeCount[c]];
+            free[c][freeCount[c]] = null;
+        } else {
+            pooled = optimised(ByteBuffer.allocateDirect(1 << c));
+            allocatedBytes += pooled.capacity();
+            allocations++;
+        }
+
+        // exact-size view so that clear() & co. keep working as drivers expect..
+        pooled.clear().limit(size);
+        ByteBuffer view = pooled.slice();
+
+        if (acquiredCount == acquired.length) {
+            acquired = grow(acquired);
+            backing = grow(backing);
+        }
+        acquired[acquiredCount] = view;
+        backing[acquiredCount] = pooled;
+        acquiredCount++;
+
+        assert view.capacity() == size : "view capacity of \"" + view.capacity() + "\" is incorrect";
+
+        return view;
+    }
+
+    /**
+     * Gives a buffer back to the pool. Its contents must not be used after
+     * this call. Buffers not acquired from this pool (and oversized ones) are
+     * ignored.
+     *
+     * @param buffer
+     */
+    public synchronized void release(ByteBuffer buffer) {
+
+        for (int i = 0; i < acquiredCount; i++) {
+
+            if (acquired[i] == buffer) {
+
+                ByteBuffer pooled = backing[i];
+
+                acquiredCount--;
+                acquired[i] = acquired[acquiredCount];
+                backing[i] = backing[acquiredCount];
+                acquired[acquiredCount] = null;
+                backing[acquiredCount] = null;
+
+                int c = Math.min(sizeClass(pooled.capacity()), SIZE_CLASSES - 1);
+
+                if (free[c] == null) {
+                    free[c] = new ByteBuffer[2];
+                } else if (freeCount[c] == free[c].length) {
+                    free[c] = grow(free[c]);
+                }
+                free[c][freeCount[c]++] = pooled;
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return direct memory allocated by this pool so far
+     */
+    public synchronized long getAllocatedBytes() {
+
+        return allocatedBytes;
+    }
+
+    /**
+     * @return number of direct buffers allocated by this pool so far
+     */
+    public synchronized int getAllocationCount() {
+
+        return allocations;
+    }
+
+    /**
+     * @return buffers currently handed out
+     */
+    public synchronized int getAcquiredCount() {
+
+        return acquiredCount;
+    }
+
+    private static int sizeClass(int size) {
+
+        int c = 0;
+
+        while ((1 << c) < size) {
+            c++;
+        }
+        return c;
+    }
+
+    private static ByteBuffer[] grow(ByteBuffer[] buffers) {
+
+        ByteBuffer[] grown = new ByteBuffer[buffers.length * 2];
+        System.arraycopy(buffers, 0, grown, 0, buffers.length);
+
+        return grown;
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        return "ByteBufferAccessOptimisation{" + "allocatedBytes=" + allocatedBytes + ", allocations=" + allocations + ", acquired=" + acquiredCount + '}';
+    }
 }
@@ -1,6 +1,9 @@
 package jmbd.commons;
 
+import java.nio.ByteBuffer;
 import javax.microedition.midlet.MIDlet;
+import jdk.dio.BufferAccess;
+import jdk.dio.Device;
 
 /**
  * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
@@ -28,4 +31,21 @@ public abstract class CommonOperationsMIDlet extends MIDlet {
             }
         }
     }
+
+    /**
+     * Same as closeIgnoringExceptions() but also drops the buffer pool of the
+     * device (see ByteBufferAccessOptimisation), once closed none of its
+     * buffers is of any use.
+     *
+     * @param <D>
+     * @param device
+     */
+    protected <D extends Device<?> & BufferAccess<ByteBuffer>> void closeDeviceIgnoringExceptions(D device) {
+
+        closeIgnoringExceptions(device);
+
+        if (device != null) {
+            ByteBufferAccessOptimisation.discard(device);
+        }
+    }
 }
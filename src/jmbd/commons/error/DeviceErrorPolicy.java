@@ -0,0 +1,354 @@
+package jmbd.commons.error;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jmbd.commons.TimeDelay;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Decides what happens when a device transfer fails: retry (after a backoff),
+ * give up on the operation but keep going, or escalate.
+ *
+ * Every failed transfer is counted against a sliding-window error budget (at
+ * most getBudgetErrors() failures within getBudgetWindowNanos()); only
+ * exceeding the budget escalates, by throwing ErrorBudgetExceededException.
+ * Within budget, an operation is retried up to getMaxRetries() times and then
+ * abandoned, leaving whatever it was reading/writing as it was.
+ *
+ * Logging is rate-limited to one report per getLogIntervalNanos(), reports
+ * carry the number of failures suppressed since the previous one.
+ *
+ * Apart from the (rate-limited) log reports and the escalation itself nothing
+ * allocates: the window is a preallocated ring of failure timestamps and
+ * counters are plain fields. Successful first attempts do not even take the
+ * lock.
+ *
+ * Typical usage, around each bus transaction:
+ *
+ * for (int attempt = 0;; attempt++) { try { ..transfer..
+ * policy.onSuccess(attempt); return; } catch (IOException ex) { if
+ * (!policy.onFailure(ex, attempt)) { return; } } }
+ *
+ * failFast() keeps the behaviour drivers had before policies existed: the
+ * first failure is logged and escalated.
+ *
+ * @author savvas
+ */
+public class DeviceErrorPolicy {
+
+    // failures per second a sampling loop puts up with (see tolerant(name))..
+    public static final int DEFAULT_SAMPLING_BUDGET_ERRORS = 10;
+
+    // backoffs this long (or longer) sleep instead of busy-waiting..
+    private static final long SLEEP_THRESHOLD_NANOS = 1_000_000;
+    // no point backing off for more than this
+    private static final long MAX_BACKOFF_NANOS = 100_000_000;
+
+    private final String name;
+    private final int maxRetries;
+    private final long backoffNanos;
+    private final int budgetErrors;
+    private final long budgetWindowNanos;
+    private final long logIntervalNanos;
+
+    private final Logger logger;
+    private final TimeDelay timeDelay;
+
+    // ring of the last budgetErrors failure timestamps
+    private final long[] failureTimes;
+    private int nextFailure;
+
+    private long failures;
+    private long retries;
+    private long recovered;
+    private long abandoned;
+    private long escalations;
+
+    private long lastLogAt;
+    private boolean loggedOnce;
+    private long suppressedLogs;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) name not null
+     *
+     * 2) maxRetries >= 0
+     *
+     * 3) backoffNanos >= 0
+     *
+     * 4) budgetErrors >= 0 (0 escalates on the first failure)
+     *
+     * 5) budgetWindowNanos > 0
+     *
+     * 6) logIntervalNanos >= 0
+     *
+     * @param name used for logging
+     * @param maxRetries retries per operation
+     * @param backoffNanos pause before the first retry, doubles on each
+     * following one
+     * @param budgetErrors failures tolerated within the window
+     * @param budgetWindowNanos
+     * @param logIntervalNanos minimum time between two log reports
+     */
+    public DeviceErrorPolicy(String name, int maxRetries, long backoffNanos, int budgetErrors, long budgetWindowNanos, long logIntervalNanos) {
+
+        assert name != null : "name is null";
+        assert maxRetries >= 0 : "maxRetries is negative";
+        assert backoffNanos >= 0 : "backoffNanos is negative";
+        assert budgetErrors >= 0 : "budgetErrors is negative";
+        assert budgetWindowNanos > 0 : "budgetWindowNanos not positive";
+        assert logIntervalNanos >= 0 : "logIntervalNanos is negative";
+
+        this.name = name;
+        this.maxRetries = maxRetries;
+        this.backoffNanos = backoffNanos;
+        this.budgetErrors = budgetErrors;
+        this.budgetWindowNanos = budgetWindowNanos;
+        this.logIntervalNanos = logIntervalNanos;
+
+        this.logger = Logger.getLogger(name);
+        this.timeDelay = new TimeDelay();
+        this.failureTimes = new long[budgetErrors];
+    }
+
+    /**
+     * No retries, no budget: first failure escalates.
+     *
+     * @param name
+     * @return
+     */
+    public static DeviceErrorPolicy failFast(String name) {
+
+        return new DeviceErrorPolicy(name, 0, 0, 0, 1, 0);
+    }
+
+    /**
+     * Suits a sampling loop: a couple of quick retries, escalation only if
+     * more than budgetErrors transfers fail within a second, at most one log
+     * report every 10 seconds.
+     *
+     * @param name
+     * @param budgetErrors
+     * @return
+     */
+    public static DeviceErrorPolicy tolerant(String name, int budgetErrors) {
+
+        return new DeviceErrorPolicy(name, 2, 50_000, budgetErrors, 1_000_000_000L, 10_000_000_000L);
+    }
+
+    /**
+     * tolerant() with a budget of DEFAULT_SAMPLING_BUDGET_ERRORS.
+     *
+     * @param name
+     * @return
+     */
+    public static DeviceErrorPolicy tolerant(String name) {
+
+        return tolerant(name, DEFAULT_SAMPLING_BUDGET_ERRORS);
+    }
+
+    /**
+     * To be called when an operation completes.
+     *
+     * @param attempt 0 for the first attempt
+     */
+    public void onSuccess(int attempt) {
+
+        if (attempt > 0) {
+            synchronized (this) {
+                recovered++;
+            }
+        }
+    }
+
+    /**
+     * To be called when a transfer fails.
+     *
+     * ENSURES:
+     *
+     * 1) returns true after backing off if the operation should be retried
+     *
+     * 2) returns false if the operation should be abandoned (caller carries on
+     * without its result)
+     *
+     * 3) throws ErrorBudgetExceededException if the budget is exceeded
+     *
+     * @param cause
+     * @param attempt 0 for the first attempt
+     * @return
+     */
+    public boolean onFailure(IOException cause, int attempt) {
+
+        return onFailure(cause, attempt, true);
+    }
+
+    /**
+     * To be called when a transfer fails that can not be repeated as is (e.g.
+     * a FIFO read that may have popped part of the data). The failure counts
+     * against the budget but the operation is always abandoned.
+     *
+     * ENSURES:
+     *
+     * returns normally (caller abandons the operation) OR throws
+     * ErrorBudgetExceededException if the budget is exceeded
+     *
+     * @param cause
+     */
+    public void onUnrepeatableFailure(IOException cause) {
+
+        onFailure(cause, 0, false);
+    }
+
+    private boolean onFailure(IOException cause, int attempt, boolean repeatable) {
+
+        boolean retry;
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            failures++;
+
+            if (budgetExceeded(now)) {
+                escalations++;
+                String message = name + ": more than " + budgetErrors + " failures within " + budgetWindowNanos / 1_000_000 + "ms (total " + failures + ")";
+                logger.log(Level.SEVERE, message, cause);
+                throw new ErrorBudgetExceededException(name, message, cause);
+            }
+            recordFailure(now);
+            report(now, cause);
+
+            retry = repeatable && attempt < maxRetries;
+            if (retry) {
+                retries++;
+            } else {
+                abandoned++;
+            }
+        }
+
+        if (retry) {
+            backOff(attempt);
+        }
+        return retry;
+    }
+
+    private boolean budgetExceeded(long now) {
+
+        if (budgetErrors == 0) {
+            return true;
+        }
+        // slot about to be overwritten holds the failure budgetErrors failures ago
+        long oldest = failureTimes[nextFailure];
+
+        return failures > budgetErrors && now - oldest <= budgetWindowNanos;
+    }
+
+    private void recordFailure(long now) {
+
+        failureTimes[nextFailure] = now;
+        nextFailure = (nextFailure + 1) % budgetErrors;
+    }
+
+    private void report(long now, IOException cause) {
+
+        if (loggedOnce && now - lastLogAt < logIntervalNanos) {
+            suppressedLogs++;
+            return;
+        }
+        logger.log(Level.WARNING, name + ": transfer failed (" + failures + " failures, " + suppressedLogs + " not reported since last report)", cause);
+        loggedOnce = true;
+        lastLogAt = now;
+        suppressedLogs = 0;
+    }
+
+    private void backOff(int attempt) {
+
+        long nanos = Math.min(backoffNanos << Math.min(attempt, 30), MAX_BACKOFF_NANOS);
+
+        if (nanos >= SLEEP_THRESHOLD_NANOS) {
+            timeDelay.pauseMillis(nanos / 1_000_000);
+        } else if (nanos > 0) {
+            timeDelay.pauseNanos(nanos);
+        }
+    }
+
+    public String getName() {
+
+        return name;
+    }
+
+    public int getMaxRetries() {
+
+        return maxRetries;
+    }
+
+    public long getBackoffNanos() {
+
+        return backoffNanos;
+    }
+
+    public int getBudgetErrors() {
+
+        return budgetErrors;
+    }
+
+    public long getBudgetWindowNanos() {
+
+        return budgetWindowNanos;
+    }
+
+    public long getLogIntervalNanos() {
+
+        return logIntervalNanos;
+    }
+
+    /**
+     * @return failed transfers, retries included
+     */
+    public synchronized long getFailureCount() {
+
+        return failures;
+    }
+
+    public synchronized long getRetryCount() {
+
+        return retries;
+    }
+
+    /**
+     * @return operations that succeeded after at least one retry
+     */
+    public synchronized long getRecoveredCount() {
+
+        return recovered;
+    }
+
+    /**
+     * @return operations given up on within budget
+     */
+    public synchronized long getAbandonedCount() {
+
+        return abandoned;
+    }
+
+    public synchronized long getEscalationCount() {
+
+        return escalations;
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        return "DeviceErrorPolicy{" + "name=" + name + ", failures=" + failures + ", retries=" + retries + ", recovered=" + recovered + ", abandoned=" + abandoned + ", escalations=" + escalations + '}';
+    }
+}
@@ -0,0 +1,189 @@
+package jmbd.commons.metrics;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Fixed-size, log-scale (base 2) latency histogram.
+ *
+ * Bucket b counts latencies in [2^b, 2^(b+1)) nanoseconds (bucket 0 also
+ * counts 0) and the last bucket everything from 2^(BUCKET_COUNT - 1) onwards
+ * (~2 seconds), so recording is a couple of bit operations and an increment
+ * and never allocates.
+ *
+ * NOT thread-safe, see TransactionMetrics.
+ *
+ * @author savvas
+ */
+public class LatencyHistogram {
+
+    public static final int BUCKET_COUNT = 32;
+
+    private final long[] counts;
+    private long total;
+
+    public LatencyHistogram() {
+
+        counts = new long[BUCKET_COUNT];
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * nanos >= 0
+     *
+     * @param nanos
+     */
+    public void record(long nanos) {
+
+        counts[bucketOf(nanos)]++;
+        total++;
+    }
+
+    /**
+     * Bucket given latency falls in.
+     *
+     * @param nanos
+     * @return
+     */
+    public static int bucketOf(long nanos) {
+
+        if (nanos <= 1) {
+            return 0;
+        }
+
+        int b = 63 - Long.numberOfLeadingZeros(nanos);
+
+        return b < BUCKET_COUNT ? b : BUCKET_COUNT - 1;
+    }
+
+    /**
+     * Smallest latency counted by bucket.
+     *
+     * REQUIRES:
+     *
+     * bucket BETWEEN [0 - BUCKET_COUNT)
+     *
+     * @param bucket
+     * @return
+     */
+    public static long lowerBoundNanos(int bucket) {
+
+        assert bucket >= 0 && bucket < BUCKET_COUNT : "bucket not in [0 - " + BUCKET_COUNT + ") range";
+
+        return bucket == 0 ? 0 : 1L << bucket;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * bucket BETWEEN [0 - BUCKET_COUNT)
+     *
+     * @param bucket
+     * @return
+     */
+    public long getCount(int bucket) {
+
+        assert bucket >= 0 && bucket < BUCKET_COUNT : "bucket not in [0 - " + BUCKET_COUNT + ") range";
+
+        return counts[bucket];
+    }
+
+    public long getTotalCount() {
+
+        return total;
+    }
+
+    /**
+     * Upper bound (exclusive) of the bucket holding the given quantile, i.e. a
+     * latency at most twice the actual one.
+     *
+     * REQUIRES:
+     *
+     * quantile BETWEEN [0 - 1]
+     *
+     * @param quantile e.g. 0.99
+     * @return 0 if nothing recorded yet
+     */
+    public long quantileUpperBoundNanos(double quantile) {
+
+        assert quantile >= 0 && quantile <= 1 : "quantile not in [0 - 1] range";
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+
+        for (int b = 0; b < BUCKET_COUNT; b++) {
+
+            seen += counts[b];
+
+            if (seen >= rank && counts[b] > 0) {
+                return b == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << (b + 1);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Overwrites other with the content of this histogram.
+     *
+     * REQUIRES:
+     *
+     * other not null
+     *
+     * @param other
+     */
+    public void copyTo(LatencyHistogram other) {
+
+        assert other != null : "other is null";
+
+        System.arraycopy(counts, 0, other.counts, 0, BUCKET_COUNT);
+        other.total = total;
+    }
+
+    /**
+     * ENSURES:
+     *
+     * getTotalCount() == 0
+     */
+    public void reset() {
+
+        for (int b = 0; b < BUCKET_COUNT; b++) {
+            counts[b] = 0;
+        }
+        total = 0;
+
+        assert getTotalCount() == 0 : "histogram not reset";
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder sb = new StringBuilder("LatencyHistogram{");
+        boolean first = true;
+
+        for (int b = 0; b < BUCKET_COUNT; b++) {
+
+            if (counts[b] == 0) {
+                continue;
+            }
+            if (!first) {
+                sb.append(", ");
+            }
+            sb.append(">=").append(lowerBoundNanos(b)).append("ns:").append(counts[b]);
+            first = false;
+        }
+        return sb.append('}').toString();
+    }
+}
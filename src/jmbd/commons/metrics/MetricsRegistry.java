@@ -0,0 +1,166 @@
+package jmbd.commons.metrics;
+
+import java.io.PrintStream;
+import jdk.dio.Device;
+import jdk.dio.DeviceDescriptor;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * All TransactionMetrics of the application, one per device and kind of access
+ * (e.g. "i2c", "spi", "gpio").
+ *
+ * Drivers look their metrics up once, when given a device, and record into
+ * them from then on; everything else polls snapshot() or dump()'s the lot
+ * periodically.
+ *
+ * @author savvas
+ */
+public class MetricsRegistry {
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private TransactionMetrics[] metrics = new TransactionMetrics[0];
+
+    /**
+     * Registry used by all drivers.
+     *
+     * @return
+     */
+    public static MetricsRegistry getDefault() {
+
+        return DEFAULT;
+    }
+
+    /**
+     * Metrics of given name, created on first use.
+     *
+     * REQUIRES:
+     *
+     * name not null
+     *
+     * @param name
+     * @return
+     */
+    public synchronized TransactionMetrics metricsFor(String name) {
+
+        assert name != null : "name is null";
+
+        for (TransactionMetrics m : metrics) {
+            if (m.getName().equals(name)) {
+                return m;
+            }
+        }
+
+        TransactionMetrics created = new TransactionMetrics(name);
+
+        TransactionMetrics[] grown = new TransactionMetrics[metrics.length + 1];
+        System.arraycopy(metrics, 0, grown, 0, metrics.length);
+        grown[metrics.length] = created;
+        metrics = grown;
+
+        return created;
+    }
+
+    /**
+     * Metrics of given device, i.e. all drivers of the same device (and kind)
+     * share them.
+     *
+     * REQUIRES:
+     *
+     * 1) kind not null
+     *
+     * 2) device not null
+     *
+     * @param kind
+     * @param device
+     * @return
+     */
+    public TransactionMetrics metricsFor(String kind, Device<?> device) {
+
+        assert kind != null : "kind is null";
+        assert device != null : "device is null";
+
+        DeviceDescriptor<?> d = device.getDescriptor();
+        String id;
+
+        if (d == null) {
+            id = Integer.toHexString(System.identityHashCode(device));
+        } else {
+            id = d.getName() != null ? d.getName() : String.valueOf(d.getID());
+        }
+        return metricsFor(kind + ":" + id);
+    }
+
+    /**
+     * @return a copy of all registered metrics
+     */
+    public synchronized TransactionMetrics[] getAll() {
+
+        TransactionMetrics[] copy = new TransactionMetrics[metrics.length];
+        System.arraycopy(metrics, 0, copy, 0, metrics.length);
+
+        return copy;
+    }
+
+    /**
+     * Fills snapshots in (registration order), creating any missing ones.
+     *
+     * Passing the result of the previous call back in means polling does not
+     * allocate (unless new metrics have been registered since).
+     *
+     * @param snapshots previous result or null
+     * @return
+     */
+    public MetricsSnapshot[] snapshot(MetricsSnapshot[] snapshots) {
+
+        TransactionMetrics[] all;
+
+        synchronized (this) {
+            all = metrics;
+        }
+
+        MetricsSnapshot[] result = snapshots;
+
+        if (result == null || result.length != all.length) {
+
+            result = new MetricsSnapshot[all.length];
+
+            for (int i = 0; i < all.length; i++) {
+                result[i] = (snapshots != null && i < snapshots.length) ? snapshots[i] : new MetricsSnapshot();
+            }
+        }
+
+        for (int i = 0; i < all.length; i++) {
+            all[i].snapshot(result[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Prints a snapshot of all metrics, one per line.
+     *
+     * REQUIRES:
+     *
+     * out not null
+     *
+     * @param out
+     */
+    public void dump(PrintStream out) {
+
+        assert out != null : "out is null";
+
+        for (MetricsSnapshot s : snapshot(null)) {
+            out.println(s);
+        }
+    }
+}
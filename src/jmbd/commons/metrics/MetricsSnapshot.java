@@ -0,0 +1,102 @@
+package jmbd.commons.metrics;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Point-in-time copy of a TransactionMetrics, meant to be reused between polls.
+ *
+ * @author savvas
+ */
+public class MetricsSnapshot {
+
+    String name;
+    long count;
+    long bytes;
+    long errors;
+    long totalNanos;
+    long maxNanos;
+    long takenAt;
+    final LatencyHistogram latency = new LatencyHistogram();
+
+    public String getName() {
+
+        return name;
+    }
+
+    /**
+     * Successful and failed transactions.
+     *
+     * @return
+     */
+    public long getCount() {
+
+        return count;
+    }
+
+    public long getBytes() {
+
+        return bytes;
+    }
+
+    public long getErrors() {
+
+        return errors;
+    }
+
+    /**
+     * Total latency of all successful transactions.
+     *
+     * @return
+     */
+    public long getTotalNanos() {
+
+        return totalNanos;
+    }
+
+    public long getMaxNanos() {
+
+        return maxNanos;
+    }
+
+    /**
+     * Mean latency of successful transactions.
+     *
+     * @return 0 if none
+     */
+    public long getMeanNanos() {
+
+        long successful = count - errors;
+
+        return successful == 0 ? 0 : totalNanos / successful;
+    }
+
+    /**
+     * When (as given by System.nanoTime()) the snapshot was taken.
+     *
+     * @return
+     */
+    public long getTakenAt() {
+
+        return takenAt;
+    }
+
+    public LatencyHistogram getLatency() {
+
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+
+        return "MetricsSnapshot{" + "name=" + name + ", count=" + count + ", bytes=" + bytes + ", errors=" + errors + ", meanNanos=" + getMeanNanos() + ", maxNanos=" + maxNanos + ", p99Nanos<" + latency.quantileUpperBoundNanos(0.99) + ", latency=" + latency + '}';
+    }
+}
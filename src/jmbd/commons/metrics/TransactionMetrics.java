@@ -0,0 +1,144 @@
+package jmbd.commons.metrics;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Transaction counts, bytes transferred, errors and latency of a single
+ * device.
+ *
+ * Typical usage, around each bus transaction:
+ *
+ * long start = metrics.begin();
+ *
+ * try { ..transfer.. metrics.end(start, bytes); } catch (IOException ex) {
+ * metrics.fail(start); ... }
+ *
+ * Nothing allocates, neither recording nor snapshot(MetricsSnapshot).
+ *
+ * @author savvas
+ */
+public class TransactionMetrics {
+
+    private final String name;
+
+    private long count;
+    private long bytes;
+    private long errors;
+    private long totalNanos;
+    private long maxNanos;
+    private final LatencyHistogram latency;
+
+    /**
+     * REQUIRES:
+     *
+     * name not null
+     *
+     * @param name
+     */
+    public TransactionMetrics(String name) {
+
+        assert name != null : "name is null";
+
+        this.name = name;
+        this.latency = new LatencyHistogram();
+    }
+
+    public String getName() {
+
+        return name;
+    }
+
+    /**
+     * Start of a transaction.
+     *
+     * @return to be passed to end() or fail()
+     */
+    public long begin() {
+
+        return System.nanoTime();
+    }
+
+    /**
+     * Successful completion of the transaction started at start.
+     *
+     * @param start as returned by begin()
+     * @param transferred bytes
+     */
+    public synchronized void end(long start, int transferred) {
+
+        long nanos = System.nanoTime() - start;
+
+        count++;
+        bytes += transferred;
+        totalNanos += nanos;
+
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+        latency.record(nanos);
+    }
+
+    /**
+     * Failure of the transaction started at start, its latency is not
+     * recorded.
+     *
+     * @param start as returned by begin()
+     */
+    public synchronized void fail(long start) {
+
+        count++;
+        errors++;
+    }
+
+    /**
+     * Copies current values into snapshot (which can be reused between
+     * calls).
+     *
+     * REQUIRES:
+     *
+     * snapshot not null
+     *
+     * @param snapshot
+     * @return snapshot
+     */
+    public synchronized MetricsSnapshot snapshot(MetricsSnapshot snapshot) {
+
+        assert snapshot != null : "snapshot is null";
+
+        snapshot.name = name;
+        snapshot.count = count;
+        snapshot.bytes = bytes;
+        snapshot.errors = errors;
+        snapshot.totalNanos = totalNanos;
+        snapshot.maxNanos = maxNanos;
+        snapshot.takenAt = System.nanoTime();
+        latency.copyTo(snapshot.latency);
+
+        return snapshot;
+    }
+
+    public synchronized void reset() {
+
+        count = 0;
+        bytes = 0;
+        errors = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+        latency.reset();
+    }
+
+    @Override
+    public String toString() {
+
+        return snapshot(new MetricsSnapshot()).toString();
+    }
+}
@@ -0,0 +1,327 @@
+package jmbd.commons.telemetry;
+
+import java.nio.ByteBuffer;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Decodes blocks produced by SampleBlockEncoder (layout described there),
+ * straight out of the buffer they were received into.
+ *
+ * Usage: decode() a block, then next() sample after sample reading the
+ * getters (or toFrame() to get each sample as a TelemetryFrame). The source
+ * buffer must stay unchanged until the block has been iterated. Nothing
+ * allocates after construction.
+ *
+ * Not thread safe.
+ *
+ * @author savvas
+ */
+public class SampleBlockDecoder {
+
+    private ByteBuffer src;
+    private int start;
+    private int end;
+    private int bytePos;
+    private int bitPos;
+    private boolean corrupt;
+
+    private SampleType sampleType;
+    private int deviceId;
+    private int firstSequence;
+    private int channels;
+    private int count;
+    private int index;
+
+    private long timestamp;
+    private long previousDelta;
+
+    private final int[] values = new int[TelemetryFrame.MAX_SAMPLES];
+    private final int[] leadingZeros = new int[TelemetryFrame.MAX_SAMPLES];
+    private final int[] trailingZeros = new int[TelemetryFrame.MAX_SAMPLES];
+
+    /**
+     * @param src
+     * @return true if src (from its position on) starts with a block
+     */
+    public static boolean isBlock(ByteBuffer src) {
+
+        return src.remaining() >= 2 && (src.getShort(src.position()) & 0xFFFF) == SampleBlockEncoder.MAGIC;
+    }
+
+    /**
+     * Prepares iteration over the block at src's position, src's position is
+     * moved past the block if its header is valid and left alone otherwise.
+     *
+     * @param src
+     * @return false if src does not start with a complete block of this
+     * version
+     */
+    public boolean decode(ByteBuffer src) {
+
+        int s = src.position();
+
+        if (src.remaining() < SampleBlockEncoder.HEADER_SIZE_BYTES
+                || (src.getShort(s) & 0xFFFF) != SampleBlockEncoder.MAGIC
+                || (src.get(s + 2) & 0xFF) != SampleBlockEncoder.VERSION) {
+            return false;
+        }
+
+        SampleType type = SampleType.forCode(src.get(s + SampleBlockEncoder.TYPE_OFFSET) & 0xFF);
+        int c = src.get(s + SampleBlockEncoder.CHANNELS_OFFSET) & 0xFF;
+        int length = src.getShort(s + SampleBlockEncoder.LENGTH_OFFSET) & 0xFFFF;
+
+        if (type == null || c == 0 || length < SampleBlockEncoder.HEADER_SIZE_BYTES || length > src.remaining()) {
+            return false;
+        }
+
+        this.src = src;
+        this.start = s;
+        this.end = s + length;
+        this.bytePos = s + SampleBlockEncoder.HEADER_SIZE_BYTES;
+        this.bitPos = 0;
+        this.corrupt = false;
+
+        this.sampleType = type;
+        this.channels = c;
+        this.deviceId = src.getShort(s + SampleBlockEncoder.DEVICE_ID_OFFSET) & 0xFFFF;
+        this.firstSequence = src.getInt(s + SampleBlockEncoder.SEQUENCE_OFFSET);
+        this.count = src.getShort(s + SampleBlockEncoder.COUNT_OFFSET) & 0xFFFF;
+        this.index = -1;
+
+        src.position(end);
+
+        return true;
+    }
+
+    /**
+     * Decodes the next sample.
+     *
+     * @return false once all samples have been decoded or the block turns
+     * out to be corrupt (see isCorrupt())
+     */
+    public boolean next() {
+
+        if (corrupt || index + 1 >= count) {
+            return false;
+        }
+        ++index;
+
+        if (index == 0) {
+            timestamp = readBits(64);
+        } else if (index == 1) {
+            previousDelta = zigZag(readVarint());
+            timestamp += previousDelta;
+        } else {
+            if (readBits(1) == 1) {
+                previousDelta += zigZag(readVarint());
+            }
+            timestamp += previousDelta;
+        }
+
+        for (int c = 0; c < channels; c++) {
+
+            switch (sampleType) {
+                case INT16:
+                    values[c] = index == 0 ? (short) readBits(16) : (int) (values[c] + zigZag(readVarint()));
+                    break;
+                case INT32:
+                    values[c] = index == 0 ? (int) readBits(32) : (int) (values[c] + zigZag(readVarint()));
+                    break;
+                default:
+                    values[c] = index == 0 ? (int) readBits(32) : values[c] ^ readXor(c);
+                    break;
+            }
+        }
+        return !corrupt;
+    }
+
+    private int readXor(int c) {
+
+        if (readBits(1) == 0) {
+            return 0;
+        }
+
+        if (readBits(1) == 0) {
+            int leading = leadingZeros[c];
+            int trailing = trailingZeros[c];
+
+            return (int) readBits(32 - leading - trailing) << trailing;
+        }
+
+        int leading = (int) readBits(5);
+        int meaningful = (int) readBits(5) + 1;
+        int trailing = 32 - leading - meaningful;
+
+        if (trailing < 0) {
+            corrupt = true;
+            return 0;
+        }
+        leadingZeros[c] = leading;
+        trailingZeros[c] = trailing;
+
+        return (int) readBits(meaningful) << trailing;
+    }
+
+    private long readVarint() {
+
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+
+            long b = readBits(8);
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        corrupt = true;
+        return 0;
+    }
+
+    private long readBits(int bits) {
+
+        long value = 0;
+
+        while (bits > 0) {
+
+            if (bytePos >= end) {
+                // ran off the block..
+                corrupt = true;
+                return 0;
+            }
+
+            int available = 8 - bitPos;
+            int taken = Math.min(available, bits);
+            int chunk = (src.get(bytePos) >>> (available - taken)) & ((1 << taken) - 1);
+
+            value = (value << taken) | chunk;
+
+            bits -= taken;
+            bitPos += taken;
+
+            if (bitPos == 8) {
+                bitPos = 0;
+                ++bytePos;
+            }
+        }
+        return value;
+    }
+
+    private static long zigZag(long value) {
+
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Fills frame in with the current sample (one value per channel).
+     *
+     * REQUIRES:
+     *
+     * 1) next() returned true
+     *
+     * 2) frame large enough for getChannelCount() values
+     *
+     * @param frame
+     */
+    public void toFrame(TelemetryFrame frame) {
+
+        frame.reset(deviceId, sampleType, getSequence(), timestamp);
+
+        for (int c = 0; c < channels; c++) {
+
+            switch (sampleType) {
+                case INT16:
+                    frame.addShort((short) values[c]);
+                    break;
+                case INT32:
+                    frame.addInt(values[c]);
+                    break;
+                default:
+                    frame.addFloat(Float.intBitsToFloat(values[c]));
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return true if the last next() ran into data that can not have been
+     * written by SampleBlockEncoder
+     */
+    public boolean isCorrupt() {
+
+        return corrupt;
+    }
+
+    public long getTimestamp() {
+
+        return timestamp;
+    }
+
+    public short getShort(int channel) {
+
+        assert sampleType == SampleType.INT16 : "not an INT16 block";
+
+        return (short) values[channel];
+    }
+
+    public int getInt(int channel) {
+
+        assert sampleType == SampleType.INT32 : "not an INT32 block";
+
+        return values[channel];
+    }
+
+    public float getFloat(int channel) {
+
+        assert sampleType == SampleType.FLOAT32 : "not a FLOAT32 block";
+
+        return Float.intBitsToFloat(values[channel]);
+    }
+
+    /**
+     * @return sequence number of the current sample
+     */
+    public int getSequence() {
+
+        return firstSequence + index;
+    }
+
+    public int getDeviceId() {
+
+        return deviceId;
+    }
+
+    public SampleType getSampleType() {
+
+        return sampleType;
+    }
+
+    public int getChannelCount() {
+
+        return channels;
+    }
+
+    public int getSampleCount() {
+
+        return count;
+    }
+
+    /**
+     * @return length in bytes of the decoded block
+     */
+    public int getLength() {
+
+        return end - start;
+    }
+}
@@ -0,0 +1,432 @@
+package jmbd.commons.telemetry;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Compresses consecutive samples (timestamp plus one value per channel) of a
+ * device into self-contained blocks, i.e. each block can be decoded on its own
+ * by a SampleBlockDecoder.
+ *
+ * Block layout, header (big endian):
+ *
+ * offset 0, 2 bytes: MAGIC
+ *
+ * offset 2, 1 byte: VERSION
+ *
+ * offset 3, 1 byte: SampleType code
+ *
+ * offset 4, 2 bytes: device id (unsigned)
+ *
+ * offset 6, 4 bytes: sequence number of the first sample
+ *
+ * offset 10, 1 byte: channel count
+ *
+ * offset 11, 2 bytes: sample count
+ *
+ * offset 13, 2 bytes: block length in bytes (header included)
+ *
+ * followed by a bit stream, msb first, sample after sample:
+ *
+ * 1) timestamp: first sample raw (64 bits), second one as zig-zag varint
+ * delta, subsequent ones as delta-of-delta: '0' if unchanged, '1' + zig-zag
+ * varint otherwise
+ *
+ * 2) INT16/INT32 channels: first sample raw (16/32 bits), subsequent ones as
+ * zig-zag varint delta from the previous sample of the same channel
+ *
+ * 3) FLOAT32 channels: first sample raw (32 bits), subsequent ones XOR'ed with
+ * the previous sample of the same channel (Gorilla): '0' if equal, '10' +
+ * meaningful bits if they fit in the previous leading/trailing zero window,
+ * '11' + 5 bits leading zeros + 5 bits (meaningful length - 1) + meaningful
+ * bits otherwise
+ *
+ * Varints are 7-bit groups with a continuation bit, as 8 bits of the stream.
+ *
+ * Slowly changing values (and regularly spaced timestamps) take a byte or
+ * less per value, against 2-4 bytes per value plus a full TelemetryFrame
+ * header per sample uncompressed.
+ *
+ * Usage: beginSample(), add..() one value per channel, repeat; finish() once
+ * isFull() (or whenever the block should go out), then getBytes() /
+ * getLength(). Nothing allocates after construction.
+ *
+ * Not thread safe.
+ *
+ * @author savvas
+ */
+public class SampleBlockEncoder {
+
+    public static final int MAGIC = 0x4A42;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE_BYTES = 15;
+    public static final int MAX_SAMPLES = 0xFFFF;
+
+    static final int TYPE_OFFSET = 3;
+    static final int DEVICE_ID_OFFSET = 4;
+    static final int SEQUENCE_OFFSET = 6;
+    static final int CHANNELS_OFFSET = 10;
+    static final int COUNT_OFFSET = 11;
+    static final int LENGTH_OFFSET = 13;
+
+    // worst cases: varint of a 64-bit zig-zag value plus flag, 44 bits for a float
+    private static final int MAX_TIMESTAMP_BITS = 1 + 10 * 8;
+    private static final int MAX_VALUE_BITS = 44;
+
+    private final int deviceId;
+    private final SampleType sampleType;
+    private final int channels;
+    private final int maxSamples;
+
+    private final byte[] bytes;
+    private int bytePos;
+    private int bitPos;
+
+    private int count;
+    private int channel;
+    private int firstSequence;
+    private int nextSequence;
+    private int length;
+
+    private long previousTimestamp;
+    private long previousDelta;
+
+    private final int[] previousValues;
+    private final int[] previousLeadingZeros;
+    private final int[] previousTrailingZeros;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) deviceId BETWEEN [0 - TelemetryFrame.MAX_DEVICE_ID]
+     *
+     * 2) sampleType not null
+     *
+     * 3) channels BETWEEN [1 - TelemetryFrame.MAX_SAMPLES]
+     *
+     * 4) maxSamples BETWEEN [1 - MAX_SAMPLES], small enough for the
+     * worst-case block to stay within 64KB
+     *
+     * @param deviceId
+     * @param sampleType
+     * @param channels values per sample
+     * @param maxSamples most samples a block will hold
+     */
+    public SampleBlockEncoder(int deviceId, SampleType sampleType, int channels, int maxSamples) {
+
+        assert deviceId >= 0 && deviceId <= TelemetryFrame.MAX_DEVICE_ID : "deviceId out of range";
+        assert sampleType != null : "sampleType is null";
+        assert channels > 0 && channels <= TelemetryFrame.MAX_SAMPLES : "channels out of range";
+        assert maxSamples > 0 && maxSamples <= MAX_SAMPLES : "maxSamples out of range";
+
+        this.deviceId = deviceId;
+        this.sampleType = sampleType;
+        this.channels = channels;
+        this.maxSamples = maxSamples;
+
+        long maxBits = (long) maxSamples * (MAX_TIMESTAMP_BITS + channels * MAX_VALUE_BITS);
+
+        assert HEADER_SIZE_BYTES + (maxBits + 7) / 8 <= 0xFFFF : "worst-case block does not fit the length field, fewer samples per block";
+
+        this.bytes = new byte[HEADER_SIZE_BYTES + (int) ((maxBits + 7) / 8)];
+
+        this.previousValues = new int[channels];
+        this.previousLeadingZeros = new int[channels];
+        this.previousTrailingZeros = new int[channels];
+    }
+
+    /**
+     * Starts the next sample (and a new block if the previous one has been
+     * finish()'ed).
+     *
+     * REQUIRES:
+     *
+     * 1) !isFull()
+     *
+     * 2) all channels of the previous sample added
+     *
+     * @param timestamp
+     */
+    public void beginSample(long timestamp) {
+
+        assert count < maxSamples : "block full";
+        assert count == 0 || channel == channels : "previous sample incomplete";
+
+        if (count == 0) {
+            startBlock();
+            writeBits(timestamp, 64);
+        } else if (count == 1) {
+            previousDelta = timestamp - previousTimestamp;
+            writeVarint(zigZag(previousDelta));
+        } else {
+            long delta = timestamp - previousTimestamp;
+            long deltaOfDelta = delta - previousDelta;
+
+            if (deltaOfDelta == 0) {
+                writeBits(0, 1);
+            } else {
+                writeBits(1, 1);
+                writeVarint(zigZag(deltaOfDelta));
+            }
+            previousDelta = delta;
+        }
+        previousTimestamp = timestamp;
+        channel = 0;
+        ++count;
+    }
+
+    private void startBlock() {
+
+        bytePos = HEADER_SIZE_BYTES;
+        bitPos = 0;
+        length = 0;
+        firstSequence = nextSequence;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * 1) getSampleType() == SampleType.INT16
+     *
+     * 2) sample begun and not all channels added
+     *
+     * @param value
+     */
+    public void addShort(short value) {
+
+        assert sampleType == SampleType.INT16 : "not an INT16 block";
+
+        addInteger(value, 16);
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * 1) getSampleType() == SampleType.INT32
+     *
+     * 2) sample begun and not all channels added
+     *
+     * @param value
+     */
+    public void addInt(int value) {
+
+        assert sampleType == SampleType.INT32 : "not an INT32 block";
+
+        addInteger(value, 32);
+    }
+
+    private void addInteger(int value, int rawBits) {
+
+        assert count > 0 && channel < channels : "no room for another value in this sample";
+
+        if (count == 1) {
+            writeBits(value, rawBits);
+        } else {
+            writeVarint(zigZag((long) value - previousValues[channel]));
+        }
+        previousValues[channel++] = value;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * 1) getSampleType() == SampleType.FLOAT32
+     *
+     * 2) sample begun and not all channels added
+     *
+     * @param value
+     */
+    public void addFloat(float value) {
+
+        assert sampleType == SampleType.FLOAT32 : "not a FLOAT32 block";
+        assert count > 0 && channel < channels : "no room for another value in this sample";
+
+        int bits = Float.floatToRawIntBits(value);
+
+        if (count == 1) {
+            writeBits(bits, 32);
+            // no window yet..
+            previousLeadingZeros[channel] = -1;
+        } else {
+            int xor = bits ^ previousValues[channel];
+
+            if (xor == 0) {
+                writeBits(0, 1);
+            } else {
+                int leading = Integer.numberOfLeadingZeros(xor);
+                int trailing = Integer.numberOfTrailingZeros(xor);
+                int previousLeading = previousLeadingZeros[channel];
+                int previousTrailing = previousTrailingZeros[channel];
+
+                if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                    writeBits(0b10, 2);
+                    writeBits(xor >>> previousTrailing, 32 - previousLeading - previousTrailing);
+                } else {
+                    int meaningful = 32 - leading - trailing;
+
+                    writeBits(0b11, 2);
+                    writeBits(leading, 5);
+                    writeBits(meaningful - 1, 5);
+                    writeBits(xor >>> trailing, meaningful);
+
+                    previousLeadingZeros[channel] = leading;
+                    previousTrailingZeros[channel] = trailing;
+                }
+            }
+        }
+        previousValues[channel++] = bits;
+    }
+
+    /**
+     * Completes the block, the next beginSample() starts a new one.
+     *
+     * REQUIRES:
+     *
+     * 1) !isEmpty()
+     *
+     * 2) all channels of the last sample added
+     *
+     * @return block length in bytes
+     */
+    public int finish() {
+
+        assert count > 0 : "empty block";
+        assert channel == channels : "last sample incomplete";
+
+        length = bytePos + (bitPos > 0 ? 1 : 0);
+
+        bytes[0] = (byte) (MAGIC >>> 8);
+        bytes[1] = (byte) MAGIC;
+        bytes[2] = (byte) VERSION;
+        bytes[TYPE_OFFSET] = (byte) sampleType.getCode();
+        putShort(DEVICE_ID_OFFSET, deviceId);
+        putShort(SEQUENCE_OFFSET, firstSequence >>> 16);
+        putShort(SEQUENCE_OFFSET + 2, firstSequence);
+        bytes[CHANNELS_OFFSET] = (byte) channels;
+        putShort(COUNT_OFFSET, count);
+        putShort(LENGTH_OFFSET, length);
+
+        nextSequence = firstSequence + count;
+        count = 0;
+
+        return length;
+    }
+
+    private void putShort(int offset, int value) {
+
+        bytes[offset] = (byte) (value >>> 8);
+        bytes[offset + 1] = (byte) value;
+    }
+
+    private void writeVarint(long value) {
+
+        while ((value & ~0x7FL) != 0) {
+            writeBits((value & 0x7F) | 0x80, 8);
+            value >>>= 7;
+        }
+        writeBits(value, 8);
+    }
+
+    private void writeBits(long value, int bits) {
+
+        while (bits > 0) {
+
+            int free = 8 - bitPos;
+            int taken = Math.min(free, bits);
+            int chunk = (int) (value >>> (bits - taken)) & ((1 << taken) - 1);
+
+            if (bitPos == 0) {
+                // fresh byte, whatever the previous block left there goes..
+                bytes[bytePos] = (byte) (chunk << (free - taken));
+            } else {
+                bytes[bytePos] |= chunk << (free - taken);
+            }
+
+            bits -= taken;
+            bitPos += taken;
+
+            if (bitPos == 8) {
+                bitPos = 0;
+                ++bytePos;
+            }
+        }
+    }
+
+    private static long zigZag(long value) {
+
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Finished block, valid up to getLength(). Same array for the lifetime of
+     * the encoder.
+     *
+     * @return
+     */
+    public byte[] getBytes() {
+
+        return bytes;
+    }
+
+    /**
+     * @return length of the last finish()'ed block
+     */
+    public int getLength() {
+
+        return length;
+    }
+
+    /**
+     * @return largest block this encoder can produce
+     */
+    public int getCapacity() {
+
+        return bytes.length;
+    }
+
+    /**
+     * @return samples in the block being built
+     */
+    public int getSampleCount() {
+
+        return count;
+    }
+
+    public boolean isEmpty() {
+
+        return count == 0;
+    }
+
+    public boolean isFull() {
+
+        return count == maxSamples;
+    }
+
+    public int getDeviceId() {
+
+        return deviceId;
+    }
+
+    public SampleType getSampleType() {
+
+        return sampleType;
+    }
+
+    public int getChannelCount() {
+
+        return channels;
+    }
+
+    public int getMaxSamples() {
+
+        return maxSamples;
+    }
+}
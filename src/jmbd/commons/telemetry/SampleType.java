@@ -0,0 +1,63 @@
+package jmbd.commons.telemetry;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Type of the samples carried by a TelemetryFrame, written into the frame as
+ * getCode().
+ *
+ * @author savvas
+ */
+public enum SampleType {
+
+    // raw 16-bit measurements (e.g. MPU-6050 registers)
+    INT16(1, 2),
+    INT32(2, 4),
+    // converted values (e.g. temperature in degrees Celsius)
+    FLOAT32(3, 4);
+
+    // values() returns a new array on every call..
+    private static final SampleType[] TYPES = values();
+
+    private final int code;
+    private final int sizeBytes;
+
+    private SampleType(int code, int sizeBytes) {
+
+        this.code = code;
+        this.sizeBytes = sizeBytes;
+    }
+
+    public int getCode() {
+
+        return code;
+    }
+
+    public int getSizeBytes() {
+
+        return sizeBytes;
+    }
+
+    /**
+     * @param code
+     * @return type of given code, null if there is none
+     */
+    public static SampleType forCode(int code) {
+
+        for (SampleType t : TYPES) {
+            if (t.code == code) {
+                return t;
+            }
+        }
+        return null;
+    }
+}
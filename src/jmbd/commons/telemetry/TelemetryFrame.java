@@ -0,0 +1,353 @@
+package jmbd.commons.telemetry;
+
+import java.nio.ByteBuffer;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Fixed-layout binary telemetry frame, encoded into (and decoded from) a byte
+ * array owned by the frame so that it can be handed to a Datagram as is.
+ *
+ * Layout (big endian):
+ *
+ * offset 0, 2 bytes: MAGIC
+ *
+ * offset 2, 1 byte: VERSION
+ *
+ * offset 3, 1 byte: SampleType code
+ *
+ * offset 4, 2 bytes: device id (unsigned)
+ *
+ * offset 6, 4 bytes: sequence number (per frame instance, wraps around)
+ *
+ * offset 10, 8 bytes: timestamp (nanoseconds, as given by the sender)
+ *
+ * offset 18, 1 byte: sample count (unsigned)
+ *
+ * offset 19: samples, each getSampleType().getSizeBytes() long
+ *
+ * A single temperature reading therefore takes 23 bytes, against around 30
+ * for "Latest temperature is: " + temp (plus a new String, byte[] and
+ * Datagram per reading).
+ *
+ * Encoding: begin(), add..() samples, then getBytes()/getLength(). Decoding:
+ * decode() then the getters. Nothing allocates after construction.
+ *
+ * Not thread safe.
+ *
+ * @author savvas
+ */
+public class TelemetryFrame {
+
+    public static final int MAGIC = 0x4A4D;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE_BYTES = 19;
+    public static final int MAX_SAMPLES = 255;
+
+    public static final int MAX_DEVICE_ID = 0xFFFF;
+
+    private static final int TYPE_OFFSET = 3;
+    private static final int DEVICE_ID_OFFSET = 4;
+    private static final int SEQUENCE_OFFSET = 6;
+    private static final int TIMESTAMP_OFFSET = 10;
+    private static final int COUNT_OFFSET = 18;
+
+    private final byte[] bytes;
+    private final ByteBuffer buf;
+
+    private int deviceId;
+    private SampleType sampleType;
+    private int sequence;
+    private long timestamp;
+    private int sampleCount;
+
+    private int nextSequence;
+
+    /**
+     * Frame for encoding samples of given device and type.
+     *
+     * REQUIRES:
+     *
+     * 1) deviceId BETWEEN [0 - MAX_DEVICE_ID]
+     *
+     * 2) sampleType not null
+     *
+     * 3) maxSamples BETWEEN [1 - MAX_SAMPLES]
+     *
+     * @param deviceId
+     * @param sampleType
+     * @param maxSamples most samples a single frame will carry
+     */
+    public TelemetryFrame(int deviceId, SampleType sampleType, int maxSamples) {
+
+        this(HEADER_SIZE_BYTES + maxSamples * sampleType.getSizeBytes());
+
+        assert deviceId >= 0 && deviceId <= MAX_DEVICE_ID : "deviceId out of range";
+        assert maxSamples > 0 && maxSamples <= MAX_SAMPLES : "maxSamples out of range";
+
+        this.deviceId = deviceId;
+        this.sampleType = sampleType;
+    }
+
+    /**
+     * Frame for decoding, large enough for any frame of up to capacityBytes.
+     *
+     * REQUIRES:
+     *
+     * capacityBytes >= HEADER_SIZE_BYTES
+     *
+     * @param capacityBytes
+     */
+    public TelemetryFrame(int capacityBytes) {
+
+        assert capacityBytes >= HEADER_SIZE_BYTES : "capacity smaller than header";
+
+        this.bytes = new byte[capacityBytes];
+        this.buf = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Starts a new frame, next sequence number and no samples.
+     *
+     * REQUIRES:
+     *
+     * frame created for encoding
+     *
+     * @param timestamp
+     */
+    public void begin(long timestamp) {
+
+        assert sampleType != null : "frame not created for encoding";
+
+        reset(deviceId, sampleType, nextSequence++, timestamp);
+    }
+
+    /**
+     * Starts a frame with the given header, for frames rebuilt out of other
+     * encodings (e.g. SampleBlockDecoder). Sequence numbering of begin() is
+     * left alone.
+     *
+     * @param deviceId
+     * @param sampleType
+     * @param sequence
+     * @param timestamp
+     */
+    void reset(int deviceId, SampleType sampleType, int sequence, long timestamp) {
+
+        this.deviceId = deviceId;
+        this.sampleType = sampleType;
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.sampleCount = 0;
+
+        buf.clear();
+        buf.putShort((short) MAGIC)
+                .put((byte) VERSION)
+                .put((byte) sampleType.getCode())
+                .putShort((short) deviceId)
+                .putInt(sequence)
+                .putLong(timestamp)
+                .put((byte) 0);
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * 1) getSampleType() == SampleType.INT16
+     *
+     * 2) room for another sample
+     *
+     * @param sample
+     */
+    public void addShort(short sample) {
+
+        assert sampleType == SampleType.INT16 : "not an INT16 frame";
+
+        buf.putShort(sample);
+        countSample();
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * 1) getSampleType() == SampleType.INT32
+     *
+     * 2) room for another sample
+     *
+     * @param sample
+     */
+    public void addInt(int sample) {
+
+        assert sampleType == SampleType.INT32 : "not an INT32 frame";
+
+        buf.putInt(sample);
+        countSample();
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * 1) getSampleType() == SampleType.FLOAT32
+     *
+     * 2) room for another sample
+     *
+     * @param sample
+     */
+    public void addFloat(float sample) {
+
+        assert sampleType == SampleType.FLOAT32 : "not a FLOAT32 frame";
+
+        buf.putFloat(sample);
+        countSample();
+    }
+
+    private void countSample() {
+
+        sampleCount++;
+
+        assert sampleCount <= MAX_SAMPLES : "too many samples";
+
+        bytes[COUNT_OFFSET] = (byte) sampleCount;
+    }
+
+    /**
+     * Reads a frame out of src (from its position on), src's position is
+     * moved past the frame if it is valid and left alone otherwise.
+     *
+     * ENSURES:
+     *
+     * returns false (and this frame is left as it was) if src does not start
+     * with a complete frame of this version that fits this frame's capacity
+     *
+     * @param src
+     * @return
+     */
+    public boolean decode(ByteBuffer src) {
+
+        int start = src.position();
+
+        if (src.remaining() < HEADER_SIZE_BYTES
+                || (src.getShort(start) & 0xFFFF) != MAGIC
+                || (src.get(start + 2) & 0xFF) != VERSION) {
+            return false;
+        }
+
+        SampleType type = SampleType.forCode(src.get(start + TYPE_OFFSET) & 0xFF);
+        int count = src.get(start + COUNT_OFFSET) & 0xFF;
+
+        if (type == null) {
+            return false;
+        }
+
+        int length = HEADER_SIZE_BYTES + count * type.getSizeBytes();
+
+        if (length > src.remaining() || length > bytes.length) {
+            return false;
+        }
+
+        // copied byte by byte, ByteBuffer.get(byte[]..) would need a duplicate to leave src alone on failure..
+        for (int i = 0; i < length; i++) {
+            bytes[i] = src.get(start + i);
+        }
+        src.position(start + length);
+
+        sampleType = type;
+        sampleCount = count;
+        deviceId = buf.getShort(DEVICE_ID_OFFSET) & 0xFFFF;
+        sequence = buf.getInt(SEQUENCE_OFFSET);
+        timestamp = buf.getLong(TIMESTAMP_OFFSET);
+
+        buf.clear().position(length);
+
+        return true;
+    }
+
+    public short getShort(int index) {
+
+        assert sampleType == SampleType.INT16 : "not an INT16 frame";
+        assert index >= 0 && index < sampleCount : "index out of range";
+
+        return buf.getShort(HEADER_SIZE_BYTES + index * 2);
+    }
+
+    public int getInt(int index) {
+
+        assert sampleType == SampleType.INT32 : "not an INT32 frame";
+        assert index >= 0 && index < sampleCount : "index out of range";
+
+        return buf.getInt(HEADER_SIZE_BYTES + index * 4);
+    }
+
+    public float getFloat(int index) {
+
+        assert sampleType == SampleType.FLOAT32 : "not a FLOAT32 frame";
+        assert index >= 0 && index < sampleCount : "index out of range";
+
+        return buf.getFloat(HEADER_SIZE_BYTES + index * 4);
+    }
+
+    /**
+     * Encoded frame, valid up to getLength(). Same array for the lifetime of
+     * the frame.
+     *
+     * @return
+     */
+    public byte[] getBytes() {
+
+        return bytes;
+    }
+
+    /**
+     * @return encoded length in bytes of the current frame, 0 if nothing
+     * encoded/decoded yet
+     */
+    public int getLength() {
+
+        return sampleType == null ? 0 : HEADER_SIZE_BYTES + sampleCount * sampleType.getSizeBytes();
+    }
+
+    public int getCapacity() {
+
+        return bytes.length;
+    }
+
+    public int getDeviceId() {
+
+        return deviceId;
+    }
+
+    public SampleType getSampleType() {
+
+        return sampleType;
+    }
+
+    public int getSequence() {
+
+        return sequence;
+    }
+
+    public long getTimestamp() {
+
+        return timestamp;
+    }
+
+    public int getSampleCount() {
+
+        return sampleCount;
+    }
+
+    @Override
+    public String toString() {
+
+        return "TelemetryFrame{" + "deviceId=" + deviceId + ", sampleType=" + sampleType + ", sequence=" + sequence + ", timestamp=" + timestamp + ", sampleCount=" + sampleCount + '}';
+    }
+}
@@ -0,0 +1,132 @@
+package jmbd.commons.telemetry;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Frames received from a single device, as told apart by the device id they
+ * carry, and where they go to.
+ *
+ * Lost frames are counted from gaps in sequence numbers; a sequence number
+ * going backwards (sender restarted, reordering) is counted as a restart
+ * instead.
+ *
+ * Updated by the receiving thread only, the counters may be read from any
+ * thread.
+ *
+ * @author savvas
+ */
+public class TelemetryStream {
+
+    private final int deviceId;
+    private volatile TelemetryFrameListener listener;
+
+    private volatile long frames;
+    private volatile long samples;
+    private volatile long lostFrames;
+    private volatile long restarts;
+    private volatile long lastTimestamp;
+    private int lastSequence;
+
+    public TelemetryStream(int deviceId) {
+
+        this.deviceId = deviceId;
+    }
+
+    /**
+     * Accounts for the frame and hands it to the listener (if any).
+     *
+     * REQUIRES:
+     *
+     * frame.getDeviceId() == getDeviceId()
+     *
+     * @param frame
+     */
+    public void frameReceived(TelemetryFrame frame) {
+
+        assert frame.getDeviceId() == deviceId : "frame of another device";
+
+        int sequence = frame.getSequence();
+
+        if (frames > 0) {
+
+            int gap = sequence - lastSequence - 1;
+
+            if (gap > 0) {
+                lostFrames += gap;
+            } else if (gap < 0) {
+                ++restarts;
+            }
+        }
+        lastSequence = sequence;
+        lastTimestamp = frame.getTimestamp();
+        samples += frame.getSampleCount();
+        ++frames;
+
+        TelemetryFrameListener l = listener;
+
+        if (l != null) {
+            l.frameReceived(frame);
+        }
+    }
+
+    public int getDeviceId() {
+
+        return deviceId;
+    }
+
+    public TelemetryFrameListener getListener() {
+
+        return listener;
+    }
+
+    /**
+     * @param listener null to only keep count
+     */
+    public void setListener(TelemetryFrameListener listener) {
+
+        this.listener = listener;
+    }
+
+    public long getFrameCount() {
+
+        return frames;
+    }
+
+    public long getSampleCount() {
+
+        return samples;
+    }
+
+    public long getLostFrameCount() {
+
+        return lostFrames;
+    }
+
+    public long getRestartCount() {
+
+        return restarts;
+    }
+
+    /**
+     * @return sender's timestamp of the latest frame
+     */
+    public long getLastTimestamp() {
+
+        return lastTimestamp;
+    }
+
+    @Override
+    public String toString() {
+
+        return "TelemetryStream{" + "deviceId=" + deviceId + ", frames=" + frames + ", samples=" + samples + ", lost=" + lostFrames + ", restarts=" + restarts + '}';
+    }
+}
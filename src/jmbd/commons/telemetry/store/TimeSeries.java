@@ -0,0 +1,267 @@
+package jmbd.commons.telemetry.store;
+
+import jmbd.commons.telemetry.SampleType;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Samples of one channel of one device, kept in a directory of
+ * TimeSeriesSegments named after their (zero-padded) sequence number.
+ *
+ * Appends go to the latest segment; a new one is started when it is full, when
+ * the sample type changes or when the sender restarted: either restart() was
+ * called (e.g. its sequence numbers were reset) or a timestamp is more than
+ * RESTART_THRESHOLD_NANOS older than the last one (its clock was reset). A
+ * sample only slightly older than the last one (reordered or late) is dropped
+ * and counted instead, one stray datagram must not cost a segment. Scans skip
+ * segments outside the range by their first/last timestamps.
+ *
+ * append() and restart() are meant for a single thread, scan() may run on any
+ * thread at the same time.
+ *
+ * @author savvas
+ */
+public class TimeSeries {
+
+    // further back than this, the sender's clock must have been reset..
+    public static final long RESTART_THRESHOLD_NANOS = 1_000_000_000L;
+
+    private static final String SUFFIX = ".seg";
+
+    private final File dir;
+    private final int deviceId;
+    private final int channel;
+    private final int segmentSizeBytes;
+
+    // replaced (never modified) on roll, scans work on whatever they got..
+    private volatile TimeSeriesSegment[] segments;
+    private int nextSegmentNumber;
+    private boolean restarted;
+    private volatile boolean closed;
+
+    private volatile long lateSamples;
+
+    /**
+     * Opens the series in dir, creating dir if needed and picking up any
+     * segments already there.
+     *
+     * REQUIRES:
+     *
+     * segmentSizeBytes >= TimeSeriesSegment.HEADER_SIZE_BYTES +
+     * TimeSeriesSegment.RECORD_SIZE_BYTES
+     *
+     * @param dir
+     * @param deviceId
+     * @param channel
+     * @param segmentSizeBytes size of new segments
+     * @throws IOException
+     */
+    public TimeSeries(File dir, int deviceId, int channel, int segmentSizeBytes) throws IOException {
+
+        assert segmentSizeBytes >= TimeSeriesSegment.HEADER_SIZE_BYTES + TimeSeriesSegment.RECORD_SIZE_BYTES : "segment too small";
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+
+        this.dir = dir;
+        this.deviceId = deviceId;
+        this.channel = channel;
+        this.segmentSizeBytes = segmentSizeBytes;
+
+        File[] files = dir.listFiles(new FileFilter() {
+
+            @Override
+            public boolean accept(File f) {
+
+                return f.isFile() && f.getName().endsWith(SUFFIX);
+            }
+        });
+        if (files == null) {
+            files = new File[0];
+        }
+        // zero-padded names, i.e. creation order..
+        Arrays.sort(files);
+
+        TimeSeriesSegment[] opened = new TimeSeriesSegment[files.length];
+
+        for (int i = 0; i < files.length; i++) {
+            opened[i] = TimeSeriesSegment.open(files[i]);
+
+            String name = files[i].getName();
+            nextSegmentNumber = Math.max(nextSegmentNumber, Integer.parseInt(name.substring(0, name.length() - SUFFIX.length())) + 1);
+        }
+        segments = opened;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * sampleType not null
+     *
+     * @param timestamp
+     * @param sampleType
+     * @param bits raw sample bits (see TimeSeriesStore)
+     * @return false if dropped as a late sample
+     * @throws IOException if a new segment was needed and could not be
+     * created, or the series is closed
+     */
+    public boolean append(long timestamp, SampleType sampleType, int bits) throws IOException {
+
+        TimeSeriesSegment[] s = segments;
+        TimeSeriesSegment current = s.length == 0 ? null : s[s.length - 1];
+
+        if (current != null && !restarted && current.getSampleType() == sampleType) {
+
+            if (current.append(timestamp, bits)) {
+                return true;
+            }
+            if (!current.isFull() && current.getLastTimestamp() - timestamp <= RESTART_THRESHOLD_NANOS) {
+                // late, not a restart..
+                ++lateSamples;
+                return false;
+            }
+        }
+
+        current = roll(sampleType);
+        restarted = false;
+
+        boolean appended = current.append(timestamp, bits);
+
+        assert appended : "fresh segment refused record";
+        return true;
+    }
+
+    /**
+     * The sender restarted, the next append() starts a new segment whatever
+     * its timestamp.
+     */
+    public void restart() {
+
+        restarted = true;
+    }
+
+    private TimeSeriesSegment roll(SampleType sampleType) throws IOException {
+
+        if (closed) {
+            throw new IOException("Series closed: " + dir);
+        }
+
+        TimeSeriesSegment[] s = segments;
+
+        if (s.length > 0) {
+            // done with it, make sure it is all on disk..
+            s[s.length - 1].force();
+        }
+
+        File file = new File(dir, String.format("%010d", nextSegmentNumber) + SUFFIX);
+        TimeSeriesSegment created = TimeSeriesSegment.create(file, segmentSizeBytes, sampleType, deviceId, channel);
+        ++nextSegmentNumber;
+
+        TimeSeriesSegment[] grown = Arrays.copyOf(s, s.length + 1);
+        grown[s.length] = created;
+        segments = grown;
+
+        return created;
+    }
+
+    /**
+     * Visits samples with timestamp BETWEEN [from - to], in segment order
+     * (i.e. time order unless the sender's clock went backwards).
+     *
+     * @param from
+     * @param to
+     * @param visitor
+     * @return number of samples visited
+     */
+    public long scan(long from, long to, SampleVisitor visitor) {
+
+        long visited = 0;
+
+        for (TimeSeriesSegment segment : segments) {
+            visited += segment.scan(from, to, visitor);
+        }
+        return visited;
+    }
+
+    /**
+     * Writes the latest segment through to its file (older ones were forced
+     * when rolled).
+     */
+    public void force() {
+
+        TimeSeriesSegment[] s = segments;
+
+        if (s.length > 0) {
+            s[s.length - 1].force();
+        }
+    }
+
+    /**
+     * Forces and then lets go of all segments. There is no portable way of
+     * unmapping a MappedByteBuffer, a mapping is released once its segment
+     * is unreachable, i.e. after scans still running on it are done. Nothing
+     * can be appended or scanned afterwards.
+     */
+    public void close() {
+
+        closed = true;
+        force();
+        segments = new TimeSeriesSegment[0];
+    }
+
+    public int getDeviceId() {
+
+        return deviceId;
+    }
+
+    public int getChannel() {
+
+        return channel;
+    }
+
+    /**
+     * @return samples dropped for arriving (slightly) out of time order
+     */
+    public long getLateSampleCount() {
+
+        return lateSamples;
+    }
+
+    public int getSegmentCount() {
+
+        return segments.length;
+    }
+
+    /**
+     * @return samples in all segments
+     */
+    public long getSampleCount() {
+
+        long samples = 0;
+
+        for (TimeSeriesSegment segment : segments) {
+            samples += segment.getCount();
+        }
+        return samples;
+    }
+
+    @Override
+    public String toString() {
+
+        return "TimeSeries{" + "deviceId=" + deviceId + ", channel=" + channel + ", segments=" + getSegmentCount() + ", samples=" + getSampleCount() + ", late=" + lateSamples + '}';
+    }
+}
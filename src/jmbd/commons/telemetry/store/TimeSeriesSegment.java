@@ -0,0 +1,339 @@
+package jmbd.commons.telemetry.store;
+
+import jmbd.commons.telemetry.SampleType;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Fixed-size file of (timestamp, sample) records of one series, memory-mapped
+ * as a whole and appended to in timestamp order.
+ *
+ * Layout (big endian):
+ *
+ * offset 0, 4 bytes: MAGIC
+ *
+ * offset 4, 1 byte: VERSION
+ *
+ * offset 5, 1 byte: SampleType code
+ *
+ * offset 6, 2 bytes: device id
+ *
+ * offset 8, 2 bytes: channel
+ *
+ * offset 12, 4 bytes: record count
+ *
+ * offset 16, 8 bytes: first timestamp
+ *
+ * offset 24, 8 bytes: last timestamp
+ *
+ * offset 32: records, RECORD_SIZE_BYTES each (8 bytes timestamp, 4 bytes raw
+ * sample bits)
+ *
+ * The sparse index keeps the timestamp of every INDEX_INTERVAL-th record so
+ * that scans binary search the index and then read at most INDEX_INTERVAL
+ * records before the first one in range. It lives in memory only; opening an
+ * existing segment rebuilds it by reading just the indexed records.
+ *
+ * One appending thread, any number of scanning ones: records are written
+ * before the (volatile) count is published and never change afterwards.
+ *
+ * @author savvas
+ */
+public class TimeSeriesSegment {
+
+    public static final int MAGIC = 0x4A4D5453;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE_BYTES = 32;
+    public static final int RECORD_SIZE_BYTES = 12;
+    public static final int INDEX_INTERVAL = 256;
+
+    private static final int TYPE_OFFSET = 5;
+    private static final int DEVICE_ID_OFFSET = 6;
+    private static final int CHANNEL_OFFSET = 8;
+    private static final int COUNT_OFFSET = 12;
+    private static final int FIRST_TIMESTAMP_OFFSET = 16;
+    private static final int LAST_TIMESTAMP_OFFSET = 24;
+
+    private final File file;
+    private final MappedByteBuffer map;
+    private final SampleType sampleType;
+    private final int deviceId;
+    private final int channel;
+    private final int capacity;
+
+    // timestamp of records 0, INDEX_INTERVAL, 2 * INDEX_INTERVAL..
+    private final long[] index;
+
+    private volatile int count;
+    private long firstTimestamp;
+    private volatile long lastTimestamp;
+
+    private TimeSeriesSegment(File file, MappedByteBuffer map, SampleType sampleType, int deviceId, int channel) {
+
+        this.file = file;
+        this.map = map;
+        this.sampleType = sampleType;
+        this.deviceId = deviceId;
+        this.channel = channel;
+        this.capacity = (map.capacity() - HEADER_SIZE_BYTES) / RECORD_SIZE_BYTES;
+        this.index = new long[(capacity + INDEX_INTERVAL - 1) / INDEX_INTERVAL];
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * 1) file does not exist
+     *
+     * 2) sizeBytes >= HEADER_SIZE_BYTES + RECORD_SIZE_BYTES
+     *
+     * 3) sampleType not null
+     *
+     * @param file
+     * @param sizeBytes
+     * @param sampleType
+     * @param deviceId
+     * @param channel
+     * @return
+     * @throws IOException
+     */
+    public static TimeSeriesSegment create(File file, int sizeBytes, SampleType sampleType, int deviceId, int channel) throws IOException {
+
+        assert !file.exists() : "segment file already exists";
+        assert sizeBytes >= HEADER_SIZE_BYTES + RECORD_SIZE_BYTES : "segment too small";
+        assert sampleType != null : "sampleType is null";
+
+        MappedByteBuffer map = map(file, sizeBytes);
+
+        map.putInt(0, MAGIC);
+        map.put(4, (byte) VERSION);
+        map.put(TYPE_OFFSET, (byte) sampleType.getCode());
+        map.putShort(DEVICE_ID_OFFSET, (short) deviceId);
+        map.putShort(CHANNEL_OFFSET, (short) channel);
+        map.putInt(COUNT_OFFSET, 0);
+
+        return new TimeSeriesSegment(file, map, sampleType, deviceId, channel);
+    }
+
+    /**
+     * Maps an existing segment and rebuilds its sparse index.
+     *
+     * @param file
+     * @return
+     * @throws IOException if not a segment (of this version)
+     */
+    public static TimeSeriesSegment open(File file) throws IOException {
+
+        MappedByteBuffer map = map(file, (int) file.length());
+
+        if (map.capacity() < HEADER_SIZE_BYTES || map.getInt(0) != MAGIC || map.get(4) != VERSION) {
+            throw new IOException("Not a segment: " + file);
+        }
+
+        SampleType type = SampleType.forCode(map.get(TYPE_OFFSET) & 0xFF);
+
+        if (type == null) {
+            throw new IOException("Unknown sample type in segment: " + file);
+        }
+
+        TimeSeriesSegment segment = new TimeSeriesSegment(file, map, type, map.getShort(DEVICE_ID_OFFSET) & 0xFFFF, map.getShort(CHANNEL_OFFSET) & 0xFFFF);
+        int stored = Math.min(map.getInt(COUNT_OFFSET), segment.capacity);
+
+        for (int i = 0; i < stored; i += INDEX_INTERVAL) {
+            segment.index[i / INDEX_INTERVAL] = segment.timestampAt(i);
+        }
+        segment.firstTimestamp = map.getLong(FIRST_TIMESTAMP_OFFSET);
+        segment.lastTimestamp = map.getLong(LAST_TIMESTAMP_OFFSET);
+        segment.count = stored;
+
+        return segment;
+    }
+
+    private static MappedByteBuffer map(File file, int sizeBytes) throws IOException {
+
+        // the mapping stays valid once the channel is closed, no file handle kept per segment..
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                FileChannel ch = raf.getChannel()) {
+
+            return ch.map(FileChannel.MapMode.READ_WRITE, 0, sizeBytes);
+        }
+    }
+
+    /**
+     * Appends a record unless the segment is full or timestamp is older than
+     * the last one (which would break the time order scans rely on).
+     *
+     * @param timestamp
+     * @param bits raw sample bits as given by TimeSeriesStore
+     * @return false if not appended
+     */
+    public boolean append(long timestamp, int bits) {
+
+        int c = count;
+
+        if (c == capacity || (c > 0 && timestamp < lastTimestamp)) {
+            return false;
+        }
+
+        int offset = HEADER_SIZE_BYTES + c * RECORD_SIZE_BYTES;
+
+        map.putLong(offset, timestamp);
+        map.putInt(offset + 8, bits);
+
+        if (c % INDEX_INTERVAL == 0) {
+            index[c / INDEX_INTERVAL] = timestamp;
+        }
+        if (c == 0) {
+            firstTimestamp = timestamp;
+            map.putLong(FIRST_TIMESTAMP_OFFSET, timestamp);
+        }
+        map.putLong(LAST_TIMESTAMP_OFFSET, timestamp);
+        map.putInt(COUNT_OFFSET, c + 1);
+
+        lastTimestamp = timestamp;
+        // publishes the record to scanning threads..
+        count = c + 1;
+
+        return true;
+    }
+
+    /**
+     * Visits records with timestamp BETWEEN [from - to], oldest first.
+     *
+     * @param from
+     * @param to
+     * @param visitor
+     * @return number of records visited
+     */
+    public int scan(long from, long to, SampleVisitor visitor) {
+
+        int c = count;
+
+        if (c == 0 || to < firstTimestamp || from > lastTimestamp) {
+            return 0;
+        }
+
+        // last indexed record older than from, the range can not start before it..
+        int lo = 0;
+        int hi = (c - 1) / INDEX_INTERVAL;
+
+        while (lo < hi) {
+
+            int mid = (lo + hi + 1) >>> 1;
+
+            if (index[mid] < from) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        // own view so that concurrent scans do not step on each other..
+        ByteBuffer view = map.duplicate();
+        int visited = 0;
+
+        for (int i = lo * INDEX_INTERVAL; i < c; i++) {
+
+            int offset = HEADER_SIZE_BYTES + i * RECORD_SIZE_BYTES;
+            long timestamp = view.getLong(offset);
+
+            if (timestamp > to) {
+                break;
+            }
+            if (timestamp >= from) {
+                visitor.sample(timestamp, value(view.getInt(offset + 8)));
+                ++visited;
+            }
+        }
+        return visited;
+    }
+
+    private long timestampAt(int record) {
+
+        return map.getLong(HEADER_SIZE_BYTES + record * RECORD_SIZE_BYTES);
+    }
+
+    private double value(int bits) {
+
+        switch (sampleType) {
+            case FLOAT32:
+                return Float.intBitsToFloat(bits);
+            default:
+                // INT16 & INT32 are stored sign-extended
+                return bits;
+        }
+    }
+
+    /**
+     * Writes changes through to the file.
+     */
+    public void force() {
+
+        map.force();
+    }
+
+    public boolean isFull() {
+
+        return count == capacity;
+    }
+
+    public File getFile() {
+
+        return file;
+    }
+
+    public SampleType getSampleType() {
+
+        return sampleType;
+    }
+
+    public int getDeviceId() {
+
+        return deviceId;
+    }
+
+    public int getChannel() {
+
+        return channel;
+    }
+
+    public int getCapacity() {
+
+        return capacity;
+    }
+
+    public int getCount() {
+
+        return count;
+    }
+
+    public long getFirstTimestamp() {
+
+        return firstTimestamp;
+    }
+
+    public long getLastTimestamp() {
+
+        return lastTimestamp;
+    }
+
+    @Override
+    public String toString() {
+
+        return "TimeSeriesSegment{" + "file=" + file + ", sampleType=" + sampleType + ", count=" + count + ", firstTimestamp=" + firstTimestamp + ", lastTimestamp=" + lastTimestamp + '}';
+    }
+}
@@ -0,0 +1,381 @@
+package jmbd.commons.telemetry.store;
+
+import jmbd.commons.telemetry.SampleType;
+import jmbd.commons.telemetry.TelemetryFrame;
+import jmbd.commons.telemetry.TelemetryFrameListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Persists received TelemetryFrames, one TimeSeries per device and channel
+ * (i.e. sample index within the frame) under
+ * root/device-(id)/channel-(channel).
+ *
+ * Meant to be the (default) listener of a UdpServer: frameReceived() appends
+ * through memory-mapped segments and looks series up by array index, so the
+ * receive loop does not allocate except when a series or segment is created.
+ * Failed appends are counted (and logged, rate-limited) rather than thrown so
+ * that reception carries on.
+ *
+ * A device's sequence numbers going back further than REORDER_WINDOW frames
+ * means it restarted: all its series start a new segment (see TimeSeries for
+ * restarts told by timestamps alone and for late samples).
+ *
+ * Series are looked up through atomic arrays, i.e. without locking but safely
+ * published to scanning threads; only creating one takes the lock.
+ *
+ * Samples are stored as 32-bit raw values: INT16 and INT32 sign-extended,
+ * FLOAT32 as its bit pattern.
+ *
+ * @author savvas
+ */
+public class TimeSeriesStore implements TelemetryFrameListener, AutoCloseable {
+
+    // an hour of 1kHz samples per ~3 segments
+    public static final int DEFAULT_SEGMENT_SIZE_BYTES = 16 * 1024 * 1024;
+
+    // sequence numbers this far behind are reordered frames, further back the sender restarted..
+    public static final int REORDER_WINDOW = 64;
+
+    private static final long LOG_INTERVAL_NANOS = 10_000_000_000L;
+
+    private final File root;
+    private final int segmentSizeBytes;
+
+    // by device id, created on first use
+    private final AtomicReferenceArray<DeviceSeries> devices = new AtomicReferenceArray<>(TelemetryFrame.MAX_DEVICE_ID + 1);
+    // guards creation (and close())
+    private final Object lock = new Object();
+    private volatile boolean closed;
+
+    private volatile long appendedSamples;
+    private volatile long lateSamples;
+    private volatile long failedSamples;
+    private long lastLogAt;
+    private boolean loggedOnce;
+
+    public TimeSeriesStore(File root) {
+
+        this(root, DEFAULT_SEGMENT_SIZE_BYTES);
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * 1) root not null
+     *
+     * 2) segmentSizeBytes >= TimeSeriesSegment.HEADER_SIZE_BYTES +
+     * TimeSeriesSegment.RECORD_SIZE_BYTES
+     *
+     * @param root
+     * @param segmentSizeBytes
+     */
+    public TimeSeriesStore(File root, int segmentSizeBytes) {
+
+        assert root != null : "root is null";
+        assert segmentSizeBytes >= TimeSeriesSegment.HEADER_SIZE_BYTES + TimeSeriesSegment.RECORD_SIZE_BYTES : "segment too small";
+
+        this.root = root;
+        this.segmentSizeBytes = segmentSizeBytes;
+    }
+
+    /**
+     * Ignored once closed.
+     *
+     * @param frame
+     */
+    @Override
+    public void frameReceived(TelemetryFrame frame) {
+
+        if (closed) {
+            return;
+        }
+
+        int deviceId = frame.getDeviceId();
+        SampleType type = frame.getSampleType();
+        long timestamp = frame.getTimestamp();
+
+        DeviceSeries device = devices.get(deviceId);
+
+        if (device != null) {
+            device.sequenceReceived(frame.getSequence());
+        }
+
+        for (int c = 0; c < frame.getSampleCount(); c++) {
+
+            int bits;
+
+            switch (type) {
+                case INT16:
+                    bits = frame.getShort(c);
+                    break;
+                case INT32:
+                    bits = frame.getInt(c);
+                    break;
+                default:
+                    bits = Float.floatToRawIntBits(frame.getFloat(c));
+                    break;
+            }
+
+            try {
+                if (seriesOf(deviceId, c).append(timestamp, type, bits)) {
+                    ++appendedSamples;
+                } else {
+                    ++lateSamples;
+                }
+            } catch (IOException ex) {
+                ++failedSamples;
+                report(ex);
+            }
+        }
+
+        if (device == null && (device = devices.get(deviceId)) != null) {
+            // first frame of the device, nothing to compare with..
+            device.sequenceReceived(frame.getSequence());
+        }
+    }
+
+    /**
+     * Visits samples of given device/channel with timestamp BETWEEN [from -
+     * to]. Can run while frames are being received.
+     *
+     * REQUIRES:
+     *
+     * 1) deviceId BETWEEN [0 - TelemetryFrame.MAX_DEVICE_ID]
+     *
+     * 2) channel BETWEEN [0 - TelemetryFrame.MAX_SAMPLES)
+     *
+     * 3) visitor not null
+     *
+     * @param deviceId
+     * @param channel
+     * @param from
+     * @param to
+     * @param visitor
+     * @return number of samples visited, 0 if nothing was ever stored for
+     * the device/channel (no directories are created)
+     * @throws IOException if the series exists on disk but could not be
+     * opened, or the store is closed
+     */
+    public long scan(int deviceId, int channel, long from, long to, SampleVisitor visitor) throws IOException {
+
+        assert visitor != null : "visitor is null";
+
+        TimeSeries s = lookup(deviceId, channel);
+
+        if (s == null) {
+
+            if (!dirOf(deviceId, channel).isDirectory()) {
+                return 0;
+            }
+            // stored before this store was opened..
+            s = seriesOf(deviceId, channel);
+        }
+        return s.scan(from, to, visitor);
+    }
+
+    /**
+     * Series of given device/channel, opened (or created) on first use.
+     *
+     * @param deviceId
+     * @param channel
+     * @return
+     * @throws IOException if the series could not be opened, or the store is
+     * closed
+     */
+    public TimeSeries seriesOf(int deviceId, int channel) throws IOException {
+
+        TimeSeries s = lookup(deviceId, channel);
+
+        if (s != null) {
+            return s;
+        }
+
+        synchronized (lock) {
+
+            if (closed) {
+                throw new IOException("Store closed: " + root);
+            }
+
+            DeviceSeries device = devices.get(deviceId);
+
+            if (device == null) {
+                device = new DeviceSeries();
+                devices.set(deviceId, device);
+            }
+            s = device.channels.get(channel);
+
+            if (s == null) {
+                s = new TimeSeries(dirOf(deviceId, channel), deviceId, channel, segmentSizeBytes);
+                device.channels.set(channel, s);
+            }
+        }
+        return s;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * 1) deviceId BETWEEN [0 - TelemetryFrame.MAX_DEVICE_ID]
+     *
+     * 2) channel BETWEEN [0 - TelemetryFrame.MAX_SAMPLES)
+     *
+     * @param deviceId
+     * @param channel
+     * @return series of given device/channel, null if not opened yet
+     */
+    private TimeSeries lookup(int deviceId, int channel) {
+
+        assert deviceId >= 0 && deviceId <= TelemetryFrame.MAX_DEVICE_ID : "deviceId out of range";
+        assert channel >= 0 && channel < TelemetryFrame.MAX_SAMPLES : "channel out of range";
+
+        DeviceSeries device = devices.get(deviceId);
+
+        return device == null ? null : device.channels.get(channel);
+    }
+
+    private File dirOf(int deviceId, int channel) {
+
+        return new File(new File(root, "device-" + deviceId), "channel-" + channel);
+    }
+
+    private void report(IOException ex) {
+
+        long now = System.nanoTime();
+
+        if (!loggedOnce || now - lastLogAt >= LOG_INTERVAL_NANOS) {
+            Logger.getLogger(TimeSeriesStore.class.getName()).log(Level.WARNING, "Could not store sample (" + failedSamples + " failed so far)", ex);
+            loggedOnce = true;
+            lastLogAt = now;
+        }
+    }
+
+    /**
+     * Writes all latest segments through to their files.
+     */
+    public void force() {
+
+        synchronized (lock) {
+            for (int d = 0; d < devices.length(); d++) {
+
+                DeviceSeries device = devices.get(d);
+
+                if (device != null) {
+                    for (int c = 0; c < device.channels.length(); c++) {
+
+                        TimeSeries s = device.channels.get(c);
+
+                        if (s != null) {
+                            s.force();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public File getRoot() {
+
+        return root;
+    }
+
+    public long getAppendedSampleCount() {
+
+        return appendedSamples;
+    }
+
+    /**
+     * @return samples dropped for arriving (slightly) out of time order
+     */
+    public long getLateSampleCount() {
+
+        return lateSamples;
+    }
+
+    public long getFailedSampleCount() {
+
+        return failedSamples;
+    }
+
+    /**
+     * Forces and closes all series and forgets them, so that their mappings
+     * can be released (see TimeSeries.close()). Frames received afterwards are
+     * ignored, scans fail.
+     */
+    @Override
+    public void close() {
+
+        synchronized (lock) {
+
+            closed = true;
+
+            for (int d = 0; d < devices.length(); d++) {
+
+                DeviceSeries device = devices.getAndSet(d, null);
+
+                if (device != null) {
+                    for (int c = 0; c < device.channels.length(); c++) {
+
+                        TimeSeries s = device.channels.getAndSet(c, null);
+
+                        if (s != null) {
+                            s.close();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        return "TimeSeriesStore{" + "root=" + root + ", appended=" + appendedSamples + ", late=" + lateSamples + ", failed=" + failedSamples + '}';
+    }
+
+    /**
+     * Series of one device by channel, plus the sequence number tracking
+     * (receiving thread only) that tells restarts apart.
+     */
+    private static final class DeviceSeries {
+
+        final AtomicReferenceArray<TimeSeries> channels = new AtomicReferenceArray<>(TelemetryFrame.MAX_SAMPLES);
+
+        private boolean sequenced;
+        private int lastSequence;
+
+        void sequenceReceived(int sequence) {
+
+            if (sequenced && sequence - lastSequence < -REORDER_WINDOW) {
+
+                for (int c = 0; c < channels.length(); c++) {
+
+                    TimeSeries s = channels.get(c);
+
+                    if (s != null) {
+                        s.restart();
+                    }
+                }
+            }
+            // reordered frames do not move it back..
+            if (!sequenced || sequence - lastSequence > 0 || sequence - lastSequence < -REORDER_WINDOW) {
+                lastSequence = sequence;
+            }
+            sequenced = true;
+        }
+    }
+}
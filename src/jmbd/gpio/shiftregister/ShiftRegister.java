@@ -1,5 +1,7 @@
 package jmbd.gpio.shiftregister;
 
+import jmbd.commons.metrics.MetricsRegistry;
+import jmbd.commons.metrics.TransactionMetrics;
 import java.io.IOException;
 import jdk.dio.gpio.GPIOPin;
 import jdk.dio.gpio.GPIOPinConfig;
@@ -33,6 +35,8 @@ public class ShiftRegister {
     protected GPIOPin dataPin;
     private GPIOPin latchPin;
     private GPIOPin clockPin;
+    // keyed on the data pin, covers all three pins
+    protected TransactionMetrics metrics;
 
     protected int maxLoadBits = DEFAULT_MAX_LOAD_BITS;
     protected int bitsRemaining;
@@ -54,6 +58,7 @@ public class ShiftRegister {
             assert dataPin.getDirection() == GPIOPinConfig.DIR_OUTPUT_ONLY : "Data pin is not output only";
 
             this.dataPin = dataPin;
+            this.metrics = MetricsRegistry.getDefault().metricsFor("gpio", dataPin);
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         }
@@ -152,13 +157,17 @@ public class ShiftRegister {
 
         assert !fullyLoaded() : "Shift register is full";
         int bitsRemainingOld = bitsRemaining;
+        long start = metrics.begin();
 
         try {
             dataPin.setValue(bit);
             toggleClock();
+            // no bytes as such, just pin toggles..
+            metrics.end(start, 0);
 
             bitsRemaining--;
         } catch (IOException ex) {
+            metrics.fail(start);
             throw new RuntimeException(ex);
         }
 
@@ -176,9 +185,13 @@ public class ShiftRegister {
      */
     public void unload() {
 
+        long start = metrics.begin();
+
         try {
             toggleLatch();
+            metrics.end(start, 0);
         } catch (IOException ex) {
+            metrics.fail(start);
             throw new RuntimeException(ex);
         } finally {
             bitsRemaining = maxLoadBits;
@@ -10,6 +10,9 @@ import jmbd.i2c.blinkm.morsecode.BlinkMMorseCodeTransmission;
 import jmbd.i2c.blinkm.script.BlinkMBuiltInScript;
 import jmbd.i2c.blinkm.script.BlinkMCustomScript;
 import jmbd.i2c.blinkm.script.BlinkMScriptLine;
+import jmbd.i2c.bus.BusPriority;
+import jmbd.i2c.bus.I2CBusScheduler;
+import jmbd.i2c.bus.ScheduledI2CDevice;
 import jmbd.commons.CommonOperationsMIDlet;
 import jmbd.commons.TimeDelay;
 import java.io.IOException;
@@ -314,11 +317,14 @@ public class BlinkMSandbox extends CommonOperationsMIDlet {
         I2CDeviceConfig.Builder b = new I2CDeviceConfig.Builder();
         b.setAddress(DEVICE_ADDRESS, SENSOR_ADDRESS_SIZE).setControllerNumber(IC2_BUS_NUMBER);
 
-        return DeviceManager.open(b.build());
+        I2CDevice device = DeviceManager.open(b.build());
+
+        // LED commands can wait, e.g. for the samples of a sensor sharing the bus..
+        return new ScheduledI2CDevice(device, I2CBusScheduler.forBus(IC2_BUS_NUMBER), "blinkm", BusPriority.BACKGROUND);
     }
 
     @Override
     public void destroyApp(boolean unconditional) {
-        closeIgnoringExceptions(blinkMHandle);
+        closeDeviceIgnoringExceptions(blinkMHandle);
     }
 }
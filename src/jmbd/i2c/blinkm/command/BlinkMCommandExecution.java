@@ -1,5 +1,9 @@
 package jmbd.i2c.blinkm.command;
 
+import jmbd.commons.ByteBufferAccessOptimisation;
+import jmbd.commons.error.DeviceErrorPolicy;
+import jmbd.commons.metrics.MetricsRegistry;
+import jmbd.commons.metrics.TransactionMetrics;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import jdk.dio.i2cbus.I2CDevice;
@@ -24,6 +28,9 @@ public class BlinkMCommandExecution {
     private static final short DEFAULT_EXACT_RETURN_VAL_LENGTH = 3;
 
     private final I2CDevice blinkMHandle;
+    private final ByteBufferAccessOptimisation pool;
+    private final TransactionMetrics metrics;
+    private DeviceErrorPolicy errorPolicy = DeviceErrorPolicy.failFast(BlinkMCommandExecution.class.getName());
 
     private ByteBuffer payloadBuffer;
     private ByteBuffer returnValueBuffer;
@@ -40,12 +47,37 @@ public class BlinkMCommandExecution {
         assert blinkMHandle.isOpen() : "I2C device is not open";
 
         this.blinkMHandle = blinkMHandle;
+        this.metrics = MetricsRegistry.getDefault().metricsFor("i2c", blinkMHandle);
 
-        payloadBuffer = ByteBuffer.allocateDirect(DEFAULT_MAX_COMMAND_LENGTH);
-        returnValueBuffer = ByteBuffer.allocateDirect(DEFAULT_EXACT_RETURN_VAL_LENGTH);
+        this.pool = ByteBufferAccessOptimisation.forDevice(blinkMHandle);
+
+        payloadBuffer = pool.acquire(DEFAULT_MAX_COMMAND_LENGTH);
+        returnValueBuffer = pool.acquire(DEFAULT_EXACT_RETURN_VAL_LENGTH);
+    }
+
+    public DeviceErrorPolicy getErrorPolicy() {
+
+        return errorPolicy;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * errorPolicy not null
+     *
+     * @param errorPolicy
+     */
+    public void setErrorPolicy(DeviceErrorPolicy errorPolicy) {
+
+        assert errorPolicy != null : "errorPolicy is null";
+
+        this.errorPolicy = errorPolicy;
     }
 
     /**
+     * Failed writes are retried/abandoned/escalated as getErrorPolicy()
+     * decides.
+     *
      * REQUIRES:
      *
      * command not null
@@ -54,21 +86,14 @@ public class BlinkMCommandExecution {
      */
     public void runWithNoReturnValue(byte[] command) {
 
-        assert command != null : "Given command is null";
-
-        try {
-            ensurePayloadBufferCapacity(command.length);
-
-            payloadBuffer.put(command).flip();
-            blinkMHandle.write(payloadBuffer);
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
-        } finally {
-            payloadBuffer.clear();
-        }
+        run(command);
     }
 
     /**
+     * Failed transfers are retried/abandoned/escalated as getErrorPolicy()
+     * decides, returnValue is left untouched if either the command or the
+     * read of its response was abandoned.
+     *
      * REQUIRES:
      *
      * 1) command not null
@@ -83,19 +108,62 @@ public class BlinkMCommandExecution {
         assert command != null : "Given command is null";
         assert returnValue != null : "Given return value array is null";
 
-        try {
-            // first run command
-            runWithNoReturnValue(command);
+        // first run command
+        if (!run(command)) {
+            return;
+        }
 
-            ensureReturnBufferCapacity(returnValue.length);
+        ensureReturnBufferCapacity(returnValue.length);
+
+        // then read the response
+        for (int attempt = 0;; attempt++) {
+
+            long start = metrics.begin();
+
+            try {
+                int read = blinkMHandle.read(returnValueBuffer);
+                metrics.end(start, read);
+                exportReturnBufferIntoArray(returnValue);
+                errorPolicy.onSuccess(attempt);
+                return;
+            } catch (IOException ex) {
+                metrics.fail(start);
+                if (!errorPolicy.onFailure(ex, attempt)) {
+                    return;
+                }
+            } finally {
+                returnValueBuffer.clear();
+            }
+        }
+    }
+
+    /**
+     * @return false if the error policy gave up on the command
+     */
+    private boolean run(byte[] command) {
+
+        assert command != null : "Given command is null";
 
-            // then read the response
-            blinkMHandle.read(returnValueBuffer);
-            exportReturnBufferIntoArray(returnValue);
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
-        } finally {
-            returnValueBuffer.clear();
+        ensurePayloadBufferCapacity(command.length);
+
+        for (int attempt = 0;; attempt++) {
+
+            long start = metrics.begin();
+
+            try {
+                payloadBuffer.put(command).flip();
+                blinkMHandle.write(payloadBuffer);
+                metrics.end(start, command.length);
+                errorPolicy.onSuccess(attempt);
+                return true;
+            } catch (IOException ex) {
+                metrics.fail(start);
+                if (!errorPolicy.onFailure(ex, attempt)) {
+                    return false;
+                }
+            } finally {
+                payloadBuffer.clear();
+            }
         }
     }
 
@@ -117,9 +185,9 @@ public class BlinkMCommandExecution {
         assert c > 0 : "Target buffer capacity is zero or negative";
 
         if (payloadBuffer.capacity() < c) {
-            System.out.println("Current payload buffer capacity [" + payloadBuffer.capacity() + "] not enough to accommodate desired capacity of [" + c + "]. Allocating new buffer..");
-            // Let's bite the bullet and "allocateDirect" again...shouldn't happen often though as most commands are <= DEFAULT_MAX_COMMAND_LENGTH
-            payloadBuffer = ByteBuffer.allocateDirect(c);
+            // back to the pool and a bigger one out of it, direct memory is only allocated the first time a size class is needed..
+            pool.release(payloadBuffer);
+            payloadBuffer = pool.acquire(c);
         }
     }
 
@@ -135,9 +203,9 @@ public class BlinkMCommandExecution {
         assert c > 0 : "Target buffer capacity is zero or negative";
 
         if (returnValueBuffer.capacity() < c) {
-            System.out.println("Current return value buffer capacity [" + returnValueBuffer.capacity() + "] not enough to accommodate desired capacity of [" + c + "]. Allocating new buffer..");
-            // Let's bite the bullet and "allocateDirect" again...shouldn't happen often though as return value array.length usually == DEFAULT_EXACT_RETURN_VAL_LENGTH
-            returnValueBuffer = ByteBuffer.allocateDirect(c);
+            // same as for the payload buffer..
+            pool.release(returnValueBuffer);
+            returnValueBuffer = pool.acquire(c);
         }
     }
 }
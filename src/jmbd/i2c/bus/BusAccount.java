@@ -0,0 +1,119 @@
+package jmbd.i2c.bus;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Bus time accounting of a single device.
+ *
+ * Only ever updated by the owner thread of the scheduler, values can be read
+ * from anywhere.
+ *
+ * @author savvas
+ */
+public class BusAccount {
+
+    private final String name;
+
+    private volatile long transactionCount;
+    private volatile long busTimeNanos;
+    private volatile long queueTimeNanos;
+    private volatile long maxQueueTimeNanos;
+    private volatile long deadlineMissCount;
+    private volatile long failureCount;
+
+    /**
+     * REQUIRES:
+     *
+     * name not null
+     *
+     * @param name
+     */
+    public BusAccount(String name) {
+
+        assert name != null : "name is null";
+
+        this.name = name;
+    }
+
+    public String getName() {
+
+        return name;
+    }
+
+    void record(long queueTime, long busTime, boolean deadlineMissed, boolean failed) {
+
+        ++transactionCount;
+        busTimeNanos += busTime;
+        queueTimeNanos += queueTime;
+
+        if (queueTime > maxQueueTimeNanos) {
+            maxQueueTimeNanos = queueTime;
+        }
+        if (deadlineMissed) {
+            ++deadlineMissCount;
+        }
+        if (failed) {
+            ++failureCount;
+        }
+    }
+
+    public long getTransactionCount() {
+
+        return transactionCount;
+    }
+
+    /**
+     * Total time spent by transactions of this device on the bus.
+     *
+     * @return
+     */
+    public long getBusTimeNanos() {
+
+        return busTimeNanos;
+    }
+
+    /**
+     * Total time spent by transactions of this device waiting for the bus.
+     *
+     * @return
+     */
+    public long getQueueTimeNanos() {
+
+        return queueTimeNanos;
+    }
+
+    public long getMaxQueueTimeNanos() {
+
+        return maxQueueTimeNanos;
+    }
+
+    /**
+     * How many transactions completed after their deadline.
+     *
+     * @return
+     */
+    public long getDeadlineMissCount() {
+
+        return deadlineMissCount;
+    }
+
+    public long getFailureCount() {
+
+        return failureCount;
+    }
+
+    @Override
+    public String toString() {
+
+        return "BusAccount{" + "name=" + name + ", transactions=" + transactionCount + ", busTimeNanos=" + busTimeNanos + ", queueTimeNanos=" + queueTimeNanos + ", maxQueueTimeNanos=" + maxQueueTimeNanos + ", deadlineMisses=" + deadlineMissCount + ", failures=" + failureCount + '}';
+    }
+}
@@ -0,0 +1,55 @@
+package jmbd.i2c.bus;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Priority classes of bus transactions, most urgent first.
+ *
+ * A transaction of a more urgent class always goes before any waiting
+ * transaction of a less urgent one; within the same class the one with the
+ * earliest deadline goes first.
+ *
+ * @author savvas
+ */
+public enum BusPriority {
+
+    /**
+     * Sensor sampling and anything else jitter-sensitive.
+     */
+    REAL_TIME(2),
+    /**
+     * Device configuration, interrupt status etc.
+     */
+    NORMAL(20),
+    /**
+     * LED commands and the like, can wait for everything else.
+     */
+    BACKGROUND(200);
+
+    private final int defaultDeadlineMillis;
+
+    private BusPriority(int defaultDeadlineMillis) {
+
+        this.defaultDeadlineMillis = defaultDeadlineMillis;
+    }
+
+    /**
+     * Relative deadline (from submission to completion) used unless a device
+     * asks for a different one.
+     *
+     * @return
+     */
+    public int getDefaultDeadlineMillis() {
+
+        return defaultDeadlineMillis;
+    }
+}
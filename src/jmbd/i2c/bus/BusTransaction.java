@@ -0,0 +1,62 @@
+package jmbd.i2c.bus;
+
+import java.io.IOException;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * A unit of (uninterrupted) bus work, run by the owner thread of an
+ * I2CBusScheduler on behalf of a waiting caller.
+ *
+ * @author savvas
+ */
+public abstract class BusTransaction {
+
+    BusAccount account;
+    BusPriority priority;
+    long deadline;
+    long sequence;
+    long submittedAt;
+
+    // written by the owner thread, read by the caller once done
+    boolean done;
+    int result;
+    IOException ioFailure;
+    RuntimeException runtimeFailure;
+
+    /**
+     * The actual bus operation(s).
+     *
+     * @return operation specific result (typically number of bytes
+     * transferred)
+     * @throws IOException
+     */
+    protected abstract int run() throws IOException;
+
+    /**
+     * Should this transaction go before other?
+     *
+     * More urgent priority class first, earliest deadline next and submission
+     * order last.
+     */
+    boolean precedes(BusTransaction other) {
+
+        if (priority != other.priority) {
+            return priority.ordinal() < other.priority.ordinal();
+        }
+        if (deadline != other.deadline) {
+            // nanoTime() values, only differences are meaningful..
+            return deadline - other.deadline < 0;
+        }
+        return sequence < other.sequence;
+    }
+}
@@ -0,0 +1,503 @@
+package jmbd.i2c.bus;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Arbitrates all transactions of the devices sharing an I2C bus.
+ *
+ * Transactions are run one at a time by a single owner thread; callers block
+ * until theirs has completed. Waiting transactions are ordered by priority
+ * class first and by (absolute) deadline within the same class, so that e.g.
+ * a sensor read never waits behind a queue of LED commands but only, at most,
+ * behind the one already on the bus (transactions are never interrupted once
+ * started).
+ *
+ * Bus and queueing time is accounted for per device (see BusAccount).
+ *
+ * Devices join the schedule by being wrapped in a ScheduledI2CDevice, drivers
+ * need not know about it. All devices on the same bus should share the
+ * scheduler returned by forBus(), which stops once the last of them is
+ * closed.
+ *
+ * @author savvas
+ */
+public class I2CBusScheduler implements AutoCloseable {
+
+    private static final int INITIAL_QUEUE_CAPACITY = 16;
+
+    private static I2CBusScheduler[] shared = new I2CBusScheduler[0];
+
+    private final String name;
+    // if obtained through forBus(), -1 otherwise
+    private int busNumber = -1;
+
+    // binary heap, queue[0] being the next transaction to run
+    private BusTransaction[] queue;
+    private int queued;
+    private long nextSequence;
+
+    private BusAccount[] accounts;
+
+    private Thread owner;
+    private boolean closed;
+
+    /**
+     * REQUIRES:
+     *
+     * name not null
+     *
+     * @param name used for the owner thread and in logs
+     */
+    public I2CBusScheduler(String name) {
+
+        assert name != null : "name is null";
+
+        this.name = name;
+        this.queue = new BusTransaction[INITIAL_QUEUE_CAPACITY];
+        this.accounts = new BusAccount[0];
+    }
+
+    /**
+     * The scheduler shared by all devices on given bus, created and started on
+     * first use.
+     *
+     * It is stopped, and forgotten, once the last account opened on it is
+     * closed (see closeAccount()), the next call then returns a new one. Hence
+     * devices should join it (see ScheduledI2CDevice) straight away.
+     *
+     * REQUIRES:
+     *
+     * busNumber >= 0
+     *
+     * @param busNumber
+     * @return
+     */
+    public static synchronized I2CBusScheduler forBus(int busNumber) {
+
+        assert busNumber >= 0 : "busNumber is negative";
+
+        for (I2CBusScheduler s : shared) {
+            if (s.busNumber == busNumber) {
+                return s;
+            }
+        }
+
+        I2CBusScheduler created = new I2CBusScheduler("i2c-" + busNumber);
+        created.busNumber = busNumber;
+        created.start();
+
+        I2CBusScheduler[] grown = new I2CBusScheduler[shared.length + 1];
+        System.arraycopy(shared, 0, grown, 0, shared.length);
+        grown[shared.length] = created;
+        shared = grown;
+
+        return created;
+    }
+
+    /**
+     * Starts the owner thread.
+     *
+     * REQUIRES:
+     *
+     * not started before
+     */
+    public synchronized void start() {
+
+        assert owner == null : "scheduler already started";
+
+        owner = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+
+                runTransactions();
+            }
+        }, name);
+        owner.start();
+    }
+
+    /**
+     * New account for a device joining the bus.
+     *
+     * REQUIRES:
+     *
+     * name not null
+     *
+     * @param name
+     * @return
+     */
+    public synchronized BusAccount openAccount(String name) {
+
+        BusAccount account = new BusAccount(name);
+
+        BusAccount[] grown = new BusAccount[accounts.length + 1];
+        System.arraycopy(accounts, 0, grown, 0, accounts.length);
+        grown[accounts.length] = account;
+        accounts = grown;
+
+        return account;
+    }
+
+    /**
+     * Closes account of a device leaving the bus (closing an account twice is
+     * harmless). A scheduler obtained through forBus() is closed along with
+     * its last account.
+     *
+     * @param account
+     */
+    public void closeAccount(BusAccount account) {
+
+        boolean last;
+
+        synchronized (I2CBusScheduler.class) {
+
+            synchronized (this) {
+
+                int i = indexOf(account);
+
+                if (i < 0) {
+                    return;
+                }
+
+                BusAccount[] shrunk = new BusAccount[accounts.length - 1];
+                System.arraycopy(accounts, 0, shrunk, 0, i);
+                System.arraycopy(accounts, i + 1, shrunk, i, accounts.length - i - 1);
+                accounts = shrunk;
+
+                last = accounts.length == 0 && busNumber >= 0;
+            }
+
+            if (last) {
+                forget(this);
+            }
+        }
+
+        // outside the lock, waits for queued transactions to run..
+        if (last) {
+            close();
+        }
+    }
+
+    /**
+     * Accounts of all devices on the bus.
+     *
+     * @return a copy
+     */
+    public synchronized BusAccount[] getAccounts() {
+
+        BusAccount[] copy = new BusAccount[accounts.length];
+        System.arraycopy(accounts, 0, copy, 0, accounts.length);
+
+        return copy;
+    }
+
+    /**
+     * Runs transaction (on the owner thread) and waits for it to complete.
+     *
+     * Transactions submitted from the owner thread itself run straight away.
+     *
+     * REQUIRES:
+     *
+     * 1) transaction not null
+     *
+     * 2) account not null
+     *
+     * 3) priority not null
+     *
+     * 4) start() called
+     *
+     * @param transaction
+     * @param account to charge bus time to
+     * @param priority
+     * @param deadlineNanos relative to now
+     * @return transaction result
+     * @throws IOException if transaction failed or scheduler is closed
+     */
+    public int submit(BusTransaction transaction, BusAccount account, BusPriority priority, long deadlineNanos) throws IOException {
+
+        assert transaction != null : "transaction is null";
+        assert account != null : "account is null";
+        assert priority != null : "priority is null";
+        assert owner != null : "scheduler not started";
+
+        long now = System.nanoTime();
+
+        transaction.account = account;
+        transaction.priority = priority;
+        transaction.deadline = now + deadlineNanos;
+        transaction.submittedAt = now;
+        transaction.done = false;
+        transaction.ioFailure = null;
+        transaction.runtimeFailure = null;
+
+        if (Thread.currentThread() == owner) {
+            // re-entrant call, queueing would deadlock..
+            execute(transaction);
+        } else {
+            enqueue(transaction);
+            awaitCompletion(transaction);
+        }
+
+        if (transaction.ioFailure != null) {
+            throw transaction.ioFailure;
+        }
+        if (transaction.runtimeFailure != null) {
+            throw transaction.runtimeFailure;
+        }
+        return transaction.result;
+    }
+
+    /**
+     * How many transactions are waiting for the bus.
+     *
+     * @return
+     */
+    public synchronized int getQueuedCount() {
+
+        return queued;
+    }
+
+    /**
+     * Stops accepting transactions, those already waiting still run before
+     * the owner thread exits.
+     */
+    @Override
+    public void close() {
+
+        Thread t;
+
+        synchronized (this) {
+
+            closed = true;
+            notifyAll();
+            t = owner;
+        }
+
+        if (t != null && t != Thread.currentThread()) {
+            try {
+                t.join();
+            } catch (InterruptedException ex) {
+
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private int indexOf(BusAccount account) {
+
+        for (int i = 0; i < accounts.length; i++) {
+            if (accounts[i] == account) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static synchronized void forget(I2CBusScheduler scheduler) {
+
+        for (int i = 0; i < shared.length; i++) {
+            if (shared[i] == scheduler) {
+
+                I2CBusScheduler[] shrunk = new I2CBusScheduler[shared.length - 1];
+                System.arraycopy(shared, 0, shrunk, 0, i);
+                System.arraycopy(shared, i + 1, shrunk, i, shared.length - i - 1);
+                shared = shrunk;
+
+                return;
+            }
+        }
+    }
+
+    private synchronized void enqueue(BusTransaction transaction) throws IOException {
+
+        if (closed) {
+            throw new IOException("Bus scheduler \"" + name + "\" is closed");
+        }
+
+        if (queued == queue.length) {
+
+            BusTransaction[] grown = new BusTransaction[queue.length * 2];
+            System.arraycopy(queue, 0, grown, 0, queued);
+            queue = grown;
+        }
+
+        transaction.sequence = nextSequence++;
+
+        // sift up
+        int i = queued++;
+        while (i > 0) {
+
+            int parent = (i - 1) >>> 1;
+
+            if (!transaction.precedes(queue[parent])) {
+                break;
+            }
+            queue[i] = queue[parent];
+            i = parent;
+        }
+        queue[i] = transaction;
+
+        notifyAll();
+    }
+
+    private synchronized BusTransaction dequeue() throws InterruptedException {
+
+        while (queued == 0 && !closed) {
+            wait();
+        }
+
+        if (queued == 0) {
+            // closed and drained
+            return null;
+        }
+
+        BusTransaction head = queue[0];
+        BusTransaction last = queue[--queued];
+        queue[queued] = null;
+
+        if (queued > 0) {
+
+            // sift down
+            int i = 0;
+            while (true) {
+
+                int child = 2 * i + 1;
+
+                if (child >= queued) {
+                    break;
+                }
+                if (child + 1 < queued && queue[child + 1].precedes(queue[child])) {
+                    child++;
+                }
+                if (!queue[child].precedes(last)) {
+                    break;
+                }
+                queue[i] = queue[child];
+                i = child;
+            }
+            queue[i] = last;
+        }
+        return head;
+    }
+
+    private void awaitCompletion(BusTransaction transaction) {
+
+        boolean interrupted = false;
+
+        synchronized (transaction) {
+
+            while (!transaction.done) {
+                try {
+                    transaction.wait();
+                } catch (InterruptedException ex) {
+                    // transaction owns caller's buffers, can not walk away before it's done..
+                    interrupted = true;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runTransactions() {
+
+        try {
+            BusTransaction t;
+
+            while ((t = dequeue()) != null) {
+                execute(t);
+            }
+        } catch (InterruptedException ex) {
+
+            Logger.getLogger(I2CBusScheduler.class.getName()).log(Level.WARNING, "Owner thread of bus \"" + name + "\" interrupted", ex);
+        } finally {
+
+            abandonQueued();
+        }
+    }
+
+    private void abandonQueued() {
+
+        BusTransaction[] abandoned;
+
+        synchronized (this) {
+
+            closed = true;
+            abandoned = new BusTransaction[queued];
+            System.arraycopy(queue, 0, abandoned, 0, queued);
+
+            for (int i = 0; i < queued; i++) {
+                queue[i] = null;
+            }
+            queued = 0;
+        }
+
+        // only non-empty if owner thread did not exit normally..
+        for (BusTransaction t : abandoned) {
+
+            synchronized (t) {
+
+                t.ioFailure = new IOException("Bus scheduler \"" + name + "\" stopped");
+                t.done = true;
+                t.notifyAll();
+            }
+        }
+    }
+
+    private void execute(BusTransaction transaction) {
+
+        long start = System.nanoTime();
+
+        try {
+            transaction.result = transaction.run();
+        } catch (IOException ex) {
+
+            transaction.ioFailure = ex;
+        } catch (RuntimeException ex) {
+
+            transaction.runtimeFailure = ex;
+        }
+
+        long end = System.nanoTime();
+        boolean failed = transaction.ioFailure != null || transaction.runtimeFailure != null;
+
+        transaction.account.record(start - transaction.submittedAt, end - start, end - transaction.deadline > 0, failed);
+
+        synchronized (transaction) {
+
+            transaction.done = true;
+            transaction.notifyAll();
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder sb = new StringBuilder("I2CBusScheduler{" + "name=" + name + ", queued=" + getQueuedCount() + ", accounts=[");
+        BusAccount[] a = getAccounts();
+
+        for (int i = 0; i < a.length; i++) {
+
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(a[i]);
+        }
+        return sb.append("]}").toString();
+    }
+}
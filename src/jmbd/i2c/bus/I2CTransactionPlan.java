@@ -0,0 +1,227 @@
+package jmbd.i2c.bus;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import jdk.dio.i2cbus.I2CCombinedMessage;
+import jdk.dio.i2cbus.I2CDevice;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Fixed sequence of reads and writes (to one or more slaves of the same bus)
+ * compiled once into an I2CCombinedMessage and transferred as often as needed.
+ *
+ * Buffers are bound when appended and stay bound: writes always send the
+ * bytes [0 - length) of their buffer and reads always fill [0 - length), with
+ * length being the buffer's limit() at the time it was appended. Changing
+ * the contents of a write buffer (e.g. a register address) therefore needs
+ * nothing else; invalidate() is there for when the layout changes or an
+ * implementation may have copied buffer contents when appended.
+ *
+ * After run() read buffers have position == number of bytes read, i.e.
+ * callers use absolute get()s or flip() them; write buffers are rewound by the
+ * next run().
+ *
+ * Not thread safe, same as the drivers that own plans.
+ *
+ * @author savvas
+ */
+public class I2CTransactionPlan {
+
+    private final I2CDevice handle;
+
+    private I2CDevice[] slaves = new I2CDevice[4];
+    private ByteBuffer[] buffers = new ByteBuffer[4];
+    private boolean[] reads = new boolean[4];
+    private int[] lengths = new int[4];
+    private int steps;
+    private int bytesPerRun;
+
+    private I2CCombinedMessage message;
+    private int compilations;
+
+    /**
+     * REQUIRES:
+     *
+     * handle not null
+     *
+     * @param handle device whose bus the plan runs on (and default slave)
+     */
+    public I2CTransactionPlan(I2CDevice handle) {
+
+        assert handle != null : "handle is null";
+
+        this.handle = handle;
+    }
+
+    /**
+     * Appends a read from the plan's device.
+     *
+     * REQUIRES:
+     *
+     * rxBuf not null, rxBuf.position() == 0 and rxBuf.remaining() > 0
+     *
+     * @param rxBuf
+     * @return
+     */
+    public I2CTransactionPlan read(ByteBuffer rxBuf) {
+
+        return append(handle, true, rxBuf);
+    }
+
+    /**
+     * Appends a write to the plan's device.
+     *
+     * REQUIRES:
+     *
+     * txBuf not null, txBuf.position() == 0 and txBuf.remaining() > 0
+     *
+     * @param txBuf
+     * @return
+     */
+    public I2CTransactionPlan write(ByteBuffer txBuf) {
+
+        return append(handle, false, txBuf);
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * 1) slave not null (and on the same bus as the plan's device)
+     *
+     * 2) buf not null, buf.position() == 0 and buf.remaining() > 0
+     *
+     * ENSURES:
+     *
+     * plan compiled again on next run()
+     *
+     * @param slave
+     * @param read
+     * @param buf
+     * @return
+     */
+    public I2CTransactionPlan append(I2CDevice slave, boolean read, ByteBuffer buf) {
+
+        assert slave != null : "slave is null";
+        assert buf != null : "buffer is null";
+        assert buf.position() == 0 : "buffer position not zero";
+        assert buf.remaining() > 0 : "buffer has nothing remaining";
+
+        if (steps == slaves.length) {
+
+            int grown = steps * 2;
+            I2CDevice[] s = new I2CDevice[grown];
+            ByteBuffer[] b = new ByteBuffer[grown];
+            boolean[] r = new boolean[grown];
+            int[] l = new int[grown];
+
+            System.arraycopy(slaves, 0, s, 0, steps);
+            System.arraycopy(buffers, 0, b, 0, steps);
+            System.arraycopy(reads, 0, r, 0, steps);
+            System.arraycopy(lengths, 0, l, 0, steps);
+
+            slaves = s;
+            buffers = b;
+            reads = r;
+            lengths = l;
+        }
+
+        slaves[steps] = slave;
+        buffers[steps] = buf;
+        reads[steps] = read;
+        lengths[steps] = buf.remaining();
+        bytesPerRun += buf.remaining();
+        steps++;
+
+        invalidate();
+
+        return this;
+    }
+
+    /**
+     * Makes the next run() compile the plan again.
+     */
+    public void invalidate() {
+
+        message = null;
+    }
+
+    /**
+     * Transfers the whole sequence as one combined message, compiling it
+     * first if needed.
+     *
+     * REQUIRES:
+     *
+     * getStepCount() > 0
+     *
+     * @return bytes transferred (sum of all steps)
+     * @throws IOException as thrown by the transfer, the plan stays usable
+     */
+    public int run() throws IOException {
+
+        assert steps > 0 : "empty plan";
+
+        for (int s = 0; s < steps; s++) {
+            // same window every run, whatever the previous one (or a failure half-way) left behind..
+            buffers[s].limit(lengths[s]).position(0);
+        }
+
+        if (message == null) {
+            compile();
+        }
+
+        int[] counts = message.transfer();
+        int bytes = 0;
+
+        for (int c : counts) {
+            bytes += c;
+        }
+        return bytes;
+    }
+
+    private void compile() throws IOException {
+
+        I2CCombinedMessage m = handle.getBus().createCombinedMessage();
+
+        for (int s = 0; s < steps; s++) {
+
+            if (reads[s]) {
+                m.appendRead(slaves[s], buffers[s]);
+            } else {
+                m.appendWrite(slaves[s], buffers[s]);
+            }
+        }
+        message = m;
+        compilations++;
+    }
+
+    public int getStepCount() {
+
+        return steps;
+    }
+
+    /**
+     * @return bytes a complete run transfers
+     */
+    public int getBytesPerRun() {
+
+        return bytesPerRun;
+    }
+
+    /**
+     * @return how many times the combined message has been built
+     */
+    public int getCompilationCount() {
+
+        return compilations;
+    }
+}
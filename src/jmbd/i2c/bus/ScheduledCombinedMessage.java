@@ -0,0 +1,86 @@
+package jmbd.i2c.bus;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import jdk.dio.i2cbus.I2CCombinedMessage;
+import jdk.dio.i2cbus.I2CDevice;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Combined message transferred as a single scheduled transaction of the device
+ * that created it.
+ *
+ * Slaves are appended to the actual combined message unwrapped, i.e. as the
+ * actual devices.
+ *
+ * The message is transferred through the same transaction object every time,
+ * transfers of the same message are serialised.
+ *
+ * @author savvas
+ */
+class ScheduledCombinedMessage implements I2CCombinedMessage {
+
+    private final ScheduledI2CDevice owner;
+    private final I2CCombinedMessage delegate;
+
+    private int[] transferred;
+
+    // reused for every transfer()
+    private final BusTransaction transaction = new BusTransaction() {
+
+        @Override
+        protected int run() throws IOException {
+
+            transferred = delegate.transfer();
+            return transferred.length;
+        }
+    };
+
+    ScheduledCombinedMessage(ScheduledI2CDevice owner, I2CCombinedMessage delegate) {
+
+        this.owner = owner;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public I2CCombinedMessage appendRead(I2CDevice slave, ByteBuffer rxBuf) throws IOException {
+
+        delegate.appendRead(ScheduledI2CDevice.unwrap(slave), rxBuf);
+
+        return this;
+    }
+
+    @Override
+    public I2CCombinedMessage appendRead(I2CDevice slave, int rxSkip, ByteBuffer rxBuf) throws IOException {
+
+        delegate.appendRead(ScheduledI2CDevice.unwrap(slave), rxSkip, rxBuf);
+
+        return this;
+    }
+
+    @Override
+    public I2CCombinedMessage appendWrite(I2CDevice slave, ByteBuffer txBuf) throws IOException {
+
+        delegate.appendWrite(ScheduledI2CDevice.unwrap(slave), txBuf);
+
+        return this;
+    }
+
+    @Override
+    public synchronized int[] transfer() throws IOException {
+
+        owner.schedule(transaction);
+
+        return transferred;
+    }
+}
@@ -0,0 +1,414 @@
+package jmbd.i2c.bus;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import jdk.dio.DeviceDescriptor;
+import jdk.dio.i2cbus.I2CCombinedMessage;
+import jdk.dio.i2cbus.I2CDevice;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * An I2CDevice whose transfers go through an I2CBusScheduler.
+ *
+ * Can be handed over to any driver in place of the actual device: every read,
+ * write and combined message transfer becomes a scheduled transaction of the
+ * priority class given here and is charged to the account of this device.
+ * Everything else (locking, buffers, closing) goes straight to the actual
+ * device.
+ *
+ * Transfers reuse a single transaction object per device (callers of the
+ * same device take turns submitting it) and getBus() always returns the same
+ * Bus, i.e. scheduling does not allocate on the sampling path.
+ *
+ * NOTE: begin()/end() are scheduled individually, transactions of other devices
+ * can still run in between.
+ *
+ * @author savvas
+ */
+public class ScheduledI2CDevice implements I2CDevice {
+
+    private final I2CDevice delegate;
+    private final I2CBusScheduler scheduler;
+    private final BusAccount account;
+
+    private volatile BusPriority priority;
+    private volatile long deadlineNanos;
+
+    // reused for every transfer, guarded by transactionLock
+    private final DeviceTransaction transaction;
+    private final Object transactionLock = new Object();
+    private Bus bus;
+
+    /**
+     * ENSURES:
+     *
+     * getDeadlineMillis() == priority.getDefaultDeadlineMillis()
+     *
+     * REQUIRES:
+     *
+     * 1) delegate not null
+     *
+     * 2) scheduler not null
+     *
+     * 3) name not null
+     *
+     * 4) priority not null
+     *
+     * @param delegate the actual device
+     * @param scheduler of the bus the device is on
+     * @param name of the device for accounting purposes
+     * @param priority of all transactions of this device
+     */
+    public ScheduledI2CDevice(I2CDevice delegate, I2CBusScheduler scheduler, String name, BusPriority priority) {
+
+        assert delegate != null : "delegate is null";
+        assert scheduler != null : "scheduler is null";
+
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+        this.account = scheduler.openAccount(name);
+        this.transaction = new DeviceTransaction(delegate);
+
+        setPriority(priority);
+    }
+
+    /**
+     * Also resets the deadline to the default one of priority.
+     *
+     * REQUIRES:
+     *
+     * priority not null
+     *
+     * ENSURES:
+     *
+     * getPriority() == priority
+     *
+     * @param priority
+     */
+    public void setPriority(BusPriority priority) {
+
+        assert priority != null : "priority is null";
+
+        this.priority = priority;
+        setDeadlineMillis(priority.getDefaultDeadlineMillis());
+
+        assert getPriority() == priority : "priority not updated";
+    }
+
+    public BusPriority getPriority() {
+
+        return priority;
+    }
+
+    /**
+     * Time (from submission) each transaction should be completed by, used for
+     * ordering transactions within the same priority class.
+     *
+     * REQUIRES:
+     *
+     * deadlineMillis > 0
+     *
+     * @param deadlineMillis
+     */
+    public void setDeadlineMillis(int deadlineMillis) {
+
+        assert deadlineMillis > 0 : "deadlineMillis is zero or negative";
+
+        this.deadlineNanos = deadlineMillis * 1_000_000L;
+    }
+
+    public int getDeadlineMillis() {
+
+        return (int) (deadlineNanos / 1_000_000L);
+    }
+
+    public BusAccount getAccount() {
+
+        return account;
+    }
+
+    /**
+     * The actual device.
+     *
+     * @return
+     */
+    public I2CDevice getDelegate() {
+
+        return delegate;
+    }
+
+    /**
+     * Actual device of slave, if scheduled.
+     *
+     * @param slave
+     * @return
+     */
+    static I2CDevice unwrap(I2CDevice slave) {
+
+        return (slave instanceof ScheduledI2CDevice) ? ((ScheduledI2CDevice) slave).delegate : slave;
+    }
+
+    int schedule(BusTransaction transaction) throws IOException {
+
+        return scheduler.submit(transaction, account, priority, deadlineNanos);
+    }
+
+    /**
+     * Combined messages created by the returned bus are transferred as a
+     * single scheduled transaction.
+     *
+     * @return same Bus every time
+     * @throws IOException
+     */
+    @Override
+    public synchronized Bus getBus() throws IOException {
+
+        if (bus == null) {
+
+            final Bus actual = delegate.getBus();
+
+            bus = new Bus() {
+
+                @Override
+                public I2CCombinedMessage createCombinedMessage() {
+
+                    return new ScheduledCombinedMessage(ScheduledI2CDevice.this, actual.createCombinedMessage());
+                }
+            };
+        }
+        return bus;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        return transfer(DeviceTransaction.READ, 0, 0, 0, null, 0);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+
+        return transfer(DeviceTransaction.READ_BUFFER, 0, 0, 0, dst, 0);
+    }
+
+    @Override
+    public int read(int skip, ByteBuffer dst) throws IOException {
+
+        return transfer(DeviceTransaction.READ_SKIP, 0, 0, skip, dst, 0);
+    }
+
+    @Override
+    public int read(int subaddress, int subaddressSize, ByteBuffer dst) throws IOException {
+
+        return transfer(DeviceTransaction.READ_SUBADDRESS, subaddress, subaddressSize, 0, dst, 0);
+    }
+
+    @Override
+    public int read(int subaddress, int subaddressSize, int skip, ByteBuffer dst) throws IOException {
+
+        return transfer(DeviceTransaction.READ_SUBADDRESS_SKIP, subaddress, subaddressSize, skip, dst, 0);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+
+        return transfer(DeviceTransaction.WRITE_BUFFER, 0, 0, 0, src, 0);
+    }
+
+    @Override
+    public void write(int srcData) throws IOException {
+
+        transfer(DeviceTransaction.WRITE, 0, 0, 0, null, srcData);
+    }
+
+    @Override
+    public int write(int subaddress, int subaddressSize, ByteBuffer src) throws IOException {
+
+        return transfer(DeviceTransaction.WRITE_SUBADDRESS, subaddress, subaddressSize, 0, src, 0);
+    }
+
+    @Override
+    public void begin() throws IOException {
+
+        transfer(DeviceTransaction.BEGIN, 0, 0, 0, null, 0);
+    }
+
+    @Override
+    public void end() throws IOException {
+
+        transfer(DeviceTransaction.END, 0, 0, 0, null, 0);
+    }
+
+    /**
+     * Schedules operation through the transaction of this device, i.e. without
+     * allocating. Callers of the same device take turns; a re-entrant call from
+     * the owner thread (transaction already in use by this very thread) gets a
+     * transaction of its own.
+     */
+    private int transfer(int operation, int subaddress, int subaddressSize, int skip, ByteBuffer buffer, int data) throws IOException {
+
+        synchronized (transactionLock) {
+
+            DeviceTransaction t = transaction.inUse ? new DeviceTransaction(delegate) : transaction;
+
+            t.set(operation, subaddress, subaddressSize, skip, buffer, data);
+            t.inUse = true;
+            try {
+                return schedule(t);
+            } finally {
+                t.inUse = false;
+                // don't hold on to caller's buffer..
+                t.buffer = null;
+            }
+        }
+    }
+
+    /**
+     * Any of the I2CDevice transfer operations, arguments set before each
+     * submission.
+     */
+    private static final class DeviceTransaction extends BusTransaction {
+
+        static final int READ = 0;
+        static final int READ_BUFFER = 1;
+        static final int READ_SKIP = 2;
+        static final int READ_SUBADDRESS = 3;
+        static final int READ_SUBADDRESS_SKIP = 4;
+        static final int WRITE = 5;
+        static final int WRITE_BUFFER = 6;
+        static final int WRITE_SUBADDRESS = 7;
+        static final int BEGIN = 8;
+        static final int END = 9;
+
+        private final I2CDevice device;
+
+        int operation;
+        int subaddress;
+        int subaddressSize;
+        int skip;
+        ByteBuffer buffer;
+        int data;
+        boolean inUse;
+
+        DeviceTransaction(I2CDevice device) {
+
+            this.device = device;
+        }
+
+        void set(int operation, int subaddress, int subaddressSize, int skip, ByteBuffer buffer, int data) {
+
+            this.operation = operation;
+            this.subaddress = subaddress;
+            this.subaddressSize = subaddressSize;
+            this.skip = skip;
+            this.buffer = buffer;
+            this.data = data;
+        }
+
+        @Override
+        protected int run() throws IOException {
+
+            switch (operation) {
+                case READ:
+                    return device.read();
+                case READ_BUFFER:
+                    return device.read(buffer);
+                case READ_SKIP:
+                    return device.read(skip, buffer);
+                case READ_SUBADDRESS:
+                    return device.read(subaddress, subaddressSize, buffer);
+                case READ_SUBADDRESS_SKIP:
+                    return device.read(subaddress, subaddressSize, skip, buffer);
+                case WRITE:
+                    device.write(data);
+                    return 1;
+                case WRITE_BUFFER:
+                    return device.write(buffer);
+                case WRITE_SUBADDRESS:
+                    return device.write(subaddress, subaddressSize, buffer);
+                case BEGIN:
+                    device.begin();
+                    return 0;
+                default:
+                    device.end();
+                    return 0;
+            }
+        }
+    }
+
+    @Override
+    public ByteBuffer getInputBuffer() throws IOException {
+
+        return delegate.getInputBuffer();
+    }
+
+    @Override
+    public ByteBuffer getOutputBuffer() throws IOException {
+
+        return delegate.getOutputBuffer();
+    }
+
+    @Override
+    public ByteBuffer prepareBuffer(Buffer buffer, int size) throws IOException {
+
+        return delegate.prepareBuffer(buffer, size);
+    }
+
+    @Override
+    public void tryLock(int timeout) throws IOException {
+
+        delegate.tryLock(timeout);
+    }
+
+    @Override
+    public void unlock() throws IOException {
+
+        delegate.unlock();
+    }
+
+    @Override
+    public boolean isOpen() {
+
+        return delegate.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        try {
+            delegate.close();
+        } finally {
+            // last device off a shared bus stops its scheduler..
+            scheduler.closeAccount(account);
+        }
+    }
+
+    @Override
+    public int getByteOrder() throws IOException {
+
+        return delegate.getByteOrder();
+    }
+
+    @Override
+    public <U extends I2CDevice> DeviceDescriptor<U> getDescriptor() {
+
+        return delegate.getDescriptor();
+    }
+
+    @Override
+    public String toString() {
+
+        return "ScheduledI2CDevice{" + "priority=" + priority + ", deadlineMillis=" + getDeadlineMillis() + ", account=" + account + '}';
+    }
+}
@@ -0,0 +1,77 @@
+package jmbd.i2c.mpu6050.acquisition;
+
+import jmbd.i2c.mpu6050.configuration.InterruptSource;
+import jmbd.i2c.mpu6050.device.Mpu6050Sensor;
+import jmbd.i2c.mpu6050.interrupt.InterruptHandler;
+import jmbd.i2c.mpu6050.register.measurement.MeasurementFrame;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Interrupt-driven acquisition: takes one (burst) sample per DATA_RDY
+ * interrupt and passes it on to a listener (e.g. a SampleRingBuffer).
+ *
+ * A sample the sensor's error policy gave up on is skipped (and counted), the
+ * listener only ever sees frames that were actually read.
+ *
+ * @author savvas
+ */
+public class DataReadyAcquisition implements InterruptHandler {
+
+    protected Mpu6050Sensor sensor;
+    protected MeasurementFrameListener listener;
+
+    protected final MeasurementFrame frame;
+
+    private volatile long skipped;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) sensor not null
+     *
+     * 2) sensor.burstReadSupported()
+     *
+     * 3) listener not null
+     *
+     * @param sensor
+     * @param listener
+     */
+    public DataReadyAcquisition(Mpu6050Sensor sensor, MeasurementFrameListener listener) {
+
+        assert sensor != null : "sensor is null";
+        assert sensor.burstReadSupported() : "sensor does not support burst reads";
+        assert listener != null : "listener is null";
+
+        this.sensor = sensor;
+        this.listener = listener;
+        this.frame = new MeasurementFrame();
+    }
+
+    @Override
+    public void interruptRaised(InterruptSource source, long timestamp) {
+
+        if (!sensor.sample(frame)) {
+            ++skipped;
+            return;
+        }
+        listener.frameAcquired(frame);
+    }
+
+    /**
+     * @return number of interrupts whose sample could not be read
+     */
+    public long getSkippedCount() {
+
+        return skipped;
+    }
+}
@@ -0,0 +1,393 @@
+package jmbd.i2c.mpu6050.acquisition;
+
+import jmbd.commons.ByteBufferAccessOptimisation;
+import jmbd.commons.error.DeviceErrorPolicy;
+import jmbd.i2c.mpu6050.configuration.FifoSource;
+import jmbd.i2c.mpu6050.configuration.InterruptSource;
+import jmbd.i2c.mpu6050.configuration.Mpu6050DeviceConfiguration;
+import jmbd.i2c.mpu6050.device.RegisterAddress;
+import jmbd.i2c.mpu6050.interrupt.InterruptHandler;
+import jmbd.i2c.mpu6050.register.block.I2CRegisterBlock;
+import jmbd.i2c.mpu6050.register.block.RegisterBlock;
+import jmbd.i2c.mpu6050.register.measurement.MeasurementFrame;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import jdk.dio.i2cbus.I2CDevice;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Acquires samples through the on-chip 1024-byte FIFO buffer rather than with
+ * one host read per sample.
+ *
+ * The device keeps on filling the FIFO buffer at whatever rate SMPRT_DIV
+ * defines whilst the host only needs to wake up every now and then and drain()
+ * all whole frames accumulated so far in as few (large) reads as possible.
+ *
+ * Overflows are detected through the FIFO_OFLOW interrupt source (enabled by
+ * start()) in which case the FIFO buffer is reset, as its content is no longer
+ * aligned to frame boundaries.
+ *
+ * When registered with an InterruptDispatcher (which already reads INT_STATUS)
+ * for FIFO_OFLOW, overflows are recovered from as soon as they are raised; if
+ * also registered for any other source, that source triggers drainFrames().
+ *
+ * @author savvas
+ */
+public class Mpu6050FifoDrain implements InterruptHandler {
+
+    public static final int FIFO_SIZE_BYTES = 1024;
+
+    protected static final int REG_ADDR_SIZE_BYTES = 1;
+    // 1KHz, see SMPRT_DIV in Mpu6050Device
+    protected static final long DEFAULT_SAMPLE_PERIOD_NANOS = 1_000_000;
+    // values() returns a new array on every call..
+    private static final FifoSource[] SOURCES = FifoSource.values();
+
+    protected I2CDevice handle;
+    protected Mpu6050DeviceConfiguration configuration;
+    protected MeasurementFrameListener listener;
+
+    protected RegisterBlock countBlock;
+    // from the device's pool whilst started, null otherwise
+    protected ByteBuffer dataBuf;
+
+    protected final boolean[] enabledSources;
+    protected int frameLengthBytes;
+
+    protected final MeasurementFrame frame;
+    protected long samplePeriodNanos = DEFAULT_SAMPLE_PERIOD_NANOS;
+
+    protected long framesDrained;
+    protected long overflowCount;
+
+    protected DeviceErrorPolicy errorPolicy;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) handle not null
+     *
+     * 2) configuration not null
+     *
+     * 3) listener not null
+     *
+     * ENSURES:
+     *
+     * getFrameLengthBytes() == 0 (i.e. no sources enabled yet)
+     *
+     * @param handle
+     * @param configuration
+     * @param listener
+     */
+    public Mpu6050FifoDrain(I2CDevice handle, Mpu6050DeviceConfiguration configuration, MeasurementFrameListener listener) {
+
+        assert handle != null : "handle is null";
+        assert configuration != null : "configuration is null";
+
+        this.handle = handle;
+        this.configuration = configuration;
+        setListener(listener);
+
+        countBlock = new I2CRegisterBlock(handle, 2);
+        countBlock.setRange(RegisterAddress.FIFO_COUNT_H, 2);
+        setErrorPolicy(DeviceErrorPolicy.tolerant(Mpu6050FifoDrain.class.getName()));
+
+        enabledSources = new boolean[SOURCES.length];
+        frame = new MeasurementFrame();
+
+        assert getFrameLengthBytes() == 0 : "frame length not zero";
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * listener not null
+     *
+     * @param listener
+     */
+    public final void setListener(MeasurementFrameListener listener) {
+
+        assert listener != null : "listener is null";
+
+        this.listener = listener;
+    }
+
+    /**
+     * Time between two consecutive samples as configured via SMPRT_DIV. Used to
+     * estimate the timestamps of drained frames.
+     *
+     * REQUIRES:
+     *
+     * samplePeriodNanos > 0
+     *
+     * @param samplePeriodNanos
+     */
+    public void setSamplePeriodNanos(long samplePeriodNanos) {
+
+        assert samplePeriodNanos > 0 : "samplePeriodNanos is zero or negative";
+
+        this.samplePeriodNanos = samplePeriodNanos;
+    }
+
+    /**
+     * Loads given sources into the FIFO buffer, starting from an empty buffer.
+     *
+     * REQUIRES:
+     *
+     * 1) sources not null
+     *
+     * 2) sources.length > 0
+     *
+     * ENSURES:
+     *
+     * getFrameLengthBytes() == sum of the lengths of given sources
+     *
+     * @param sources
+     */
+    public void start(FifoSource... sources) {
+
+        assert sources != null : "sources is null";
+        assert sources.length > 0 : "no sources given";
+
+        configuration.disableFifo();
+
+        for (FifoSource s : SOURCES) {
+            enabledSources[s.ordinal()] = false;
+            configuration.disableFifoForSource(s);
+        }
+
+        frameLengthBytes = 0;
+
+        if (dataBuf == null) {
+            dataBuf = ByteBufferAccessOptimisation.forDevice(handle).acquire(FIFO_SIZE_BYTES);
+        }
+
+        for (FifoSource s : sources) {
+
+            if (!enabledSources[s.ordinal()]) {
+                enabledSources[s.ordinal()] = true;
+                frameLengthBytes += s.getLengthBytes();
+                configuration.enableFifoForSource(s);
+            }
+        }
+
+        configuration.enableInterruptsForSource(InterruptSource.FIFO_OFLOW);
+        configuration.resetFifo();
+        configuration.enableFifo();
+    }
+
+    /**
+     * Disables the FIFO buffer and gives the data buffer back to the device's
+     * pool, start() takes another one.
+     *
+     * ENSURES:
+     *
+     * getFrameLengthBytes() == 0
+     */
+    public void stop() {
+
+        try {
+            configuration.disableFifo();
+            configuration.disableInterruptsForSource(InterruptSource.FIFO_OFLOW);
+        } finally {
+
+            frameLengthBytes = 0;
+
+            if (dataBuf != null) {
+                ByteBufferAccessOptimisation.forDevice(handle).release(dataBuf);
+                dataBuf = null;
+            }
+        }
+    }
+
+    /**
+     * Checks for overflows first and, if none occurred, passes all whole frames
+     * currently in the FIFO buffer to the listener.
+     *
+     * Frames that had not been drained by the time of an overflow are lost.
+     *
+     * REQUIRES:
+     *
+     * getFrameLengthBytes() > 0 (i.e. start() has been called)
+     *
+     * @return number of frames drained
+     */
+    public int drain() {
+
+        if (configuration.interruptRaisedForSource(InterruptSource.FIFO_OFLOW)) {
+
+            recoverFromOverflow();
+            return 0;
+        }
+        return drainFrames();
+    }
+
+    /**
+     * Same as drain() without checking for overflows (e.g. when INT_STATUS has
+     * already been read elsewhere).
+     *
+     * REQUIRES:
+     *
+     * getFrameLengthBytes() > 0 (i.e. start() has been called)
+     *
+     * @return number of frames drained
+     */
+    public int drainFrames() {
+
+        assert getFrameLengthBytes() > 0 : "FIFO not started";
+
+        int delivered = 0;
+
+        try {
+            long now = System.nanoTime();
+            int available = readCount() / frameLengthBytes;
+            int framesPerRead = dataBuf.capacity() / frameLengthBytes;
+            int remaining = available;
+
+            while (remaining > 0) {
+
+                int frames = Math.min(remaining, framesPerRead);
+
+                dataBuf.limit(frames * frameLengthBytes);
+                int read = handle.read(RegisterAddress.FIFO_R_W.getValue(), REG_ADDR_SIZE_BYTES, dataBuf);
+                dataBuf.flip();
+
+                // whole frames only, a short read leaves the rest of the buffer unfilled..
+                int received = Math.min(read, dataBuf.remaining()) / frameLengthBytes;
+
+                for (int f = 0; f < received; f++) {
+
+                    decodeFrame();
+                    // oldest frame first, last one is (roughly) "now"
+                    frame.setTimestamp(now - (remaining - 1 - f) * samplePeriodNanos);
+                    listener.frameAcquired(frame);
+                }
+                delivered += received;
+                framesDrained += received;
+
+                if (received < frames) {
+                    // FIFO position no longer on a frame boundary (nor known), same as a failed read
+                    throw new IOException("Short FIFO read: " + read + " of " + frames * frameLengthBytes + " bytes");
+                }
+                dataBuf.clear();
+                remaining -= frames;
+            }
+
+            return delivered;
+        } catch (IOException ex) {
+
+            // part of the data may have been popped already so the FIFO is re-aligned rather than read again..
+            errorPolicy.onUnrepeatableFailure(ex);
+            recoverFromOverflow();
+
+            return delivered;
+        } finally {
+
+            dataBuf.clear();
+        }
+    }
+
+    /**
+     * Failed FIFO data reads can not be retried (part of the data may have
+     * been popped), they count against the budget and the FIFO is reset
+     * instead. The FIFO count read shares the same policy.
+     *
+     * Defaults to DeviceErrorPolicy.tolerant(), i.e. a failed drain is
+     * skipped and acquisition goes on unless failures exceed the budget.
+     *
+     * @return
+     */
+    public DeviceErrorPolicy getErrorPolicy() {
+
+        return errorPolicy;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * errorPolicy not null
+     *
+     * @param errorPolicy
+     */
+    public final void setErrorPolicy(DeviceErrorPolicy errorPolicy) {
+
+        assert errorPolicy != null : "errorPolicy is null";
+
+        this.errorPolicy = errorPolicy;
+        countBlock.setErrorPolicy(errorPolicy);
+    }
+
+    /**
+     * Empties the FIFO buffer so that subsequent reads are frame-aligned again.
+     *
+     * ENSURES:
+     *
+     * new getOverflowCount() == old getOverflowCount() + 1
+     */
+    public void recoverFromOverflow() {
+
+        configuration.resetFifo();
+        ++overflowCount;
+    }
+
+    @Override
+    public void interruptRaised(InterruptSource source, long timestamp) {
+
+        if (source == InterruptSource.FIFO_OFLOW) {
+            recoverFromOverflow();
+        } else {
+            drainFrames();
+        }
+    }
+
+    private int readCount() {
+
+        countBlock.load();
+
+        // nothing is drained if the error policy gave up on the count
+        return countBlock.isValid() ? countBlock.getUnsignedShort(0) : 0;
+    }
+
+    private void decodeFrame() {
+
+        for (FifoSource s : SOURCES) {
+
+            if (enabledSources[s.ordinal()]) {
+
+                for (int c = s.getFirstChannel(); c < s.getFirstChannel() + s.getChannelCount(); c++) {
+                    frame.setValue(c, (short) ((dataBuf.get() << 8) | (dataBuf.get() & 0xFF)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Bytes per FIFO frame given the enabled sources.
+     *
+     * @return
+     */
+    public int getFrameLengthBytes() {
+
+        return frameLengthBytes;
+    }
+
+    public long getFramesDrained() {
+
+        return framesDrained;
+    }
+
+    public long getOverflowCount() {
+
+        return overflowCount;
+    }
+}
@@ -0,0 +1,114 @@
+package jmbd.i2c.mpu6050.acquisition;
+
+import jmbd.i2c.mpu6050.register.measurement.MeasurementFrame;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Reading position of a single consumer of a SampleRingBuffer.
+ *
+ * Cursors are not thread-safe, each consumer thread should use its own. A
+ * consumer that falls more than a buffer's worth of records behind the
+ * producer skips ahead and the skipped records are accounted for in
+ * getLostCount().
+ *
+ * @author savvas
+ */
+public class SampleCursor {
+
+    protected final SampleRingBuffer ring;
+
+    protected long nextSequence;
+    protected long lostCount;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) ring not null
+     *
+     * 2) nextSequence >= 0
+     *
+     * @param ring
+     * @param nextSequence
+     */
+    SampleCursor(SampleRingBuffer ring, long nextSequence) {
+
+        assert ring != null : "ring is null";
+        assert nextSequence >= 0 : "nextSequence is negative";
+
+        this.ring = ring;
+        this.nextSequence = nextSequence;
+    }
+
+    /**
+     * Copies the next unread record into given frame.
+     *
+     * REQUIRES:
+     *
+     * frame not null
+     *
+     * @param frame
+     * @return false if there is nothing new to read
+     */
+    public boolean poll(MeasurementFrame frame) {
+
+        assert frame != null : "frame is null";
+
+        while (true) {
+
+            long published = ring.getPublishedSequence();
+
+            if (nextSequence > published) {
+                return false;
+            }
+
+            if (!ring.isReadable(nextSequence)) {
+                // producer lapped us, jump to the oldest record still around
+                long oldest = published - ring.oldestReadableDistance() + 1;
+                lostCount += oldest - nextSequence;
+                nextSequence = oldest;
+            }
+
+            // record may have been overwritten since the check above
+            if (ring.copyIfReadable(nextSequence, frame)) {
+                ++nextSequence;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Number of records published but not read yet (may exceed what is still
+     * readable if this cursor has fallen behind).
+     *
+     * @return
+     */
+    public long available() {
+
+        return ring.getPublishedSequence() + 1 - nextSequence;
+    }
+
+    public long getNextSequence() {
+
+        return nextSequence;
+    }
+
+    /**
+     * Records overwritten by the producer before this cursor got to them.
+     *
+     * @return
+     */
+    public long getLostCount() {
+
+        return lostCount;
+    }
+}
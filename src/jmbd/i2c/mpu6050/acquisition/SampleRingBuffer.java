@@ -0,0 +1,266 @@
+package jmbd.i2c.mpu6050.acquisition;
+
+import jmbd.i2c.mpu6050.register.measurement.MeasurementFrame;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Fixed-size history of the most recent samples, kept off-heap in a direct
+ * ByteBuffer.
+ *
+ * There is exactly one producer (the acquisition path, which calls
+ * frameAcquired()) and any number of consumers, each one reading at its own
+ * pace through a SampleCursor. Neither side allocates nor takes a lock.
+ *
+ * Every slot carries a stamp: odd whilst the producer is writing a record into
+ * it, even once the record is complete (2 * sequence + 2 for the record of
+ * given sequence, 0 for a slot never written). The producer publishes a record
+ * by advancing a volatile sequence after its stamp; consumers copy a record
+ * out and validate the stamp afterwards, a stamp that has moved on means the
+ * copy may be torn and the record is skipped (accounted for as lost).
+ *
+ * Each record holds the timestamp followed by the raw values of all
+ * MeasurementFrame channels.
+ *
+ * INVARIANTS:
+ *
+ * 1) getCapacity() is a power of two
+ *
+ * 2) getPublishedSequence() >= -1
+ *
+ * @author savvas
+ */
+public class SampleRingBuffer implements MeasurementFrameListener {
+
+    // timestamp + channels, padded to a multiple of 8 so that timestamps stay aligned
+    public static final int RECORD_SIZE_BYTES = 24;
+
+    protected static final int TIMESTAMP_OFFSET = 0;
+    protected static final int VALUES_OFFSET = 8;
+
+    protected final ByteBuffer records;
+    protected final int capacity;
+    protected final int indexMask;
+    protected final AtomicLongArray stamps;
+
+    // only ever written by the producer
+    protected long nextSequence;
+    protected volatile long publishedSequence = -1;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) capacity > 1
+     *
+     * 2) capacity is a power of two
+     *
+     * ENSURES:
+     *
+     * 1) getCapacity() == capacity
+     *
+     * 2) getPublishedSequence() == -1 (i.e. empty)
+     *
+     * @param capacity
+     */
+    public SampleRingBuffer(int capacity) {
+
+        assert capacity > 1 : "capacity must be greater than one";
+        assert (capacity & (capacity - 1)) == 0 : "capacity is not a power of two";
+
+        this.capacity = capacity;
+        this.indexMask = capacity - 1;
+        this.records = ByteBuffer.allocateDirect(capacity * RECORD_SIZE_BYTES);
+        this.stamps = new AtomicLongArray(capacity);
+
+        assert getCapacity() == capacity : "capacity not set";
+        assert getPublishedSequence() == -1 : "ring buffer not empty";
+    }
+
+    /**
+     * Publishes a copy of given frame, overwriting the oldest record once the
+     * buffer is full.
+     *
+     * Must only be called by the (single) producer thread.
+     *
+     * REQUIRES:
+     *
+     * frame not null
+     *
+     * ENSURES:
+     *
+     * new getPublishedSequence() == old getPublishedSequence() + 1
+     *
+     * @param frame
+     */
+    @Override
+    public void frameAcquired(MeasurementFrame frame) {
+
+        assert frame != null : "frame is null";
+
+        long sequence = nextSequence;
+        int slot = (int) sequence & indexMask;
+        int offset = slot * RECORD_SIZE_BYTES;
+
+        // odd, i.e. any copy of the old record taken from now on is invalid..
+        stamps.set(slot, writingStamp(sequence));
+
+        records.putLong(offset + TIMESTAMP_OFFSET, frame.getTimestamp());
+
+        for (int c = 0; c < MeasurementFrame.CHANNEL_COUNT; c++) {
+            records.putShort(offset + VALUES_OFFSET + (c << 1), frame.getValue(c));
+        }
+
+        stamps.set(slot, publishedStamp(sequence));
+
+        nextSequence = sequence + 1;
+        // volatile write, makes the record visible to consumers
+        publishedSequence = sequence;
+    }
+
+    /**
+     * New cursor positioned right after the most recently published record
+     * (i.e. it will only see records published from now on).
+     *
+     * @return
+     */
+    public SampleCursor newCursor() {
+
+        return new SampleCursor(this, publishedSequence + 1);
+    }
+
+    /**
+     * New cursor positioned at the oldest record still (safely) readable.
+     *
+     * @return
+     */
+    public SampleCursor newCursorFromOldest() {
+
+        long published = publishedSequence;
+
+        return new SampleCursor(this, Math.max(0, published - oldestReadableDistance() + 1));
+    }
+
+    /**
+     * Copies the most recently published record into given frame.
+     *
+     * REQUIRES:
+     *
+     * frame not null
+     *
+     * @param frame
+     * @return false if nothing has been published yet
+     */
+    public boolean readLatest(MeasurementFrame frame) {
+
+        assert frame != null : "frame is null";
+
+        while (true) {
+
+            long sequence = publishedSequence;
+
+            if (sequence < 0) {
+                return false;
+            }
+
+            if (copyIfReadable(sequence, frame)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Sequence of the most recently published record, -1 if none.
+     *
+     * @return
+     */
+    public long getPublishedSequence() {
+
+        return publishedSequence;
+    }
+
+    public int getCapacity() {
+
+        return capacity;
+    }
+
+    /**
+     * Copies record of given sequence into frame unless it has been (even
+     * partially) overwritten whilst being copied.
+     *
+     * REQUIRES:
+     *
+     * sequence <= getPublishedSequence()
+     *
+     * @param sequence
+     * @param frame
+     * @return false if the record is gone (frame may then hold a torn copy)
+     */
+    boolean copyIfReadable(long sequence, MeasurementFrame frame) {
+
+        int slot = (int) sequence & indexMask;
+        int offset = slot * RECORD_SIZE_BYTES;
+        long stamp = publishedStamp(sequence);
+
+        // already overwritten (or being overwritten)
+        if (stamps.get(slot) != stamp) {
+            return false;
+        }
+
+        frame.setTimestamp(records.getLong(offset + TIMESTAMP_OFFSET));
+
+        for (int c = 0; c < MeasurementFrame.CHANNEL_COUNT; c++) {
+            frame.setValue(c, records.getShort(offset + VALUES_OFFSET + (c << 1)));
+        }
+
+        // the CAS is a full fence, i.e. the reads above cannot drift past the
+        // re-check; a plain volatile read would not stop them doing so..
+        return stamps.compareAndSet(slot, stamp, stamp);
+    }
+
+    /**
+     * Has the record of given sequence not been (even partially) overwritten?
+     *
+     * The producer writes record (published + 1) into the slot of record
+     * (published + 1 - capacity) before publishing it, hence the extra slot of
+     * slack.
+     *
+     * @param sequence
+     * @return
+     */
+    boolean isReadable(long sequence) {
+
+        return publishedSequence - sequence < oldestReadableDistance();
+    }
+
+    /**
+     * How far behind the published sequence can a record be and still be safe
+     * to read.
+     *
+     * @return
+     */
+    long oldestReadableDistance() {
+
+        return capacity - 1;
+    }
+
+    private static long writingStamp(long sequence) {
+
+        return (sequence << 1) + 1;
+    }
+
+    private static long publishedStamp(long sequence) {
+
+        return (sequence << 1) + 2;
+    }
+}
@@ -0,0 +1,181 @@
+package jmbd.i2c.mpu6050.aggregation;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Single-pass statistics of a stream of values: min, max, mean, RMS and
+ * (population) variance.
+ *
+ * Mean and variance are maintained with Welford's online algorithm and
+ * partial results can be combined with merge() (Chan et al.) so that sliding
+ * windows can be built out of smaller panes without revisiting any values.
+ *
+ * @author savvas
+ */
+public class AxisStatistics {
+
+    protected long count;
+    protected float min;
+    protected float max;
+    protected double mean;
+    // sum of squared differences from the mean
+    protected double m2;
+    protected double sumOfSquares;
+
+    /**
+     * ENSURES:
+     *
+     * getCount() == 0
+     */
+    public AxisStatistics() {
+
+        reset();
+    }
+
+    /**
+     * ENSURES:
+     *
+     * getCount() == 0
+     */
+    public final void reset() {
+
+        count = 0;
+        min = Float.POSITIVE_INFINITY;
+        max = Float.NEGATIVE_INFINITY;
+        mean = 0;
+        m2 = 0;
+        sumOfSquares = 0;
+
+        assert getCount() == 0 : "count not reset";
+    }
+
+    /**
+     * ENSURES:
+     *
+     * new getCount() == old getCount() + 1
+     *
+     * @param value
+     */
+    public void add(float value) {
+
+        ++count;
+
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        sumOfSquares += (double) value * value;
+    }
+
+    /**
+     * Combines statistics of other into this one, as if all values of other
+     * had been add()'ed.
+     *
+     * REQUIRES:
+     *
+     * other not null
+     *
+     * ENSURES:
+     *
+     * new getCount() == old getCount() + other.getCount()
+     *
+     * @param other
+     */
+    public void merge(AxisStatistics other) {
+
+        assert other != null : "other is null";
+
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            copyFrom(other);
+            return;
+        }
+
+        long total = count + other.count;
+        double delta = other.mean - mean;
+
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * count * other.count / total;
+        sumOfSquares += other.sumOfSquares;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        count = total;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * other not null
+     *
+     * @param other
+     */
+    public void copyFrom(AxisStatistics other) {
+
+        assert other != null : "other is null";
+
+        count = other.count;
+        min = other.min;
+        max = other.max;
+        mean = other.mean;
+        m2 = other.m2;
+        sumOfSquares = other.sumOfSquares;
+    }
+
+    public long getCount() {
+
+        return count;
+    }
+
+    public float getMin() {
+
+        return min;
+    }
+
+    public float getMax() {
+
+        return max;
+    }
+
+    public float getMean() {
+
+        return (float) mean;
+    }
+
+    public float getRms() {
+
+        return count == 0 ? 0 : (float) Math.sqrt(sumOfSquares / count);
+    }
+
+    /**
+     * Population variance.
+     *
+     * @return
+     */
+    public float getVariance() {
+
+        return count == 0 ? 0 : (float) (m2 / count);
+    }
+
+    @Override
+    public String toString() {
+
+        return "AxisStatistics{" + "count=" + count + ", min=" + min + ", max=" + max + ", mean=" + getMean() + ", rms=" + getRms() + ", variance=" + getVariance() + '}';
+    }
+}
@@ -0,0 +1,131 @@
+package jmbd.i2c.mpu6050.aggregation;
+
+import jmbd.i2c.mpu6050.register.measurement.MeasurementFrame;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Statistics of every MeasurementFrame channel over one window.
+ *
+ * Summaries are reused by the aggregation stage, listeners should copy
+ * whatever they need to keep.
+ *
+ * @author savvas
+ */
+public class WindowSummary {
+
+    protected final AxisStatistics[] channels;
+
+    protected long firstTimestamp;
+    protected long lastTimestamp;
+
+    public WindowSummary() {
+
+        channels = new AxisStatistics[MeasurementFrame.CHANNEL_COUNT];
+
+        for (int c = 0; c < channels.length; c++) {
+            channels[c] = new AxisStatistics();
+        }
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * channel BETWEEN [0 - MeasurementFrame.CHANNEL_COUNT)
+     *
+     * @param channel one of the MeasurementFrame channels
+     * @return
+     */
+    public AxisStatistics getChannel(int channel) {
+
+        assert channel >= 0 && channel < MeasurementFrame.CHANNEL_COUNT : "channel not in [0 - " + MeasurementFrame.CHANNEL_COUNT + ") range";
+
+        return channels[channel];
+    }
+
+    /**
+     * Number of samples in this window.
+     *
+     * @return
+     */
+    public long getSampleCount() {
+
+        return channels[0].getCount();
+    }
+
+    /**
+     * Timestamp of the oldest sample in this window.
+     *
+     * @return
+     */
+    public long getFirstTimestamp() {
+
+        return firstTimestamp;
+    }
+
+    /**
+     * Timestamp of the newest sample in this window.
+     *
+     * @return
+     */
+    public long getLastTimestamp() {
+
+        return lastTimestamp;
+    }
+
+    void reset() {
+
+        for (AxisStatistics s : channels) {
+            s.reset();
+        }
+        firstTimestamp = 0;
+        lastTimestamp = 0;
+    }
+
+    void add(float[] values, long timestamp) {
+
+        if (getSampleCount() == 0) {
+            firstTimestamp = timestamp;
+        }
+        lastTimestamp = timestamp;
+
+        for (int c = 0; c < channels.length; c++) {
+            channels[c].add(values[c]);
+        }
+    }
+
+    void merge(WindowSummary other) {
+
+        if (other.getSampleCount() == 0) {
+            return;
+        }
+        if (getSampleCount() == 0) {
+            firstTimestamp = other.firstTimestamp;
+        }
+        lastTimestamp = other.lastTimestamp;
+
+        for (int c = 0; c < channels.length; c++) {
+            channels[c].merge(other.channels[c]);
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder sb = new StringBuilder("WindowSummary{samples=").append(getSampleCount()).append(", from=").append(firstTimestamp).append(", to=").append(lastTimestamp);
+
+        for (int c = 0; c < channels.length; c++) {
+            sb.append(", ").append(c).append('=').append(channels[c]);
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,225 @@
+package jmbd.i2c.mpu6050.aggregation;
+
+import jmbd.i2c.mpu6050.acquisition.MeasurementFrameListener;
+import jmbd.i2c.mpu6050.device.Mpu6050Sensor;
+import jmbd.i2c.mpu6050.register.measurement.MeasurementFrame;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Aggregation stage between the sensor and any sink: instead of every sample,
+ * only per-window summaries (min, max, mean, RMS and variance of each channel)
+ * are passed on.
+ *
+ * Windows are expressed either in samples or in milliseconds and can be
+ * tumbling (slide == size) or sliding (slide < size). A window is made of
+ * (size / slide) panes, each pane being summarised in a single pass as samples
+ * arrive; whenever a pane closes, the panes of the latest window are merged
+ * into a summary. Hence neither values are ever revisited nor is anything
+ * allocated per sample.
+ *
+ * Values are converted into SI units if a sensor is given, raw counts are
+ * aggregated otherwise.
+ *
+ * Not thread-safe, frames must all come from the same (acquisition) thread.
+ *
+ * @author savvas
+ */
+public class WindowedAggregation implements MeasurementFrameListener {
+
+    private static final long NANOS_PER_MILLI = 1_000_000;
+
+    protected final Mpu6050Sensor sensor;
+    protected final WindowUnit unit;
+    protected final long size;
+    protected final long slide;
+    protected WindowSummaryListener listener;
+
+    protected final WindowSummary[] panes;
+    protected final WindowSummary summary;
+    protected final float[] values;
+
+    protected int currentPane;
+    protected int closedPanes;
+    // time based windows only
+    protected long paneEnd;
+    protected boolean started;
+
+    protected long windowCount;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) unit not null
+     *
+     * 2) size > 0
+     *
+     * 3) slide > 0 && slide <= size
+     *
+     * 4) (size % slide) == 0
+     *
+     * 5) listener not null
+     *
+     * @param sensor used for converting into SI units, may be null (raw counts)
+     * @param unit
+     * @param size window size
+     * @param slide distance between the start of two consecutive windows
+     * @param listener
+     */
+    public WindowedAggregation(Mpu6050Sensor sensor, WindowUnit unit, long size, long slide, WindowSummaryListener listener) {
+
+        assert unit != null : "unit is null";
+        assert size > 0 : "size is zero or negative";
+        assert slide > 0 && slide <= size : "slide not in [1 - size] range";
+        assert (size % slide) == 0 : "size is not a multiple of slide";
+
+        this.sensor = sensor;
+        this.unit = unit;
+        this.size = size;
+        this.slide = slide;
+        setListener(listener);
+
+        panes = new WindowSummary[(int) (size / slide)];
+
+        for (int p = 0; p < panes.length; p++) {
+            panes[p] = new WindowSummary();
+        }
+        summary = new WindowSummary();
+        values = new float[MeasurementFrame.CHANNEL_COUNT];
+    }
+
+    /**
+     * Non-overlapping windows.
+     *
+     * @param sensor may be null (raw counts)
+     * @param unit
+     * @param size
+     * @param listener
+     * @return
+     */
+    public static WindowedAggregation tumbling(Mpu6050Sensor sensor, WindowUnit unit, long size, WindowSummaryListener listener) {
+
+        return new WindowedAggregation(sensor, unit, size, size, listener);
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * listener not null
+     *
+     * @param listener
+     */
+    public final void setListener(WindowSummaryListener listener) {
+
+        assert listener != null : "listener is null";
+
+        this.listener = listener;
+    }
+
+    @Override
+    public void frameAcquired(MeasurementFrame frame) {
+
+        if (sensor != null) {
+            sensor.scale(frame, values, 0);
+        } else {
+            for (int c = 0; c < MeasurementFrame.CHANNEL_COUNT; c++) {
+                values[c] = frame.getValue(c);
+            }
+        }
+
+        long t = frame.getTimestamp();
+
+        if (unit == WindowUnit.MILLISECONDS) {
+
+            long slideNanos = slide * NANOS_PER_MILLI;
+
+            if (!started || t - paneEnd >= size * NANOS_PER_MILLI) {
+                // first sample or a gap longer than a window, start afresh
+                discardPanes();
+                paneEnd = t + slideNanos;
+                started = true;
+            }
+
+            while (t - paneEnd >= 0) {
+                closePane();
+                paneEnd += slideNanos;
+            }
+            panes[currentPane].add(values, t);
+        } else {
+
+            panes[currentPane].add(values, t);
+
+            if (panes[currentPane].getSampleCount() == slide) {
+                closePane();
+            }
+        }
+    }
+
+    private void closePane() {
+
+        if (closedPanes < panes.length) {
+            ++closedPanes;
+        }
+
+        if (closedPanes == panes.length) {
+
+            summary.reset();
+
+            // oldest pane first
+            for (int i = 1; i <= panes.length; i++) {
+                summary.merge(panes[(currentPane + i) % panes.length]);
+            }
+
+            if (summary.getSampleCount() > 0) {
+                ++windowCount;
+                listener.windowClosed(summary);
+            }
+        }
+
+        currentPane = (currentPane + 1) % panes.length;
+        panes[currentPane].reset();
+    }
+
+    private void discardPanes() {
+
+        for (WindowSummary p : panes) {
+            p.reset();
+        }
+        currentPane = 0;
+        closedPanes = 0;
+    }
+
+    /**
+     * Number of summaries passed on to the listener so far.
+     *
+     * @return
+     */
+    public long getWindowCount() {
+
+        return windowCount;
+    }
+
+    public WindowUnit getUnit() {
+
+        return unit;
+    }
+
+    public long getSize() {
+
+        return size;
+    }
+
+    public long getSlide() {
+
+        return slide;
+    }
+}
@@ -0,0 +1,122 @@
+package jmbd.i2c.mpu6050.benchmark;
+
+import jmbd.commons.metrics.LatencyHistogram;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Outcome of running a ReadBenchmark.
+ *
+ * Latency quantiles are upper bounds of the LatencyHistogram bucket they fall
+ * in, i.e. accurate to within a factor of 2, max is exact.
+ *
+ * @author savvas
+ */
+public class BenchmarkResult {
+
+    public static final long ALLOCATION_UNKNOWN = -1;
+
+    private final String name;
+    private final long operations;
+    private final long samples;
+    private final long elapsedNanos;
+    private final long allocatedBytes;
+    private final long maxNanos;
+    private final LatencyHistogram latencies;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) name not null
+     *
+     * 2) latencies not null (and not modified afterwards)
+     *
+     * @param name
+     * @param operations
+     * @param samples
+     * @param elapsedNanos time spent in the operations (preparation excluded)
+     * @param allocatedBytes ALLOCATION_UNKNOWN if it could not be measured
+     * @param maxNanos
+     * @param latencies
+     */
+    public BenchmarkResult(String name, long operations, long samples, long elapsedNanos, long allocatedBytes, long maxNanos, LatencyHistogram latencies) {
+
+        assert name != null : "name is null";
+        assert latencies != null : "latencies is null";
+
+        this.name = name;
+        this.operations = operations;
+        this.samples = samples;
+        this.elapsedNanos = elapsedNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.maxNanos = maxNanos;
+        this.latencies = latencies;
+    }
+
+    public String getName() {
+
+        return name;
+    }
+
+    public long getOperations() {
+
+        return operations;
+    }
+
+    public long getSamples() {
+
+        return samples;
+    }
+
+    public long getElapsedNanos() {
+
+        return elapsedNanos;
+    }
+
+    public double getSamplesPerSecond() {
+
+        return elapsedNanos == 0 ? 0 : samples * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return ALLOCATION_UNKNOWN if a collection ran during the measurement
+     */
+    public double getAllocatedBytesPerSample() {
+
+        return allocatedBytes == ALLOCATION_UNKNOWN || samples == 0 ? ALLOCATION_UNKNOWN : (double) allocatedBytes / samples;
+    }
+
+    public long getLatencyNanos(double quantile) {
+
+        return latencies.quantileUpperBoundNanos(quantile);
+    }
+
+    public long getMaxNanos() {
+
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+
+        double perSample = getAllocatedBytesPerSample();
+
+        return name
+                + ": samples/s=" + Math.round(getSamplesPerSecond())
+                + ", B/sample=" + (perSample == ALLOCATION_UNKNOWN ? "n/a" : String.valueOf(Math.round(perSample * 10) / 10.0))
+                + ", p50<=" + getLatencyNanos(0.5) / 1_000 + "us"
+                + ", p99<=" + getLatencyNanos(0.99) / 1_000 + "us"
+                + ", p99.9<=" + getLatencyNanos(0.999) / 1_000 + "us"
+                + ", max=" + maxNanos / 1_000 + "us"
+                + ", ops=" + operations;
+    }
+}
@@ -0,0 +1,122 @@
+package jmbd.i2c.mpu6050.benchmark;
+
+import jmbd.commons.metrics.LatencyHistogram;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Minimal harness: warm-up, then timed operations with per-operation latency
+ * recorded into a LatencyHistogram and heap usage compared before/after.
+ * Everything runs on the calling thread, ReadBenchmark.prepare() included
+ * (outside the timed part of each operation).
+ *
+ * Allocation is measured with the calling thread's allocation counter where
+ * the VM has one (Java SE, see ThreadAllocationCounter). Elsewhere it is the
+ * drop of Runtime.freeMemory() across the timed phase (a collection is
+ * requested right before it), which counts every thread's allocation, so
+ * nothing else may run meanwhile: no background sampler threads, benchmarks
+ * drive their devices from prepare(). A collection happening during the phase
+ * makes free memory go up, in which case allocation is reported as unknown
+ * rather than guessed; keep the operation count small enough for the heap at
+ * hand if allocation figures matter.
+ *
+ * Run without assertions (-da), several drivers check their buffers on every
+ * call.
+ *
+ * @author savvas
+ */
+public class BenchmarkRunner {
+
+    private static final boolean THREAD_COUNTER = ThreadAllocationCounter.isAvailable();
+
+    private final int warmUpOperations;
+    private final int measuredOperations;
+
+    private volatile int blackhole;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) warmUpOperations >= 0
+     *
+     * 2) measuredOperations > 0
+     *
+     * @param warmUpOperations
+     * @param measuredOperations
+     */
+    public BenchmarkRunner(int warmUpOperations, int measuredOperations) {
+
+        assert warmUpOperations >= 0 : "warmUpOperations is negative";
+        assert measuredOperations > 0 : "measuredOperations not positive";
+
+        this.warmUpOperations = warmUpOperations;
+        this.measuredOperations = measuredOperations;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * benchmark not null
+     *
+     * @param benchmark
+     * @return
+     */
+    public BenchmarkResult run(ReadBenchmark benchmark) {
+
+        assert benchmark != null : "benchmark is null";
+
+        int sink = 0;
+
+        for (int i = 0; i < warmUpOperations; i++) {
+            benchmark.prepare();
+            sink += benchmark.operation();
+        }
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        long max = 0;
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long freeBefore = runtime.freeMemory();
+        long allocatedBefore = THREAD_COUNTER ? ThreadAllocationCounter.allocatedBytes() : 0;
+        long elapsed = 0;
+
+        for (int i = 0; i < measuredOperations; i++) {
+            benchmark.prepare();
+
+            long started = System.nanoTime();
+            sink += benchmark.operation();
+            long latency = System.nanoTime() - started;
+
+            latencies.record(latency);
+            if (latency > max) {
+                max = latency;
+            }
+            elapsed += latency;
+        }
+
+        long allocated = THREAD_COUNTER
+                ? ThreadAllocationCounter.allocatedBytes() - allocatedBefore
+                : freeBefore - runtime.freeMemory();
+
+        // published so the reads can not be optimised away..
+        blackhole = sink;
+
+        return new BenchmarkResult(benchmark.getName(),
+                measuredOperations,
+                (long) measuredOperations * benchmark.getSamplesPerOperation(),
+                elapsed,
+                allocated < 0 ? BenchmarkResult.ALLOCATION_UNKNOWN : allocated,
+                max,
+                latencies);
+    }
+}
@@ -0,0 +1,39 @@
+package jmbd.i2c.mpu6050.benchmark;
+
+import javax.microedition.midlet.MIDletStateChangeException;
+import jmbd.commons.CommonOperationsMIDlet;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Runs MeasurementReadBenchmarks on the target VM, once without bus latency
+ * (CPU cost of each strategy) and once at 400kHz.
+ *
+ * @author savvas
+ */
+public class MeasurementReadBenchmarkMIDlet extends CommonOperationsMIDlet {
+
+    private static final int OPERATIONS = 5_000;
+
+    @Override
+    protected void startApp() throws MIDletStateChangeException {
+
+        new MeasurementReadBenchmarks(0, OPERATIONS).runAll(System.out);
+        new MeasurementReadBenchmarks(MeasurementReadBenchmarks.DEFAULT_BUS_FREQUENCY_HZ, OPERATIONS).runAll(System.out);
+    }
+
+    @Override
+    protected void destroyApp(boolean unconditional) throws MIDletStateChangeException {
+
+        // NOP
+    }
+}
@@ -0,0 +1,206 @@
+package jmbd.i2c.mpu6050.benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import jmbd.commons.ByteBufferAccessOptimisation;
+import jmbd.i2c.mpu6050.configuration.DigitalLowPassFilter;
+import jmbd.i2c.mpu6050.configuration.Mpu6050DeviceConfiguration;
+import jmbd.i2c.mpu6050.device.RegisterAddress;
+import jmbd.i2c.mpu6050.register.block.I2CRegisterBlock;
+import jmbd.i2c.mpu6050.register.configuration.I2CRegisterValue;
+import jmbd.i2c.mpu6050.register.measurement.BlockMeasurementRegisterValue;
+import jmbd.i2c.mpu6050.register.measurement.CombinedMessageMeasurementRegisterValue;
+import jmbd.i2c.mpu6050.register.measurement.I2CBurstMeasurementRead;
+import jmbd.i2c.mpu6050.register.measurement.MeasurementFrame;
+import jmbd.i2c.mpu6050.register.measurement.MeasurementRegisterValue;
+import jmbd.i2c.mpu6050.register.measurement.MultiReadMeasurementRegisterValue;
+import jmbd.simulation.Mpu6050Model;
+import jmbd.simulation.SimulatedBus;
+import jmbd.simulation.SimulatedI2CDevice;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Compares the ways of reading measurements against a simulated MPU-6050 on a
+ * simulated I2C bus, the device producing a new sample (as if sampling at
+ * 1kHz) before every read:
+ *
+ * 1) combined-message: CombinedMessageMeasurementRegisterValue (two messages,
+ * one transaction)
+ *
+ * 2) multi-read: MultiReadMeasurementRegisterValue over I2CRegisterValue (two
+ * transactions)
+ *
+ * 3) block: BlockMeasurementRegisterValue over I2CRegisterBlock (one
+ * auto-increment read of both registers)
+ *
+ * 4) frame-burst: I2CBurstMeasurementRead (all 7 measurements in one read,
+ * counted as 7 samples)
+ *
+ * Usage (Java SE with jdk.dio on the class path, assertions off):
+ *
+ * java jmbd.i2c.mpu6050.benchmark.MeasurementReadBenchmarks [busHz]
+ * [operations]
+ *
+ * or deploy MeasurementReadBenchmarkMIDlet to measure CPU cost on the target
+ * VM.
+ *
+ * The model is ticked from the benchmark thread (ReadBenchmark.prepare())
+ * rather than by its sampler thread, so that the allocation figures are those
+ * of the read strategy alone.
+ *
+ * @author savvas
+ */
+public class MeasurementReadBenchmarks {
+
+    public static final int DEFAULT_BUS_FREQUENCY_HZ = 400_000;
+    public static final int DEFAULT_OPERATIONS = 20_000;
+
+    private static final long MODEL_SEED = 6050;
+
+    private final int busFrequencyHz;
+    private final BenchmarkRunner runner;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) busFrequencyHz >= 0 (0 for no bus latency, i.e. pure CPU cost)
+     *
+     * 2) operations > 0
+     *
+     * @param busFrequencyHz
+     * @param operations
+     */
+    public MeasurementReadBenchmarks(int busFrequencyHz, int operations) {
+
+        assert busFrequencyHz >= 0 : "busFrequencyHz is negative";
+        assert operations > 0 : "operations not positive";
+
+        this.busFrequencyHz = busFrequencyHz;
+        // warm-up long enough for the JIT to settle on the hot paths..
+        this.runner = new BenchmarkRunner(Math.max(operations / 4, 1_000), operations);
+    }
+
+    /**
+     * Runs all benchmarks one after the other, each one against a freshly
+     * configured device, printing results as they come.
+     *
+     * REQUIRES:
+     *
+     * out not null
+     *
+     * @param out
+     * @return results in the order listed in the class description
+     */
+    public BenchmarkResult[] runAll(PrintStream out) {
+
+        assert out != null : "out is null";
+
+        out.println("MPU-6050 read strategies, bus " + (busFrequencyHz == 0 ? "without latency" : busFrequencyHz + "Hz") + ", one device sample per read");
+
+        String[] names = {"combined-message", "multi-read", "block", "frame-burst"};
+        BenchmarkResult[] results = new BenchmarkResult[names.length];
+
+        for (int b = 0; b < names.length; b++) {
+            Mpu6050Model model = new Mpu6050Model(MODEL_SEED);
+            SimulatedI2CDevice device = new SimulatedI2CDevice(model, busFrequencyHz == 0 ? SimulatedBus.instant() : SimulatedBus.i2c(busFrequencyHz));
+
+            configure(device);
+            try {
+                results[b] = runner.run(benchmark(names[b], model, device));
+                out.println(results[b]);
+            } finally {
+                try {
+                    device.close();
+                } catch (IOException ex) {
+                    // Ignore
+                }
+                // a new device per benchmark, its buffer pool would only pile up otherwise..
+                ByteBufferAccessOptimisation.discard(device);
+            }
+        }
+        return results;
+    }
+
+    private static void configure(SimulatedI2CDevice device) {
+
+        Mpu6050DeviceConfiguration configuration = new Mpu6050DeviceConfiguration(new I2CRegisterValue(device));
+        configuration.wakeUp();
+        configuration.updateDigitalLowPassFilter(DigitalLowPassFilter.HZ_44);
+        configuration.updateSampleRateDivider(0);
+    }
+
+    private static ReadBenchmark benchmark(String name, Mpu6050Model model, SimulatedI2CDevice device) {
+
+        switch (name) {
+            case "combined-message":
+                return measurement(name, model, new CombinedMessageMeasurementRegisterValue(device));
+            case "multi-read":
+                return measurement(name, model, new MultiReadMeasurementRegisterValue(new I2CRegisterValue(device)));
+            case "block":
+                return measurement(name, model, new BlockMeasurementRegisterValue(new I2CRegisterBlock(device, 2)));
+            default:
+                return frame(name, model, new I2CBurstMeasurementRead(device));
+        }
+    }
+
+    private static ReadBenchmark measurement(String name, final Mpu6050Model model, final MeasurementRegisterValue value) {
+
+        value.setHighRegisterAddr(RegisterAddress.ACCEL_XOUT_H);
+        value.setLowRegisterAddr(RegisterAddress.ACCEL_XOUT_L);
+
+        return new ReadBenchmark(name, 1) {
+
+            @Override
+            public void prepare() {
+
+                model.tick();
+            }
+
+            @Override
+            public int operation() {
+
+                value.load();
+                return value.getValue();
+            }
+        };
+    }
+
+    private static ReadBenchmark frame(String name, final Mpu6050Model model, final I2CBurstMeasurementRead read) {
+
+        final MeasurementFrame frame = new MeasurementFrame();
+
+        return new ReadBenchmark(name, MeasurementFrame.CHANNEL_COUNT) {
+
+            @Override
+            public void prepare() {
+
+                model.tick();
+            }
+
+            @Override
+            public int operation() {
+
+                read.load(frame);
+                return frame.getXAccel();
+            }
+        };
+    }
+
+    public static void main(String[] args) {
+
+        int busFrequencyHz = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BUS_FREQUENCY_HZ;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_OPERATIONS;
+
+        new MeasurementReadBenchmarks(busFrequencyHz, operations).runAll(System.out);
+    }
+}
@@ -0,0 +1,75 @@
+package jmbd.i2c.mpu6050.benchmark;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * One way of getting measurements out of the device, as exercised by
+ * BenchmarkRunner.
+ *
+ * Implementations must not allocate in operation() other than what the read
+ * strategy itself allocates, otherwise allocation figures become meaningless.
+ *
+ * @author savvas
+ */
+public abstract class ReadBenchmark {
+
+    private final String name;
+    private final int samplesPerOperation;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) name not null
+     *
+     * 2) samplesPerOperation > 0
+     *
+     * @param name
+     * @param samplesPerOperation how many 16-bit measurements each operation
+     * yields
+     */
+    protected ReadBenchmark(String name, int samplesPerOperation) {
+
+        assert name != null : "name is null";
+        assert samplesPerOperation > 0 : "samplesPerOperation not positive";
+
+        this.name = name;
+        this.samplesPerOperation = samplesPerOperation;
+    }
+
+    public String getName() {
+
+        return name;
+    }
+
+    public int getSamplesPerOperation() {
+
+        return samplesPerOperation;
+    }
+
+    /**
+     * Called before each operation(), outside the timed (and allocation
+     * counted) part, e.g. for making the device produce a new sample. Does
+     * nothing by default.
+     */
+    public void prepare() {
+
+        // NOP
+    }
+
+    /**
+     * Performs one read.
+     *
+     * @return something derived from what was read so the JIT can not
+     * eliminate the read
+     */
+    public abstract int operation();
+}
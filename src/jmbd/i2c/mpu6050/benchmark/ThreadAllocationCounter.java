@@ -0,0 +1,71 @@
+package jmbd.i2c.mpu6050.benchmark;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Bytes allocated by the current thread, as counted by the (SE only)
+ * com.sun.management.ThreadMXBean.
+ *
+ * allocatedBytes() may only be called once isAvailable() said so: on VMs
+ * without java.lang.management (e.g. Java ME) it would fail to link.
+ *
+ * @author savvas
+ */
+final class ThreadAllocationCounter {
+
+    private ThreadAllocationCounter() {
+    }
+
+    /**
+     * @return true if allocatedBytes() can be used on this VM
+     */
+    static boolean isAvailable() {
+
+        try {
+            Class.forName("com.sun.management.ThreadMXBean");
+
+            return enable();
+        } catch (ClassNotFoundException | LinkageError | UnsupportedOperationException ex) {
+            return false;
+        }
+    }
+
+    private static boolean enable() {
+
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return false;
+        }
+
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        if (!bean.isThreadAllocatedMemorySupported()) {
+            return false;
+        }
+        bean.setThreadAllocatedMemoryEnabled(true);
+
+        return bean.isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * isAvailable()
+     *
+     * @return bytes allocated by the current thread so far
+     */
+    static long allocatedBytes() {
+
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,187 @@
+package jmbd.i2c.mpu6050.calibration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Values of the accelerometer (XA/YA/ZA_OFFS) and gyroscope (XG/YG/ZG_OFFS_USR)
+ * offset registers, i.e. what the device needs in order to correct its own
+ * measurements.
+ *
+ * Accelerometer offsets are in +-16g units (2048 LSB/g) and include the
+ * reserved bit 0 of the device's factory trim, gyroscope offsets are in
+ * +-1000 degrees/s units (32.8 LSB/degrees/s).
+ *
+ * @author savvas
+ */
+public class CalibrationProfile {
+
+    public static final int X = 0;
+    public static final int Y = 1;
+    public static final int Z = 2;
+    public static final int AXIS_COUNT = 3;
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private final short[] accelOffsets;
+    private final short[] gyroOffsets;
+
+    /**
+     * ENSURES:
+     *
+     * all offsets == 0
+     */
+    public CalibrationProfile() {
+
+        accelOffsets = new short[AXIS_COUNT];
+        gyroOffsets = new short[AXIS_COUNT];
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * axis BETWEEN [0 - AXIS_COUNT)
+     *
+     * @param axis
+     * @return
+     */
+    public short getAccelOffset(int axis) {
+
+        assert axis >= 0 && axis < AXIS_COUNT : "axis not in [0 - " + AXIS_COUNT + ") range";
+
+        return accelOffsets[axis];
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * axis BETWEEN [0 - AXIS_COUNT)
+     *
+     * ENSURES:
+     *
+     * getAccelOffset(axis) == offset
+     *
+     * @param axis
+     * @param offset
+     */
+    public void setAccelOffset(int axis, short offset) {
+
+        assert axis >= 0 && axis < AXIS_COUNT : "axis not in [0 - " + AXIS_COUNT + ") range";
+
+        accelOffsets[axis] = offset;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * axis BETWEEN [0 - AXIS_COUNT)
+     *
+     * @param axis
+     * @return
+     */
+    public short getGyroOffset(int axis) {
+
+        assert axis >= 0 && axis < AXIS_COUNT : "axis not in [0 - " + AXIS_COUNT + ") range";
+
+        return gyroOffsets[axis];
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * axis BETWEEN [0 - AXIS_COUNT)
+     *
+     * ENSURES:
+     *
+     * getGyroOffset(axis) == offset
+     *
+     * @param axis
+     * @param offset
+     */
+    public void setGyroOffset(int axis, short offset) {
+
+        assert axis >= 0 && axis < AXIS_COUNT : "axis not in [0 - " + AXIS_COUNT + ") range";
+
+        gyroOffsets[axis] = offset;
+    }
+
+    /**
+     * Serialised form, see fromBytes().
+     *
+     * @return
+     */
+    public byte[] toBytes() {
+
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bos);
+
+            out.writeByte(FORMAT_VERSION);
+
+            for (int a = 0; a < AXIS_COUNT; a++) {
+                out.writeShort(accelOffsets[a]);
+            }
+            for (int a = 0; a < AXIS_COUNT; a++) {
+                out.writeShort(gyroOffsets[a]);
+            }
+            out.flush();
+
+            return bos.toByteArray();
+        } catch (IOException ex) {
+            // can't really happen with an in-memory stream..
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * raw not null
+     *
+     * @param raw as returned by toBytes()
+     * @return
+     * @throws IOException if raw is not a (supported) serialised profile
+     */
+    public static CalibrationProfile fromBytes(byte[] raw) throws IOException {
+
+        assert raw != null : "raw is null";
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+
+        byte version = in.readByte();
+
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported calibration profile version \"" + version + "\"");
+        }
+
+        CalibrationProfile p = new CalibrationProfile();
+
+        for (int a = 0; a < AXIS_COUNT; a++) {
+            p.accelOffsets[a] = in.readShort();
+        }
+        for (int a = 0; a < AXIS_COUNT; a++) {
+            p.gyroOffsets[a] = in.readShort();
+        }
+        return p;
+    }
+
+    @Override
+    public String toString() {
+
+        return "CalibrationProfile{" + "accelOffsets=[" + accelOffsets[X] + ", " + accelOffsets[Y] + ", " + accelOffsets[Z] + "], gyroOffsets=[" + gyroOffsets[X] + ", " + gyroOffsets[Y] + ", " + gyroOffsets[Z] + "]}";
+    }
+}
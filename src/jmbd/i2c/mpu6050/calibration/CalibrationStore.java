@@ -0,0 +1,120 @@
+package jmbd.i2c.mpu6050.calibration;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.microedition.rms.RecordStore;
+import javax.microedition.rms.RecordStoreException;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Keeps a CalibrationProfile in a record store so that it survives restarts.
+ *
+ * The profile is always kept as the first (and only) record of the store.
+ *
+ * @author savvas
+ */
+public class CalibrationStore {
+
+    public static final String DEFAULT_STORE_NAME = "mpu6050-calibration";
+
+    private static final int PROFILE_RECORD_ID = 1;
+
+    private final String storeName;
+
+    public CalibrationStore() {
+
+        this(DEFAULT_STORE_NAME);
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * storeName not null
+     *
+     * @param storeName
+     */
+    public CalibrationStore(String storeName) {
+
+        assert storeName != null : "storeName is null";
+
+        this.storeName = storeName;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * profile not null
+     *
+     * @param profile
+     */
+    public void save(CalibrationProfile profile) {
+
+        assert profile != null : "profile is null";
+
+        RecordStore rs = null;
+
+        try {
+            byte[] raw = profile.toBytes();
+            rs = RecordStore.openRecordStore(storeName, true);
+
+            if (rs.getNumRecords() == 0) {
+                rs.addRecord(raw, 0, raw.length);
+            } else {
+                rs.setRecord(PROFILE_RECORD_ID, raw, 0, raw.length);
+            }
+        } catch (RecordStoreException ex) {
+
+            Logger.getLogger(CalibrationStore.class.getName()).log(Level.SEVERE, null, ex);
+            throw new RuntimeException(ex);
+        } finally {
+            close(rs);
+        }
+    }
+
+    /**
+     * Previously saved profile, null if there is none (or it can't be read).
+     *
+     * @return
+     */
+    public CalibrationProfile load() {
+
+        RecordStore rs = null;
+
+        try {
+            rs = RecordStore.openRecordStore(storeName, true);
+
+            if (rs.getNumRecords() == 0) {
+                return null;
+            }
+            return CalibrationProfile.fromBytes(rs.getRecord(PROFILE_RECORD_ID));
+        } catch (RecordStoreException | IOException ex) {
+
+            Logger.getLogger(CalibrationStore.class.getName()).log(Level.WARNING, "Could not load calibration profile", ex);
+            return null;
+        } finally {
+            close(rs);
+        }
+    }
+
+    private void close(RecordStore rs) {
+
+        if (rs != null) {
+            try {
+                rs.closeRecordStore();
+            } catch (RecordStoreException ex) {
+                // Ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package jmbd.i2c.mpu6050.calibration;
+
+import jmbd.commons.TimeDelay;
+import jmbd.i2c.mpu6050.device.Mpu6050Sensor;
+import jmbd.i2c.mpu6050.device.RegisterAddress;
+import jmbd.i2c.mpu6050.register.block.RegisterBlock;
+import jmbd.i2c.mpu6050.register.measurement.MeasurementFrame;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Removes accelerometer and gyroscope bias by means of the device's own offset
+ * registers, so that corrected measurements come straight out of the sensor
+ * at no cost for the host.
+ *
+ * Bias is estimated by averaging a number of (burst) samples taken whilst the
+ * device is stationary and lying flat (Z-axis pointing up, i.e. Z measures
+ * +1g and X/Y measure 0g).
+ *
+ * Each set of offset registers (accelerometer, gyroscope) is read and written
+ * as a single register block.
+ *
+ * @author savvas
+ */
+public class Mpu6050Calibration {
+
+    public static final int DEFAULT_SAMPLE_COUNT = 1000;
+
+    // Offset register units
+    private static final float ACCEL_OFFSET_LSB_PER_G = 2048;
+    private static final float GYRO_OFFSET_LSB_PER_DPS = 32.8f;
+    // Any gyro spread (max - min) above this means the device moved whilst being calibrated
+    private static final float MAX_GYRO_SPREAD_DPS = 5;
+
+    /**
+     * Smallest block capacity able to hold one set of (X, Y, Z) offsets.
+     */
+    public static final int REQUIRED_BLOCK_CAPACITY = CalibrationProfile.AXIS_COUNT * 2;
+
+    protected Mpu6050Sensor sensor;
+    protected RegisterBlock block;
+    protected TimeDelay timeDelay;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) sensor not null
+     *
+     * 2) sensor.burstReadSupported()
+     *
+     * 3) sensor's full scale ranges match the device's configuration
+     *
+     * 4) block not null
+     *
+     * 5) block.getCapacity() >= REQUIRED_BLOCK_CAPACITY
+     *
+     * WARNING: Offset registers are written straight to the device, any
+     * ShadowRegisterValue in use needs to be refresh()'ed after apply() or
+     * calibrate().
+     *
+     * @param sensor
+     * @param block (exclusively) used for accessing the offset registers
+     */
+    public Mpu6050Calibration(Mpu6050Sensor sensor, RegisterBlock block) {
+
+        assert sensor != null : "sensor is null";
+        assert sensor.burstReadSupported() : "sensor does not support burst reads";
+        assert block != null : "block is null";
+        assert block.getCapacity() >= REQUIRED_BLOCK_CAPACITY : "block capacity less than " + REQUIRED_BLOCK_CAPACITY;
+
+        this.sensor = sensor;
+        this.block = block;
+        this.timeDelay = new TimeDelay();
+    }
+
+    /**
+     * Applies the profile found in store or, if there is none, calibrates the
+     * device and saves the resulting profile for next time.
+     *
+     * REQUIRES:
+     *
+     * 1) store not null
+     *
+     * 2) samples > 0
+     *
+     * @param store
+     * @param samples
+     * @return profile now in use by the device
+     */
+    public CalibrationProfile restoreOrCalibrate(CalibrationStore store, int samples) {
+
+        assert store != null : "store is null";
+
+        CalibrationProfile profile = store.load();
+
+        if (profile != null) {
+
+            apply(profile);
+        } else {
+
+            profile = calibrate(samples);
+            store.save(profile);
+        }
+        return profile;
+    }
+
+    /**
+     * Estimates the remaining bias and updates the offset registers
+     * accordingly.
+     *
+     * REQUIRES:
+     *
+     * 1) samples > 0
+     *
+     * 2) device stationary and lying flat (Z-axis up)
+     *
+     * @param samples
+     * @return profile now in use by the device
+     * @throws IllegalStateException if the device moved whilst sampling or
+     * more reads failed than samples were asked for
+     */
+    public CalibrationProfile calibrate(int samples) {
+
+        assert samples > 0 : "samples is zero or negative";
+
+        MeasurementFrame frame = new MeasurementFrame();
+        long[] sums = new long[MeasurementFrame.CHANNEL_COUNT];
+        int[] min = new int[MeasurementFrame.CHANNEL_COUNT];
+        int[] max = new int[MeasurementFrame.CHANNEL_COUNT];
+
+        for (int c = 0; c < MeasurementFrame.CHANNEL_COUNT; c++) {
+            min[c] = Short.MAX_VALUE;
+            max[c] = Short.MIN_VALUE;
+        }
+
+        int failed = 0;
+
+        for (int i = 0; i < samples;) {
+
+            if (!sensor.sample(frame)) {
+                // failed reads are not averaged in, another sample is taken instead..
+                if (++failed > samples) {
+                    throw new IllegalStateException("Too many failed reads during calibration (" + failed + ")");
+                }
+                timeDelay.pauseMillis(1);
+                continue;
+            }
+
+            for (int c = 0; c < MeasurementFrame.CHANNEL_COUNT; c++) {
+
+                short v = frame.getValue(c);
+                sums[c] += v;
+                min[c] = Math.min(min[c], v);
+                max[c] = Math.max(max[c], v);
+            }
+            ++i;
+            // 1KHz, no point reading the same sample again and again..
+            timeDelay.pauseMillis(1);
+        }
+
+        float accelSensitivity = sensor.getAccelFullScale().getSensitivity();
+        float gyroSensitivity = sensor.getGyroFullScale().getSensitivity();
+
+        for (int c = MeasurementFrame.GYRO_X; c <= MeasurementFrame.GYRO_Z; c++) {
+
+            if ((max[c] - min[c]) / gyroSensitivity > MAX_GYRO_SPREAD_DPS) {
+                throw new IllegalStateException("Device moved during calibration (gyro channel " + c + " spread is " + (max[c] - min[c]) + ")");
+            }
+        }
+
+        // offsets are relative to whatever is currently in the registers
+        CalibrationProfile profile = readCurrent();
+
+        for (int a = 0; a < CalibrationProfile.AXIS_COUNT; a++) {
+
+            float expected = (a == CalibrationProfile.Z) ? accelSensitivity : 0;
+            float accelBias = sums[MeasurementFrame.ACCEL_X + a] / (float) samples - expected;
+            float gyroBias = sums[MeasurementFrame.GYRO_X + a] / (float) samples;
+
+            int accelCorrection = Math.round(accelBias * ACCEL_OFFSET_LSB_PER_G / accelSensitivity);
+            int gyroCorrection = Math.round(gyroBias * GYRO_OFFSET_LSB_PER_DPS / gyroSensitivity);
+
+            int accelOffset = profile.getAccelOffset(a);
+            // bit 0 is reserved (temperature compensation) and must be preserved,
+            // merged back in after saturating so that clamping can not flip it..
+            int newAccelOffset = (saturate(accelOffset - accelCorrection) & ~1) | (accelOffset & 1);
+
+            profile.setAccelOffset(a, (short) newAccelOffset);
+            profile.setGyroOffset(a, saturate(profile.getGyroOffset(a) - gyroCorrection));
+        }
+
+        apply(profile);
+
+        return profile;
+    }
+
+    /**
+     * Current content of the offset registers.
+     *
+     * @return
+     */
+    public CalibrationProfile readCurrent() {
+
+        CalibrationProfile profile = new CalibrationProfile();
+
+        block.setRange(RegisterAddress.XA_OFFS_H, REQUIRED_BLOCK_CAPACITY);
+        block.load();
+
+        for (int a = 0; a < CalibrationProfile.AXIS_COUNT; a++) {
+            profile.setAccelOffset(a, block.getShort(a * 2));
+        }
+
+        block.setRange(RegisterAddress.XG_OFFS_USRH, REQUIRED_BLOCK_CAPACITY);
+        block.load();
+
+        for (int a = 0; a < CalibrationProfile.AXIS_COUNT; a++) {
+            profile.setGyroOffset(a, block.getShort(a * 2));
+        }
+        return profile;
+    }
+
+    /**
+     * Writes given profile into the offset registers.
+     *
+     * REQUIRES:
+     *
+     * profile not null
+     *
+     * @param profile
+     */
+    public void apply(CalibrationProfile profile) {
+
+        assert profile != null : "profile is null";
+
+        block.setRange(RegisterAddress.XA_OFFS_H, REQUIRED_BLOCK_CAPACITY);
+
+        for (int a = 0; a < CalibrationProfile.AXIS_COUNT; a++) {
+            block.setShort(a * 2, profile.getAccelOffset(a));
+        }
+        block.store();
+
+        block.setRange(RegisterAddress.XG_OFFS_USRH, REQUIRED_BLOCK_CAPACITY);
+
+        for (int a = 0; a < CalibrationProfile.AXIS_COUNT; a++) {
+            block.setShort(a * 2, profile.getGyroOffset(a));
+        }
+        block.store();
+    }
+
+    private static short saturate(int v) {
+
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, v));
+    }
+}
@@ -14,15 +14,28 @@ package jmbd.i2c.mpu6050.configuration;
  *
  * @author savvas
  */
-public enum AccelFullScaleRange {
+public enum AccelFullScaleRange implements FieldValue {
 
-    G_2(16384), G_4(8192), G_8(4096), G_16(2048);
+    G_2(16384, 0), G_4(8192, 1), G_8(4096, 2), G_16(2048, 3);
 
     private final int sensitivity;
+    private final int fieldValue;
 
-    private AccelFullScaleRange(int lsbSensitivity) {
+    private AccelFullScaleRange(int lsbSensitivity, int afsSel) {
 
         this.sensitivity = lsbSensitivity;
+        this.fieldValue = afsSel;
+    }
+
+    /**
+     * AFS_SEL value (see RegisterField.ACCEL_FS_SEL).
+     *
+     * @return
+     */
+    @Override
+    public int getFieldValue() {
+
+        return fieldValue;
     }
 
     public int getSensitivity() {
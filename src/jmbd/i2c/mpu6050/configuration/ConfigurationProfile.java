@@ -0,0 +1,186 @@
+package jmbd.i2c.mpu6050.configuration;
+
+import jmbd.i2c.mpu6050.device.RegisterAddress;
+import jmbd.i2c.mpu6050.register.configuration.RegisterValue;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * A set of field updates applied with as few bus operations as possible.
+ *
+ * Updates of fields in the same register are merged so that each register is
+ * written once; registers whose bits are all being set are written straight
+ * away whilst the rest need a single read-modify-write cycle (no read at all
+ * if the RegisterValue is a ShadowRegisterValue).
+ *
+ * Registers are written in the order they were first touched.
+ *
+ * Profiles can be reused: apply() leaves them untouched whilst clear() empties
+ * them.
+ *
+ * @author savvas
+ */
+public class ConfigurationProfile {
+
+    private static final int REGISTER_COUNT = 128;
+    private static final int FULL_MASK = 0xFF;
+
+    // Indexed by register address
+    private final int[] masks;
+    private final int[] bits;
+
+    private final RegisterAddress[] touched;
+    private int touchedCount;
+
+    /**
+     * ENSURES:
+     *
+     * isEmpty()
+     */
+    public ConfigurationProfile() {
+
+        masks = new int[REGISTER_COUNT];
+        bits = new int[REGISTER_COUNT];
+        touched = new RegisterAddress[REGISTER_COUNT];
+
+        assert isEmpty() : "profile not empty";
+    }
+
+    /**
+     * Field value to apply, overriding any previous value of the same field.
+     *
+     * REQUIRES:
+     *
+     * 1) field not null
+     *
+     * 2) field.accepts(value)
+     *
+     * @param field
+     * @param value
+     * @return this profile
+     */
+    public ConfigurationProfile set(RegisterField field, int value) {
+
+        assert field != null : "field is null";
+        assert field.accepts(value) : "value \"" + value + "\" does not fit in " + field;
+
+        int a = field.getRegister().getValue() & (REGISTER_COUNT - 1);
+
+        if (masks[a] == 0) {
+            touched[touchedCount++] = field.getRegister();
+        }
+
+        masks[a] |= field.getMask();
+        bits[a] = (bits[a] & ~field.getMask()) | field.encode(value);
+
+        return this;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * field not null (and typically one bit wide)
+     *
+     * @param field
+     * @param on
+     * @return this profile
+     */
+    public ConfigurationProfile set(RegisterField field, boolean on) {
+
+        return set(field, on ? 1 : 0);
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * 1) field not null
+     *
+     * 2) value not null
+     *
+     * @param field
+     * @param value
+     * @return this profile
+     */
+    public ConfigurationProfile set(RegisterField field, FieldValue value) {
+
+        assert value != null : "value is null";
+
+        return set(field, value.getFieldValue());
+    }
+
+    /**
+     * How many registers will apply() write?
+     *
+     * @return
+     */
+    public int getRegisterCount() {
+
+        return touchedCount;
+    }
+
+    public boolean isEmpty() {
+
+        return touchedCount == 0;
+    }
+
+    /**
+     * Writes all field values, one store() (and at most one load()) per
+     * register.
+     *
+     * REQUIRES:
+     *
+     * registerValue not null
+     *
+     * @param registerValue
+     */
+    public void apply(RegisterValue registerValue) {
+
+        assert registerValue != null : "registerValue is null";
+
+        for (int i = 0; i < touchedCount; i++) {
+
+            RegisterAddress register = touched[i];
+            int a = register.getValue() & (REGISTER_COUNT - 1);
+
+            registerValue.setRegisterAddress(register);
+
+            if (masks[a] == FULL_MASK) {
+                // whole register known, no need to read it first..
+                registerValue.setValue((byte) bits[a]);
+            } else {
+                registerValue.load();
+                registerValue.setValue((byte) ((registerValue.getValue() & ~masks[a]) | bits[a]));
+            }
+            registerValue.store();
+        }
+    }
+
+    /**
+     * ENSURES:
+     *
+     * isEmpty()
+     */
+    public void clear() {
+
+        for (int i = 0; i < touchedCount; i++) {
+
+            int a = touched[i].getValue() & (REGISTER_COUNT - 1);
+
+            masks[a] = 0;
+            bits[a] = 0;
+            touched[i] = null;
+        }
+        touchedCount = 0;
+
+        assert isEmpty() : "profile not empty";
+    }
+}
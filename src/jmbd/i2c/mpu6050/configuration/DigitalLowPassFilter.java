@@ -0,0 +1,76 @@
+package jmbd.i2c.mpu6050.configuration;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Digital low pass filter settings (DLPF_CFG bits of CONFIG register), named
+ * after the accelerometer bandwidth.
+ *
+ * The filter also determines the gyroscope output rate, i.e. the rate
+ * SMPLRT_DIV divides down to the actual sample rate.
+ *
+ * @author savvas
+ */
+public enum DigitalLowPassFilter implements FieldValue {
+
+    HZ_260(0, 260, 256, 8000),
+    HZ_184(1, 184, 188, 1000),
+    HZ_94(2, 94, 98, 1000),
+    HZ_44(3, 44, 42, 1000),
+    HZ_21(4, 21, 20, 1000),
+    HZ_10(5, 10, 10, 1000),
+    HZ_5(6, 5, 5, 1000);
+
+    private final int fieldValue;
+    private final int accelBandwidthHz;
+    private final int gyroBandwidthHz;
+    private final int gyroOutputRateHz;
+
+    private DigitalLowPassFilter(int dlpfCfg, int accelBandwidthHz, int gyroBandwidthHz, int gyroOutputRateHz) {
+
+        this.fieldValue = dlpfCfg;
+        this.accelBandwidthHz = accelBandwidthHz;
+        this.gyroBandwidthHz = gyroBandwidthHz;
+        this.gyroOutputRateHz = gyroOutputRateHz;
+    }
+
+    /**
+     * DLPF_CFG value (see RegisterField.DLPF_CFG).
+     *
+     * @return
+     */
+    @Override
+    public int getFieldValue() {
+
+        return fieldValue;
+    }
+
+    public int getAccelBandwidthHz() {
+
+        return accelBandwidthHz;
+    }
+
+    public int getGyroBandwidthHz() {
+
+        return gyroBandwidthHz;
+    }
+
+    /**
+     * Sample rate == getGyroOutputRateHz() / (1 + SMPLRT_DIV)
+     *
+     * @return
+     */
+    public int getGyroOutputRateHz() {
+
+        return gyroOutputRateHz;
+    }
+}
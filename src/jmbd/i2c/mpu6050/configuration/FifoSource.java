@@ -0,0 +1,83 @@
+package jmbd.i2c.mpu6050.configuration;
+
+import jmbd.i2c.mpu6050.register.measurement.MeasurementFrame;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Measurements that can be loaded into the FIFO buffer (see FIFO_EN register).
+ *
+ * Constants are declared in the order the device writes them into the FIFO
+ * buffer (i.e. ascending register address order) so values() can be used to
+ * decode a FIFO frame.
+ *
+ * @author savvas
+ */
+public enum FifoSource {
+
+    // ACCEL_XOUT_H..ACCEL_ZOUT_L
+    ACCEL(MeasurementFrame.ACCEL_X, 3, 3),
+    // TEMP_OUT_H/TEMP_OUT_L
+    TEMP(MeasurementFrame.TEMPERATURE, 1, 7),
+    // GYRO_XOUT_H/GYRO_XOUT_L
+    XG(MeasurementFrame.GYRO_X, 1, 6),
+    // GYRO_YOUT_H/GYRO_YOUT_L
+    YG(MeasurementFrame.GYRO_Y, 1, 5),
+    // GYRO_ZOUT_H/GYRO_ZOUT_L
+    ZG(MeasurementFrame.GYRO_Z, 1, 4);
+
+    private final int firstChannel;
+    private final int channelCount;
+    private final int bitIndex;
+
+    private FifoSource(int firstChannel, int channelCount, int bitIndex) {
+
+        this.firstChannel = firstChannel;
+        this.channelCount = channelCount;
+        this.bitIndex = bitIndex;
+    }
+
+    /**
+     * Index of the bit enabling this source in FIFO_EN register.
+     *
+     * @return
+     */
+    public int getBitIndex() {
+
+        return bitIndex;
+    }
+
+    /**
+     * First MeasurementFrame channel this source writes into.
+     *
+     * @return
+     */
+    public int getFirstChannel() {
+
+        return firstChannel;
+    }
+
+    public int getChannelCount() {
+
+        return channelCount;
+    }
+
+    /**
+     * Number of bytes this source adds to each FIFO frame.
+     *
+     * @return
+     */
+    public int getLengthBytes() {
+
+        return channelCount * 2;
+    }
+}
@@ -14,15 +14,28 @@ package jmbd.i2c.mpu6050.configuration;
  *
  * @author savvas
  */
-public enum GyroFullScaleRange {
+public enum GyroFullScaleRange implements FieldValue {
 
-    PLUS_MINUS_250(131), PLUS_MINUS_500(65.5f), PLUS_MINUS_1000(32.8f), PLUS_MINUS_2000(16.4f);
+    PLUS_MINUS_250(131, 0), PLUS_MINUS_500(65.5f, 1), PLUS_MINUS_1000(32.8f, 2), PLUS_MINUS_2000(16.4f, 3);
 
     private final float sensitivity;
+    private final int fieldValue;
 
-    private GyroFullScaleRange(float lsbSensitivity) {
+    private GyroFullScaleRange(float lsbSensitivity, int fsSel) {
 
         this.sensitivity = lsbSensitivity;
+        this.fieldValue = fsSel;
+    }
+
+    /**
+     * FS_SEL value (see RegisterField.GYRO_FS_SEL).
+     *
+     * @return
+     */
+    @Override
+    public int getFieldValue() {
+
+        return fieldValue;
     }
 
     public float getSensitivity() {
@@ -17,9 +17,29 @@ package jmbd.i2c.mpu6050.configuration;
 public enum InterruptSource {
 
     // FIFO buffer overflow
-    FIFO_OFLOW,
+    FIFO_OFLOW(4),
     // I2C Master interrupt
-    I2C_MST_INT,
+    I2C_MST_INT(3),
     // Data Ready interrupt
-    DATA_RDY;
+    DATA_RDY(0),
+    // Motion detection interrupt
+    MOTION(6);
+
+    private final int bitIndex;
+
+    private InterruptSource(int bitIndex) {
+
+        this.bitIndex = bitIndex;
+    }
+
+    /**
+     * Index of the bit representing this source in both INT_ENABLE and
+     * INT_STATUS registers.
+     *
+     * @return
+     */
+    public int getBitIndex() {
+
+        return bitIndex;
+    }
 }
@@ -15,6 +15,11 @@ import jmbd.i2c.mpu6050.device.RegisterAddress;
  * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
  * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  *
+ * Device configuration in terms of register fields (see RegisterField), each
+ * method being a single read-modify-write cycle. Multiple settings can be
+ * applied at once, with the minimum number of bus operations, via
+ * apply(ConfigurationProfile).
+ *
  * @author savvas
  */
 public class Mpu6050DeviceConfiguration {
@@ -49,6 +54,22 @@ public class Mpu6050DeviceConfiguration {
         this.registerValue = registerValue;
     }
 
+    /**
+     * All field updates of profile, one write per register.
+     *
+     * REQUIRES:
+     *
+     * profile not null
+     *
+     * @param profile
+     */
+    public void apply(ConfigurationProfile profile) {
+
+        assert profile != null : "profile is null";
+
+        profile.apply(registerValue);
+    }
+
     /**
      * REQUIRES:
      *
@@ -60,33 +81,8 @@ public class Mpu6050DeviceConfiguration {
 
         assert newRange != null : "newRange is null";
 
-        registerValue.setRegisterAddress(RegisterAddress.ACCEL_CONFIG);
-        registerValue.load();
-
-        switch (newRange) {
-            // All current non-AFS_SEL values need to be preserved so just modify the AFS_SEL bits
-            case G_2:
-                // precondition met
-                registerValue.clearBit(4);
-                registerValue.clearBit(3);
-                break;
-            case G_4:
-                // precondition met
-                registerValue.clearBit(4);
-                registerValue.setBit(3);
-                break;
-            case G_8:
-                // precondition met
-                registerValue.setBit(4);
-                registerValue.clearBit(3);
-                break;
-            case G_16:
-                // precondition met
-                registerValue.setBit(4);
-                registerValue.setBit(3);
-                break;
-        }
-        registerValue.store();
+        // All current non-AFS_SEL values are preserved
+        update(RegisterField.ACCEL_FS_SEL, newRange.getFieldValue());
     }
 
     /**
@@ -100,33 +96,39 @@ public class Mpu6050DeviceConfiguration {
 
         assert newRange != null : "newRange is null";
 
-        registerValue.setRegisterAddress(RegisterAddress.GYRO_CONFIG);
-        registerValue.load();
+        // All current non-FS_SEL values are preserved
+        update(RegisterField.GYRO_FS_SEL, newRange.getFieldValue());
+    }
 
-        switch (newRange) {
-            // All current non-AFS_SEL values need to be preserved so just modify the AFS_SEL bits
-            case PLUS_MINUS_250:
-                // precondition met
-                registerValue.clearBit(4);
-                registerValue.clearBit(3);
-                break;
-            case PLUS_MINUS_500:
-                // precondition met
-                registerValue.clearBit(4);
-                registerValue.setBit(3);
-                break;
-            case PLUS_MINUS_1000:
-                // precondition met
-                registerValue.setBit(4);
-                registerValue.clearBit(3);
-                break;
-            case PLUS_MINUS_2000:
-                // precondition met
-                registerValue.setBit(4);
-                registerValue.setBit(3);
-                break;
-        }
-        registerValue.store();
+    /**
+     * REQUIRES:
+     *
+     * filter not null
+     *
+     * @param filter
+     */
+    public void updateDigitalLowPassFilter(DigitalLowPassFilter filter) {
+
+        assert filter != null : "filter is null";
+
+        update(RegisterField.DLPF_CFG, filter.getFieldValue());
+    }
+
+    /**
+     * Sample rate == gyroscope output rate / (1 + divider), see
+     * DigitalLowPassFilter.getGyroOutputRateHz().
+     *
+     * REQUIRES:
+     *
+     * divider BETWEEN [0 - 255]
+     *
+     * @param divider
+     */
+    public void updateSampleRateDivider(int divider) {
+
+        assert RegisterField.SMPLRT_DIV.accepts(divider) : "divider not in [0 - 255] range";
+
+        update(RegisterField.SMPLRT_DIV, divider);
     }
 
     /**
@@ -136,10 +138,7 @@ public class Mpu6050DeviceConfiguration {
      */
     public void wakeUp() {
 
-        registerValue.setRegisterAddress(RegisterAddress.PWR_MNG_CONFIG);
-        registerValue.load();
-        registerValue.clearBit(6);
-        registerValue.store();
+        update(RegisterField.SLEEP, 0);
     }
 
     /**
@@ -153,57 +152,130 @@ public class Mpu6050DeviceConfiguration {
 
         assert source != null : "source is null";
 
-        registerValue.setRegisterAddress(RegisterAddress.INT_ENABLE);
+        update(RegisterField.interruptEnable(source), 1);
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * source not null
+     *
+     * @param source
+     */
+    public void disableInterruptsForSource(InterruptSource source) {
+
+        assert source != null : "source is null";
+
+        update(RegisterField.interruptEnable(source), 0);
+    }
+
+    /**
+     * Is an interrupt currently raised for the given source (see INT_STATUS)?
+     *
+     * WARNING: Reading INT_STATUS clears all of its bits so interrupts raised
+     * for other sources at the same time will not be seen by subsequent calls.
+     *
+     * REQUIRES:
+     *
+     * source not null
+     *
+     * @param source
+     * @return
+     */
+    public boolean interruptRaisedForSource(InterruptSource source) {
+
+        assert source != null : "source is null";
+
+        RegisterField field = RegisterField.interruptStatus(source);
+
+        registerValue.setRegisterAddress(field.getRegister());
         registerValue.load();
 
-        switch (source) {
-
-            case DATA_RDY:
-                // precondition met
-                registerValue.setBit(0);
-                break;
-            case I2C_MST_INT:
-                // precondition met
-                registerValue.setBit(3);
-                break;
-            case FIFO_OFLOW:
-                // precondition met
-                registerValue.setBit(4);
-                break;
-        }
-        registerValue.store();
+        return field.decode(registerValue.getValue()) != 0;
     }
 
     /**
+     * Starts loading measurements of given source into the FIFO buffer.
+     *
      * REQUIRES:
      *
      * source not null
      *
      * @param source
      */
-    public void disableInterruptsForSource(InterruptSource source) {
+    public void enableFifoForSource(FifoSource source) {
 
         assert source != null : "source is null";
 
-        registerValue.setRegisterAddress(RegisterAddress.INT_ENABLE);
+        update(RegisterField.fifoEnable(source), 1);
+    }
 
+    /**
+     * REQUIRES:
+     *
+     * source not null
+     *
+     * @param source
+     */
+    public void disableFifoForSource(FifoSource source) {
+
+        assert source != null : "source is null";
+
+        update(RegisterField.fifoEnable(source), 0);
+    }
+
+    /**
+     * Turns the FIFO buffer on (FIFO_EN bit of USER_CTRL).
+     *
+     * Sources still need to be enabled individually via enableFifoForSource().
+     */
+    public void enableFifo() {
+
+        update(RegisterField.USER_FIFO_EN, 1);
+    }
+
+    public void disableFifo() {
+
+        update(RegisterField.USER_FIFO_EN, 0);
+    }
+
+    /**
+     * Empties the FIFO buffer (FIFO_RESET bit of USER_CTRL).
+     *
+     * From datasheet: "This bit should only be set when FIFO_EN is set to 0"
+     * hence the FIFO buffer is disabled first and then restored to whatever
+     * state it was in.
+     */
+    public void resetFifo() {
+
+        registerValue.setRegisterAddress(RegisterAddress.USER_CTRL);
         registerValue.load();
 
-        switch (source) {
-
-            case DATA_RDY:
-                // precondition met
-                registerValue.clearBit(0);
-                break;
-            case I2C_MST_INT:
-                // precondition met
-                registerValue.clearBit(3);
-                break;
-            case FIFO_OFLOW:
-                // precondition met
-                registerValue.clearBit(4);
-                break;
+        byte current = registerValue.getValue();
+        boolean wasEnabled = RegisterField.USER_FIFO_EN.decode(current) != 0;
+
+        current = RegisterField.USER_FIFO_EN.insert(current, 0);
+        registerValue.setValue(current);
+        registerValue.store();
+        // bit clears itself once reset is done..
+        registerValue.setValue(RegisterField.FIFO_RESET.insert(current, 1));
+        registerValue.store();
+
+        if (wasEnabled) {
+            registerValue.setValue(RegisterField.USER_FIFO_EN.insert(current, 1));
+            registerValue.store();
         }
+    }
+
+    /**
+     * Single read-modify-write cycle of the register field belongs to, all
+     * other bits preserved.
+     */
+    private void update(RegisterField field, int value) {
+
+        registerValue.setRegisterAddress(field.getRegister());
+        registerValue.load();
+        registerValue.setValue(field.insert(registerValue.getValue(), value));
         registerValue.store();
     }
 }
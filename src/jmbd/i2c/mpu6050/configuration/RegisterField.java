@@ -0,0 +1,228 @@
+package jmbd.i2c.mpu6050.configuration;
+
+import jmbd.i2c.mpu6050.device.RegisterAddress;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * A group of adjacent bits within a register holding a single setting, e.g.
+ * AFS_SEL (bits [4:3] of ACCEL_CONFIG).
+ *
+ * Masks are computed once, on construction, so encoding and decoding field
+ * values is a matter of a shift and an and.
+ *
+ * INVARIANTS:
+ *
+ * getFirstBit() + getWidth() <= 8
+ *
+ * @author savvas
+ */
+public final class RegisterField {
+
+    public static final RegisterField SMPLRT_DIV = new RegisterField(RegisterAddress.SMPRT_DIV, 0, 8);
+
+    public static final RegisterField DLPF_CFG = new RegisterField(RegisterAddress.CONFIG, 0, 3);
+    public static final RegisterField EXT_SYNC_SET = new RegisterField(RegisterAddress.CONFIG, 3, 3);
+
+    public static final RegisterField GYRO_FS_SEL = new RegisterField(RegisterAddress.GYRO_CONFIG, 3, 2);
+    public static final RegisterField ACCEL_FS_SEL = new RegisterField(RegisterAddress.ACCEL_CONFIG, 3, 2);
+
+    public static final RegisterField INT_RD_CLEAR = new RegisterField(RegisterAddress.INT_PIN_CFG, 4, 1);
+    public static final RegisterField LATCH_INT_EN = new RegisterField(RegisterAddress.INT_PIN_CFG, 5, 1);
+
+    public static final RegisterField FIFO_RESET = new RegisterField(RegisterAddress.USER_CTRL, 2, 1);
+    public static final RegisterField I2C_IF_DIS = new RegisterField(RegisterAddress.USER_CTRL, 4, 1);
+    // FIFO_EN bit of USER_CTRL, not to be confused with the FIFO_EN register
+    public static final RegisterField USER_FIFO_EN = new RegisterField(RegisterAddress.USER_CTRL, 6, 1);
+
+    public static final RegisterField CLKSEL = new RegisterField(RegisterAddress.PWR_MNG_CONFIG, 0, 3);
+    public static final RegisterField SLEEP = new RegisterField(RegisterAddress.PWR_MNG_CONFIG, 6, 1);
+
+    // values() returns a new array on every call..
+    private static final InterruptSource[] INTERRUPT_SOURCES = InterruptSource.values();
+    private static final FifoSource[] FIFO_SOURCES = FifoSource.values();
+
+    // Indexed by source ordinal
+    private static final RegisterField[] INTERRUPT_ENABLE = new RegisterField[INTERRUPT_SOURCES.length];
+    private static final RegisterField[] INTERRUPT_STATUS = new RegisterField[INTERRUPT_SOURCES.length];
+    private static final RegisterField[] FIFO_ENABLE = new RegisterField[FIFO_SOURCES.length];
+
+    static {
+        for (InterruptSource s : INTERRUPT_SOURCES) {
+            INTERRUPT_ENABLE[s.ordinal()] = new RegisterField(RegisterAddress.INT_ENABLE, s.getBitIndex(), 1);
+            INTERRUPT_STATUS[s.ordinal()] = new RegisterField(RegisterAddress.INT_STATUS, s.getBitIndex(), 1);
+        }
+        for (FifoSource s : FIFO_SOURCES) {
+            FIFO_ENABLE[s.ordinal()] = new RegisterField(RegisterAddress.FIFO_EN, s.getBitIndex(), 1);
+        }
+    }
+
+    private final RegisterAddress register;
+    private final int firstBit;
+    private final int width;
+
+    // in place, i.e. already shifted by firstBit
+    private final int mask;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) register not null
+     *
+     * 2) firstBit BETWEEN [0 - 7]
+     *
+     * 3) width BETWEEN [1 - 8 - firstBit]
+     *
+     * @param register
+     * @param firstBit lsb of the field
+     * @param width in bits
+     */
+    public RegisterField(RegisterAddress register, int firstBit, int width) {
+
+        assert register != null : "register is null";
+        assert firstBit >= 0 && firstBit <= 7 : "firstBit not in [0 - 7] range";
+        assert width > 0 && firstBit + width <= 8 : "width not in [1 - " + (8 - firstBit) + "] range";
+
+        this.register = register;
+        this.firstBit = firstBit;
+        this.width = width;
+        this.mask = ((1 << width) - 1) << firstBit;
+    }
+
+    /**
+     * Enable bit of source in INT_ENABLE.
+     *
+     * @param source
+     * @return
+     */
+    public static RegisterField interruptEnable(InterruptSource source) {
+
+        return INTERRUPT_ENABLE[source.ordinal()];
+    }
+
+    /**
+     * Status bit of source in INT_STATUS.
+     *
+     * @param source
+     * @return
+     */
+    public static RegisterField interruptStatus(InterruptSource source) {
+
+        return INTERRUPT_STATUS[source.ordinal()];
+    }
+
+    /**
+     * Enable bit of source in FIFO_EN.
+     *
+     * @param source
+     * @return
+     */
+    public static RegisterField fifoEnable(FifoSource source) {
+
+        return FIFO_ENABLE[source.ordinal()];
+    }
+
+    public RegisterAddress getRegister() {
+
+        return register;
+    }
+
+    public int getFirstBit() {
+
+        return firstBit;
+    }
+
+    public int getWidth() {
+
+        return width;
+    }
+
+    /**
+     * Bits of the register covered by this field.
+     *
+     * @return
+     */
+    public int getMask() {
+
+        return mask;
+    }
+
+    /**
+     * Does value fit in the field?
+     *
+     * @param value
+     * @return
+     */
+    public boolean accepts(int value) {
+
+        return value >= 0 && value < (1 << width);
+    }
+
+    /**
+     * value in place, i.e. shifted into the field bits.
+     *
+     * REQUIRES:
+     *
+     * accepts(value)
+     *
+     * @param value
+     * @return
+     */
+    public int encode(int value) {
+
+        assert accepts(value) : "value \"" + value + "\" does not fit in " + this;
+
+        return (value << firstBit) & mask;
+    }
+
+    /**
+     * Value of the field in given register value.
+     *
+     * @param registerValue
+     * @return
+     */
+    public int decode(byte registerValue) {
+
+        return (registerValue & mask) >>> firstBit;
+    }
+
+    /**
+     * Given register value with the field replaced by value, all other bits
+     * preserved.
+     *
+     * REQUIRES:
+     *
+     * accepts(value)
+     *
+     * ENSURES:
+     *
+     * decode(result) == value
+     *
+     * @param registerValue
+     * @param value
+     * @return
+     */
+    public byte insert(byte registerValue, int value) {
+
+        byte result = (byte) ((registerValue & ~mask) | encode(value));
+
+        assert decode(result) == value : "field not updated";
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+
+        return "RegisterField{" + register + "[" + (firstBit + width - 1) + ":" + firstBit + "]}";
+    }
+}
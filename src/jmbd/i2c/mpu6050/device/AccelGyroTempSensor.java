@@ -29,4 +29,12 @@ public interface AccelGyroTempSensor {
     short getYGyro();
 
     short getZGyro();
+
+    /**
+     * Did the last getter read the device? Its result is stale otherwise (e.g.
+     * an error policy gave up on the read).
+     *
+     * @return
+     */
+    boolean lastReadValid();
 }
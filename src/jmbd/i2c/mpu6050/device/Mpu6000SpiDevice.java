@@ -0,0 +1,144 @@
+package jmbd.i2c.mpu6050.device;
+
+import jmbd.commons.CommonOperationsMIDlet;
+import jmbd.commons.TimeDelay;
+import jmbd.commons.error.DeviceErrorPolicy;
+import jmbd.i2c.mpu6050.configuration.ConfigurationProfile;
+import jmbd.i2c.mpu6050.configuration.DigitalLowPassFilter;
+import jmbd.i2c.mpu6050.configuration.Mpu6050DeviceConfiguration;
+import jmbd.i2c.mpu6050.configuration.RegisterField;
+import jmbd.i2c.mpu6050.register.block.SpiRegisterBlock;
+import jmbd.i2c.mpu6050.register.configuration.ShadowRegisterValue;
+import jmbd.i2c.mpu6050.register.configuration.SpiConfigurationRegisterValue;
+import jmbd.i2c.mpu6050.register.measurement.BlockBurstMeasurementRead;
+import jmbd.i2c.mpu6050.register.measurement.BlockMeasurementRegisterValue;
+import jmbd.i2c.mpu6050.register.measurement.MeasurementFrame;
+import java.io.IOException;
+import jdk.dio.Device;
+import jdk.dio.DeviceManager;
+import jdk.dio.spibus.SPIDevice;
+import jdk.dio.spibus.SPIDeviceConfig;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Same sensor and configuration classes as Mpu6050Device, on an MPU-6000 over
+ * SPI.
+ *
+ * The device only accepts register writes at up to 1MHz whilst sensor
+ * registers can be read at up to 20MHz, so configuration happens over a
+ * "slow" SPIDevice which is then closed and replaced by a "fast" one used for
+ * sampling only (clock frequency can not change once a device is open).
+ *
+ * @author savvas
+ */
+public class Mpu6000SpiDevice extends CommonOperationsMIDlet {
+
+    private static final int SPI_CONTROLLER_NUMBER = 0;
+    private static final int SPI_CONTROLLER_ADDRESS = 0;
+    private static final int CONFIGURATION_CLOCK_FREQUENCY = 1_000_000;
+    private static final int SENSOR_CLOCK_FREQUENCY = 20_000_000;
+    // CPOL = 1, CPHA = 1
+    private static final int CLOCK_MODE = 3;
+    private static final int WORD_LENGTH = 8;
+
+    private SPIDevice mpu6000;
+
+    private Mpu6050DeviceConfiguration configuration;
+    private Mpu6050Sensor sensor;
+    private TimeDelay timeDelay;
+
+    @Override
+    public void startApp() {
+
+        try {
+            timeDelay = new TimeDelay();
+
+            mpu6000 = buildDevice(CONFIGURATION_CLOCK_FREQUENCY);
+            configure();
+            closeDeviceIgnoringExceptions(mpu6000);
+
+            mpu6000 = buildDevice(SENSOR_CLOCK_FREQUENCY);
+            // one block for single measurements, one for bursts (the latter keeps its range for good)..
+            SpiRegisterBlock measurementBlock = new SpiRegisterBlock(mpu6000, 2);
+            SpiRegisterBlock burstBlock = new SpiRegisterBlock(mpu6000, MeasurementFrame.LENGTH_BYTES);
+            // sampling skips the odd failed read rather than stopping..
+            DeviceErrorPolicy policy = DeviceErrorPolicy.tolerant("mpu6000 sampling");
+            measurementBlock.setErrorPolicy(policy);
+            burstBlock.setErrorPolicy(policy);
+
+            sensor = new Mpu6050Sensor(new BlockMeasurementRegisterValue(measurementBlock), new BlockBurstMeasurementRead(burstBlock));
+
+            printFrames(200);
+        } catch (IOException ex) {
+
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void configure() {
+
+        ShadowRegisterValue regValue = new ShadowRegisterValue(new SpiConfigurationRegisterValue(mpu6000), new SpiRegisterBlock(mpu6000, ShadowRegisterValue.REQUIRED_BLOCK_CAPACITY));
+        regValue.refresh();
+
+        configuration = new Mpu6050DeviceConfiguration(regValue);
+        // Not much can be done unless we wake device up..
+        configuration.wakeUp();
+        timeDelay.pauseMillis(1_00);
+
+        ConfigurationProfile profile = new ConfigurationProfile();
+        // SPI only from now on, stops the I2C slave interface from getting in the way
+        profile.set(RegisterField.I2C_IF_DIS, true);
+        // DLPF off (CONFIG == 0) and SMPLRT_DIV == 0, i.e. the full 8KHz gyro output rate
+        profile.set(RegisterField.DLPF_CFG, DigitalLowPassFilter.HZ_260);
+        profile.set(RegisterField.EXT_SYNC_SET, 0);
+        profile.set(RegisterField.SMPLRT_DIV, 0);
+
+        configuration.apply(profile);
+    }
+
+    private void printFrames(int times) {
+
+        MeasurementFrame frame = new MeasurementFrame();
+
+        for (int i = 0; i < times; i++) {
+
+            if (sensor.sample(frame)) {
+                System.out.println(frame);
+            } else {
+                System.out.println("Sample skipped, read failed");
+            }
+
+            timeDelay.pauseMillis(5_00);
+        }
+    }
+
+    @Override
+    public void destroyApp(boolean unconditional) {
+
+        closeDeviceIgnoringExceptions(mpu6000);
+    }
+
+    private SPIDevice buildDevice(int clockFrequency) throws IOException {
+
+        SPIDeviceConfig.Builder b = new SPIDeviceConfig.Builder();
+        b.setClockFrequency(clockFrequency);
+        b.setClockMode(CLOCK_MODE);
+        b.setWordLength(WORD_LENGTH);
+        b.setAddress(SPI_CONTROLLER_ADDRESS);
+        b.setControllerNumber(SPI_CONTROLLER_NUMBER);
+        b.setBitOrdering(Device.BIG_ENDIAN);
+        b.setCSActiveLevel(SPIDeviceConfig.CS_ACTIVE_LOW);
+
+        return DeviceManager.open(b.build());
+    }
+}
@@ -2,12 +2,24 @@ package jmbd.i2c.mpu6050.device;
 
 import jmbd.commons.CommonOperationsMIDlet;
 import jmbd.commons.TimeDelay;
+import jmbd.commons.error.DeviceErrorPolicy;
+import jmbd.commons.metrics.MetricsRegistry;
+import jmbd.i2c.bus.BusPriority;
+import jmbd.i2c.bus.I2CBusScheduler;
+import jmbd.i2c.bus.ScheduledI2CDevice;
+import jmbd.i2c.mpu6050.configuration.ConfigurationProfile;
+import jmbd.i2c.mpu6050.configuration.DigitalLowPassFilter;
 import jmbd.i2c.mpu6050.configuration.InterruptSource;
 import jmbd.i2c.mpu6050.configuration.Mpu6050DeviceConfiguration;
+import jmbd.i2c.mpu6050.configuration.RegisterField;
 import jmbd.i2c.mpu6050.interrupt.TemperatureEventListener;
+import jmbd.i2c.mpu6050.register.block.I2CRegisterBlock;
 import jmbd.i2c.mpu6050.register.configuration.I2CRegisterValue;
 import jmbd.i2c.mpu6050.register.configuration.RegisterValue;
+import jmbd.i2c.mpu6050.register.configuration.ShadowRegisterValue;
 import jmbd.i2c.mpu6050.register.measurement.CombinedMessageMeasurementRegisterValue;
+import jmbd.i2c.mpu6050.register.measurement.I2CBurstMeasurementRead;
+import jmbd.i2c.mpu6050.register.measurement.MeasurementFrame;
 import jmbd.i2c.mpu6050.register.measurement.MultiReadMeasurementRegisterValue;
 import jmbd.i2c.mpu6050.interrupt.UdpDispatchTemperatureEventListener;
 import java.io.IOException;
@@ -52,11 +64,16 @@ public class Mpu6050Device extends CommonOperationsMIDlet {
     public void startApp() {
 
         try {
-            mpu6050 = buildDevice();
-
-            regValue = new I2CRegisterValue(mpu6050);
+            // all transactions (sampling, configuration, interrupt handling) serialised by the bus owner thread,
+            // shared with any other device on the bus..
+            mpu6050 = new ScheduledI2CDevice(buildDevice(), I2CBusScheduler.forBus(IC2_BUS_NUMBER), "mpu6050", BusPriority.REAL_TIME);
+
+            ShadowRegisterValue shadow = new ShadowRegisterValue(new I2CRegisterValue(mpu6050), new I2CRegisterBlock(mpu6050, ShadowRegisterValue.REQUIRED_BLOCK_CAPACITY));
+            // all configuration registers in a couple of reads, from now on only writes hit the bus..
+            shadow.refresh();
+            regValue = shadow;
             configuration = new Mpu6050DeviceConfiguration(regValue);
-            sensor = new Mpu6050Sensor(new CombinedMessageMeasurementRegisterValue(mpu6050));
+            sensor = buildSensor();
             timeDelay = new TimeDelay();
 
             // Not much can be done unless we wake device up..
@@ -71,8 +88,8 @@ public class Mpu6050Device extends CommonOperationsMIDlet {
             System.out.println("Starting listener..");
             //interruptPin = buildInputPin();
 
-            // Driver will complain if sensor values are read in multiple places so either uncomment the listener or the below but not both..
-            printMeasurements(200);
+            // Bus is arbitrated so sensor values can now be read in multiple places (listener and below)..
+            printFrames(200);
         } catch (IOException ex) {
 
             throw new RuntimeException(ex);
@@ -81,43 +98,30 @@ public class Mpu6050Device extends CommonOperationsMIDlet {
 
     private void turnOnInterrupts() {
 
-        regValue.setRegisterAddress(RegisterAddress.INT_PIN_CFG);
-        regValue.load();
-        System.out.println("Current value of INT_PIN_CFG is " + regValue);
-        // From datasheet: "When this bit is equal to 1, the INT pin is held high until the interrupt is cleared"
-        regValue.setBit(5);
-        regValue.store();
-        System.out.println("Current value of INT_PIN_CFG is " + regValue);
-
-        // interrupts related stuff
-        regValue.setRegisterAddress(RegisterAddress.INT_ENABLE);
-        regValue.load();
+        ConfigurationProfile profile = new ConfigurationProfile();
 
-        regValue.setRegisterAddress(RegisterAddress.SMPRT_DIV);
-        regValue.wipeOut();
+        // From datasheet: "When this bit is equal to 1, the INT pin is held high until the interrupt is cleared"
+        profile.set(RegisterField.LATCH_INT_EN, true);
         // make SMPLRT_DIV == 7 so that sampling rate becomes 1KHz (see register SMPRT_DIV(0x19) for details)
         // WARNING: Any rate > 1KHz will kill the runtime almost instantly (a "kworker" process is keeping rather busy too..)
-        regValue.setBit(0);
-        regValue.setBit(1);
-        regValue.setBit(2);
+        profile.set(RegisterField.SMPLRT_DIV, 7);
+        // CONFIG - 0x1A, zero-out all bits
+        profile.set(RegisterField.DLPF_CFG, DigitalLowPassFilter.HZ_260);
+        profile.set(RegisterField.EXT_SYNC_SET, 0);
+
+        System.out.println("Starting interrupts..");
+        profile.set(RegisterField.interruptEnable(InterruptSource.DATA_RDY), true);
+
+        // one write per register..
+        configuration.apply(profile);
 
-        regValue.store();
         // let's print what we just stored
+        regValue.setRegisterAddress(RegisterAddress.SMPRT_DIV);
         regValue.load();
         System.out.println("SMPRT_DIV val: " + regValue);
-
-        // CONFIG - 0x1A
         regValue.setRegisterAddress(RegisterAddress.CONFIG);
         regValue.load();
         System.out.println("CONFIG val: " + regValue);
-        // zero-out all bits
-        regValue.wipeOut();
-        regValue.store();
-        System.out.println("CONFIG val: " + regValue);
-
-        System.out.println("Starting interrupts..");
-
-        configuration.enableInterruptsForSource(InterruptSource.DATA_RDY);
         //timeDelay.pauseMillis(300_000);
     }
 
@@ -154,13 +158,44 @@ public class Mpu6050Device extends CommonOperationsMIDlet {
         }
     }
 
+    private void printFrames(int times) {
+
+        // one frame, one bus transaction per sample..
+        MeasurementFrame frame = new MeasurementFrame();
+
+        for (int i = 0; i < times; i++) {
+
+            if (sensor.sample(frame)) {
+                System.out.println(frame);
+            } else {
+                System.out.println("Sample skipped, read failed");
+            }
+
+            timeDelay.pauseMillis(5_00);
+        }
+    }
+
     @Override
     public void destroyApp(boolean unconditional) {
 
-        closeIgnoringExceptions(mpu6050);
+        closeDeviceIgnoringExceptions(mpu6050);
         closeIgnoringExceptions(interruptPin);
         closeIgnoringExceptions(interruptListener);
         turnOffInterrupts();
+        MetricsRegistry.getDefault().dump(System.out);
+    }
+
+    private Mpu6050Sensor buildSensor() {
+
+        // sampling skips the odd failed read rather than stopping, configuration writes still fail fast..
+        DeviceErrorPolicy policy = DeviceErrorPolicy.tolerant("mpu6050 sampling");
+
+        CombinedMessageMeasurementRegisterValue measurement = new CombinedMessageMeasurementRegisterValue(mpu6050);
+        measurement.setErrorPolicy(policy);
+        I2CBurstMeasurementRead burstRead = new I2CBurstMeasurementRead(mpu6050);
+        burstRead.setErrorPolicy(policy);
+
+        return new Mpu6050Sensor(measurement, burstRead);
     }
 
     private I2CDevice buildDevice() throws IOException {
@@ -183,8 +218,17 @@ public class Mpu6050Device extends CommonOperationsMIDlet {
 
         // Can use "transactional" reads or serialised individual reads depending on sensor configuration
         //Mpu6050Sensor s = new Mpu6050Sensor(new CombinedMessageMeasurementRegisterValue(mpu6050));
-        Mpu6050Sensor s = new Mpu6050Sensor(new MultiReadMeasurementRegisterValue(new I2CRegisterValue(mpu6050)));
-        p.setInputListener(new UdpDispatchTemperatureEventListener(new I2CRegisterValue(mpu6050), s));
+        // the listener skips an event whose INT_STATUS or temperature read failed..
+        DeviceErrorPolicy policy = DeviceErrorPolicy.tolerant("mpu6050 interrupts");
+        I2CRegisterValue measurementValue = new I2CRegisterValue(mpu6050);
+        measurementValue.setErrorPolicy(policy);
+        I2CRegisterValue statusValue = new I2CRegisterValue(mpu6050);
+        statusValue.setErrorPolicy(policy);
+
+        Mpu6050Sensor s = new Mpu6050Sensor(new MultiReadMeasurementRegisterValue(measurementValue));
+        interruptListener = new UdpDispatchTemperatureEventListener(statusValue, s);
+        interruptListener.start();
+        p.setInputListener(interruptListener);
 
         return p;
     }
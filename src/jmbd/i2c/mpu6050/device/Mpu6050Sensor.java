@@ -2,7 +2,10 @@ package jmbd.i2c.mpu6050.device;
 
 import jmbd.i2c.mpu6050.configuration.AccelFullScaleRange;
 import jmbd.i2c.mpu6050.configuration.GyroFullScaleRange;
+import jmbd.i2c.mpu6050.register.measurement.BurstMeasurementRead;
+import jmbd.i2c.mpu6050.register.measurement.MeasurementFrame;
 import jmbd.i2c.mpu6050.register.measurement.MeasurementRegisterValue;
+import java.nio.FloatBuffer;
 
 /**
  * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
@@ -20,11 +23,26 @@ import jmbd.i2c.mpu6050.register.measurement.MeasurementRegisterValue;
  */
 public class Mpu6050Sensor implements AccelGyroTempSensor {
 
+    // m/s^2 per g
+    public static final float STANDARD_GRAVITY = 9.80665f;
+
+    // not magic numbers..just part of the temperature formula really...
+    private static final float TEMPERATURE_SCALE = 1f / 340;
+    private static final float TEMPERATURE_OFFSET = 36.53f;
+
     private MeasurementRegisterValue registerValue;
+    private BurstMeasurementRead burstRead;
 
     private AccelFullScaleRange accelFullScale;
     private GyroFullScaleRange gyroFullScale;
 
+    // Reciprocals of the current sensitivities so that scaling is a multiplication rather than a division
+    private float accelScale;
+    private float gyroScale;
+
+    // used by the readScaled() methods
+    private final MeasurementFrame scaledFrame = new MeasurementFrame();
+
     /**
      * REQUIRES:
      *
@@ -47,14 +65,36 @@ public class Mpu6050Sensor implements AccelGyroTempSensor {
         assert registerValue != null : "registerValue is null";
 
         this.registerValue = registerValue;
-        accelFullScale = AccelFullScaleRange.G_2;
-        gyroFullScale = GyroFullScaleRange.PLUS_MINUS_250;
+        setAccelFullScaleRange(AccelFullScaleRange.G_2);
+        setGyroFullScaleRange(GyroFullScaleRange.PLUS_MINUS_250);
 
         assert this.registerValue == registerValue : "registerValue not set to the given one";
         assert getAccelFullScale() == AccelFullScaleRange.G_2 : "AccelFullScale not set to its default value";
         assert getGyroFullScale() == GyroFullScaleRange.PLUS_MINUS_250 : "GyroFullScale not set to its default value";
     }
 
+    /**
+     * Same as Mpu6050Sensor(registerValue) but also enables sample(frame).
+     *
+     * REQUIRES:
+     *
+     * 1) registerValue not null
+     *
+     * 2) burstRead not null
+     *
+     * ENSURES:
+     *
+     * burstReadSupported()
+     *
+     * @param registerValue
+     * @param burstRead
+     */
+    public Mpu6050Sensor(MeasurementRegisterValue registerValue, BurstMeasurementRead burstRead) {
+
+        this(registerValue);
+        setBurstRead(burstRead);
+    }
+
     /**
      * REQUIRES:
      *
@@ -77,6 +117,183 @@ public class Mpu6050Sensor implements AccelGyroTempSensor {
         assert this.registerValue == registerValue : "registerValue not set to the given one";
     }
 
+    /**
+     * REQUIRES:
+     *
+     * burstRead not null
+     *
+     * ENSURES:
+     *
+     * burstReadSupported()
+     *
+     * @param burstRead
+     */
+    public void setBurstRead(BurstMeasurementRead burstRead) {
+
+        assert burstRead != null : "burstRead is null";
+
+        this.burstRead = burstRead;
+
+        assert burstReadSupported() : "burstRead not set to the given one";
+    }
+
+    /**
+     * Can all measurements be read in one go via sample(frame)?
+     *
+     * @return
+     */
+    public boolean burstReadSupported() {
+
+        return burstRead != null;
+    }
+
+    /**
+     * Reads all accelerometer, temperature and gyroscope measurements in a
+     * single bus transaction and stores their raw values in given frame.
+     *
+     * This is the preferred way of reading the sensor at high sampling rates
+     * as, unlike the individual getters (which cost one bus transaction per
+     * measurement), all values come from the same sampling instant.
+     *
+     * REQUIRES:
+     *
+     * 1) frame not null
+     *
+     * 2) burstReadSupported()
+     *
+     * @param frame
+     * @return false if the read failed (frame left unchanged), the sample
+     * should be skipped
+     */
+    public boolean sample(MeasurementFrame frame) {
+
+        assert frame != null : "frame is null";
+        assert burstReadSupported() : "burst reads not supported";
+
+        return burstRead.load(frame);
+    }
+
+    /**
+     * Takes a (burst) sample and writes all its values, in full precision and
+     * in SI units, into dst starting at offset.
+     *
+     * Values are written in MeasurementFrame channel order: acceleration
+     * (m/s^2) on X/Y/Z, temperature (Celsius) and angular rate (degrees/s) on
+     * X/Y/Z.
+     *
+     * Raw values remain available via sample(frame).
+     *
+     * WARNING: Uses an internal frame so must not be called concurrently.
+     *
+     * REQUIRES:
+     *
+     * 1) dst not null
+     *
+     * 2) offset >= 0
+     *
+     * 3) dst.length - offset >= MeasurementFrame.CHANNEL_COUNT
+     *
+     * 4) burstReadSupported()
+     *
+     * @param dst
+     * @param offset
+     * @return false if the read failed (dst left unchanged)
+     */
+    public boolean readScaled(float[] dst, int offset) {
+
+        if (!sample(scaledFrame)) {
+            return false;
+        }
+        scale(scaledFrame, dst, offset);
+        return true;
+    }
+
+    /**
+     * Same as readScaled(dst, offset) but values are put (relatively) into a
+     * FloatBuffer.
+     *
+     * REQUIRES:
+     *
+     * 1) dst not null
+     *
+     * 2) dst.remaining() >= MeasurementFrame.CHANNEL_COUNT
+     *
+     * 3) burstReadSupported()
+     *
+     * @param dst
+     * @return false if the read failed (dst left unchanged)
+     */
+    public boolean readScaled(FloatBuffer dst) {
+
+        if (!sample(scaledFrame)) {
+            return false;
+        }
+        scale(scaledFrame, dst);
+        return true;
+    }
+
+    /**
+     * Converts the raw values of a frame (however it was acquired e.g. via the
+     * FIFO buffer) into SI units according to the currently configured full
+     * scale ranges. See readScaled(dst, offset) for the order of values.
+     *
+     * REQUIRES:
+     *
+     * 1) frame not null
+     *
+     * 2) dst not null
+     *
+     * 3) offset >= 0
+     *
+     * 4) dst.length - offset >= MeasurementFrame.CHANNEL_COUNT
+     *
+     * @param frame
+     * @param dst
+     * @param offset
+     */
+    public void scale(MeasurementFrame frame, float[] dst, int offset) {
+
+        assert frame != null : "frame is null";
+        assert dst != null : "dst is null";
+        assert offset >= 0 : "offset is negative";
+        assert dst.length - offset >= MeasurementFrame.CHANNEL_COUNT : "not enough room in dst";
+
+        dst[offset + MeasurementFrame.ACCEL_X] = frame.getXAccel() * accelScale;
+        dst[offset + MeasurementFrame.ACCEL_Y] = frame.getYAccel() * accelScale;
+        dst[offset + MeasurementFrame.ACCEL_Z] = frame.getZAccel() * accelScale;
+        dst[offset + MeasurementFrame.TEMPERATURE] = frame.getTemperature() * TEMPERATURE_SCALE + TEMPERATURE_OFFSET;
+        dst[offset + MeasurementFrame.GYRO_X] = frame.getXGyro() * gyroScale;
+        dst[offset + MeasurementFrame.GYRO_Y] = frame.getYGyro() * gyroScale;
+        dst[offset + MeasurementFrame.GYRO_Z] = frame.getZGyro() * gyroScale;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * 1) frame not null
+     *
+     * 2) dst not null
+     *
+     * 3) dst.remaining() >= MeasurementFrame.CHANNEL_COUNT
+     *
+     * @param frame
+     * @param dst
+     */
+    public void scale(MeasurementFrame frame, FloatBuffer dst) {
+
+        assert frame != null : "frame is null";
+        assert dst != null : "dst is null";
+        assert dst.remaining() >= MeasurementFrame.CHANNEL_COUNT : "not enough room in dst";
+
+        dst.put(frame.getXAccel() * accelScale)
+                .put(frame.getYAccel() * accelScale)
+                .put(frame.getZAccel() * accelScale)
+                .put(frame.getTemperature() * TEMPERATURE_SCALE + TEMPERATURE_OFFSET)
+                .put(frame.getXGyro() * gyroScale)
+                .put(frame.getYGyro() * gyroScale)
+                .put(frame.getZGyro() * gyroScale);
+    }
+
     /**
      * Acceleration on the X-axis.
      *
@@ -122,8 +339,8 @@ public class Mpu6050Sensor implements AccelGyroTempSensor {
         registerValue.setLowRegisterAddr(RegisterAddress.TEMP_OUT_L);
 
         registerValue.load();
-        // not magic numbers..just part of the formula really...
-        return ((float) registerValue.getValue() / 340) + 36.53f;
+
+        return registerValue.getValue() * TEMPERATURE_SCALE + TEMPERATURE_OFFSET;
     }
 
     @Override
@@ -144,6 +361,12 @@ public class Mpu6050Sensor implements AccelGyroTempSensor {
         return readFromGyroRegisters(RegisterAddress.GYRO_ZOUT_H, RegisterAddress.GYRO_ZOUT_L);
     }
 
+    @Override
+    public boolean lastReadValid() {
+
+        return registerValue.isValid();
+    }
+
     private short readFromGyroRegisters(RegisterAddress high, RegisterAddress low) {
 
         registerValue.setHighRegisterAddr(high);
@@ -186,6 +409,7 @@ public class Mpu6050Sensor implements AccelGyroTempSensor {
         assert accelFullScale != null : "accelerometerScale is null";
 
         this.accelFullScale = accelFullScale;
+        this.accelScale = STANDARD_GRAVITY / accelFullScale.getSensitivity();
 
         assert getAccelFullScale() == accelFullScale : "accelFullScale not set to given value";
     }
@@ -213,6 +437,7 @@ public class Mpu6050Sensor implements AccelGyroTempSensor {
         assert gyroFullScale != null : "gyroscopeScale is null";
 
         this.gyroFullScale = gyroFullScale;
+        this.gyroScale = 1f / gyroFullScale.getSensitivity();
 
         assert getGyroFullScale() == gyroFullScale : "gyroFullScale not set to given value";
     }
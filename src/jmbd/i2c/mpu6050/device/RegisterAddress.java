@@ -17,6 +17,20 @@ package jmbd.i2c.mpu6050.device;
 public enum RegisterAddress {
 
     NONE(0),
+    // Accelerometer offsets (factory trimmed, bit 0 of each low byte is reserved)
+    XA_OFFS_H(0x06),
+    XA_OFFS_L(0x07),
+    YA_OFFS_H(0x08),
+    YA_OFFS_L(0x09),
+    ZA_OFFS_H(0x0A),
+    ZA_OFFS_L(0x0B),
+    // Gyroscope offsets (user defined, +-1000 degrees/s full scale)
+    XG_OFFS_USRH(0x13),
+    XG_OFFS_USRL(0x14),
+    YG_OFFS_USRH(0x15),
+    YG_OFFS_USRL(0x16),
+    ZG_OFFS_USRH(0x17),
+    ZG_OFFS_USRL(0x18),
     // Accelerometer
     ACCEL_XOUT_H(0x3B),
     ACCEL_XOUT_L(0x3C),
@@ -42,6 +56,12 @@ public enum RegisterAddress {
     // Interrupt enable & status
     INT_ENABLE(0x38),
     INT_STATUS(0x3A),
+    // FIFO
+    FIFO_EN(0x23),
+    USER_CTRL(0x6A),
+    FIFO_COUNT_H(0x72),
+    FIFO_COUNT_L(0x73),
+    FIFO_R_W(0x74),
     // Power management
     PWR_MNG_CONFIG(0x6B),
     TEMP_OUT_H(0x41),
@@ -0,0 +1,110 @@
+package jmbd.i2c.mpu6050.fusion;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Complementary filter in quaternion form: the gyroscope is integrated for
+ * short term accuracy whilst the error between the estimated and measured
+ * (accelerometer) direction of gravity is fed back, proportionally, to cancel
+ * long term drift (i.e. the proportional part of R. Mahony's explicit
+ * complementary filter).
+ *
+ * Yaw is not observable without a magnetometer so it is gyro-only.
+ *
+ * @author savvas
+ */
+public class ComplementaryFilter extends OrientationFilter {
+
+    public static final float DEFAULT_GAIN = 1f;
+
+    protected float twoKp;
+
+    /**
+     * Gain of DEFAULT_GAIN.
+     */
+    public ComplementaryFilter() {
+
+        this(DEFAULT_GAIN);
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * gain >= 0
+     *
+     * @param gain how fast the estimate converges towards the accelerometer,
+     * higher means less drift but more sensitivity to linear acceleration
+     */
+    public ComplementaryFilter(float gain) {
+
+        setGain(gain);
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * gain >= 0
+     *
+     * @param gain
+     */
+    public final void setGain(float gain) {
+
+        assert gain >= 0 : "gain is negative";
+
+        this.twoKp = 2 * gain;
+    }
+
+    @Override
+    public void update(float ax, float ay, float az, float gx, float gy, float gz, float dt) {
+
+        assert dt > 0 : "dt is zero or negative";
+
+        // accelerometer is of no use in free fall..
+        if (!(ax == 0 && ay == 0 && az == 0)) {
+
+            float recipNorm = invSqrt(ax * ax + ay * ay + az * az);
+            ax *= recipNorm;
+            ay *= recipNorm;
+            az *= recipNorm;
+
+            // estimated direction of gravity (halved)
+            float halfvx = q1 * q3 - q0 * q2;
+            float halfvy = q0 * q1 + q2 * q3;
+            float halfvz = q0 * q0 - 0.5f + q3 * q3;
+
+            // error is the cross product between estimated and measured direction of gravity
+            float halfex = ay * halfvz - az * halfvy;
+            float halfey = az * halfvx - ax * halfvz;
+            float halfez = ax * halfvy - ay * halfvx;
+
+            gx += twoKp * halfex;
+            gy += twoKp * halfey;
+            gz += twoKp * halfez;
+        }
+
+        // integrate rate of change of quaternion
+        gx *= 0.5f * dt;
+        gy *= 0.5f * dt;
+        gz *= 0.5f * dt;
+
+        float qa = q0;
+        float qb = q1;
+        float qc = q2;
+
+        q0 += -qb * gx - qc * gy - q3 * gz;
+        q1 += qa * gx + qc * gz - q3 * gy;
+        q2 += qa * gy - qb * gz + q3 * gx;
+        q3 += qa * gz + qb * gy - qc * gx;
+
+        normaliseQuaternion();
+    }
+}
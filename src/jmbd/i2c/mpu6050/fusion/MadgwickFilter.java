@@ -0,0 +1,123 @@
+package jmbd.i2c.mpu6050.fusion;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * S. Madgwick's gradient descent orientation filter (IMU version, i.e. no
+ * magnetometer).
+ *
+ * Yaw is not observable without a magnetometer so it is gyro-only.
+ *
+ * @author savvas
+ */
+public class MadgwickFilter extends OrientationFilter {
+
+    // Madgwick's suggested value, roughly sqrt(3/4) * gyroscope measurement error (rad/s)
+    public static final float DEFAULT_BETA = 0.1f;
+
+    protected float beta;
+
+    /**
+     * Beta of DEFAULT_BETA.
+     */
+    public MadgwickFilter() {
+
+        this(DEFAULT_BETA);
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * beta >= 0
+     *
+     * @param beta
+     */
+    public MadgwickFilter(float beta) {
+
+        setBeta(beta);
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * beta >= 0
+     *
+     * @param beta
+     */
+    public final void setBeta(float beta) {
+
+        assert beta >= 0 : "beta is negative";
+
+        this.beta = beta;
+    }
+
+    @Override
+    public void update(float ax, float ay, float az, float gx, float gy, float gz, float dt) {
+
+        assert dt > 0 : "dt is zero or negative";
+
+        // rate of change of quaternion from gyroscope
+        float qDot1 = 0.5f * (-q1 * gx - q2 * gy - q3 * gz);
+        float qDot2 = 0.5f * (q0 * gx + q2 * gz - q3 * gy);
+        float qDot3 = 0.5f * (q0 * gy - q1 * gz + q3 * gx);
+        float qDot4 = 0.5f * (q0 * gz + q1 * gy - q2 * gx);
+
+        // accelerometer is of no use in free fall..
+        if (!(ax == 0 && ay == 0 && az == 0)) {
+
+            float recipNorm = invSqrt(ax * ax + ay * ay + az * az);
+            ax *= recipNorm;
+            ay *= recipNorm;
+            az *= recipNorm;
+
+            float _2q0 = 2 * q0;
+            float _2q1 = 2 * q1;
+            float _2q2 = 2 * q2;
+            float _2q3 = 2 * q3;
+            float _4q0 = 4 * q0;
+            float _4q1 = 4 * q1;
+            float _4q2 = 4 * q2;
+            float _8q1 = 8 * q1;
+            float _8q2 = 8 * q2;
+            float q0q0 = q0 * q0;
+            float q1q1 = q1 * q1;
+            float q2q2 = q2 * q2;
+            float q3q3 = q3 * q3;
+
+            // gradient descent corrective step
+            float s0 = _4q0 * q2q2 + _2q2 * ax + _4q0 * q1q1 - _2q1 * ay;
+            float s1 = _4q1 * q3q3 - _2q3 * ax + 4 * q0q0 * q1 - _2q0 * ay - _4q1 + _8q1 * q1q1 + _8q1 * q2q2 + _4q1 * az;
+            float s2 = 4 * q0q0 * q2 + _2q0 * ax + _4q2 * q3q3 - _2q3 * ay - _4q2 + _8q2 * q1q1 + _8q2 * q2q2 + _4q2 * az;
+            float s3 = 4 * q1q1 * q3 - _2q1 * ax + 4 * q2q2 * q3 - _2q2 * ay;
+
+            float sNorm = s0 * s0 + s1 * s1 + s2 * s2 + s3 * s3;
+
+            // already at the minimum, nothing to correct
+            if (sNorm > 0) {
+
+                recipNorm = invSqrt(sNorm);
+
+                qDot1 -= beta * s0 * recipNorm;
+                qDot2 -= beta * s1 * recipNorm;
+                qDot3 -= beta * s2 * recipNorm;
+                qDot4 -= beta * s3 * recipNorm;
+            }
+        }
+
+        q0 += qDot1 * dt;
+        q1 += qDot2 * dt;
+        q2 += qDot3 * dt;
+        q3 += qDot4 * dt;
+
+        normaliseQuaternion();
+    }
+}
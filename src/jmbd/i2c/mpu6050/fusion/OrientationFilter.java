@@ -0,0 +1,98 @@
+package jmbd.i2c.mpu6050.fusion;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Estimates orientation, as a unit quaternion (q0 being the scalar part), from
+ * successive accelerometer and gyroscope readings.
+ *
+ * All state is kept in primitive fields so that update() does not allocate.
+ * Filters are not thread-safe, they are meant to be fed by a single
+ * (acquisition) thread.
+ *
+ * INVARIANTS:
+ *
+ * q0^2 + q1^2 + q2^2 + q3^2 == 1 (within float precision)
+ *
+ * @author savvas
+ */
+public abstract class OrientationFilter {
+
+    protected float q0 = 1;
+    protected float q1;
+    protected float q2;
+    protected float q3;
+
+    /**
+     * Accelerometer values can be in any unit (only the direction of gravity
+     * is used), gyroscope values must be in radians/s.
+     *
+     * REQUIRES:
+     *
+     * dt > 0
+     *
+     * @param ax
+     * @param ay
+     * @param az
+     * @param gx
+     * @param gy
+     * @param gz
+     * @param dt seconds elapsed since the previous update
+     */
+    public abstract void update(float ax, float ay, float az, float gx, float gy, float gz, float dt);
+
+    /**
+     * Back to the identity orientation.
+     */
+    public void reset() {
+
+        q0 = 1;
+        q1 = 0;
+        q2 = 0;
+        q3 = 0;
+    }
+
+    public float getQ0() {
+
+        return q0;
+    }
+
+    public float getQ1() {
+
+        return q1;
+    }
+
+    public float getQ2() {
+
+        return q2;
+    }
+
+    public float getQ3() {
+
+        return q3;
+    }
+
+    protected void normaliseQuaternion() {
+
+        float recipNorm = invSqrt(q0 * q0 + q1 * q1 + q2 * q2 + q3 * q3);
+
+        q0 *= recipNorm;
+        q1 *= recipNorm;
+        q2 *= recipNorm;
+        q3 *= recipNorm;
+    }
+
+    protected static float invSqrt(float x) {
+
+        return 1f / (float) Math.sqrt(x);
+    }
+}
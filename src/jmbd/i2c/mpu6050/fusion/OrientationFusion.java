@@ -0,0 +1,257 @@
+package jmbd.i2c.mpu6050.fusion;
+
+import jmbd.i2c.mpu6050.acquisition.MeasurementFrameListener;
+import jmbd.i2c.mpu6050.device.Mpu6050Sensor;
+import jmbd.i2c.mpu6050.register.measurement.MeasurementFrame;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Streaming orientation estimation fed by the sample stream of an MPU6050
+ * (e.g. registered as the listener of a DataReadyAcquisition or
+ * Mpu6050FifoDrain).
+ *
+ * Frames are converted into SI units by the sensor, the time between frames is
+ * taken from their timestamps and the latest orientation (quaternion and Euler
+ * angles) is published after each update. Updates do not allocate and must
+ * all come from the same (acquisition) thread.
+ *
+ * Readers, from any thread, get a consistent copy of the latest orientation
+ * without taking a lock: the orientation is published under a sequence lock,
+ * i.e. the version is made odd, the values (float bits) and timestamp are
+ * stored and the version is made even again. A reader retries whilst the
+ * version is odd or has changed under it, hence never sees half an update.
+ * Values, timestamp and version are all atomics, so the retry check is sound
+ * under the memory model and neither side allocates.
+ *
+ * @author savvas
+ */
+public class OrientationFusion implements MeasurementFrameListener {
+
+    public static final int QUATERNION_LENGTH = 4;
+    public static final int EULER_LENGTH = 3;
+
+    private static final float DEGREES_TO_RADIANS = (float) (Math.PI / 180);
+    private static final float NANOS_TO_SECONDS = 1e-9f;
+    // gaps longer than this (e.g. acquisition restarted) are not integrated
+    private static final long MAX_FRAME_GAP_NANOS = 1_000_000_000L;
+
+    protected final Mpu6050Sensor sensor;
+    protected OrientationFilter filter;
+
+    protected final float[] scaled;
+    protected long previousTimestamp;
+    protected boolean hasPrevious;
+
+    // published orientation (float bits), see publish() and readQuaternion()/readEuler()
+    private static final int Q0 = 0;
+    private static final int ROLL = QUATERNION_LENGTH;
+    private static final int PUBLISHED_LENGTH = QUATERNION_LENGTH + EULER_LENGTH;
+
+    protected final AtomicLong version = new AtomicLong();
+    protected final AtomicIntegerArray published = new AtomicIntegerArray(PUBLISHED_LENGTH);
+    protected final AtomicLong timestamp = new AtomicLong();
+
+    /**
+     * REQUIRES:
+     *
+     * 1) sensor not null
+     *
+     * 2) algorithm not null
+     *
+     * @param sensor used for converting raw frames into SI units
+     * @param algorithm
+     */
+    public OrientationFusion(Mpu6050Sensor sensor, FusionAlgorithm algorithm) {
+
+        assert sensor != null : "sensor is null";
+
+        this.sensor = sensor;
+        this.scaled = new float[MeasurementFrame.CHANNEL_COUNT];
+        // identity until the first update..
+        published.set(Q0, Float.floatToRawIntBits(1));
+        setAlgorithm(algorithm);
+    }
+
+    /**
+     * Switches to a new filter (in its initial state) of the given algorithm.
+     *
+     * Must be called from the thread feeding frames.
+     *
+     * REQUIRES:
+     *
+     * algorithm not null
+     *
+     * @param algorithm
+     */
+    public final void setAlgorithm(FusionAlgorithm algorithm) {
+
+        assert algorithm != null : "algorithm is null";
+
+        switch (algorithm) {
+
+            case COMPLEMENTARY:
+                // precondition met
+                setFilter(new ComplementaryFilter());
+                break;
+            case MADGWICK:
+                // precondition met
+                setFilter(new MadgwickFilter());
+                break;
+        }
+    }
+
+    /**
+     * Must be called from the thread feeding frames.
+     *
+     * REQUIRES:
+     *
+     * filter not null
+     *
+     * @param filter
+     */
+    public void setFilter(OrientationFilter filter) {
+
+        assert filter != null : "filter is null";
+
+        this.filter = filter;
+        hasPrevious = false;
+    }
+
+    @Override
+    public void frameAcquired(MeasurementFrame frame) {
+
+        long dtNanos = frame.getTimestamp() - previousTimestamp;
+        boolean integrate = hasPrevious && dtNanos > 0 && dtNanos < MAX_FRAME_GAP_NANOS;
+
+        previousTimestamp = frame.getTimestamp();
+        hasPrevious = true;
+
+        if (!integrate) {
+            return;
+        }
+
+        sensor.scale(frame, scaled, 0);
+
+        filter.update(scaled[MeasurementFrame.ACCEL_X], scaled[MeasurementFrame.ACCEL_Y], scaled[MeasurementFrame.ACCEL_Z],
+                scaled[MeasurementFrame.GYRO_X] * DEGREES_TO_RADIANS, scaled[MeasurementFrame.GYRO_Y] * DEGREES_TO_RADIANS, scaled[MeasurementFrame.GYRO_Z] * DEGREES_TO_RADIANS,
+                dtNanos * NANOS_TO_SECONDS);
+
+        publish(frame.getTimestamp());
+    }
+
+    private void publish(long frameTimestamp) {
+
+        float a = filter.getQ0();
+        float b = filter.getQ1();
+        float c = filter.getQ2();
+        float d = filter.getQ3();
+
+        float r = (float) Math.atan2(2 * (a * b + c * d), 1 - 2 * (b * b + c * c));
+        float p = (float) Math.asin(clamp(2 * (a * c - d * b)));
+        float y = (float) Math.atan2(2 * (a * d + b * c), 1 - 2 * (c * c + d * d));
+
+        // single writer, odd whilst the values are being stored..
+        version.incrementAndGet();
+
+        published.set(Q0, Float.floatToRawIntBits(a));
+        published.set(Q0 + 1, Float.floatToRawIntBits(b));
+        published.set(Q0 + 2, Float.floatToRawIntBits(c));
+        published.set(Q0 + 3, Float.floatToRawIntBits(d));
+        published.set(ROLL, Float.floatToRawIntBits(r));
+        published.set(ROLL + 1, Float.floatToRawIntBits(p));
+        published.set(ROLL + 2, Float.floatToRawIntBits(y));
+        timestamp.set(frameTimestamp);
+
+        version.incrementAndGet();
+    }
+
+    /**
+     * Copies length published values starting at index into dst starting at
+     * offset, retrying until the copy is not torn by a concurrent publish().
+     *
+     * @return timestamp of the copied values
+     */
+    private long readPublished(int index, int length, float[] dst, int offset) {
+
+        while (true) {
+
+            long before = version.get();
+
+            if ((before & 1) != 0) {
+                // publish() in progress
+                continue;
+            }
+
+            for (int i = 0; i < length; i++) {
+                dst[offset + i] = Float.intBitsToFloat(published.get(index + i));
+            }
+            long copiedTimestamp = timestamp.get();
+
+            if (version.get() == before) {
+                return copiedTimestamp;
+            }
+        }
+    }
+
+    private static float clamp(float sinPitch) {
+
+        // rounding errors near +-90 degrees..
+        return sinPitch > 1 ? 1 : (sinPitch < -1 ? -1 : sinPitch);
+    }
+
+    /**
+     * Copies latest orientation quaternion (q0 being the scalar part) into dst
+     * starting at offset.
+     *
+     * REQUIRES:
+     *
+     * 1) dst not null
+     *
+     * 2) dst.length - offset >= QUATERNION_LENGTH
+     *
+     * @param dst
+     * @param offset
+     * @return timestamp of the frame the orientation was estimated from
+     */
+    public long readQuaternion(float[] dst, int offset) {
+
+        assert dst != null : "dst is null";
+        assert offset >= 0 && dst.length - offset >= QUATERNION_LENGTH : "not enough room in dst";
+
+        return readPublished(Q0, QUATERNION_LENGTH, dst, offset);
+    }
+
+    /**
+     * Copies latest orientation as roll, pitch & yaw (radians) into dst
+     * starting at offset.
+     *
+     * REQUIRES:
+     *
+     * 1) dst not null
+     *
+     * 2) dst.length - offset >= EULER_LENGTH
+     *
+     * @param dst
+     * @param offset
+     * @return timestamp of the frame the orientation was estimated from
+     */
+    public long readEuler(float[] dst, int offset) {
+
+        assert dst != null : "dst is null";
+        assert offset >= 0 && dst.length - offset >= EULER_LENGTH : "not enough room in dst";
+
+        return readPublished(ROLL, EULER_LENGTH, dst, offset);
+    }
+}
@@ -0,0 +1,290 @@
+package jmbd.i2c.mpu6050.interrupt;
+
+import java.io.IOException;
+import javax.microedition.io.Datagram;
+import javax.microedition.io.DatagramConnection;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Packs consecutive messages (e.g. encoded TelemetryFrames) into as few
+ * datagrams as possible: a batch is sent once it is full, i.e. the next
+ * message of the same size would not fit in getMtuBytes(), or once the oldest
+ * message in it has waited getMaxLatencyNanos(), whichever comes first.
+ *
+ * Messages are copied into a preallocated batch array which is sent with the
+ * same Datagram every time. Deadline flushes are done by a flusher thread
+ * which needs to be start()'ed; without it batches only go out when full (or
+ * on flush()/close()).
+ *
+ * Receivers split a datagram back into messages the way they were framed, e.g.
+ * by calling TelemetryFrame.decode() until nothing remains.
+ *
+ * @author savvas
+ */
+public class BatchingDatagramSender implements AutoCloseable {
+
+    // IPv4 over Ethernet (1500) minus IP & UDP headers
+    public static final int DEFAULT_MTU_BYTES = 1472;
+    public static final long DEFAULT_MAX_LATENCY_NANOS = 20_000_000;
+
+    private final DatagramConnection connection;
+    private final Datagram datagram;
+    private final byte[] batch;
+    private final long maxLatencyNanos;
+
+    private int length;
+    private int messages;
+    private long deadline;
+    private boolean closed;
+    private Thread flusher;
+
+    private long sentDatagrams;
+    private long sentMessages;
+    private long sentBytes;
+    private long deadlineFlushes;
+    private long failedDatagrams;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) connection not null (and open, with a default destination)
+     *
+     * 2) mtuBytes > 0
+     *
+     * 3) maxLatencyNanos >= 0 (0 sends every message straight away)
+     *
+     * @param connection
+     * @param mtuBytes largest datagram payload
+     * @param maxLatencyNanos longest a message is held back
+     * @throws IOException
+     */
+    public BatchingDatagramSender(DatagramConnection connection, int mtuBytes, long maxLatencyNanos) throws IOException {
+
+        assert connection != null : "connection is null";
+        assert mtuBytes > 0 : "mtuBytes not positive";
+        assert maxLatencyNanos >= 0 : "maxLatencyNanos is negative";
+
+        this.connection = connection;
+        this.batch = new byte[mtuBytes];
+        this.datagram = connection.newDatagram(mtuBytes);
+        this.maxLatencyNanos = maxLatencyNanos;
+    }
+
+    /**
+     * Starts the thread that flushes batches whose deadline has expired.
+     *
+     * REQUIRES:
+     *
+     * not already started
+     */
+    public synchronized void start() {
+
+        assert flusher == null : "already started";
+
+        flusher = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+
+                flushOnDeadlines();
+            }
+        }, "BatchingDatagramSender flusher");
+        flusher.start();
+    }
+
+    /**
+     * Adds a message to the current batch, sending the batch first if the
+     * message does not fit and afterwards if it is full (or no latency is
+     * allowed).
+     *
+     * REQUIRES:
+     *
+     * 1) data not null
+     *
+     * 2) length BETWEEN [1 - getMtuBytes()]
+     *
+     * @param data
+     * @param offset
+     * @param length
+     * @throws IOException if a batch could not be sent, the batch is dropped
+     */
+    public synchronized void send(byte[] data, int offset, int length) throws IOException {
+
+        assert data != null : "data is null";
+        assert length > 0 && length <= batch.length : "length out of range";
+
+        if (closed) {
+            throw new IOException("Sender closed");
+        }
+
+        if (this.length + length > batch.length) {
+            sendBatch();
+        }
+
+        if (this.length == 0) {
+            deadline = System.nanoTime() + maxLatencyNanos;
+            // flusher waits for the first message of a batch..
+            notifyAll();
+        }
+
+        System.arraycopy(data, offset, batch, this.length, length);
+        this.length += length;
+        ++messages;
+
+        // same-size messages are the norm, no point waiting for one that won't fit..
+        if (batch.length - this.length < length || maxLatencyNanos == 0) {
+            sendBatch();
+        }
+    }
+
+    /**
+     * Sends whatever is batched.
+     *
+     * @throws IOException
+     */
+    public synchronized void flush() throws IOException {
+
+        if (length > 0) {
+            sendBatch();
+        }
+    }
+
+    private void sendBatch() throws IOException {
+
+        try {
+            datagram.setData(batch, 0, length);
+            connection.send(datagram);
+
+            ++sentDatagrams;
+            sentMessages += messages;
+            sentBytes += length;
+        } catch (IOException ex) {
+
+            ++failedDatagrams;
+            throw ex;
+        } finally {
+
+            length = 0;
+            messages = 0;
+        }
+    }
+
+    private synchronized void flushOnDeadlines() {
+
+        while (!closed) {
+
+            try {
+                if (length == 0) {
+                    wait();
+                    continue;
+                }
+
+                long remaining = deadline - System.nanoTime();
+
+                if (remaining > 0) {
+                    wait(remaining / 1_000_000, (int) (remaining % 1_000_000));
+                    continue;
+                }
+
+                ++deadlineFlushes;
+                sendBatch();
+            } catch (IOException ex) {
+                // counted, the next batch may well make it..
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sends whatever is batched and stops the flusher. If interrupted whilst
+     * waiting for the flusher, returns with the interrupt flag set.
+     *
+     * @throws IOException if the last batch could not be sent
+     */
+    @Override
+    public void close() throws IOException {
+
+        Thread f;
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                flush();
+            } finally {
+                closed = true;
+                notifyAll();
+                f = flusher;
+            }
+        }
+
+        if (f != null && f != Thread.currentThread()) {
+            try {
+                f.join();
+            } catch (InterruptedException ex) {
+                // the flusher stops on its own, leave the interrupt to the caller..
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public int getMtuBytes() {
+
+        return batch.length;
+    }
+
+    public long getMaxLatencyNanos() {
+
+        return maxLatencyNanos;
+    }
+
+    public synchronized long getSentDatagramCount() {
+
+        return sentDatagrams;
+    }
+
+    public synchronized long getSentMessageCount() {
+
+        return sentMessages;
+    }
+
+    public synchronized long getSentBytes() {
+
+        return sentBytes;
+    }
+
+    /**
+     * @return batches sent because their deadline expired (rather than
+     * because they were full)
+     */
+    public synchronized long getDeadlineFlushCount() {
+
+        return deadlineFlushes;
+    }
+
+    /**
+     * @return batches lost because send failed
+     */
+    public synchronized long getFailedDatagramCount() {
+
+        return failedDatagrams;
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        return "BatchingDatagramSender{" + "datagrams=" + sentDatagrams + ", messages=" + sentMessages + ", bytes=" + sentBytes + ", deadline flushes=" + deadlineFlushes + ", failed=" + failedDatagrams + '}';
+    }
+}
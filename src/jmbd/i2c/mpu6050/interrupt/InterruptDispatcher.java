@@ -0,0 +1,196 @@
+package jmbd.i2c.mpu6050.interrupt;
+
+import jmbd.i2c.mpu6050.configuration.InterruptSource;
+import jmbd.i2c.mpu6050.device.RegisterAddress;
+import jmbd.i2c.mpu6050.register.configuration.RegisterValue;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Reads INT_STATUS once per interrupt and calls the handler registered for
+ * each source found raised.
+ *
+ * Reading INT_STATUS clears all of its bits, so having a single place doing it
+ * is what allows one interrupt pin to drive several concerns (e.g. data
+ * acquisition and FIFO overflow recovery) at the same time.
+ *
+ * Sources are dispatched in InterruptSource declaration order, i.e. overflow
+ * recovery happens before data acquisition.
+ *
+ * @author savvas
+ */
+public class InterruptDispatcher {
+
+    // values() returns a new array on every call..
+    private static final InterruptSource[] SOURCES = InterruptSource.values();
+
+    protected RegisterValue registerValue;
+
+    protected final InterruptHandler[] handlers;
+    protected final long[] raisedCounts;
+    protected long emptyStatusCount;
+    protected long failedStatusCount;
+
+    /**
+     * REQUIRES:
+     *
+     * registerValue not null
+     *
+     * @param registerValue used for reading INT_STATUS
+     */
+    public InterruptDispatcher(RegisterValue registerValue) {
+
+        assert registerValue != null : "registerValue is null";
+
+        this.registerValue = registerValue;
+        this.handlers = new InterruptHandler[SOURCES.length];
+        this.raisedCounts = new long[SOURCES.length];
+    }
+
+    /**
+     * Replaces whatever handler was previously registered for source.
+     *
+     * REQUIRES:
+     *
+     * 1) source not null
+     *
+     * 2) handler not null
+     *
+     * ENSURES:
+     *
+     * getHandler(source) == handler
+     *
+     * @param source
+     * @param handler
+     */
+    public synchronized void setHandler(InterruptSource source, InterruptHandler handler) {
+
+        assert source != null : "source is null";
+        assert handler != null : "handler is null";
+
+        handlers[source.ordinal()] = handler;
+
+        assert getHandler(source) == handler : "handler not registered";
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * source not null
+     *
+     * ENSURES:
+     *
+     * getHandler(source) == null
+     *
+     * @param source
+     */
+    public synchronized void removeHandler(InterruptSource source) {
+
+        assert source != null : "source is null";
+
+        handlers[source.ordinal()] = null;
+    }
+
+    public synchronized InterruptHandler getHandler(InterruptSource source) {
+
+        assert source != null : "source is null";
+
+        return handlers[source.ordinal()];
+    }
+
+    /**
+     * Reads INT_STATUS and calls the handler of every raised source. Sources
+     * without a handler are only counted, so is an INT_STATUS read that failed
+     * (nothing is dispatched then, the stale status would re-raise old
+     * sources).
+     *
+     * @param timestamp moment the pin event was captured
+     * @return number of sources found raised
+     */
+    public synchronized int dispatch(long timestamp) {
+
+        registerValue.setRegisterAddress(RegisterAddress.INT_STATUS);
+        registerValue.load();
+
+        if (!registerValue.isValid()) {
+            ++failedStatusCount;
+            return 0;
+        }
+
+        int raised = 0;
+
+        for (InterruptSource source : SOURCES) {
+
+            if (registerValue.bitValueAt(source.getBitIndex())) {
+
+                ++raised;
+                ++raisedCounts[source.ordinal()];
+
+                InterruptHandler handler = handlers[source.ordinal()];
+
+                if (handler != null) {
+                    handler.interruptRaised(source, timestamp);
+                }
+            }
+        }
+
+        if (raised == 0) {
+            ++emptyStatusCount;
+        }
+        return raised;
+    }
+
+    /**
+     * How many times source has been found raised so far.
+     *
+     * @param source
+     * @return
+     */
+    public synchronized long getRaisedCount(InterruptSource source) {
+
+        assert source != null : "source is null";
+
+        return raisedCounts[source.ordinal()];
+    }
+
+    /**
+     * How many times INT_STATUS had no bits set (e.g. interrupt already
+     * cleared or pin noise).
+     *
+     * @return
+     */
+    public synchronized long getEmptyStatusCount() {
+
+        return emptyStatusCount;
+    }
+
+    /**
+     * How many times INT_STATUS could not be read.
+     *
+     * @return
+     */
+    public synchronized long getFailedStatusCount() {
+
+        return failedStatusCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        StringBuilder sb = new StringBuilder("InterruptDispatcher{");
+
+        for (InterruptSource source : SOURCES) {
+            sb.append(source).append(':').append(raisedCounts[source.ordinal()]).append(", ");
+        }
+        return sb.append("empty:").append(emptyStatusCount).append(", failed:").append(failedStatusCount).append('}').toString();
+    }
+}
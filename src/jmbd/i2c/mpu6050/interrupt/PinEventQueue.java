@@ -0,0 +1,190 @@
+package jmbd.i2c.mpu6050.interrupt;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Bounded hand-off of pin events (represented by their timestamps) from the
+ * pin-event thread to a worker thread.
+ *
+ * offer() never blocks so that the pin-event thread can return as soon as
+ * possible; when the queue is full the configured OverflowPolicy decides
+ * which event is lost. Events are kept in a primitive circular array so no
+ * allocation takes place per event.
+ *
+ * INVARIANTS:
+ *
+ * size() BETWEEN [0 - getCapacity()]
+ *
+ * @author savvas
+ */
+public class PinEventQueue {
+
+    protected final long[] timestamps;
+    protected final OverflowPolicy policy;
+
+    protected int head;
+    protected int size;
+    protected boolean closed;
+
+    protected long queuedCount;
+    protected long processedCount;
+    protected long droppedCount;
+    protected long coalescedCount;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) capacity > 0
+     *
+     * 2) policy not null
+     *
+     * ENSURES:
+     *
+     * 1) getCapacity() == capacity
+     *
+     * 2) size() == 0
+     *
+     * @param capacity
+     * @param policy
+     */
+    public PinEventQueue(int capacity, OverflowPolicy policy) {
+
+        assert capacity > 0 : "capacity is zero or negative";
+        assert policy != null : "policy is null";
+
+        this.timestamps = new long[capacity];
+        this.policy = policy;
+
+        assert getCapacity() == capacity : "capacity not set";
+        assert size() == 0 : "queue not empty";
+    }
+
+    /**
+     * Queues event with given timestamp, never blocks.
+     *
+     * @param timestamp
+     * @return false if the event was discarded or coalesced
+     */
+    public synchronized boolean offer(long timestamp) {
+
+        if (closed) {
+            ++droppedCount;
+            return false;
+        }
+
+        if (size == timestamps.length) {
+
+            switch (policy) {
+
+                case DROP_OLDEST:
+                    // precondition met
+                    head = (head + 1) % timestamps.length;
+                    --size;
+                    ++droppedCount;
+                    break;
+                case DROP_NEWEST:
+                    // precondition met
+                    ++droppedCount;
+                    return false;
+                case COALESCE:
+                    // precondition met
+                    timestamps[(head + size - 1) % timestamps.length] = timestamp;
+                    ++coalescedCount;
+                    return false;
+            }
+        }
+
+        timestamps[(head + size) % timestamps.length] = timestamp;
+        ++size;
+        ++queuedCount;
+
+        notify();
+
+        return true;
+    }
+
+    /**
+     * Waits until an event is available and removes it from the queue.
+     *
+     * @return timestamp of the oldest queued event
+     * @throws InterruptedException if interrupted or the queue was closed
+     */
+    public synchronized long take() throws InterruptedException {
+
+        while (size == 0) {
+
+            if (closed) {
+                throw new InterruptedException("Queue closed");
+            }
+            wait();
+        }
+
+        long timestamp = timestamps[head];
+        head = (head + 1) % timestamps.length;
+        --size;
+
+        return timestamp;
+    }
+
+    /**
+     * To be called by the worker thread once an event returned by take() has
+     * been handled.
+     */
+    public synchronized void markProcessed() {
+
+        ++processedCount;
+    }
+
+    /**
+     * Releases any waiting worker and discards all subsequent events.
+     */
+    public synchronized void close() {
+
+        closed = true;
+        notifyAll();
+    }
+
+    public synchronized int size() {
+
+        return size;
+    }
+
+    public int getCapacity() {
+
+        return timestamps.length;
+    }
+
+    public OverflowPolicy getPolicy() {
+
+        return policy;
+    }
+
+    public synchronized long getQueuedCount() {
+
+        return queuedCount;
+    }
+
+    public synchronized long getProcessedCount() {
+
+        return processedCount;
+    }
+
+    public synchronized long getDroppedCount() {
+
+        return droppedCount;
+    }
+
+    public synchronized long getCoalescedCount() {
+
+        return coalescedCount;
+    }
+}
@@ -1,11 +1,12 @@
 package jmbd.i2c.mpu6050.interrupt;
 
-import jmbd.commons.TimeDelay;
+import jmbd.i2c.mpu6050.configuration.InterruptSource;
 import jmbd.i2c.mpu6050.register.configuration.RegisterValue;
 import jmbd.i2c.mpu6050.device.AccelGyroTempSensor;
-import jmbd.i2c.mpu6050.device.RegisterAddress;
 import jdk.dio.gpio.PinEvent;
 import jdk.dio.gpio.PinListener;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
@@ -19,50 +20,192 @@ import jdk.dio.gpio.PinListener;
  * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
  * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  *
+ * The pin-event thread only captures the event (its timestamp really) and
+ * hands it over to a worker thread which does the actual (bus and network)
+ * work. This keeps valueChanged() short no matter how slow event handling is;
+ * whenever the worker falls behind, the PinEventQueue overflow policy decides
+ * which events are lost and the loss is visible via getDroppedEventCount() &
+ * getCoalescedEventCount().
+ *
+ * The worker needs to be start()'ed before events are handled.
+ *
+ * Each event is decoded by an InterruptDispatcher (one INT_STATUS read per
+ * event) with this listener registered as the DATA_RDY handler. Handlers for
+ * other sources can be registered via getDispatcher().
+ *
  * @author savvas
  */
-public class TemperatureEventListener implements PinListener, AutoCloseable {
+public class TemperatureEventListener implements PinListener, InterruptHandler, AutoCloseable {
+
+    protected static final int DEFAULT_QUEUE_CAPACITY = 16;
 
-    protected long temperatureEventCount;
-    protected long nonTemperatureEventCount;
-    protected RegisterValue registerValue;
     protected AccelGyroTempSensor sensor;
-    protected TimeDelay timeDelay;
+    protected final InterruptDispatcher dispatcher;
+
+    protected final PinEventQueue queue;
+    protected Thread worker;
+
+    private volatile long skippedReads;
 
+    /**
+     * Bounded by DEFAULT_QUEUE_CAPACITY events, oldest ones are dropped first.
+     *
+     * @param registerValue
+     * @param sensor
+     */
     public TemperatureEventListener(RegisterValue registerValue, AccelGyroTempSensor sensor) {
 
-        this.registerValue = registerValue;
-        this.registerValue.setRegisterAddress(RegisterAddress.INT_STATUS);
+        this(registerValue, sensor, DEFAULT_QUEUE_CAPACITY, OverflowPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * 1) registerValue not null
+     *
+     * 2) sensor not null
+     *
+     * 3) queueCapacity > 0
+     *
+     * 4) policy not null
+     *
+     * @param registerValue
+     * @param sensor
+     * @param queueCapacity
+     * @param policy
+     */
+    public TemperatureEventListener(RegisterValue registerValue, AccelGyroTempSensor sensor, int queueCapacity, OverflowPolicy policy) {
+
+        assert registerValue != null : "registerValue is null";
+        assert sensor != null : "sensor is null";
+
         this.sensor = sensor;
-        // Can be passed in constructor
-        this.timeDelay = new TimeDelay();
+        // preconditions checked in callee
+        this.queue = new PinEventQueue(queueCapacity, policy);
+        this.dispatcher = new InterruptDispatcher(registerValue);
+        this.dispatcher.setHandler(InterruptSource.DATA_RDY, this);
+    }
+
+    /**
+     * Dispatcher decoding INT_STATUS on behalf of this listener.
+     *
+     * @return
+     */
+    public InterruptDispatcher getDispatcher() {
+
+        return dispatcher;
     }
 
+    /**
+     * Starts the worker thread handling queued events.
+     *
+     * REQUIRES:
+     *
+     * not already started
+     */
+    public synchronized void start() {
+
+        assert worker == null : "already started";
+
+        worker = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+
+                handleEvents();
+            }
+        }, "TemperatureEventListener worker");
+        worker.start();
+    }
+
+    /**
+     * Runs on the pin-event thread, must return as quickly as possible.
+     *
+     * @param event
+     */
     @Override
     public void valueChanged(PinEvent event) {
 
-        registerValue.load();
+        queue.offer(System.nanoTime());
+    }
 
-        if (registerValue.bitValueAt(0)) {
+    private void handleEvents() {
 
-            float tempNow = sensor.getTemperature();
-            sendOutTemperatureEvent(tempNow);
-            ++temperatureEventCount;
-        } else {
+        try {
+            while (true) {
 
-            ++nonTemperatureEventCount;
+                long timestamp = queue.take();
+
+                try {
+                    handleEvent(timestamp);
+                } catch (RuntimeException ex) {
+                    // one bad event shouldn't stop the worker..
+                    Logger.getLogger(TemperatureEventListener.class.getName()).log(Level.SEVERE, null, ex);
+                } finally {
+                    queue.markProcessed();
+                }
+            }
+        } catch (InterruptedException ex) {
+            // closed
         }
-        timeDelay.pauseMillis(5_00);
     }
 
-    public long getTemperatureEventCount() {
+    /**
+     * Runs on the worker thread.
+     *
+     * @param timestamp moment (as given by System.nanoTime()) the event was
+     * captured
+     */
+    protected void handleEvent(long timestamp) {
+
+        dispatcher.dispatch(timestamp);
+    }
 
-        return temperatureEventCount;
+    /**
+     * DATA_RDY handling, runs on the worker thread. Nothing is sent out if the
+     * temperature could not be read.
+     *
+     * @param source
+     * @param timestamp
+     */
+    @Override
+    public void interruptRaised(InterruptSource source, long timestamp) {
+
+        float tempNow = sensor.getTemperature();
+
+        if (!sensor.lastReadValid()) {
+            ++skippedReads;
+            return;
+        }
+        sendOutTemperatureEvent(tempNow, timestamp);
     }
 
-    public long getNonTemperatureEventCount() {
+    public long getQueuedEventCount() {
 
-        return nonTemperatureEventCount;
+        return queue.getQueuedCount();
+    }
+
+    public long getProcessedEventCount() {
+
+        return queue.getProcessedCount();
+    }
+
+    public long getDroppedEventCount() {
+
+        return queue.getDroppedCount();
+    }
+
+    public long getCoalescedEventCount() {
+
+        return queue.getCoalescedCount();
+    }
+
+    /**
+     * @return number of DATA_RDY events whose temperature could not be read
+     */
+    public long getSkippedReadCount() {
+
+        return skippedReads;
     }
 
     /**
@@ -78,14 +221,43 @@ public class TemperatureEventListener implements PinListener, AutoCloseable {
         System.out.println("Current Temperature is: " + temp);
     }
 
+    /**
+     * Same as sendOutTemperatureEvent(temp), for handlers that need the
+     * moment the event was captured.
+     *
+     * Default is to ignore the timestamp.
+     *
+     * @param temp
+     * @param timestamp as given by System.nanoTime()
+     */
+    protected void sendOutTemperatureEvent(float temp, long timestamp) {
+
+        sendOutTemperatureEvent(temp);
+    }
+
+    /**
+     * Stops the worker thread once all events queued so far have been handled.
+     *
+     * @throws Exception
+     */
     @Override
     public void close() throws Exception {
-        // noop
+
+        queue.close();
+
+        Thread w;
+        synchronized (this) {
+            w = worker;
+        }
+
+        if (w != null && w != Thread.currentThread()) {
+            w.join();
+        }
     }
 
     @Override
     public String toString() {
 
-        return "TemperatureEventListener{" + "Total new temperature events:" + getTemperatureEventCount() + ", total non-temperature events:" + getNonTemperatureEventCount() + "}";
+        return "TemperatureEventListener{" + "queued events:" + getQueuedEventCount() + ", processed events:" + getProcessedEventCount() + ", dropped events:" + getDroppedEventCount() + ", coalesced events:" + getCoalescedEventCount() + ", skipped reads:" + getSkippedReadCount() + ", " + dispatcher + "}";
     }
 }
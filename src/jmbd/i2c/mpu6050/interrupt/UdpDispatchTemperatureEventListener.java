@@ -1,10 +1,12 @@
 package jmbd.i2c.mpu6050.interrupt;
 
+import jmbd.commons.telemetry.SampleBlockEncoder;
+import jmbd.commons.telemetry.SampleType;
+import jmbd.commons.telemetry.TelemetryFrame;
 import jmbd.i2c.mpu6050.register.configuration.RegisterValue;
 import jmbd.i2c.mpu6050.device.AccelGyroTempSensor;
 import java.io.IOException;
 import javax.microedition.io.Connector;
-import javax.microedition.io.Datagram;
 import javax.microedition.io.DatagramConnection;
 
 /**
@@ -21,28 +23,183 @@ import javax.microedition.io.DatagramConnection;
  *
  * Sends event to some server somewhere in the network (protocol is UDP).
  *
+ * Each temperature goes out as a single-sample FLOAT32 TelemetryFrame, encoded
+ * into the same array every time. Frames are batched by a
+ * BatchingDatagramSender, i.e. at high sampling rates many of them share a
+ * datagram and none waits longer than the configured latency.
+ *
+ * Given blockSamples > 0, temperatures are compressed instead, blockSamples at
+ * a time, by a SampleBlockEncoder (one block per send()). UdpServer takes
+ * either. The latency bound holds for compressed temperatures too: a block
+ * goes out once full or once its first temperature is half of the maximum
+ * latency old, whichever comes first (a flusher of its own sends blocks that
+ * stop filling up), the sender gets the other half.
+ *
  * @author savvas
  */
 public class UdpDispatchTemperatureEventListener extends TemperatureEventListener {
 
+    public static final int DEFAULT_DEVICE_ID = 1;
+
     protected DatagramConnection connection;
 
+    protected final TelemetryFrame frame;
+    protected final BatchingDatagramSender sender;
+    // null unless compressing, guarded by itself..
+    protected final SampleBlockEncoder encoder;
+    protected final long maxBlockAgeNanos;
+
+    private long blockDeadline;
+    private boolean blockFlusherStopped;
+    private Thread blockFlusher;
+    private long deadlineBlocks;
+
     public UdpDispatchTemperatureEventListener(RegisterValue registerValue, AccelGyroTempSensor sensor) throws IOException {
 
+        this(registerValue, sensor, DEFAULT_DEVICE_ID);
+    }
+
+    /**
+     * Batches up to BatchingDatagramSender.DEFAULT_MTU_BYTES, holding frames
+     * back for at most BatchingDatagramSender.DEFAULT_MAX_LATENCY_NANOS.
+     *
+     * @param registerValue
+     * @param sensor
+     * @param deviceId
+     * @throws IOException
+     */
+    public UdpDispatchTemperatureEventListener(RegisterValue registerValue, AccelGyroTempSensor sensor, int deviceId) throws IOException {
+
+        this(registerValue, sensor, deviceId, BatchingDatagramSender.DEFAULT_MTU_BYTES, BatchingDatagramSender.DEFAULT_MAX_LATENCY_NANOS);
+    }
+
+    /**
+     * Uncompressed, one frame per temperature.
+     *
+     * REQUIRES:
+     *
+     * 1) deviceId BETWEEN [0 - TelemetryFrame.MAX_DEVICE_ID]
+     *
+     * 2) mtuBytes >= frame length (23 bytes)
+     *
+     * 3) maxLatencyNanos >= 0 (0 for one datagram per frame)
+     *
+     * @param registerValue
+     * @param sensor
+     * @param deviceId sent with every frame so that the server can tell senders
+     * apart
+     * @param mtuBytes
+     * @param maxLatencyNanos
+     * @throws IOException
+     */
+    public UdpDispatchTemperatureEventListener(RegisterValue registerValue, AccelGyroTempSensor sensor, int deviceId, int mtuBytes, long maxLatencyNanos) throws IOException {
+
+        this(registerValue, sensor, deviceId, mtuBytes, maxLatencyNanos, 0);
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * 1) deviceId BETWEEN [0 - TelemetryFrame.MAX_DEVICE_ID]
+     *
+     * 2) mtuBytes >= frame length (23 bytes), or the worst-case block length
+     * (about 16 bytes per sample) if compressing
+     *
+     * 3) maxLatencyNanos >= 0 (0 for one datagram per frame / block, i.e. one
+     * temperature per block)
+     *
+     * 4) blockSamples >= 0
+     *
+     * @param registerValue
+     * @param sensor
+     * @param deviceId sent with every frame so that the server can tell senders
+     * apart
+     * @param mtuBytes
+     * @param maxLatencyNanos longest a temperature is held back, block and
+     * batch included
+     * @param blockSamples temperatures per compressed block, 0 for uncompressed
+     * frames
+     * @throws IOException
+     */
+    public UdpDispatchTemperatureEventListener(RegisterValue registerValue, AccelGyroTempSensor sensor, int deviceId, int mtuBytes, long maxLatencyNanos, int blockSamples) throws IOException {
+
         super(registerValue, sensor);
+
+        assert blockSamples >= 0 : "blockSamples is negative";
+
+        frame = new TelemetryFrame(deviceId, SampleType.FLOAT32, 1);
+        encoder = blockSamples == 0 ? null : new SampleBlockEncoder(deviceId, SampleType.FLOAT32, 1, blockSamples);
+
+        assert mtuBytes >= frame.getCapacity() : "mtuBytes smaller than a frame";
+        assert encoder == null || mtuBytes >= encoder.getCapacity() : "mtuBytes smaller than a block, fewer blockSamples";
+
+        // half of the latency for filling blocks, half for batching them..
+        maxBlockAgeNanos = encoder == null ? 0 : maxLatencyNanos / 2;
+
         connection = (DatagramConnection) Connector.open("datagram://savvas:8080");
+        sender = new BatchingDatagramSender(connection, mtuBytes, maxLatencyNanos - maxBlockAgeNanos);
+    }
+
+    /**
+     * Starts the sender's flusher (and the block flusher if compressing) as
+     * well as the worker.
+     */
+    @Override
+    public synchronized void start() {
+
+        sender.start();
+
+        if (encoder != null) {
+            blockFlusher = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+
+                    flushBlocksOnDeadlines();
+                }
+            }, "UdpDispatchTemperatureEventListener block flusher");
+            blockFlusher.start();
+        }
+        super.start();
+    }
+
+    public BatchingDatagramSender getSender() {
+
+        return sender;
     }
 
     @Override
     protected void sendOutTemperatureEvent(float temp) {
 
+        sendOutTemperatureEvent(temp, System.nanoTime());
+    }
+
+    @Override
+    protected void sendOutTemperatureEvent(float temp, long timestamp) {
+
         try {
-            String message = "Latest temperature is: " + temp;
-            byte[] payload = message.getBytes();
+            if (encoder != null) {
+                synchronized (encoder) {
 
-            Datagram dg = connection.newDatagram(payload, payload.length);
-            System.out.println("Sending...");
-            connection.send(dg);
+                    if (encoder.isEmpty()) {
+                        blockDeadline = timestamp + maxBlockAgeNanos;
+                        // block flusher waits for the first temperature of a block..
+                        encoder.notifyAll();
+                    }
+                    encoder.beginSample(timestamp);
+                    encoder.addFloat(temp);
+
+                    if (encoder.isFull() || System.nanoTime() - blockDeadline >= 0) {
+                        sendBlock();
+                    }
+                }
+                return;
+            }
+
+            frame.begin(timestamp);
+            frame.addFloat(temp);
+
+            sender.send(frame.getBytes(), 0, frame.getLength());
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         }
@@ -51,6 +208,96 @@ public class UdpDispatchTemperatureEventListener extends TemperatureEventListene
     @Override
     public void close() throws Exception {
 
-        connection.close();
+        // let the worker finish first, then send what's left..
+        super.close();
+        try {
+            if (encoder != null) {
+                stopBlockFlusher();
+
+                synchronized (encoder) {
+                    if (!encoder.isEmpty()) {
+                        sendBlock();
+                    }
+                }
+            }
+            sender.close();
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * @return blocks sent because their first temperature got too old
+     * (rather than because they were full)
+     */
+    public long getDeadlineBlockCount() {
+
+        if (encoder == null) {
+            return 0;
+        }
+        synchronized (encoder) {
+            return deadlineBlocks;
+        }
+    }
+
+    private void flushBlocksOnDeadlines() {
+
+        synchronized (encoder) {
+
+            while (!blockFlusherStopped) {
+
+                try {
+                    if (encoder.isEmpty()) {
+                        encoder.wait();
+                        continue;
+                    }
+
+                    long remaining = blockDeadline - System.nanoTime();
+
+                    if (remaining > 0) {
+                        encoder.wait(remaining / 1_000_000, (int) (remaining % 1_000_000));
+                        continue;
+                    }
+
+                    ++deadlineBlocks;
+                    sendBlock();
+                } catch (IOException ex) {
+                    // counted by the sender, the next block may well make it..
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void stopBlockFlusher() throws InterruptedException {
+
+        Thread f;
+
+        synchronized (encoder) {
+            blockFlusherStopped = true;
+            encoder.notifyAll();
+        }
+        synchronized (this) {
+            f = blockFlusher;
+        }
+
+        if (f != null && f != Thread.currentThread()) {
+            f.join();
+        }
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * Thread.holdsLock(encoder)
+     */
+    private void sendBlock() throws IOException {
+
+        assert Thread.holdsLock(encoder) : "encoder not locked";
+
+        int length = encoder.finish();
+
+        sender.send(encoder.getBytes(), 0, length);
     }
 }
@@ -1,5 +1,17 @@
 package jmbd.i2c.mpu6050.interrupt;
-//import java.net.DatagramSocket;
+
+import jmbd.commons.telemetry.SampleBlockDecoder;
+import jmbd.commons.telemetry.TelemetryFrame;
+import jmbd.commons.telemetry.TelemetryFrameListener;
+import jmbd.commons.telemetry.TelemetryStream;
+import jmbd.commons.telemetry.store.TimeSeriesStore;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
 
 /**
  * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
@@ -15,50 +27,312 @@ package jmbd.i2c.mpu6050.interrupt;
  *
  * To be ran on some SE Runtime....
  *
+ * Receives TelemetryFrames (as sent by UdpDispatchTemperatureEventListener,
+ * possibly batched by BatchingDatagramSender) from any number of boards and
+ * demultiplexes them by device id into TelemetryStreams.
+ *
+ * Datagrams are received into a single direct buffer and frames are decoded
+ * out of it into a single TelemetryFrame, i.e. nothing is allocated per packet
+ * (only once per new device id). A datagram that stops decoding half-way
+ * counts as a decode error, frames before that point are kept.
+ *
+ * Compressed SampleBlocks (see SampleBlockEncoder) may come in instead of or
+ * mixed with frames; they are decoded in place and handed on sample by sample
+ * as TelemetryFrames, so streams and listeners can not tell the difference.
+ *
+ * Frames can be persisted by making a TimeSeriesStore the (default)
+ * listener, see main().
+ *
+ * Packets/s, bytes/s, frames/s and decode errors are printed every
+ * getReportIntervalNanos() (when traffic comes in).
+ *
  * @author savvas
  */
 public class UdpServer {
 
     private static final int PORT = 8080;
     private static final int MAX_PACKET_SIZE = 65507;
-    private static final String STOP_MESSAGE = "stop";
+    private static final long DEFAULT_REPORT_INTERVAL_NANOS = 5_000_000_000L;
+
+    private final TelemetryStream[] streams = new TelemetryStream[TelemetryFrame.MAX_DEVICE_ID + 1];
+    private volatile int streamCount;
+    private volatile TelemetryFrameListener defaultListener;
+
+    private volatile boolean running;
+    private volatile DatagramChannel channel;
+
+    private long reportIntervalNanos = DEFAULT_REPORT_INTERVAL_NANOS;
+    private PrintStream reportOut = System.out;
+
+    private volatile long packets;
+    private volatile long bytes;
+    private volatile long frames;
+    private volatile long decodeErrors;
+
+    // as of the previous report
+    private long reportedAt;
+    private long reportedPackets;
+    private long reportedBytes;
+    private long reportedFrames;
+
+    /**
+     * Routes frames of given device to given listener (instead of the default
+     * one).
+     *
+     * REQUIRES:
+     *
+     * deviceId BETWEEN [0 - TelemetryFrame.MAX_DEVICE_ID]
+     *
+     * @param deviceId
+     * @param listener null to only keep count
+     */
+    public void register(int deviceId, TelemetryFrameListener listener) {
+
+        streamOf(deviceId).setListener(listener);
+    }
+
+    /**
+     * Listener of devices seen for the first time (i.e. not register()'ed).
+     *
+     * @param listener null to only keep count
+     */
+    public void setDefaultListener(TelemetryFrameListener listener) {
+
+        this.defaultListener = listener;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * 1) reportIntervalNanos > 0
+     *
+     * 2) out not null
+     *
+     * @param reportIntervalNanos
+     * @param out
+     */
+    public void setReporting(long reportIntervalNanos, PrintStream out) {
+
+        assert reportIntervalNanos > 0 : "reportIntervalNanos not positive";
+        assert out != null : "out is null";
 
-    private boolean running;
+        this.reportIntervalNanos = reportIntervalNanos;
+        this.reportOut = out;
+    }
 
+    /**
+     * Receives until stop()'ed, on the calling thread.
+     *
+     * @param port
+     * @param pckSize largest datagram expected, longer ones are truncated (and
+     * most likely counted as decode errors)
+     */
     public void startListening(int port, int pckSize) {
 
         running = true;
 
-//        try (DatagramSocket soc = new DatagramSocket(port)) {
-//
-//            byte[] buffer = new byte[pckSize];
-//            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-//
-//            System.out.println("Starting server");
-//
-//            while (running) {
-//
-//                soc.receive(packet);
-//
-//                String message = new String(packet.getData(), packet.getOffset(), packet.getLength(), "UTF-8");
-//                message = message.replaceAll(System.lineSeparator(), "");
-//                System.out.println(packet.getAddress() + " at port " + packet.getPort() + " says " + "\"" + message + "\"");
-//                // prepare for next packet..
-//                packet.setLength(pckSize);
-//
-//                if (message.equalsIgnoreCase(STOP_MESSAGE)) {
-//                    running = false;
-//                }
-//            }
-//            System.out.println("Stopping server");
-//        } catch (IOException ioex) {
-//            throw new RuntimeException(ioex);
-//        }
+        try (DatagramChannel ch = DatagramChannel.open()) {
+
+            ch.bind(new InetSocketAddress(port));
+            channel = ch;
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(pckSize);
+            // large enough for any sample a block holds, too..
+            TelemetryFrame frame = new TelemetryFrame(Math.max(pckSize, TelemetryFrame.HEADER_SIZE_BYTES + TelemetryFrame.MAX_SAMPLES * 4));
+            SampleBlockDecoder block = new SampleBlockDecoder();
+
+            reportOut.println("Starting server on port " + port);
+            reportedAt = System.nanoTime();
+
+            while (running) {
+
+                buffer.clear();
+                ch.receive(buffer);
+                buffer.flip();
+
+                ++packets;
+                bytes += buffer.remaining();
+
+                while (buffer.hasRemaining()) {
+
+                    if (SampleBlockDecoder.isBlock(buffer)) {
+                        if (!receiveBlock(buffer, block, frame)) {
+                            break;
+                        }
+                        continue;
+                    }
+
+                    if (!frame.decode(buffer)) {
+                        ++decodeErrors;
+                        break;
+                    }
+                    ++frames;
+                    streamOf(frame.getDeviceId()).frameReceived(frame);
+                }
+
+                long now = System.nanoTime();
+
+                if (now - reportedAt >= reportIntervalNanos) {
+                    report(now);
+                }
+            }
+        } catch (ClosedChannelException ex) {
+            // stopped
+        } catch (IOException ioex) {
+            throw new RuntimeException(ioex);
+        } finally {
+            running = false;
+            channel = null;
+        }
+        reportOut.println("Stopping server");
+    }
+
+    /**
+     * @return false if the block could not be decoded (the rest of the
+     * datagram is dropped)
+     */
+    private boolean receiveBlock(ByteBuffer buffer, SampleBlockDecoder block, TelemetryFrame frame) {
+
+        if (!block.decode(buffer)) {
+            ++decodeErrors;
+            return false;
+        }
+
+        while (block.next()) {
+            block.toFrame(frame);
+            ++frames;
+            streamOf(frame.getDeviceId()).frameReceived(frame);
+        }
+        if (block.isCorrupt()) {
+            // samples before the damage were delivered, the block's length still got us past it..
+            ++decodeErrors;
+        }
+        return true;
+    }
+
+    /**
+     * Makes startListening() return, from any thread.
+     */
+    public void stop() {
+
+        running = false;
+
+        DatagramChannel ch = channel;
+
+        if (ch != null) {
+            try {
+                // unblocks receive()..
+                ch.close();
+            } catch (IOException ex) {
+                // Ignore
+            }
+        }
+    }
+
+    private TelemetryStream streamOf(int deviceId) {
+
+        assert deviceId >= 0 && deviceId <= TelemetryFrame.MAX_DEVICE_ID : "deviceId out of range";
+
+        TelemetryStream stream = streams[deviceId];
+
+        if (stream == null) {
+            synchronized (streams) {
+                stream = streams[deviceId];
+                if (stream == null) {
+                    stream = new TelemetryStream(deviceId);
+                    stream.setListener(defaultListener);
+                    streams[deviceId] = stream;
+                    ++streamCount;
+                }
+            }
+        }
+        return stream;
+    }
+
+    private void report(long now) {
+
+        double seconds = (now - reportedAt) / 1e9;
+
+        reportOut.println("packets/s=" + Math.round((packets - reportedPackets) / seconds)
+                + ", bytes/s=" + Math.round((bytes - reportedBytes) / seconds)
+                + ", frames/s=" + Math.round((frames - reportedFrames) / seconds)
+                + ", decode errors=" + decodeErrors
+                + ", devices=" + getStreamCount());
+
+        reportedAt = now;
+        reportedPackets = packets;
+        reportedBytes = bytes;
+        reportedFrames = frames;
+    }
+
+    /**
+     * @param deviceId
+     * @return stream of given device, null if nothing received from (or
+     * registered for) it yet
+     */
+    public TelemetryStream getStream(int deviceId) {
+
+        synchronized (streams) {
+            return streams[deviceId];
+        }
+    }
+
+    public int getStreamCount() {
+
+        return streamCount;
+    }
+
+    public long getPacketCount() {
+
+        return packets;
+    }
+
+    public long getByteCount() {
+
+        return bytes;
     }
 
+    public long getFrameCount() {
+
+        return frames;
+    }
+
+    public long getDecodeErrorCount() {
+
+        return decodeErrors;
+    }
+
+    public long getReportIntervalNanos() {
+
+        return reportIntervalNanos;
+    }
+
+    /**
+     * Usage: java jmbd.i2c.mpu6050.interrupt.UdpServer [storeDir]
+     *
+     * With storeDir, all received samples are persisted into a
+     * TimeSeriesStore there.
+     *
+     * @param args
+     */
     public static void main(String[] args) {
 
         UdpServer server = new UdpServer();
+
+        if (args.length > 0) {
+
+            final TimeSeriesStore store = new TimeSeriesStore(new File(args[0]));
+            server.setDefaultListener(store);
+
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+
+                @Override
+                public void run() {
+
+                    store.close();
+                }
+            });
+        }
         server.startListening(PORT, MAX_PACKET_SIZE);
     }
 }
@@ -0,0 +1,136 @@
+package jmbd.i2c.mpu6050.register.block;
+
+import jmbd.commons.ByteBufferAccessOptimisation;
+import jmbd.commons.metrics.MetricsRegistry;
+import jmbd.commons.metrics.TransactionMetrics;
+import java.io.IOException;
+import jdk.dio.i2cbus.I2CDevice;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Transfers the whole block with a single I2C read or write starting at
+ * getStartAddress().
+ *
+ * @author savvas
+ */
+public class I2CRegisterBlock extends RegisterBlock {
+
+    protected static final int REG_ADDR_SIZE_BYTES = 1;
+
+    protected I2CDevice handle;
+    protected TransactionMetrics metrics;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) handle not null
+     *
+     * 2) capacity > 0
+     *
+     * ENSURES:
+     *
+     * getCapacity() == capacity
+     *
+     * @param handle
+     * @param capacity largest range (in bytes) the block will be used for
+     */
+    public I2CRegisterBlock(I2CDevice handle, int capacity) {
+
+        super(ByteBufferAccessOptimisation.forDevice(handle).acquire(capacity));
+
+        assert handle != null : "handle is null";
+
+        this.handle = handle;
+        this.metrics = MetricsRegistry.getDefault().metricsFor("i2c", handle);
+
+        assert getCapacity() == capacity : "capacity of \"" + getCapacity() + "\" is incorrect";
+    }
+
+    /**
+     * ENSURES:
+     *
+     * INTERNAL:
+     *
+     * buf.position() == 0
+     */
+    @Override
+    public void load() {
+
+        for (int attempt = 0;; attempt++) {
+
+            long start = metrics.begin();
+
+            try {
+                buf.clear().limit(length);
+
+                int read = handle.read(startAddress.getValue(), REG_ADDR_SIZE_BYTES, buf);
+
+                if (read < length) {
+                    throw shortRead(read);
+                }
+                metrics.end(start, read);
+                valid = true;
+                errorPolicy.onSuccess(attempt);
+                return;
+            } catch (IOException ex) {
+
+                metrics.fail(start);
+                valid = false;
+                if (!errorPolicy.onFailure(ex, attempt)) {
+                    return;
+                }
+            } finally {
+
+                buf.clear();
+
+                assert buf.position() == 0 : "buffer not cleared";
+            }
+        }
+    }
+
+    /**
+     * ENSURES:
+     *
+     * INTERNAL:
+     *
+     * buf.position() == 0
+     */
+    @Override
+    public void store() {
+
+        for (int attempt = 0;; attempt++) {
+
+            long start = metrics.begin();
+
+            try {
+                buf.clear().limit(length);
+
+                handle.write(startAddress.getValue(), REG_ADDR_SIZE_BYTES, buf);
+                metrics.end(start, length);
+                errorPolicy.onSuccess(attempt);
+                return;
+            } catch (IOException ex) {
+
+                metrics.fail(start);
+                if (!errorPolicy.onFailure(ex, attempt)) {
+                    return;
+                }
+            } finally {
+
+                buf.clear();
+
+                assert buf.position() == 0 : "buffer not cleared";
+            }
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package jmbd.i2c.mpu6050.register.block;
+
+import jmbd.commons.error.DeviceErrorPolicy;
+import jmbd.i2c.mpu6050.device.RegisterAddress;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Access, editing and storage of a number of contiguous 8-bit registers.
+ *
+ * The whole range is transferred in a single transaction, relying on the
+ * register address auto-increment of the device, whilst individual registers
+ * are addressed by their offset from getStartAddress().
+ *
+ * Multi-byte values are kept msb first (i.e. the high register has the lower
+ * address) as the device lays them out.
+ *
+ * The same block can be moved around (setRange()) as long as the new range
+ * fits in its capacity so that one (direct) buffer serves any number of
+ * ranges.
+ *
+ * Failed transfers are handled by getErrorPolicy() (fail fast unless told
+ * otherwise), isValid() tells whether the last load() actually made it.
+ *
+ * INVARIANTS:
+ *
+ * getLength() BETWEEN [1 - getCapacity()]
+ *
+ * @author savvas
+ */
+public abstract class RegisterBlock {
+
+    protected RegisterAddress startAddress;
+    protected int length;
+
+    // absolute get()/put() only, position & limit belong to the transfer
+    protected ByteBuffer buf;
+
+    protected DeviceErrorPolicy errorPolicy;
+    protected boolean valid;
+
+    /**
+     * REQUIRES:
+     *
+     * buf.capacity() > 0
+     *
+     * ENSURES:
+     *
+     * 1) getStartAddress() == RegisterAddress.NONE
+     *
+     * 2) getLength() == getCapacity()
+     *
+     * @param buf holding the register values
+     */
+    protected RegisterBlock(ByteBuffer buf) {
+
+        assert buf != null : "buf is null";
+        assert buf.capacity() > 0 : "buf has no capacity";
+
+        this.buf = buf;
+        this.startAddress = RegisterAddress.NONE;
+        this.length = buf.capacity();
+        this.errorPolicy = DeviceErrorPolicy.failFast(getClass().getName());
+
+        assert getStartAddress() == RegisterAddress.NONE : "startAddress not set to RegisterAddress.NONE";
+        assert getLength() == getCapacity() : "length not set to capacity";
+    }
+
+    public RegisterAddress getStartAddress() {
+
+        return startAddress;
+    }
+
+    public int getLength() {
+
+        return length;
+    }
+
+    /**
+     * Largest range this block can transfer.
+     *
+     * @return
+     */
+    public int getCapacity() {
+
+        return buf.capacity();
+    }
+
+    /**
+     * Moves the block to given range of registers.
+     *
+     * REQUIRES:
+     *
+     * 1) startAddress not null
+     *
+     * 2) length BETWEEN [1 - getCapacity()]
+     *
+     * ENSURES:
+     *
+     * 1) getStartAddress() == startAddress
+     *
+     * 2) getLength() == length
+     *
+     * @param startAddress
+     * @param length
+     */
+    public void setRange(RegisterAddress startAddress, int length) {
+
+        assert startAddress != null : "startAddress is null";
+        assert length > 0 && length <= getCapacity() : "length not in [1 - " + getCapacity() + "] range";
+
+        this.startAddress = startAddress;
+        this.length = length;
+
+        assert getStartAddress() == startAddress : "startAddress not updated";
+        assert getLength() == length : "length not updated";
+    }
+
+    /**
+     * Is given register part of the current range?
+     *
+     * @param address
+     * @return
+     */
+    public boolean contains(RegisterAddress address) {
+
+        int offset = address.getValue() - startAddress.getValue();
+
+        return offset >= 0 && offset < length;
+    }
+
+    /**
+     * Offset of given register within the block.
+     *
+     * REQUIRES:
+     *
+     * contains(address)
+     *
+     * @param address
+     * @return
+     */
+    public int offsetOf(RegisterAddress address) {
+
+        assert contains(address) : address + " not in block";
+
+        return address.getValue() - startAddress.getValue();
+    }
+
+    public DeviceErrorPolicy getErrorPolicy() {
+
+        return errorPolicy;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * errorPolicy not null
+     *
+     * @param errorPolicy
+     */
+    public void setErrorPolicy(DeviceErrorPolicy errorPolicy) {
+
+        assert errorPolicy != null : "errorPolicy is null";
+
+        this.errorPolicy = errorPolicy;
+    }
+
+    /**
+     * Did the last load() succeed? Content can not be trusted when the error
+     * policy gave up on a read (a failed transfer may have been partially
+     * written).
+     *
+     * @return
+     */
+    public boolean isValid() {
+
+        return valid;
+    }
+
+    /**
+     * Reads all registers of the range in one transaction.
+     *
+     * ENSURES:
+     *
+     * isValid() AND getByte(offset) == current_register_value for all offsets
+     * OR !isValid() if getErrorPolicy() gave up on the read
+     */
+    public abstract void load();
+
+    /**
+     * A new exception every time, i.e. each one carries the stack trace and
+     * count of the read that came up short.
+     *
+     * @param read bytes actually read
+     * @return
+     */
+    protected IOException shortRead(int read) {
+
+        return new IOException("Fewer bytes than the block length were read: " + read + " of " + length);
+    }
+
+    /**
+     * Writes all registers of the range back to the device in one transaction.
+     */
+    public abstract void store();
+
+    /**
+     * REQUIRES:
+     *
+     * offset BETWEEN [0 - getLength())
+     *
+     * @param offset
+     * @return
+     */
+    public byte getByte(int offset) {
+
+        assert offset >= 0 && offset < length : "offset not in [0 - " + length + ") range";
+
+        return buf.get(offset);
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * offset BETWEEN [0 - getLength())
+     *
+     * ENSURES:
+     *
+     * getByte(offset) == value
+     *
+     * @param offset
+     * @param value
+     */
+    public void setByte(int offset, byte value) {
+
+        assert offset >= 0 && offset < length : "offset not in [0 - " + length + ") range";
+
+        buf.put(offset, value);
+
+        assert getByte(offset) == value : "value at offset not updated";
+    }
+
+    /**
+     * Signed 16-bit value held by the registers at offset (high) and offset+1
+     * (low).
+     *
+     * REQUIRES:
+     *
+     * offset BETWEEN [0 - getLength() - 1)
+     *
+     * @param offset
+     * @return
+     */
+    public short getShort(int offset) {
+
+        assert offset >= 0 && offset < length - 1 : "offset not in [0 - " + (length - 1) + ") range";
+
+        // same merge as MeasurementRegisterValue.getValue()
+        return (short) ((buf.get(offset) << 8) | (buf.get(offset + 1) & 0xFF));
+    }
+
+    /**
+     * Unsigned flavour of getShort(), for counters and the like.
+     *
+     * REQUIRES:
+     *
+     * offset BETWEEN [0 - getLength() - 1)
+     *
+     * @param offset
+     * @return
+     */
+    public int getUnsignedShort(int offset) {
+
+        return getShort(offset) & 0xFFFF;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * offset BETWEEN [0 - getLength() - 1)
+     *
+     * ENSURES:
+     *
+     * getShort(offset) == value
+     *
+     * @param offset
+     * @param value
+     */
+    public void setShort(int offset, short value) {
+
+        assert offset >= 0 && offset < length - 1 : "offset not in [0 - " + (length - 1) + ") range";
+
+        buf.put(offset, (byte) (value >> 8));
+        buf.put(offset + 1, (byte) value);
+
+        assert getShort(offset) == value : "value at offset not updated";
+    }
+
+    /**
+     * Is the bit at given index of the register at offset "high" or "low"?
+     *
+     * REQUIRES:
+     *
+     * 1) offset BETWEEN [0 - getLength())
+     *
+     * 2) index BETWEEN [0 - 7]
+     *
+     * @param offset
+     * @param index
+     * @return
+     */
+    public boolean bitValueAt(int offset, int index) {
+
+        return getBits(offset, index, 1) != 0;
+    }
+
+    /**
+     * Value of the width bits wide field starting (lsb) at firstBit of the
+     * register at offset, e.g. getBits(o, 3, 2) for bits [4:3].
+     *
+     * REQUIRES:
+     *
+     * 1) offset BETWEEN [0 - getLength())
+     *
+     * 2) firstBit BETWEEN [0 - 7]
+     *
+     * 3) width BETWEEN [1 - 8 - firstBit]
+     *
+     * @param offset
+     * @param firstBit
+     * @param width
+     * @return
+     */
+    public int getBits(int offset, int firstBit, int width) {
+
+        assert firstBit >= 0 && firstBit <= 7 : "firstBit not in [0 - 7] range";
+        assert width > 0 && firstBit + width <= 8 : "width not in [1 - " + (8 - firstBit) + "] range";
+
+        int mask = (1 << width) - 1;
+
+        return (getByte(offset) >> firstBit) & mask;
+    }
+
+    /**
+     * Updates the width bits wide field starting (lsb) at firstBit of the
+     * register at offset, leaving all other bits as they are.
+     *
+     * REQUIRES:
+     *
+     * 1) offset BETWEEN [0 - getLength())
+     *
+     * 2) firstBit BETWEEN [0 - 7]
+     *
+     * 3) width BETWEEN [1 - 8 - firstBit]
+     *
+     * 4) value BETWEEN [0 - 2^width)
+     *
+     * ENSURES:
+     *
+     * getBits(offset, firstBit, width) == value
+     *
+     * @param offset
+     * @param firstBit
+     * @param width
+     * @param value
+     */
+    public void setBits(int offset, int firstBit, int width, int value) {
+
+        assert firstBit >= 0 && firstBit <= 7 : "firstBit not in [0 - 7] range";
+        assert width > 0 && firstBit + width <= 8 : "width not in [1 - " + (8 - firstBit) + "] range";
+        assert value >= 0 && value < (1 << width) : "value does not fit in " + width + " bits";
+
+        int mask = ((1 << width) - 1) << firstBit;
+        int current = getByte(offset);
+
+        setByte(offset, (byte) ((current & ~mask) | ((value << firstBit) & mask)));
+
+        assert getBits(offset, firstBit, width) == value : "field not updated";
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder sb = new StringBuilder("RegisterBlock{" + "startAddress=" + startAddress + ", values=[");
+
+        for (int o = 0; o < length; o++) {
+
+            if (o > 0) {
+                sb.append(", ");
+            }
+            sb.append(Integer.toHexString(getByte(o) & 0xFF));
+        }
+        return sb.append("]}").toString();
+    }
+}
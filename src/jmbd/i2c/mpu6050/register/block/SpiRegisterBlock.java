@@ -0,0 +1,159 @@
+package jmbd.i2c.mpu6050.register.block;
+
+import jmbd.commons.ByteBufferAccessOptimisation;
+import jmbd.commons.metrics.MetricsRegistry;
+import jmbd.commons.metrics.TransactionMetrics;
+import jmbd.i2c.mpu6050.register.configuration.SpiConfigurationRegisterValue;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import jdk.dio.spibus.SPIDevice;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Transfers the whole block with a single full-duplex SPI transfer (MPU-6000
+ * parts): the start address (msb set for reads) followed by getLength() data
+ * bytes, the register address auto-incrementing on every byte.
+ *
+ * Reads skip the byte clocked in whilst the address is going out so that
+ * register values land straight in the block.
+ *
+ * @author savvas
+ */
+public class SpiRegisterBlock extends RegisterBlock {
+
+    protected SPIDevice device;
+    protected TransactionMetrics metrics;
+    // address byte followed by (outgoing) register values
+    protected ByteBuffer txBuf;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) device not null
+     *
+     * 2) device is open
+     *
+     * 3) capacity > 0
+     *
+     * ENSURES:
+     *
+     * getCapacity() == capacity
+     *
+     * @param device
+     * @param capacity largest range (in bytes) the block will be used for
+     */
+    public SpiRegisterBlock(SPIDevice device, int capacity) {
+
+        super(ByteBufferAccessOptimisation.forDevice(device).acquire(capacity));
+
+        assert device.isOpen() : "SPI device is closed";
+
+        this.device = device;
+        this.metrics = MetricsRegistry.getDefault().metricsFor("spi", device);
+        this.txBuf = ByteBufferAccessOptimisation.forDevice(device).acquire(capacity + 1);
+
+        assert getCapacity() == capacity : "capacity of \"" + getCapacity() + "\" is incorrect";
+    }
+
+    /**
+     * ENSURES:
+     *
+     * INTERNAL:
+     *
+     * buf.position() == 0
+     */
+    @Override
+    public void load() {
+
+        for (int attempt = 0;; attempt++) {
+
+            long start = metrics.begin();
+
+            try {
+                txBuf.clear();
+                // dummy bytes just clock the values in..
+                for (int i = 0; i <= length; i++) {
+                    txBuf.put(i, (byte) 0);
+                }
+                txBuf.put(0, (byte) (startAddress.getValue() | SpiConfigurationRegisterValue.READ_FLAG));
+                txBuf.limit(length + 1);
+
+                buf.clear().limit(length);
+
+                int read = device.writeAndRead(txBuf, 1, buf);
+
+                if (read < length) {
+                    throw shortRead(read);
+                }
+                metrics.end(start, read);
+                valid = true;
+                errorPolicy.onSuccess(attempt);
+                return;
+            } catch (IOException ex) {
+
+                metrics.fail(start);
+                valid = false;
+                if (!errorPolicy.onFailure(ex, attempt)) {
+                    return;
+                }
+            } finally {
+
+                txBuf.clear();
+                buf.clear();
+
+                assert buf.position() == 0 : "buffer not cleared";
+            }
+        }
+    }
+
+    /**
+     * ENSURES:
+     *
+     * INTERNAL:
+     *
+     * buf.position() == 0
+     */
+    @Override
+    public void store() {
+
+        for (int attempt = 0;; attempt++) {
+
+            long start = metrics.begin();
+
+            try {
+                txBuf.clear();
+                txBuf.put((byte) (startAddress.getValue() & ~SpiConfigurationRegisterValue.READ_FLAG));
+
+                buf.clear().limit(length);
+                txBuf.put(buf).flip();
+
+                device.write(txBuf);
+                metrics.end(start, length);
+                errorPolicy.onSuccess(attempt);
+                return;
+            } catch (IOException ex) {
+
+                metrics.fail(start);
+                if (!errorPolicy.onFailure(ex, attempt)) {
+                    return;
+                }
+            } finally {
+
+                txBuf.clear();
+                buf.clear();
+
+                assert buf.position() == 0 : "buffer not cleared";
+            }
+        }
+    }
+}
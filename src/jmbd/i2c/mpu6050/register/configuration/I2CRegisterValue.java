@@ -1,11 +1,12 @@
 package jmbd.i2c.mpu6050.register.configuration;
 
 import jmbd.commons.ByteBufferAccessOptimisation;
+import jmbd.commons.error.DeviceErrorPolicy;
+import jmbd.commons.metrics.MetricsRegistry;
+import jmbd.commons.metrics.TransactionMetrics;
 import jmbd.i2c.mpu6050.device.RegisterAddress;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import jdk.dio.i2cbus.I2CDevice;
 
 /**
@@ -28,6 +29,8 @@ public class I2CRegisterValue extends RegisterValue {
 
     protected I2CDevice handle;
     protected ByteBuffer buf;
+    protected TransactionMetrics metrics;
+    protected DeviceErrorPolicy errorPolicy = DeviceErrorPolicy.failFast(I2CRegisterValue.class.getName());
 
     protected int regAddrSizeBytes = DEFAULT_REG_ADDRR_SIZE;
 
@@ -67,10 +70,14 @@ public class I2CRegisterValue extends RegisterValue {
 
         assert handle != null : "I2C handle is null";
 
+        if (this.handle != null) {
+            ByteBufferAccessOptimisation.forDevice(this.handle).release(buf);
+        }
+
         this.handle = handle;
-        ByteBufferAccessOptimisation o = new ByteBufferAccessOptimisation(this.handle);
+        this.metrics = MetricsRegistry.getDefault().metricsFor("i2c", handle);
 
-        buf = o.optimised(ByteBuffer.allocateDirect(1));
+        buf = ByteBufferAccessOptimisation.forDevice(handle).acquire(1);
 
         assert this.handle != null : "handle was not set to given handle";
         assert this.buf != null : "buffer was not allocated";
@@ -124,7 +131,10 @@ public class I2CRegisterValue extends RegisterValue {
      *
      * INTERNAL:
      *
-     * this.handle != null
+     * 1) this.handle != null
+     *
+     * 2) buf acquired from the pool of handle (the old one released to the
+     * pool of the previous handle)
      *
      * @param handle
      */
@@ -132,12 +142,41 @@ public class I2CRegisterValue extends RegisterValue {
 
         assert handle != null : "I2C handle is null";
 
+        if (handle != this.handle) {
+            ByteBufferAccessOptimisation.forDevice(this.handle).release(buf);
+            buf = ByteBufferAccessOptimisation.forDevice(handle).acquire(1);
+        }
+
         this.handle = handle;
+        this.metrics = MetricsRegistry.getDefault().metricsFor("i2c", handle);
 
         assert this.handle != null : "handle was not set";
+        assert this.buf != null : "buffer was not allocated";
+    }
+
+    public DeviceErrorPolicy getErrorPolicy() {
+
+        return errorPolicy;
     }
 
     /**
+     * REQUIRES:
+     *
+     * errorPolicy not null
+     *
+     * @param errorPolicy
+     */
+    public void setErrorPolicy(DeviceErrorPolicy errorPolicy) {
+
+        assert errorPolicy != null : "errorPolicy is null";
+
+        this.errorPolicy = errorPolicy;
+    }
+
+    /**
+     * Failed writes are retried/abandoned/escalated as getErrorPolicy()
+     * decides.
+     *
      * ENSURES
      *
      * INTERNAL:
@@ -147,18 +186,28 @@ public class I2CRegisterValue extends RegisterValue {
     @Override
     public void store() {
 
-        try {
+        for (int attempt = 0;; attempt++) {
+
+            long start = metrics.begin();
+
+            try {
 
-            buf.put(value).flip();
-            handle.write(getRegisterAddress().getValue(), getRegAddrSizeBytes(), buf);
-        } catch (IOException ex) {
-            Logger.getLogger(I2CRegisterValue.class.getName()).log(Level.SEVERE, null, ex);
-            throw new RuntimeException(ex);
-        } finally {
+                buf.put(value).flip();
+                handle.write(getRegisterAddress().getValue(), getRegAddrSizeBytes(), buf);
+                metrics.end(start, 1);
+                errorPolicy.onSuccess(attempt);
+                return;
+            } catch (IOException ex) {
+                metrics.fail(start);
+                if (!errorPolicy.onFailure(ex, attempt)) {
+                    return;
+                }
+            } finally {
 
-            buf.clear();
+                buf.clear();
 
-            assert buf.remaining() == 8 : "buffer not cleared";
+                assert buf.remaining() == 8 : "buffer not cleared";
+            }
         }
     }
 
@@ -168,7 +217,8 @@ public class I2CRegisterValue extends RegisterValue {
      *
      * ENSURES:
      *
-     * getValue() == current_register_value
+     * getValue() == current_register_value OR getValue() unchanged if
+     * getErrorPolicy() gave up on the read
      *
      * INTERNAL:
      *
@@ -178,25 +228,37 @@ public class I2CRegisterValue extends RegisterValue {
     @Override
     public void load() {
 
-        try {
+        for (int attempt = 0;; attempt++) {
+
+            long start = metrics.begin();
+
+            try {
 
-            handle.read(getRegisterAddress().getValue(), getRegAddrSizeBytes(), buf);
-            buf.flip();
+                handle.read(getRegisterAddress().getValue(), getRegAddrSizeBytes(), buf);
+                metrics.end(start, 1);
+                buf.flip();
 
-            byte result = buf.get();
+                byte result = buf.get();
 
-            value = result;
+                value = result;
+                valid = true;
+                errorPolicy.onSuccess(attempt);
 
-            assert getValue() == result : "value not updated with load result";
-        } catch (IOException ex) {
+                assert getValue() == result : "value not updated with load result";
+                return;
+            } catch (IOException ex) {
 
-            Logger.getLogger(I2CRegisterValue.class.getName()).log(Level.SEVERE, null, ex);
-            throw new RuntimeException(ex);
-        } finally {
+                metrics.fail(start);
+                if (!errorPolicy.onFailure(ex, attempt)) {
+                    valid = false;
+                    return;
+                }
+            } finally {
 
-            buf.clear();
+                buf.clear();
 
-            assert buf.remaining() == 8 : "buffer not cleared";
+                assert buf.remaining() == 8 : "buffer not cleared";
+            }
         }
     }
 }
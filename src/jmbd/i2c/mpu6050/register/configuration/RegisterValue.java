@@ -23,6 +23,8 @@ public abstract class RegisterValue {
     protected RegisterAddress registerAddress;
 
     protected byte value;
+    // false once an error policy gave up on a load()
+    protected boolean valid = true;
 
     /**
      * ENSURES:
@@ -104,11 +106,22 @@ public abstract class RegisterValue {
      *
      * ENSURES:
      *
-     * getValue() == current_register_value
+     * isValid() AND getValue() == current_register_value OR !isValid() (value
+     * left as it was) if the read failed
      *
      */
     public abstract void load();
 
+    /**
+     * Did the last load() succeed? getValue() is stale otherwise.
+     *
+     * @return
+     */
+    public boolean isValid() {
+
+        return valid;
+    }
+
     /**
      * Turns bit in the given index off.
      *
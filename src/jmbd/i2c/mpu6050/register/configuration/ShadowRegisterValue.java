@@ -0,0 +1,290 @@
+package jmbd.i2c.mpu6050.register.configuration;
+
+import jmbd.i2c.mpu6050.device.RegisterAddress;
+import jmbd.i2c.mpu6050.register.block.RegisterBlock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Write-through cache of the configuration registers.
+ *
+ * The (otherwise static) configuration registers are mirrored in a local
+ * shadow copy, filled in with a couple of bulk reads by refresh(). From then
+ * on load() is served from the shadow copy without touching the bus whilst
+ * store() only writes to the device if the value actually differs from the
+ * shadow one, i.e. a read-modify-write cycle costs (at most) a single write.
+ *
+ * Only the ranges in SHADOWED_RANGE_STARTS are cached (0x06 - 0x0B with the
+ * accel offsets, 0x13 - 0x35, 0x37 - 0x38 and 0x6A - 0x6C). Everything else
+ * is passed through to the wrapped RegisterValue and never read by refresh(),
+ * in particular the registers the device updates on its own: I2C_MST_STATUS
+ * (0x36) and INT_STATUS (0x3A), both cleared on read, the measurements (0x3B
+ * - 0x60) and FIFO_COUNT / FIFO_R_W (0x72 - 0x74). Bits the device clears by
+ * itself (resets) are cleared in the shadow copy as soon as they are written.
+ *
+ * Writes can optionally be verified by reading the register back.
+ *
+ * @author savvas
+ */
+public class ShadowRegisterValue extends RegisterValue {
+
+    /**
+     * Smallest block capacity able to fill in the largest cached range.
+     */
+    public static final int REQUIRED_BLOCK_CAPACITY = 0x35 - 0x13 + 1;
+
+    private static final int REGISTER_COUNT = 128;
+
+    // Cached ranges, each filled in with a single block read
+    private static final RegisterAddress[] SHADOWED_RANGE_STARTS = {
+        // accelerometer offsets
+        RegisterAddress.XA_OFFS_H,
+        // gyroscope offsets up to (and including) I2C_SLV4_DI, stopping
+        // short of I2C_MST_STATUS which reading would clear..
+        RegisterAddress.XG_OFFS_USRH,
+        // INT_PIN_CFG, INT_ENABLE
+        RegisterAddress.INT_PIN_CFG,
+        // USER_CTRL, PWR_MGMT_1, PWR_MGMT_2
+        RegisterAddress.USER_CTRL
+    };
+    private static final int[] SHADOWED_RANGE_LENGTHS = {6, REQUIRED_BLOCK_CAPACITY, 2, 3};
+
+    protected RegisterValue delegate;
+    protected RegisterBlock block;
+
+    protected final byte[] shadow;
+    protected final boolean[] valid;
+    protected final boolean[] shadowed;
+    protected final byte[] selfClearingMasks;
+
+    protected boolean verifyWrites;
+    protected long writesSkipped;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) delegate not null
+     *
+     * 2) block not null
+     *
+     * 3) block.getCapacity() >= REQUIRED_BLOCK_CAPACITY
+     *
+     * ENSURES:
+     *
+     * !isVerifyWrites()
+     *
+     * @param delegate used for single register reads and writes
+     * @param block (exclusively) used for bulk reads
+     */
+    public ShadowRegisterValue(RegisterValue delegate, RegisterBlock block) {
+
+        assert delegate != null : "delegate is null";
+        assert block != null : "block is null";
+        assert block.getCapacity() >= REQUIRED_BLOCK_CAPACITY : "block capacity less than " + REQUIRED_BLOCK_CAPACITY;
+
+        this.delegate = delegate;
+        this.block = block;
+
+        shadow = new byte[REGISTER_COUNT];
+        valid = new boolean[REGISTER_COUNT];
+        shadowed = new boolean[REGISTER_COUNT];
+        selfClearingMasks = new byte[REGISTER_COUNT];
+
+        for (int r = 0; r < SHADOWED_RANGE_STARTS.length; r++) {
+
+            int first = SHADOWED_RANGE_STARTS[r].getValue();
+
+            for (int a = first; a < first + SHADOWED_RANGE_LENGTHS[r]; a++) {
+                shadowed[a] = true;
+            }
+        }
+
+        // USER_CTRL: FIFO_RESET, I2C_MST_RESET, SIG_COND_RESET
+        selfClearingMasks[RegisterAddress.USER_CTRL.getValue()] = 0x07;
+        // PWR_MGMT_1: DEVICE_RESET
+        selfClearingMasks[RegisterAddress.PWR_MNG_CONFIG.getValue()] = (byte) 0x80;
+
+        assert !isVerifyWrites() : "verifyWrites on by default";
+    }
+
+    /**
+     * Should every write be followed by a read (from the device) of the same
+     * register to make sure the value has been stored?
+     *
+     * ENSURES:
+     *
+     * isVerifyWrites() == verifyWrites
+     *
+     * @param verifyWrites
+     */
+    public void setVerifyWrites(boolean verifyWrites) {
+
+        this.verifyWrites = verifyWrites;
+
+        assert isVerifyWrites() == verifyWrites : "verifyWrites not updated";
+    }
+
+    public boolean isVerifyWrites() {
+
+        return verifyWrites;
+    }
+
+    /**
+     * (Re-)fills the whole shadow copy from the device, one bulk read per
+     * contiguous range of cached registers.
+     *
+     * Needs to be called if the device has been reset or reconfigured by
+     * anything other than this object (e.g. a RegisterBlock store()).
+     *
+     * ENSURES:
+     *
+     * all cached registers valid
+     */
+    public void refresh() {
+
+        for (int r = 0; r < SHADOWED_RANGE_STARTS.length; r++) {
+
+            int first = SHADOWED_RANGE_STARTS[r].getValue();
+
+            block.setRange(SHADOWED_RANGE_STARTS[r], SHADOWED_RANGE_LENGTHS[r]);
+            block.load();
+
+            for (int o = 0; o < SHADOWED_RANGE_LENGTHS[r]; o++) {
+                shadow[first + o] = block.getByte(o);
+                valid[first + o] = true;
+            }
+        }
+    }
+
+    /**
+     * Forgets about the whole shadow copy, subsequent loads go to the device
+     * (until the next refresh()).
+     */
+    public void invalidate() {
+
+        for (int a = 0; a < REGISTER_COUNT; a++) {
+            valid[a] = false;
+        }
+    }
+
+    /**
+     * Is the current register cached?
+     *
+     * @return
+     */
+    public boolean isShadowed() {
+
+        return shadowed[address()];
+    }
+
+    /**
+     * Served from the shadow copy for cached registers (loading it first if
+     * not there yet), from the device otherwise.
+     */
+    @Override
+    public void load() {
+
+        int a = address();
+
+        if (shadowed[a] && valid[a]) {
+
+            value = shadow[a];
+            super.valid = true;
+        } else {
+
+            delegate.setRegisterAddress(getRegisterAddress());
+            delegate.load();
+            super.valid = delegate.isValid();
+
+            if (!super.valid) {
+                // failed read, nothing worth keeping (or caching)
+                return;
+            }
+            value = delegate.getValue();
+
+            if (shadowed[a]) {
+                shadow[a] = value;
+                valid[a] = true;
+            }
+        }
+
+        assert getValue() == value : "value not updated with load result";
+    }
+
+    /**
+     * For cached registers, only writes to the device if value differs from
+     * the shadow one.
+     */
+    @Override
+    public void store() {
+
+        int a = address();
+
+        if (shadowed[a] && valid[a] && shadow[a] == value) {
+
+            ++writesSkipped;
+            return;
+        }
+
+        delegate.setRegisterAddress(getRegisterAddress());
+        delegate.setValue(value);
+        delegate.store();
+
+        if (shadowed[a]) {
+
+            // device clears reset bits on its own..
+            shadow[a] = (byte) (value & ~selfClearingMasks[a]);
+            valid[a] = true;
+        }
+
+        if (verifyWrites) {
+            verify(a);
+        }
+    }
+
+    private void verify(int a) {
+
+        delegate.setRegisterAddress(getRegisterAddress());
+        delegate.load();
+
+        byte actual = delegate.getValue();
+        byte mask = (byte) ~selfClearingMasks[a];
+
+        if (shadowed[a]) {
+            shadow[a] = actual;
+        }
+
+        if ((actual & mask) != (value & mask)) {
+
+            RuntimeException ex = new RuntimeException("Register " + getRegisterAddress() + " holds " + actual + " after writing " + value);
+            Logger.getLogger(ShadowRegisterValue.class.getName()).log(Level.SEVERE, null, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * How many store() calls did not need a bus write so far.
+     *
+     * @return
+     */
+    public long getWritesSkipped() {
+
+        return writesSkipped;
+    }
+
+    private int address() {
+
+        return getRegisterAddress().getValue() & (REGISTER_COUNT - 1);
+    }
+}
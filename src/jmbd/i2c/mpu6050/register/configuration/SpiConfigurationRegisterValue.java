@@ -1,5 +1,13 @@
 package jmbd.i2c.mpu6050.register.configuration;
 
+import jmbd.commons.ByteBufferAccessOptimisation;
+import jmbd.commons.error.DeviceErrorPolicy;
+import jmbd.commons.metrics.MetricsRegistry;
+import jmbd.commons.metrics.TransactionMetrics;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import jdk.dio.spibus.SPIDevice;
+
 /**
  * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
  * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
@@ -12,19 +20,196 @@ package jmbd.i2c.mpu6050.register.configuration;
  * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
  * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  *
- * TODO
+ * Register access over SPI, for MPU-6000 parts.
+ *
+ * Each access is a single two-byte full-duplex transfer: the register address
+ * goes out first (msb set for reads, clear for writes) followed by the value to
+ * write or a dummy byte whilst the value is being clocked in.
+ *
+ * NOTE: The device only accepts register writes at up to 1MHz so the SPI
+ * device used here should be configured accordingly (sensor reads can run at
+ * up to 20MHz on a separate SPIDevice, see SpiRegisterBlock).
  *
  * @author savvas
  */
 public class SpiConfigurationRegisterValue extends RegisterValue {
 
+    public static final int READ_FLAG = 0x80;
+
+    private static final int TRANSFER_SIZE_BYTES = 2;
+
+    protected SPIDevice device;
+    protected TransactionMetrics metrics;
+    protected DeviceErrorPolicy errorPolicy = DeviceErrorPolicy.failFast(SpiConfigurationRegisterValue.class.getName());
+    protected ByteBuffer txBuf;
+    protected ByteBuffer rxBuf;
+
+    /**
+     * Default register address is RegisterAddress.NONE.
+     *
+     * REQUIRES:
+     *
+     * 1) device not null
+     *
+     * 2) device is open
+     *
+     * 3) device word length is 8 bits
+     *
+     * @param device
+     */
+    public SpiConfigurationRegisterValue(SPIDevice device) {
+
+        // precondition will be checked in callee method..
+        setDevice(device);
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * 1) device not null
+     *
+     * 2) device is open
+     *
+     * ENSURES:
+     *
+     * INTERNAL:
+     *
+     * 1) txBuf.capacity() == 2
+     *
+     * 2) rxBuf.capacity() == 2
+     *
+     * @param device
+     */
+    public void setDevice(SPIDevice device) {
+
+        assert device != null : "SPI device is null";
+        assert device.isOpen() : "SPI device is closed";
+
+        if (this.device != null) {
+            ByteBufferAccessOptimisation old = ByteBufferAccessOptimisation.forDevice(this.device);
+            old.release(txBuf);
+            old.release(rxBuf);
+        }
+
+        this.device = device;
+        this.metrics = MetricsRegistry.getDefault().metricsFor("spi", device);
+
+        ByteBufferAccessOptimisation pool = ByteBufferAccessOptimisation.forDevice(device);
+        txBuf = pool.acquire(TRANSFER_SIZE_BYTES);
+        rxBuf = pool.acquire(TRANSFER_SIZE_BYTES);
+
+        assert txBuf.capacity() == TRANSFER_SIZE_BYTES : "txBuf capacity of \"" + txBuf.capacity() + "\" is incorrect";
+        assert rxBuf.capacity() == TRANSFER_SIZE_BYTES : "rxBuf capacity of \"" + rxBuf.capacity() + "\" is incorrect";
+    }
+
+    public DeviceErrorPolicy getErrorPolicy() {
+
+        return errorPolicy;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * errorPolicy not null
+     *
+     * @param errorPolicy
+     */
+    public void setErrorPolicy(DeviceErrorPolicy errorPolicy) {
+
+        assert errorPolicy != null : "errorPolicy is null";
+
+        this.errorPolicy = errorPolicy;
+    }
+
+    /**
+     * Failed writes are retried/abandoned/escalated as getErrorPolicy()
+     * decides.
+     *
+     * ENSURES:
+     *
+     * INTERNAL:
+     *
+     * txBuf.remaining() == 2
+     */
     @Override
     public void store() {
-        throw new UnsupportedOperationException("SPI not supported yet.");
+
+        for (int attempt = 0;; attempt++) {
+
+            long start = metrics.begin();
+
+            try {
+                txBuf.put((byte) (getRegisterAddress().getValue() & ~READ_FLAG)).put(value).flip();
+                device.write(txBuf);
+                metrics.end(start, 1);
+                errorPolicy.onSuccess(attempt);
+                return;
+            } catch (IOException ex) {
+
+                metrics.fail(start);
+                if (!errorPolicy.onFailure(ex, attempt)) {
+                    return;
+                }
+            } finally {
+
+                txBuf.clear();
+
+                assert txBuf.remaining() == TRANSFER_SIZE_BYTES : "buffer not cleared";
+            }
+        }
     }
 
+    /**
+     * ENSURES:
+     *
+     * getValue() == current_register_value OR getValue() unchanged if
+     * getErrorPolicy() gave up on the read
+     *
+     * INTERNAL:
+     *
+     * 1) txBuf.remaining() == 2
+     *
+     * 2) rxBuf.remaining() == 2
+     */
     @Override
     public void load() {
-        throw new UnsupportedOperationException("SPI not supported yet.");
+
+        for (int attempt = 0;; attempt++) {
+
+            long start = metrics.begin();
+
+            try {
+                // second byte is a dummy one, just clocking the value in..
+                txBuf.put((byte) (getRegisterAddress().getValue() | READ_FLAG)).put((byte) 0).flip();
+                device.writeAndRead(txBuf, rxBuf);
+                metrics.end(start, 1);
+                rxBuf.flip();
+
+                // first byte was clocked in whilst sending the address
+                rxBuf.get();
+                byte result = rxBuf.get();
+
+                value = result;
+                valid = true;
+                errorPolicy.onSuccess(attempt);
+
+                assert getValue() == result : "value not updated with load result";
+                return;
+            } catch (IOException ex) {
+
+                metrics.fail(start);
+                if (!errorPolicy.onFailure(ex, attempt)) {
+                    valid = false;
+                    return;
+                }
+            } finally {
+
+                txBuf.clear();
+                rxBuf.clear();
+
+                assert txBuf.remaining() == TRANSFER_SIZE_BYTES : "txBuf not cleared";
+                assert rxBuf.remaining() == TRANSFER_SIZE_BYTES : "rxBuf not cleared";
+            }
+        }
     }
 }
@@ -0,0 +1,94 @@
+package jmbd.i2c.mpu6050.register.measurement;
+
+import jmbd.commons.error.DeviceErrorPolicy;
+import jmbd.i2c.mpu6050.device.RegisterAddress;
+import jmbd.i2c.mpu6050.register.block.RegisterBlock;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Reads all 14 measurement bytes as a single register block starting at
+ * ACCEL_XOUT_H, whatever the bus the block is on.
+ *
+ * @author savvas
+ */
+public class BlockBurstMeasurementRead extends BurstMeasurementRead {
+
+    protected RegisterBlock block;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) block not null
+     *
+     * 2) block.getCapacity() >= MeasurementFrame.LENGTH_BYTES
+     *
+     * ENSURES:
+     *
+     * INTERNAL:
+     *
+     * block range set to all measurement registers
+     *
+     * @param block (exclusively) used by this object
+     */
+    public BlockBurstMeasurementRead(RegisterBlock block) {
+
+        assert block != null : "block is null";
+        assert block.getCapacity() >= MeasurementFrame.LENGTH_BYTES : "block capacity less than " + MeasurementFrame.LENGTH_BYTES;
+
+        this.block = block;
+        this.block.setRange(RegisterAddress.ACCEL_XOUT_H, MeasurementFrame.LENGTH_BYTES);
+
+        assert this.block.getStartAddress() == RegisterAddress.ACCEL_XOUT_H : "block range not set";
+    }
+
+    public DeviceErrorPolicy getErrorPolicy() {
+
+        return block.getErrorPolicy();
+    }
+
+    /**
+     * Policy of the underlying block, e.g. DeviceErrorPolicy.tolerant() for
+     * sampling loops that should skip a failed sample rather than stop.
+     *
+     * REQUIRES:
+     *
+     * errorPolicy not null
+     *
+     * @param errorPolicy
+     */
+    public void setErrorPolicy(DeviceErrorPolicy errorPolicy) {
+
+        block.setErrorPolicy(errorPolicy);
+    }
+
+    @Override
+    public boolean load(MeasurementFrame frame) {
+
+        assert frame != null : "frame is null";
+
+        long now = System.nanoTime();
+
+        block.load();
+
+        if (!block.isValid()) {
+            // error policy gave up on the read, frame keeps the previous sample (and timestamp)
+            return false;
+        }
+
+        for (int c = 0; c < MeasurementFrame.CHANNEL_COUNT; c++) {
+            frame.setValue(c, block.getShort(c * 2));
+        }
+        frame.setTimestamp(now);
+        return true;
+    }
+}
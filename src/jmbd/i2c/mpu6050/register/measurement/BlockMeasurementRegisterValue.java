@@ -0,0 +1,69 @@
+package jmbd.i2c.mpu6050.register.measurement;
+
+import jmbd.i2c.mpu6050.register.block.RegisterBlock;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Reads values of both registers in a single (auto-increment) transaction.
+ *
+ * Unlike MultiReadMeasurementRegisterValue, high and low registers can not
+ * come from different sampling instants and, unlike
+ * CombinedMessageMeasurementRegisterValue, only one message is needed.
+ *
+ * REQUIRES:
+ *
+ * getLowRegisterAddr() is the register right after getHighRegisterAddr(), as
+ * is the case for all measurements of the device
+ *
+ * @author savvas
+ */
+public class BlockMeasurementRegisterValue extends MeasurementRegisterValue {
+
+    private static final int LENGTH_BYTES = 2;
+
+    protected RegisterBlock block;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) block not null
+     *
+     * 2) block.getCapacity() >= 2
+     *
+     * @param block
+     */
+    public BlockMeasurementRegisterValue(RegisterBlock block) {
+
+        assert block != null : "block is null";
+        assert block.getCapacity() >= LENGTH_BYTES : "block capacity less than " + LENGTH_BYTES;
+
+        this.block = block;
+    }
+
+    @Override
+    public void load() {
+
+        assert getLowRegisterAddr().getValue() == getHighRegisterAddr().getValue() + 1 : "high and low registers not adjacent";
+
+        block.setRange(getHighRegisterAddr(), LENGTH_BYTES);
+        block.load();
+
+        valid = block.isValid();
+        if (!valid) {
+            return;
+        }
+
+        highRegValue = block.getByte(0);
+        lowRegValue = block.getByte(1);
+    }
+}
@@ -0,0 +1,47 @@
+package jmbd.i2c.mpu6050.register.measurement;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Reads all measurement registers (ACCEL_XOUT_H through GYRO_ZOUT_L) in a
+ * single bus transaction.
+ *
+ * As with CombinedMessageMeasurementRegisterValue, keeping the bus busy for the
+ * duration of the read guarantees that all values come from the same sampling
+ * instant but, unlike it, this is achieved with one transaction per sample
+ * rather than one per measurement.
+ *
+ * @author savvas
+ */
+public abstract class BurstMeasurementRead {
+
+    /**
+     * Reads all measurements into given frame.
+     *
+     * REQUIRES:
+     *
+     * frame not null
+     *
+     * ENSURES:
+     *
+     * 1) frame.getValue(channel) == current_register_value for all channels
+     *
+     * 2) frame.getTimestamp() == time of read
+     *
+     * OR frame left unchanged (and false returned) if the read failed
+     *
+     * @param frame
+     * @return false if nothing could be read (e.g. the error policy gave up),
+     * callers should skip the sample
+     */
+    public abstract boolean load(MeasurementFrame frame);
+}
@@ -1,10 +1,13 @@
 package jmbd.i2c.mpu6050.register.measurement;
 
+import jmbd.commons.ByteBufferAccessOptimisation;
+import jmbd.commons.error.DeviceErrorPolicy;
+import jmbd.i2c.bus.I2CTransactionPlan;
+import jmbd.commons.metrics.MetricsRegistry;
+import jmbd.commons.metrics.TransactionMetrics;
 import jmbd.i2c.mpu6050.device.RegisterAddress;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import jdk.dio.i2cbus.I2CDevice;
 
 /**
@@ -37,7 +40,12 @@ public class CombinedMessageMeasurementRegisterValue extends MeasurementRegister
     protected ByteBuffer highValBuffer;
     protected ByteBuffer lowValBuffer;
 
+    // write/read/write/read, built once and re-run on every load()..
+    protected I2CTransactionPlan plan;
+
     protected I2CDevice handle;
+    protected TransactionMetrics metrics;
+    protected DeviceErrorPolicy errorPolicy = DeviceErrorPolicy.failFast(CombinedMessageMeasurementRegisterValue.class.getName());
 
     /**
      * Default msb/lsb register addresses is RegisterAddress.NONE.
@@ -85,14 +93,23 @@ public class CombinedMessageMeasurementRegisterValue extends MeasurementRegister
         assert handle != null : "handle is null";
 
         this.handle = handle;
+        this.metrics = MetricsRegistry.getDefault().metricsFor("i2c", handle);
+
+        ByteBufferAccessOptimisation pool = ByteBufferAccessOptimisation.forDevice(handle);
 
-        highRegAddrBuffer = ByteBuffer.allocateDirect(1);
+        highRegAddrBuffer = pool.acquire(1);
         highRegAddrBuffer.put((byte) getHighRegisterAddr().getValue()).flip();
-        highValBuffer = ByteBuffer.allocateDirect(1);
+        highValBuffer = pool.acquire(1);
 
-        lowRegAddrBuffer = ByteBuffer.allocateDirect(1);
+        lowRegAddrBuffer = pool.acquire(1);
         lowRegAddrBuffer.put((byte) getLowRegisterAddr().getValue()).flip();
-        lowValBuffer = ByteBuffer.allocateDirect(1);
+        lowValBuffer = pool.acquire(1);
+
+        plan = new I2CTransactionPlan(handle)
+                .write(highRegAddrBuffer)
+                .read(highValBuffer)
+                .write(lowRegAddrBuffer)
+                .read(lowValBuffer);
 
         assertPostconditionsSatisfied(handle);
     }
@@ -124,11 +141,17 @@ public class CombinedMessageMeasurementRegisterValue extends MeasurementRegister
     @Override
     public void setLowRegisterAddr(RegisterAddress lowRegisterAddr) {
 
+        boolean changed = lowRegisterAddr != getLowRegisterAddr();
+
         super.setLowRegisterAddr(lowRegisterAddr);
 
         lowRegAddrBuffer.clear();
         lowRegAddrBuffer.put((byte) getLowRegisterAddr().getValue()).flip();
 
+        if (changed) {
+            plan.invalidate();
+        }
+
         assert this.lowRegAddrBuffer.remaining() == 1 : "lowRegAddrBuffer not prepared properly";
     }
 
@@ -145,82 +168,98 @@ public class CombinedMessageMeasurementRegisterValue extends MeasurementRegister
     @Override
     public void setHighRegisterAddr(RegisterAddress highRegisterAddr) {
 
+        boolean changed = highRegisterAddr != getHighRegisterAddr();
+
         super.setHighRegisterAddr(highRegisterAddr);
 
         highRegAddrBuffer.clear();
         highRegAddrBuffer.put((byte) getHighRegisterAddr().getValue()).flip();
 
+        if (changed) {
+            plan.invalidate();
+        }
+
         assert this.highRegAddrBuffer.remaining() == 1 : "highRegAddrBuffer not prepared properly";
     }
 
+    public DeviceErrorPolicy getErrorPolicy() {
+
+        return errorPolicy;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * errorPolicy not null
+     *
+     * @param errorPolicy
+     */
+    public void setErrorPolicy(DeviceErrorPolicy errorPolicy) {
+
+        assert errorPolicy != null : "errorPolicy is null";
+
+        this.errorPolicy = errorPolicy;
+    }
+
     /**
      * Reads both registers in one transaction whilst keeping the bus busy.
      *
      * Required in order to guarantee read consistency (i.e. both measurements
      * come from the same sampling instant). More information on datasheet.
      *
+     * Failed reads are retried/abandoned/escalated as getErrorPolicy()
+     * decides, getValue() keeps the previous value if abandoned.
      */
     @Override
     public void load() {
 
-        try {
-            /**
-             * According to datasheet, one way an application can guarantee that
-             * values from the msb/lsb registers come from the same sampling
-             * instant is to to keep the serial bus "busy" whilst reading both
-             * values (the other is by listening on an interrupt pin but that
-             * comes with several complications). The serial bus therefore,
-             * effectively becomes a lock which prevents the sensor from
-             * updating the registers (at whatever sampling rate has been
-             * defined) thus avoiding inconsistent reads (i.e. one register has
-             * a value from one sampling instant and the other from a different
-             * one).
-             *
-             * A I2CCombinedMessage object achieves this goal.
-             */
-            handle.getBus().createCombinedMessage()
-                    .appendWrite(handle, highRegAddrBuffer)
-                    .appendRead(handle, highValBuffer)
-                    .appendWrite(handle, lowRegAddrBuffer)
-                    .appendRead(handle, lowValBuffer)
-                    .transfer();
-
-            highValBuffer.flip();
-            lowValBuffer.flip();
-
-            highRegValue = highValBuffer.get();
-            lowRegValue = lowValBuffer.get();
-
-            // alternatively, can rely on default behaviour and do the merge in getValue() "on-demand" without overriding..
-            value = (short) ((getHighRegValue() << 8) | (getLowRegValue() & 0xFF));
-
-            assert getValue() == ((getHighRegValue() << 8) | (getLowRegValue() & 0xFF)) : "attribute getValue() not updated with merged result";
-        } catch (IOException ex) {
-
-            Logger.getLogger(CombinedMessageMeasurementRegisterValue.class.getName()).log(Level.SEVERE, null, ex);
-            throw new RuntimeException(ex);
-        } finally {
-
-            prepareBuffers();
-
-            assert highRegAddrBuffer.remaining() == 1 : "highRegAddrBuffer was not rewinded";
-            assert highValBuffer.remaining() == 1 : "highValBuffer was not cleared";
-            assert lowRegAddrBuffer.remaining() == 1 : "lowRegAddrBuffer was not rewinded";
-            assert lowValBuffer.remaining() == 1 : "lowValBuffer was not cleared";
+        for (int attempt = 0;; attempt++) {
+
+            long start = metrics.begin();
+
+            try {
+                /**
+                 * According to datasheet, one way an application can guarantee that
+                 * values from the msb/lsb registers come from the same sampling
+                 * instant is to to keep the serial bus "busy" whilst reading both
+                 * values (the other is by listening on an interrupt pin but that
+                 * comes with several complications). The serial bus therefore,
+                 * effectively becomes a lock which prevents the sensor from
+                 * updating the registers (at whatever sampling rate has been
+                 * defined) thus avoiding inconsistent reads (i.e. one register has
+                 * a value from one sampling instant and the other from a different
+                 * one).
+                 *
+                 * A I2CCombinedMessage object achieves this goal, the plan
+                 * keeps one around instead of building it on every read.
+                 */
+                int transferred = plan.run();
+                // two address bytes out, two value bytes in
+                metrics.end(start, transferred);
+
+                highRegValue = highValBuffer.get(0);
+                lowRegValue = lowValBuffer.get(0);
+
+                // alternatively, can rely on default behaviour and do the merge in getValue() "on-demand" without overriding..
+                value = (short) ((getHighRegValue() << 8) | (getLowRegValue() & 0xFF));
+
+                valid = true;
+                errorPolicy.onSuccess(attempt);
+
+                assert getValue() == ((getHighRegValue() << 8) | (getLowRegValue() & 0xFF)) : "attribute getValue() not updated with merged result";
+                return;
+            } catch (IOException ex) {
+
+                metrics.fail(start);
+                if (!errorPolicy.onFailure(ex, attempt)) {
+                    // previous value kept
+                    valid = false;
+                    return;
+                }
+            }
         }
     }
 
-    private void prepareBuffers() {
-
-        //Let's avoid clearing and writing to the same (address) buffer the same address again and again..
-        highRegAddrBuffer.rewind();
-        highValBuffer.clear();
-
-        //Let's avoid clearing and writing to the same (address) buffer the same address again and again..
-        lowRegAddrBuffer.rewind();
-        lowValBuffer.clear();
-    }
-
     @Override
     public short getValue() {
 
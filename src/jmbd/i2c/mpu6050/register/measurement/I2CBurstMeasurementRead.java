@@ -0,0 +1,36 @@
+package jmbd.i2c.mpu6050.register.measurement;
+
+import jmbd.i2c.mpu6050.register.block.I2CRegisterBlock;
+import jdk.dio.i2cbus.I2CDevice;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Relies on the register address auto-increment of the device to read all 14
+ * measurement bytes with a single I2C read starting at ACCEL_XOUT_H.
+ *
+ * @author savvas
+ */
+public class I2CBurstMeasurementRead extends BlockBurstMeasurementRead {
+
+    /**
+     * REQUIRES:
+     *
+     * handle not null
+     *
+     * @param handle
+     */
+    public I2CBurstMeasurementRead(I2CDevice handle) {
+
+        super(new I2CRegisterBlock(handle, MeasurementFrame.LENGTH_BYTES));
+    }
+}
@@ -0,0 +1,206 @@
+package jmbd.i2c.mpu6050.register.measurement;
+
+import java.nio.ByteBuffer;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Raw values of all seven sensor measurements (accelerometer, temperature and
+ * gyroscope) taken from the same sampling instant.
+ *
+ * Channels are kept in the same order the device lays them out in its register
+ * map, i.e. from ACCEL_XOUT_H (0x3B) to GYRO_ZOUT_L (0x48), each one being two
+ * bytes wide (msb first).
+ *
+ * Frames are meant to be reused between reads so that taking a sample does not
+ * allocate anything.
+ *
+ * @author savvas
+ */
+public class MeasurementFrame {
+
+    public static final int ACCEL_X = 0;
+    public static final int ACCEL_Y = 1;
+    public static final int ACCEL_Z = 2;
+    public static final int TEMPERATURE = 3;
+    public static final int GYRO_X = 4;
+    public static final int GYRO_Y = 5;
+    public static final int GYRO_Z = 6;
+
+    public static final int CHANNEL_COUNT = 7;
+    public static final int LENGTH_BYTES = CHANNEL_COUNT * 2;
+
+    protected final short[] values;
+
+    protected long timestamp;
+
+    /**
+     * ENSURES:
+     *
+     * getValue(channel) == 0 for all channels
+     *
+     * getTimestamp() == 0
+     */
+    public MeasurementFrame() {
+
+        values = new short[CHANNEL_COUNT];
+
+        assert getTimestamp() == 0 : "timestamp not zero";
+    }
+
+    /**
+     * Raw value of given channel.
+     *
+     * REQUIRES:
+     *
+     * channel BETWEEN [0 - CHANNEL_COUNT)
+     *
+     * @param channel
+     * @return
+     */
+    public short getValue(int channel) {
+
+        assert channel >= 0 && channel < CHANNEL_COUNT : "channel not in [0 - " + CHANNEL_COUNT + ") range";
+
+        return values[channel];
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * channel BETWEEN [0 - CHANNEL_COUNT)
+     *
+     * ENSURES:
+     *
+     * getValue(channel) == value
+     *
+     * @param channel
+     * @param value
+     */
+    public void setValue(int channel, short value) {
+
+        assert channel >= 0 && channel < CHANNEL_COUNT : "channel not in [0 - " + CHANNEL_COUNT + ") range";
+
+        values[channel] = value;
+
+        assert getValue(channel) == value : "value of channel not updated";
+    }
+
+    /**
+     * Moment (as given by System.nanoTime()) the frame was read.
+     *
+     * @return
+     */
+    public long getTimestamp() {
+
+        return timestamp;
+    }
+
+    /**
+     * ENSURES:
+     *
+     * getTimestamp() == timestamp
+     *
+     * @param timestamp
+     */
+    public void setTimestamp(long timestamp) {
+
+        this.timestamp = timestamp;
+
+        assert getTimestamp() == timestamp : "timestamp not updated";
+    }
+
+    public short getXAccel() {
+
+        return values[ACCEL_X];
+    }
+
+    public short getYAccel() {
+
+        return values[ACCEL_Y];
+    }
+
+    public short getZAccel() {
+
+        return values[ACCEL_Z];
+    }
+
+    public short getTemperature() {
+
+        return values[TEMPERATURE];
+    }
+
+    public short getXGyro() {
+
+        return values[GYRO_X];
+    }
+
+    public short getYGyro() {
+
+        return values[GYRO_Y];
+    }
+
+    public short getZGyro() {
+
+        return values[GYRO_Z];
+    }
+
+    /**
+     * Updates all channels from the raw register bytes found in source,
+     * starting at its current position.
+     *
+     * REQUIRES:
+     *
+     * 1) source not null
+     *
+     * 2) source.remaining() >= LENGTH_BYTES
+     *
+     * ENSURES:
+     *
+     * source.position() advanced by LENGTH_BYTES
+     *
+     * @param source
+     */
+    public void decode(ByteBuffer source) {
+
+        assert source != null : "source is null";
+        assert source.remaining() >= LENGTH_BYTES : "source does not contain a whole frame";
+
+        for (int c = 0; c < CHANNEL_COUNT; c++) {
+            // msb first, same merge as MeasurementRegisterValue.getValue()
+            values[c] = (short) ((source.get() << 8) | (source.get() & 0xFF));
+        }
+    }
+
+    /**
+     * Copies all channels and the timestamp of other into this frame.
+     *
+     * REQUIRES:
+     *
+     * other not null
+     *
+     * @param other
+     */
+    public void copyFrom(MeasurementFrame other) {
+
+        assert other != null : "other is null";
+
+        System.arraycopy(other.values, 0, values, 0, CHANNEL_COUNT);
+        timestamp = other.timestamp;
+    }
+
+    @Override
+    public String toString() {
+
+        return "MeasurementFrame{" + "accel=[" + getXAccel() + ", " + getYAccel() + ", " + getZAccel() + "], temp=" + getTemperature() + ", gyro=[" + getXGyro() + ", " + getYGyro() + ", " + getZGyro() + "], timestamp=" + timestamp + '}';
+    }
+}
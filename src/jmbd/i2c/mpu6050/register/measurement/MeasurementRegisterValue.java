@@ -36,6 +36,8 @@ public abstract class MeasurementRegisterValue {
     protected byte lowRegValue;
 
     protected short value;
+    // false once an error policy gave up on a load()
+    protected boolean valid = true;
 
     /**
      * ENSURES:
@@ -105,6 +107,16 @@ public abstract class MeasurementRegisterValue {
      */
     public abstract void load();
 
+    /**
+     * Did the last load() succeed? Register values are stale otherwise.
+     *
+     * @return
+     */
+    public boolean isValid() {
+
+        return valid;
+    }
+
     /**
      * The "merged" getHighRegValue()/getLowRegValue() result.
      *
@@ -40,11 +40,19 @@ public class MultiReadMeasurementRegisterValue extends MeasurementRegisterValue
         registerValue.setRegisterAddress(getHighRegisterAddr());
         registerValue.load();
 
+        valid = registerValue.isValid();
+        if (!valid) {
+            return;
+        }
         highRegValue = registerValue.getValue();
 
         registerValue.setRegisterAddress(getLowRegisterAddr());
         registerValue.load();
 
+        valid = registerValue.isValid();
+        if (!valid) {
+            return;
+        }
         lowRegValue = registerValue.getValue();
     }
 }
@@ -0,0 +1,288 @@
+package jmbd.simulation;
+
+import java.util.Random;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Command level model of a BlinkM smart LED.
+ *
+ * Commands (mnemonic followed by its arguments) are executed when the write
+ * that carried them ends, responses are then returned by the following read.
+ * Supports the commands this project uses: colour updates ('n', 'c', 'h', 'C',
+ * 'H', 'g'), script control ('p', 'o', 'W', 'R', 'L'), settings ('f', 't',
+ * 'B') and administration ('a', 'A', 'Z').
+ *
+ * Simplifications: fades complete instantly (fade speed & time adjust are
+ * only recorded), scripts are stored but not played and unknown commands are
+ * ignored, same as the firmware does.
+ *
+ * @author savvas
+ */
+public class BlinkMModel implements I2CSlaveModel {
+
+    public static final int DEFAULT_ADDRESS = 0x09;
+
+    private static final int MAX_COMMAND_LENGTH = 8;
+    private static final int MAX_RESPONSE_LENGTH = 5;
+    private static final int SCRIPT_LINES = 49;
+    private static final int SCRIPT_LINE_LENGTH = 5;
+    // value read when nothing is pending (bus pulled up)
+    private static final int IDLE_BUS = 0xFF;
+
+    private static final byte[] FIRMWARE_VERSION = {'a', 'd'};
+
+    private final byte[] command = new byte[MAX_COMMAND_LENGTH];
+    private int commandLength;
+    private boolean writing;
+
+    private final byte[] response = new byte[MAX_RESPONSE_LENGTH];
+    private int responseLength;
+    private int responsePosition;
+
+    private final int[] rgb = new int[3];
+    private final byte[] script = new byte[SCRIPT_LINES * SCRIPT_LINE_LENGTH];
+    private final byte[] startupParams = new byte[5];
+    private final Random random;
+
+    private int address = DEFAULT_ADDRESS;
+    private int fadeSpeed;
+    private int timeAdjust;
+    private int scriptLength;
+    private int scriptRepeats;
+    private int playingScript = -1;
+    private long commandCount;
+
+    /**
+     * @param seed for random colour commands
+     */
+    public BlinkMModel(long seed) {
+
+        random = new Random(seed);
+    }
+
+    /**
+     * Current colour as [r, g, b].
+     *
+     * @return
+     */
+    public synchronized int[] getRgb() {
+
+        return new int[]{rgb[0], rgb[1], rgb[2]};
+    }
+
+    public synchronized int getAddress() {
+
+        return address;
+    }
+
+    public synchronized int getFadeSpeed() {
+
+        return fadeSpeed;
+    }
+
+    public synchronized int getTimeAdjust() {
+
+        return timeAdjust;
+    }
+
+    /**
+     * @return id of the script being played, -1 if stopped
+     */
+    public synchronized int getPlayingScript() {
+
+        return playingScript;
+    }
+
+    public synchronized long getCommandCount() {
+
+        return commandCount;
+    }
+
+    @Override
+    public synchronized void start(boolean read) {
+
+        // a repeated start ends the write before it..
+        executePendingCommand();
+
+        writing = !read;
+        commandLength = 0;
+    }
+
+    @Override
+    public synchronized void write(int value) {
+
+        if (commandLength < MAX_COMMAND_LENGTH) {
+            command[commandLength++] = (byte) value;
+        }
+    }
+
+    @Override
+    public synchronized int read() {
+
+        if (responsePosition < responseLength) {
+            return response[responsePosition++] & 0xFF;
+        }
+        return IDLE_BUS;
+    }
+
+    @Override
+    public synchronized void stop() {
+
+        executePendingCommand();
+        writing = false;
+    }
+
+    private void executePendingCommand() {
+
+        if (!writing || commandLength == 0) {
+            return;
+        }
+        writing = false;
+        commandCount++;
+        responseLength = 0;
+        responsePosition = 0;
+
+        switch (command[0]) {
+            case 'n':
+            case 'c':
+                setRgb(arg(1), arg(2), arg(3));
+                break;
+            case 'h':
+                setHsb(arg(1), arg(2), arg(3));
+                break;
+            case 'C':
+                setRgb(randomAround(rgb[0], arg(1)), randomAround(rgb[1], arg(2)), randomAround(rgb[2], arg(3)));
+                break;
+            case 'H':
+                setHsb(random.nextInt(256), arg(2), arg(3));
+                break;
+            case 'g':
+                respond(rgb[0], rgb[1], rgb[2]);
+                break;
+            case 'p':
+                playingScript = arg(1);
+                break;
+            case 'o':
+                playingScript = -1;
+                break;
+            case 'f':
+                fadeSpeed = arg(1);
+                break;
+            case 't':
+                timeAdjust = (byte) arg(1);
+                break;
+            case 'W':
+                // id, line, duration, cmd, arg1, arg2, arg3
+                if (arg(2) < SCRIPT_LINES) {
+                    System.arraycopy(command, 3, script, arg(2) * SCRIPT_LINE_LENGTH, SCRIPT_LINE_LENGTH);
+                }
+                break;
+            case 'R':
+                if (arg(2) < SCRIPT_LINES) {
+                    int offset = arg(2) * SCRIPT_LINE_LENGTH;
+                    respond(script[offset], script[offset + 1], script[offset + 2], script[offset + 3], script[offset + 4]);
+                }
+                break;
+            case 'L':
+                scriptLength = arg(2);
+                scriptRepeats = arg(3);
+                break;
+            case 'B':
+                System.arraycopy(command, 1, startupParams, 0, startupParams.length);
+                break;
+            case 'a':
+                respond(address);
+                break;
+            case 'A':
+                // new address, 0xd0, 0x0d, new address
+                if (arg(2) == 0xD0 && arg(3) == 0x0D && arg(1) == arg(4)) {
+                    address = arg(1);
+                }
+                break;
+            case 'Z':
+                respond(FIRMWARE_VERSION[0], FIRMWARE_VERSION[1]);
+                break;
+            default:
+            // NOP
+        }
+    }
+
+    private int arg(int index) {
+
+        return index < commandLength ? command[index] & 0xFF : 0;
+    }
+
+    private void respond(int... values) {
+
+        for (int v = 0; v < values.length; v++) {
+            response[v] = (byte) values[v];
+        }
+        responseLength = values.length;
+    }
+
+    private int randomAround(int current, int range) {
+
+        int value = current + random.nextInt(2 * range + 1) - range;
+        return Math.max(0, Math.min(255, value));
+    }
+
+    private void setRgb(int r, int g, int b) {
+
+        rgb[0] = r;
+        rgb[1] = g;
+        rgb[2] = b;
+    }
+
+    /**
+     * All components in [0 - 255], hue wrapping around.
+     */
+    private void setHsb(int hue, int saturation, int brightness) {
+
+        if (saturation == 0) {
+            setRgb(brightness, brightness, brightness);
+            return;
+        }
+        int sector = hue / 43;
+        int remainder = (hue - sector * 43) * 6;
+
+        int p = (brightness * (255 - saturation)) >> 8;
+        int q = (brightness * (255 - ((saturation * remainder) >> 8))) >> 8;
+        int t = (brightness * (255 - ((saturation * (255 - remainder)) >> 8))) >> 8;
+
+        switch (sector) {
+            case 0:
+                setRgb(brightness, t, p);
+                break;
+            case 1:
+                setRgb(q, brightness, p);
+                break;
+            case 2:
+                setRgb(p, brightness, t);
+                break;
+            case 3:
+                setRgb(p, q, brightness);
+                break;
+            case 4:
+                setRgb(t, p, brightness);
+                break;
+            default:
+                setRgb(brightness, p, q);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        return "BlinkMModel{" + "address=" + address + ", rgb=[" + rgb[0] + ", " + rgb[1] + ", " + rgb[2] + "], playingScript=" + playingScript + ", scriptLength=" + scriptLength + ", scriptRepeats=" + scriptRepeats + ", commandCount=" + commandCount + '}';
+    }
+}
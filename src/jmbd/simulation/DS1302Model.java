@@ -0,0 +1,258 @@
+package jmbd.simulation;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Bit level model of a DS1302 real time clock.
+ *
+ * Follows the 3-wire protocol: CE high starts a transfer, the command byte and
+ * written data are sampled lsb first on rising clock edges and read data is
+ * driven on the data pin on falling edges (first bit on the falling edge that
+ * ends the command byte). Single and burst access of both the clock/calendar
+ * registers and the 31 bytes of RAM are supported and the write-protect bit
+ * is honoured.
+ *
+ * Simplifications: the clock does not tick on its own (registers keep what was
+ * written, use advanceSeconds() to move time forward), write-protect starts
+ * cleared (undefined on the real part) and the trickle charger register is
+ * plain storage.
+ *
+ * @author savvas
+ */
+public class DS1302Model implements PinObserver {
+
+    public static final int CLOCK_REGISTERS = 9;
+    public static final int RAM_SIZE = 31;
+
+    private static final int BURST_ADDRESS = 31;
+    private static final int CONTROL_REGISTER = 7;
+    // burst access covers the 8 clock/calendar & control registers
+    private static final int CLOCK_BURST_LENGTH = 8;
+    private static final int WRITE_PROTECT_BIT = 0x80;
+    private static final int CLOCK_HALT_BIT = 0x80;
+
+    private static final int IDLE = 0;
+    private static final int COMMAND = 1;
+    private static final int WRITING = 2;
+    private static final int READING = 3;
+
+    private final SimulatedGPIOPin cePin;
+    private final SimulatedGPIOPin clockPin;
+    private final SimulatedGPIOPin dataPin;
+
+    private final int[] clock = new int[CLOCK_REGISTERS];
+    private final int[] ram = new int[RAM_SIZE];
+
+    private int state = IDLE;
+    private int shift;
+    private int bitCount;
+    private boolean ramAccess;
+    private boolean burst;
+    private int address;
+
+    /**
+     * ENSURES:
+     *
+     * clock halted (CH set) and all registers zero, as after first power-up
+     *
+     * @param cePin
+     * @param clockPin
+     * @param dataPin
+     */
+    public DS1302Model(SimulatedGPIOPin cePin, SimulatedGPIOPin clockPin, SimulatedGPIOPin dataPin) {
+
+        assert cePin != null && clockPin != null && dataPin != null : "pin is null";
+
+        this.cePin = cePin;
+        this.clockPin = clockPin;
+        this.dataPin = dataPin;
+
+        clock[0] = CLOCK_HALT_BIT;
+
+        cePin.addObserver(this);
+        clockPin.addObserver(this);
+    }
+
+    @Override
+    public synchronized void pinChanged(SimulatedGPIOPin pin, boolean value) {
+
+        if (pin == cePin) {
+            state = value ? COMMAND : IDLE;
+            shift = 0;
+            bitCount = 0;
+        } else if (pin == clockPin && state != IDLE) {
+            if (value) {
+                risingEdge();
+            } else {
+                fallingEdge();
+            }
+        }
+    }
+
+    private void risingEdge() {
+
+        if (state == READING) {
+            return;
+        }
+        shift |= (dataPin.getHostValue() ? 1 : 0) << bitCount;
+        bitCount++;
+
+        if (bitCount < 8) {
+            return;
+        }
+        if (state == COMMAND) {
+            decodeCommand(shift);
+        } else {
+            store(shift);
+        }
+        shift = 0;
+        bitCount = 0;
+    }
+
+    private void fallingEdge() {
+
+        if (state != READING) {
+            return;
+        }
+        dataPin.drive(((load() >> bitCount) & 1) == 1);
+        bitCount++;
+
+        if (bitCount == 8) {
+            bitCount = 0;
+            nextAddress();
+        }
+    }
+
+    private void decodeCommand(int command) {
+
+        // bit 7 must be set, otherwise the part ignores the transfer
+        if ((command & 0x80) == 0) {
+            state = IDLE;
+            return;
+        }
+        ramAccess = (command & 0x40) != 0;
+        address = (command >> 1) & 0x1F;
+        burst = address == BURST_ADDRESS;
+        if (burst) {
+            address = 0;
+        }
+        state = (command & 0x01) == 1 ? READING : WRITING;
+    }
+
+    private int load() {
+
+        if (ramAccess) {
+            return address < RAM_SIZE ? ram[address] : 0;
+        }
+        return address < CLOCK_REGISTERS ? clock[address] : 0;
+    }
+
+    private void store(int value) {
+
+        boolean writeProtected = (clock[CONTROL_REGISTER] & WRITE_PROTECT_BIT) != 0;
+
+        if (!ramAccess && address == CONTROL_REGISTER) {
+            // the control register itself is always writable..
+            clock[CONTROL_REGISTER] = value;
+        } else if (!writeProtected) {
+            if (ramAccess && address < RAM_SIZE) {
+                ram[address] = value;
+            } else if (!ramAccess && address < CLOCK_REGISTERS) {
+                clock[address] = value;
+            }
+        }
+        nextAddress();
+    }
+
+    private void nextAddress() {
+
+        if (!burst) {
+            // single byte access, anything clocked after it is ignored
+            state = state == READING ? READING : IDLE;
+            return;
+        }
+        address++;
+        if (address >= (ramAccess ? RAM_SIZE : CLOCK_BURST_LENGTH)) {
+            state = IDLE;
+        }
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * register BETWEEN [0 - CLOCK_REGISTERS)
+     *
+     * @param register
+     * @return raw (BCD) register value
+     */
+    public synchronized int getClockRegister(int register) {
+
+        assert register >= 0 && register < CLOCK_REGISTERS : "register not in [0 - " + CLOCK_REGISTERS + ") range";
+
+        return clock[register];
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * address BETWEEN [0 - RAM_SIZE)
+     *
+     * @param address
+     * @return
+     */
+    public synchronized int getRam(int address) {
+
+        assert address >= 0 && address < RAM_SIZE : "address not in [0 - " + RAM_SIZE + ") range";
+
+        return ram[address];
+    }
+
+    /**
+     * Moves seconds/minutes/hours (24h mode only) forward unless the clock is
+     * halted. Date is left alone.
+     *
+     * REQUIRES:
+     *
+     * seconds >= 0
+     *
+     * @param seconds
+     */
+    public synchronized void advanceSeconds(int seconds) {
+
+        assert seconds >= 0 : "seconds is negative";
+
+        if ((clock[0] & CLOCK_HALT_BIT) != 0) {
+            return;
+        }
+        int total = fromBcd(clock[0] & 0x7F) + fromBcd(clock[1]) * 60 + fromBcd(clock[2] & 0x3F) * 3_600 + seconds;
+
+        clock[0] = toBcd(total % 60);
+        clock[1] = toBcd((total / 60) % 60);
+        clock[2] = toBcd((total / 3_600) % 24);
+    }
+
+    private static int fromBcd(int value) {
+
+        return (value >> 4) * 10 + (value & 0x0F);
+    }
+
+    private static int toBcd(int value) {
+
+        return ((value / 10) << 4) | (value % 10);
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        return "DS1302Model{" + "time=" + Integer.toHexString(clock[2]) + ':' + Integer.toHexString(clock[1]) + ':' + Integer.toHexString(clock[0]) + ", state=" + state + '}';
+    }
+}
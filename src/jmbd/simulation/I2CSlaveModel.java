@@ -0,0 +1,51 @@
+package jmbd.simulation;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Byte level behaviour of an I2C slave as seen from the bus.
+ *
+ * A transaction always starts with start(read), may contain repeated starts
+ * (i.e. more start(read) calls) and always ends with stop(). Calls for a
+ * transaction are never interleaved with calls of another one.
+ *
+ * @author savvas
+ */
+public interface I2CSlaveModel {
+
+    /**
+     * (Repeated) start condition followed by the slave address with the R/W
+     * bit set as given.
+     *
+     * @param read
+     */
+    void start(boolean read);
+
+    /**
+     * Byte sent by the master.
+     *
+     * @param value in the [0 - 255] range
+     */
+    void write(int value);
+
+    /**
+     * Byte requested by the master.
+     *
+     * @return value in the [0 - 255] range
+     */
+    int read();
+
+    /**
+     * Stop condition.
+     */
+    void stop();
+}
@@ -0,0 +1,126 @@
+package jmbd.simulation;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Model of an MCP4901/4911/4921 DAC.
+ *
+ * The 16-bit command word (A/B, BUF, GA, SHDN followed by the data msb first)
+ * is latched when CS goes high, i.e. with LDAC tied low as in MCP49x1Device.
+ * Words that are not exactly 16 bits long are discarded, same as the real
+ * part. Writes targeting DAC B are ignored since these parts only have DAC A.
+ *
+ * @author savvas
+ */
+public class Mcp49x1Model implements SpiSlaveModel {
+
+    private static final int CHANNEL_B_BIT = 1 << 15;
+    private static final int BUFFERED_BIT = 1 << 14;
+    private static final int GAIN_X1_BIT = 1 << 13;
+    private static final int ACTIVE_BIT = 1 << 12;
+
+    private final int resolution;
+
+    private int word;
+    private int bytesReceived;
+
+    private int data;
+    private boolean buffered;
+    private boolean gainX1 = true;
+    private boolean active;
+    private long writeCount;
+
+    /**
+     * REQUIRES:
+     *
+     * resolution IN {8, 10, 12} (i.e. MCP4901, MCP4911, MCP4921)
+     *
+     * @param resolution
+     */
+    public Mcp49x1Model(int resolution) {
+
+        assert resolution == 8 || resolution == 10 || resolution == 12 : "resolution not one of 8, 10, 12";
+
+        this.resolution = resolution;
+    }
+
+    @Override
+    public synchronized void select() {
+
+        word = 0;
+        bytesReceived = 0;
+    }
+
+    @Override
+    public synchronized int exchange(int mosi) {
+
+        word = (word << 8) | mosi;
+        bytesReceived++;
+
+        // SDO not available on these parts..
+        return 0;
+    }
+
+    @Override
+    public synchronized void deselect() {
+
+        if (bytesReceived != 2 || (word & CHANNEL_B_BIT) != 0) {
+            return;
+        }
+        buffered = (word & BUFFERED_BIT) != 0;
+        gainX1 = (word & GAIN_X1_BIT) != 0;
+        active = (word & ACTIVE_BIT) != 0;
+        // data sits in bits 11..(12 - resolution)
+        data = (word & 0x0FFF) >> (12 - resolution);
+        writeCount++;
+    }
+
+    public synchronized int getData() {
+
+        return data;
+    }
+
+    public synchronized boolean isBuffered() {
+
+        return buffered;
+    }
+
+    public synchronized boolean isActive() {
+
+        return active;
+    }
+
+    public synchronized long getWriteCount() {
+
+        return writeCount;
+    }
+
+    /**
+     * Vout = (Vref * D / 2^n) * G, 0 when shut down.
+     *
+     * @param vref
+     * @return
+     */
+    public synchronized float getOutputVoltage(float vref) {
+
+        if (!active) {
+            return 0;
+        }
+        return vref * data / (1 << resolution) * (gainX1 ? 1 : 2);
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        return "Mcp49x1Model{" + "resolution=" + resolution + ", data=" + data + ", gainX1=" + gainX1 + ", active=" + active + ", writeCount=" + writeCount + '}';
+    }
+}
@@ -0,0 +1,646 @@
+package jmbd.simulation;
+
+import java.util.Random;
+import jmbd.i2c.mpu6050.configuration.AccelFullScaleRange;
+import jmbd.i2c.mpu6050.configuration.DigitalLowPassFilter;
+import jmbd.i2c.mpu6050.configuration.FifoSource;
+import jmbd.i2c.mpu6050.configuration.GyroFullScaleRange;
+import jmbd.i2c.mpu6050.configuration.InterruptSource;
+import jmbd.i2c.mpu6050.configuration.RegisterField;
+import jmbd.i2c.mpu6050.device.RegisterAddress;
+import jmbd.i2c.mpu6050.register.measurement.MeasurementFrame;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Register level model of an MPU-6050 (or MPU-6000, it answers both on I2C and
+ * SPI).
+ *
+ * The sensor is "mounted" on something rocking about its X axis: roll follows
+ * a sine of configurable amplitude and frequency so the accelerometer sees
+ * gravity rotating in the Y/Z plane and the X gyro sees the matching rate.
+ * Configurable biases and (seeded, hence repeatable) gaussian noise are added
+ * on top and the result goes through the offset registers and the full scale
+ * ranges selected in ACCEL_CONFIG/GYRO_CONFIG, same as the real part.
+ *
+ * Samples are produced at gyro output rate / (1 + SMPRT_DIV) (gyro output rate
+ * being 8kHz or 1kHz depending on DLPF_CFG) either by the sampler thread
+ * (startSampling()/stopSampling()) or explicitly through tick(). Every sample updates the
+ * measurement registers, feeds the FIFO with the sources enabled in FIFO_EN
+ * and raises DATA_RDY, which drives the interrupt pin (if any) when enabled in
+ * INT_ENABLE honouring INT_LEVEL, LATCH_INT_EN and INT_RD_CLEAR.
+ *
+ * As with the real part, measurement registers are not updated while a bus
+ * transaction is in progress so burst reads always see a single sample.
+ *
+ * Simplifications: no self-test, no motion detection, no auxiliary I2C
+ * master, sleep/cycle modes just stop sampling and the DLPF does not actually
+ * filter anything..
+ *
+ * @author savvas
+ */
+public class Mpu6050Model implements I2CSlaveModel, SpiSlaveModel {
+
+    public static final int WHO_AM_I = 0x75;
+    public static final int WHO_AM_I_VALUE = 0x68;
+    public static final int FIFO_SIZE = 1024;
+
+    private static final int REGISTER_COUNT = 128;
+    private static final int SPI_READ_FLAG = 0x80;
+
+    private static final int ACCEL_XOUT_H = RegisterAddress.ACCEL_XOUT_H.getValue();
+    private static final int GYRO_ZOUT_L = RegisterAddress.GYRO_ZOUT_L.getValue();
+    private static final int XA_OFFS_H = RegisterAddress.XA_OFFS_H.getValue();
+    private static final int XG_OFFS_USRH = RegisterAddress.XG_OFFS_USRH.getValue();
+    private static final int INT_PIN_CFG = RegisterAddress.INT_PIN_CFG.getValue();
+    private static final int INT_ENABLE = RegisterAddress.INT_ENABLE.getValue();
+    private static final int INT_STATUS = RegisterAddress.INT_STATUS.getValue();
+    private static final int FIFO_EN = RegisterAddress.FIFO_EN.getValue();
+    private static final int USER_CTRL = RegisterAddress.USER_CTRL.getValue();
+    private static final int PWR_MGMT_1 = RegisterAddress.PWR_MNG_CONFIG.getValue();
+    private static final int FIFO_COUNT_H = RegisterAddress.FIFO_COUNT_H.getValue();
+    private static final int FIFO_COUNT_L = RegisterAddress.FIFO_COUNT_L.getValue();
+    private static final int FIFO_R_W = RegisterAddress.FIFO_R_W.getValue();
+
+    private static final int INT_LEVEL_BIT = 0x80;
+    private static final int DEVICE_RESET_BIT = 0x80;
+    // SIG_COND_RESET, I2C_MST_RESET & FIFO_RESET clear themselves..
+    private static final int USER_CTRL_SELF_CLEARING = 0x07;
+
+    private static final int DATA_RDY_BIT = 1 << InterruptSource.DATA_RDY.getBitIndex();
+    private static final int FIFO_OFLOW_BIT = 1 << InterruptSource.FIFO_OFLOW.getBitIndex();
+
+    private static final float TEMPERATURE_SENSITIVITY = 340f;
+    private static final float TEMPERATURE_OFFSET = 36.53f;
+    private static final float ACCEL_OFFSET_LSB_PER_G = 2048f;
+    private static final float GYRO_OFFSET_LSB_PER_DPS = 32.8f;
+
+    // values() returns a new array on every call..
+    private static final AccelFullScaleRange[] ACCEL_RANGES = AccelFullScaleRange.values();
+    private static final GyroFullScaleRange[] GYRO_RANGES = GyroFullScaleRange.values();
+    private static final DigitalLowPassFilter[] FILTERS = DigitalLowPassFilter.values();
+    private static final FifoSource[] FIFO_SOURCES = FifoSource.values();
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    // what the INT pin has to do after a state change
+    private static final int PIN_UNCHANGED = 0;
+    private static final int PIN_ASSERT = 1;
+    private static final int PIN_DEASSERT = 2;
+    private static final int PIN_PULSE = 3;
+
+    private final byte[] registers = new byte[REGISTER_COUNT];
+
+    private final byte[] fifo = new byte[FIFO_SIZE];
+    private int fifoHead;
+    private int fifoCount;
+
+    private final short[] sample = new short[MeasurementFrame.CHANNEL_COUNT];
+    // synthesize() scratch, so that sampling does not allocate
+    private final double[] accel = new double[3];
+    private final double[] gyro = new double[3];
+    private final Random random;
+
+    // bus state
+    private int pointer;
+    private boolean expectingPointer;
+    private boolean spiRead;
+    private boolean inTransaction;
+    private boolean samplePending;
+
+    // motion
+    private float rollAmplitudeDeg = 30f;
+    private float rollFrequencyHz = 0.5f;
+    private float temperatureC = 25f;
+    private final float[] accelBiasG = new float[3];
+    private final float[] gyroBiasDps = new float[3];
+    private float accelNoiseG = 0.004f;
+    private float gyroNoiseDps = 0.05f;
+
+    private long simulatedNanos;
+    private long sampleCount;
+
+    private volatile SimulatedGPIOPin interruptPin;
+    private boolean interruptAsserted;
+
+    private volatile Thread sampler;
+
+    /**
+     * ENSURES:
+     *
+     * all registers hold their reset values (device asleep, WHO_AM_I 0x68)
+     *
+     * @param seed of the noise generator
+     */
+    public Mpu6050Model(long seed) {
+
+        random = new Random(seed);
+        reset();
+    }
+
+    /**
+     * Pin the model drives as the INT output. Configure it for input on the
+     * host side.
+     *
+     * @param interruptPin null to disconnect
+     */
+    public void setInterruptPin(SimulatedGPIOPin interruptPin) {
+
+        this.interruptPin = interruptPin;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * rollFrequencyHz >= 0
+     *
+     * @param rollAmplitudeDeg
+     * @param rollFrequencyHz
+     */
+    public synchronized void setMotion(float rollAmplitudeDeg, float rollFrequencyHz) {
+
+        assert rollFrequencyHz >= 0 : "rollFrequencyHz is negative";
+
+        this.rollAmplitudeDeg = rollAmplitudeDeg;
+        this.rollFrequencyHz = rollFrequencyHz;
+    }
+
+    public synchronized void setAccelBias(float xG, float yG, float zG) {
+
+        accelBiasG[0] = xG;
+        accelBiasG[1] = yG;
+        accelBiasG[2] = zG;
+    }
+
+    public synchronized void setGyroBias(float xDps, float yDps, float zDps) {
+
+        gyroBiasDps[0] = xDps;
+        gyroBiasDps[1] = yDps;
+        gyroBiasDps[2] = zDps;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * accelNoiseG >= 0 AND gyroNoiseDps >= 0
+     *
+     * @param accelNoiseG standard deviation
+     * @param gyroNoiseDps standard deviation
+     */
+    public synchronized void setNoise(float accelNoiseG, float gyroNoiseDps) {
+
+        assert accelNoiseG >= 0 && gyroNoiseDps >= 0 : "noise is negative";
+
+        this.accelNoiseG = accelNoiseG;
+        this.gyroNoiseDps = gyroNoiseDps;
+    }
+
+    public synchronized void setTemperature(float temperatureC) {
+
+        this.temperatureC = temperatureC;
+    }
+
+    /**
+     * Rate implied by CONFIG and SMPRT_DIV.
+     *
+     * @return
+     */
+    public synchronized int getSampleRateHz() {
+
+        int dlpf = RegisterField.DLPF_CFG.decode(registers[RegisterField.DLPF_CFG.getRegister().getValue()]);
+        // DLPF_CFG 7 is reserved but behaves as 0 (8kHz gyro output)..
+        int gyroOutputRate = dlpf < FILTERS.length ? FILTERS[dlpf].getGyroOutputRateHz() : FILTERS[0].getGyroOutputRateHz();
+        int divider = RegisterField.SMPLRT_DIV.decode(registers[RegisterField.SMPLRT_DIV.getRegister().getValue()]);
+
+        return gyroOutputRate / (1 + divider);
+    }
+
+    public synchronized long getSampleCount() {
+
+        return sampleCount;
+    }
+
+    public synchronized boolean isSleeping() {
+
+        return RegisterField.SLEEP.decode(registers[PWR_MGMT_1]) == 1;
+    }
+
+    /**
+     * Current value of a register as held by the device, without any of the
+     * side effects of a bus read.
+     *
+     * REQUIRES:
+     *
+     * address BETWEEN [0 - 127]
+     *
+     * @param address
+     * @return
+     */
+    public synchronized int peek(int address) {
+
+        assert address >= 0 && address < REGISTER_COUNT : "address not in [0 - 127] range";
+
+        return registers[address] & 0xFF;
+    }
+
+    /**
+     * Starts producing samples in real time.
+     *
+     * REQUIRES:
+     *
+     * sampler not started already
+     */
+    public synchronized void startSampling() {
+
+        assert sampler == null : "sampler already started";
+
+        sampler = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+
+                sample();
+            }
+        }, "mpu6050-model");
+        sampler.start();
+    }
+
+    /**
+     * Stops the sampler (if started) and waits for it to finish.
+     */
+    public void stopSampling() {
+
+        Thread current;
+        synchronized (this) {
+            current = sampler;
+            sampler = null;
+        }
+        if (current != null) {
+            current.interrupt();
+            try {
+                current.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Produces one sample, i.e. advances simulated time by one sample period.
+     * Does nothing while the device sleeps.
+     */
+    public void tick() {
+
+        int pinAction;
+
+        synchronized (this) {
+            if (isSleeping()) {
+                return;
+            }
+            simulatedNanos += NANOS_PER_SECOND / getSampleRateHz();
+            sampleCount++;
+
+            synthesize();
+            if (inTransaction) {
+                samplePending = true;
+            } else {
+                publishSample();
+            }
+            pushSampleToFifo();
+
+            registers[INT_STATUS] |= DATA_RDY_BIT;
+            pinAction = interruptPinAction(true);
+        }
+        // pin listeners are called without holding the model..
+        applyPinAction(pinAction);
+    }
+
+    private void sample() {
+
+        long next = System.nanoTime();
+
+        while (sampler == Thread.currentThread()) {
+            int rate;
+            synchronized (this) {
+                rate = getSampleRateHz();
+            }
+            next += NANOS_PER_SECOND / rate;
+
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+            tick();
+        }
+    }
+
+    private void synthesize() {
+
+        double t = (double) simulatedNanos / NANOS_PER_SECOND;
+        double omega = 2 * Math.PI * rollFrequencyHz;
+        double amplitude = Math.toRadians(rollAmplitudeDeg);
+        double roll = amplitude * Math.sin(omega * t);
+        double rollRateDps = Math.toDegrees(amplitude * omega * Math.cos(omega * t));
+
+        int afs = RegisterField.ACCEL_FS_SEL.decode(registers[RegisterField.ACCEL_FS_SEL.getRegister().getValue()]);
+        int fs = RegisterField.GYRO_FS_SEL.decode(registers[RegisterField.GYRO_FS_SEL.getRegister().getValue()]);
+        float accelSensitivity = ACCEL_RANGES[afs].getSensitivity();
+        float gyroSensitivity = GYRO_RANGES[fs].getSensitivity();
+
+        accel[0] = 0;
+        accel[1] = Math.sin(roll);
+        accel[2] = Math.cos(roll);
+        gyro[0] = rollRateDps;
+        gyro[1] = 0;
+        gyro[2] = 0;
+
+        for (int axis = 0; axis < 3; axis++) {
+            double g = accel[axis] + accelBiasG[axis] + random.nextGaussian() * accelNoiseG;
+            double accelOffset = readShort(XA_OFFS_H + axis * 2) * accelSensitivity / ACCEL_OFFSET_LSB_PER_G;
+            sample[MeasurementFrame.ACCEL_X + axis] = saturate(g * accelSensitivity + accelOffset);
+
+            double dps = gyro[axis] + gyroBiasDps[axis] + random.nextGaussian() * gyroNoiseDps;
+            double gyroOffset = readShort(XG_OFFS_USRH + axis * 2) * gyroSensitivity / GYRO_OFFSET_LSB_PER_DPS;
+            sample[MeasurementFrame.GYRO_X + axis] = saturate(dps * gyroSensitivity + gyroOffset);
+        }
+        sample[MeasurementFrame.TEMPERATURE] = saturate((temperatureC - TEMPERATURE_OFFSET) * TEMPERATURE_SENSITIVITY);
+    }
+
+    private void publishSample() {
+
+        for (int c = 0; c < MeasurementFrame.CHANNEL_COUNT; c++) {
+            registers[ACCEL_XOUT_H + c * 2] = (byte) (sample[c] >> 8);
+            registers[ACCEL_XOUT_H + c * 2 + 1] = (byte) sample[c];
+        }
+        samplePending = false;
+    }
+
+    private void pushSampleToFifo() {
+
+        if (RegisterField.USER_FIFO_EN.decode(registers[USER_CTRL]) == 0) {
+            return;
+        }
+        for (FifoSource source : FIFO_SOURCES) {
+            if (RegisterField.fifoEnable(source).decode(registers[FIFO_EN]) == 1) {
+                int last = source.getFirstChannel() + source.getChannelCount();
+                for (int c = source.getFirstChannel(); c < last; c++) {
+                    pushToFifo(sample[c] >> 8);
+                    pushToFifo(sample[c]);
+                }
+            }
+        }
+    }
+
+    private void pushToFifo(int value) {
+
+        if (fifoCount == FIFO_SIZE) {
+            // full, oldest byte gets overwritten
+            fifoHead = (fifoHead + 1) % FIFO_SIZE;
+            fifoCount--;
+            registers[INT_STATUS] |= FIFO_OFLOW_BIT;
+        }
+        fifo[(fifoHead + fifoCount) % FIFO_SIZE] = (byte) value;
+        fifoCount++;
+    }
+
+    private int popFromFifo() {
+
+        if (fifoCount == 0) {
+            return 0;
+        }
+        int value = fifo[fifoHead] & 0xFF;
+        fifoHead = (fifoHead + 1) % FIFO_SIZE;
+        fifoCount--;
+        return value;
+    }
+
+    /**
+     * Decides what the INT pin should do given current status & configuration
+     * (the pin itself is driven later, outside the model lock). Pulses are
+     * only generated for new events.
+     */
+    private int interruptPinAction(boolean newEvent) {
+
+        boolean pending = (registers[INT_STATUS] & registers[INT_ENABLE] & 0xFF) != 0;
+
+        if (!pending) {
+            if (interruptAsserted) {
+                interruptAsserted = false;
+                return PIN_DEASSERT;
+            }
+            return PIN_UNCHANGED;
+        }
+        if (RegisterField.LATCH_INT_EN.decode(registers[INT_PIN_CFG]) == 0) {
+            // 50us pulse on the real part
+            return newEvent ? PIN_PULSE : PIN_UNCHANGED;
+        }
+        if (!interruptAsserted) {
+            interruptAsserted = true;
+            return PIN_ASSERT;
+        }
+        return PIN_UNCHANGED;
+    }
+
+    private void applyPinAction(int action) {
+
+        SimulatedGPIOPin pin = interruptPin;
+        if (pin == null || action == PIN_UNCHANGED) {
+            return;
+        }
+        boolean activeLevel;
+        synchronized (this) {
+            activeLevel = (registers[INT_PIN_CFG] & INT_LEVEL_BIT) == 0;
+        }
+        switch (action) {
+            case PIN_ASSERT:
+                pin.drive(activeLevel);
+                break;
+            case PIN_DEASSERT:
+                pin.drive(!activeLevel);
+                break;
+            default:
+                pin.drive(activeLevel);
+                pin.drive(!activeLevel);
+        }
+    }
+
+    private synchronized int readRegister() {
+
+        int address = pointer;
+        int value;
+
+        if (address == FIFO_R_W) {
+            value = popFromFifo();
+        } else if (address == FIFO_COUNT_H) {
+            value = fifoCount >> 8;
+        } else if (address == FIFO_COUNT_L) {
+            value = fifoCount & 0xFF;
+        } else {
+            value = registers[address] & 0xFF;
+        }
+
+        if (address == INT_STATUS || RegisterField.INT_RD_CLEAR.decode(registers[INT_PIN_CFG]) == 1) {
+            registers[INT_STATUS] = 0;
+        }
+        advancePointer();
+
+        return value;
+    }
+
+    private synchronized void writeRegister(int value) {
+
+        int address = pointer;
+
+        if (address == FIFO_R_W) {
+            pushToFifo(value);
+        } else if (address == PWR_MGMT_1 && (value & DEVICE_RESET_BIT) != 0) {
+            reset();
+        } else if (address == USER_CTRL) {
+            if (RegisterField.FIFO_RESET.decode((byte) value) == 1) {
+                fifoHead = 0;
+                fifoCount = 0;
+            }
+            registers[address] = (byte) (value & ~USER_CTRL_SELF_CLEARING);
+        } else if (isWritable(address)) {
+            registers[address] = (byte) value;
+        }
+        advancePointer();
+    }
+
+    private void advancePointer() {
+
+        // reads/writes of FIFO_R_W keep hitting the FIFO..
+        if (pointer != FIFO_R_W) {
+            pointer = (pointer + 1) % REGISTER_COUNT;
+        }
+    }
+
+    private static boolean isWritable(int address) {
+
+        return !(address >= ACCEL_XOUT_H && address <= GYRO_ZOUT_L)
+                && address != INT_STATUS
+                && address != FIFO_COUNT_H
+                && address != FIFO_COUNT_L
+                && address != WHO_AM_I;
+    }
+
+    private void reset() {
+
+        for (int r = 0; r < REGISTER_COUNT; r++) {
+            registers[r] = 0;
+        }
+        registers[PWR_MGMT_1] = 0x40;
+        registers[WHO_AM_I] = (byte) WHO_AM_I_VALUE;
+        fifoHead = 0;
+        fifoCount = 0;
+    }
+
+    private int readShort(int address) {
+
+        return (short) ((registers[address] << 8) | (registers[address + 1] & 0xFF));
+    }
+
+    private static short saturate(double value) {
+
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+    }
+
+    private void beginTransaction() {
+
+        inTransaction = true;
+    }
+
+    private void endTransaction() {
+
+        int pinAction;
+
+        synchronized (this) {
+            inTransaction = false;
+            if (samplePending) {
+                publishSample();
+            }
+            pinAction = interruptPinAction(false);
+        }
+        applyPinAction(pinAction);
+    }
+
+    // I2CSlaveModel
+    @Override
+    public synchronized void start(boolean read) {
+
+        beginTransaction();
+        expectingPointer = !read;
+    }
+
+    @Override
+    public synchronized void write(int value) {
+
+        if (expectingPointer) {
+            pointer = value % REGISTER_COUNT;
+            expectingPointer = false;
+        } else {
+            writeRegister(value);
+        }
+    }
+
+    @Override
+    public int read() {
+
+        return readRegister();
+    }
+
+    @Override
+    public void stop() {
+
+        endTransaction();
+    }
+
+    // SpiSlaveModel
+    @Override
+    public synchronized void select() {
+
+        beginTransaction();
+        expectingPointer = true;
+    }
+
+    @Override
+    public synchronized int exchange(int mosi) {
+
+        if (expectingPointer) {
+            pointer = mosi & ~SPI_READ_FLAG;
+            spiRead = (mosi & SPI_READ_FLAG) != 0;
+            expectingPointer = false;
+            return 0;
+        }
+        if (spiRead) {
+            return readRegister();
+        }
+        writeRegister(mosi);
+        return 0;
+    }
+
+    @Override
+    public void deselect() {
+
+        endTransaction();
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        return "Mpu6050Model{" + "sampleRateHz=" + getSampleRateHz() + ", sampleCount=" + sampleCount + ", fifoCount=" + fifoCount + ", sleeping=" + isSleeping() + '}';
+    }
+}
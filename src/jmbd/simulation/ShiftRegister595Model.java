@@ -0,0 +1,125 @@
+package jmbd.simulation;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Model of one or more daisy-chained 74HC595 shift registers.
+ *
+ * The level of the data pin is shifted in (towards Q0, pushing everything else
+ * one stage up) on every rising edge of the clock pin and the storage register
+ * (i.e. the outputs) is updated on every rising edge of the latch pin. Output
+ * enable is assumed tied low and master reset tied high.
+ *
+ * @author savvas
+ */
+public class ShiftRegister595Model implements PinObserver {
+
+    private final SimulatedGPIOPin dataPin;
+    private final SimulatedGPIOPin clockPin;
+    private final SimulatedGPIOPin latchPin;
+
+    private final int width;
+    private final long mask;
+
+    private long shiftRegister;
+    private long outputs;
+    private long clockCount;
+    private long latchCount;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) pins not null
+     *
+     * 2) chained BETWEEN [1 - 8] (number of 595s daisy-chained)
+     *
+     * @param dataPin
+     * @param clockPin
+     * @param latchPin
+     * @param chained
+     */
+    public ShiftRegister595Model(SimulatedGPIOPin dataPin, SimulatedGPIOPin clockPin, SimulatedGPIOPin latchPin, int chained) {
+
+        assert dataPin != null && clockPin != null && latchPin != null : "pin is null";
+        assert chained >= 1 && chained <= 8 : "chained not in [1 - 8] range";
+
+        this.dataPin = dataPin;
+        this.clockPin = clockPin;
+        this.latchPin = latchPin;
+        this.width = chained * 8;
+        this.mask = width == 64 ? -1L : (1L << width) - 1;
+
+        clockPin.addObserver(this);
+        latchPin.addObserver(this);
+    }
+
+    @Override
+    public synchronized void pinChanged(SimulatedGPIOPin pin, boolean value) {
+
+        if (!value) {
+            return;
+        }
+        if (pin == clockPin) {
+            shiftRegister = ((shiftRegister << 1) | (dataPin.getHostValue() ? 1 : 0)) & mask;
+            clockCount++;
+        } else if (pin == latchPin) {
+            outputs = shiftRegister;
+            latchCount++;
+        }
+    }
+
+    /**
+     * Levels of the outputs, Q0 of the first register in bit 0.
+     *
+     * @return
+     */
+    public synchronized long getOutputs() {
+
+        return outputs;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * output BETWEEN [0 - width)
+     *
+     * @param output
+     * @return
+     */
+    public synchronized boolean getOutput(int output) {
+
+        assert output >= 0 && output < width : "output not in [0 - " + width + ") range";
+
+        return ((outputs >>> output) & 1) == 1;
+    }
+
+    public int getWidth() {
+
+        return width;
+    }
+
+    public synchronized long getClockCount() {
+
+        return clockCount;
+    }
+
+    public synchronized long getLatchCount() {
+
+        return latchCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        return "ShiftRegister595Model{" + "width=" + width + ", outputs=0x" + Long.toHexString(outputs) + ", clockCount=" + clockCount + ", latchCount=" + latchCount + '}';
+    }
+}
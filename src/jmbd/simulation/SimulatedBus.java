@@ -0,0 +1,161 @@
+package jmbd.simulation;
+
+import jmbd.commons.TimeDelay;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Wire shared by simulated devices.
+ *
+ * Besides serialising access of all devices attached to it (same as a real
+ * bus, only one transfer can be in progress at any time) it keeps the bus busy
+ * for as long as the bytes of each transfer would take to clock out at the
+ * configured speed, so that code exercised against simulated devices sees
+ * realistic transaction times.
+ *
+ * Time is spent busy-waiting since transfers are typically a few micros
+ * long..
+ *
+ * @author savvas
+ */
+public class SimulatedBus {
+
+    // I2C: 8 data bits + ACK/NACK per byte
+    private static final int I2C_BITS_PER_BYTE = 9;
+    private static final int SPI_BITS_PER_BYTE = 8;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final String name;
+    private final int clockFrequencyHz;
+    private final long nanosPerByte;
+    private final TimeDelay timeDelay;
+
+    private long bytesTransferred;
+    private long busyNanos;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) name not null
+     *
+     * 2) clockFrequencyHz >= 0 (0 means no latency at all)
+     *
+     * 3) bitsPerByte > 0
+     *
+     * @param name
+     * @param clockFrequencyHz
+     * @param bitsPerByte
+     */
+    public SimulatedBus(String name, int clockFrequencyHz, int bitsPerByte) {
+
+        assert name != null : "name is null";
+        assert clockFrequencyHz >= 0 : "clockFrequencyHz is negative";
+        assert bitsPerByte > 0 : "bitsPerByte not positive";
+
+        this.name = name;
+        this.clockFrequencyHz = clockFrequencyHz;
+        this.nanosPerByte = clockFrequencyHz == 0 ? 0 : (bitsPerByte * NANOS_PER_SECOND) / clockFrequencyHz;
+        this.timeDelay = new TimeDelay();
+    }
+
+    /**
+     * I2C bus clocked at given frequency (e.g. 100_000 for standard mode,
+     * 400_000 for fast mode).
+     *
+     * @param clockFrequencyHz
+     * @return
+     */
+    public static SimulatedBus i2c(int clockFrequencyHz) {
+
+        return new SimulatedBus("i2c@" + clockFrequencyHz, clockFrequencyHz, I2C_BITS_PER_BYTE);
+    }
+
+    /**
+     * SPI bus clocked at given frequency.
+     *
+     * @param clockFrequencyHz
+     * @return
+     */
+    public static SimulatedBus spi(int clockFrequencyHz) {
+
+        return new SimulatedBus("spi@" + clockFrequencyHz, clockFrequencyHz, SPI_BITS_PER_BYTE);
+    }
+
+    /**
+     * Bus without any latency, handy when only functional behaviour matters.
+     *
+     * @return
+     */
+    public static SimulatedBus instant() {
+
+        return new SimulatedBus("instant", 0, 1);
+    }
+
+    /**
+     * Keeps the bus busy for as long as given number of bytes take to be
+     * transferred.
+     *
+     * REQUIRES:
+     *
+     * 1) bytes >= 0
+     *
+     * 2) Thread.holdsLock(this) (i.e. called from within a transfer)
+     *
+     * @param bytes
+     */
+    void occupy(int bytes) {
+
+        assert bytes >= 0 : "bytes is negative";
+        assert Thread.holdsLock(this) : "bus not held by caller";
+
+        long nanos = bytes * nanosPerByte;
+
+        bytesTransferred += bytes;
+        busyNanos += nanos;
+
+        if (nanos > 0) {
+            timeDelay.pauseNanos(nanos);
+        }
+    }
+
+    public String getName() {
+
+        return name;
+    }
+
+    public int getClockFrequencyHz() {
+
+        return clockFrequencyHz;
+    }
+
+    public long getNanosPerByte() {
+
+        return nanosPerByte;
+    }
+
+    public synchronized long getBytesTransferred() {
+
+        return bytesTransferred;
+    }
+
+    public synchronized long getBusyNanos() {
+
+        return busyNanos;
+    }
+
+    @Override
+    public String toString() {
+
+        return "SimulatedBus{" + "name=" + name + ", bytesTransferred=" + getBytesTransferred() + ", busyNanos=" + getBusyNanos() + '}';
+    }
+}
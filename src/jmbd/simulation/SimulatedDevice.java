@@ -0,0 +1,120 @@
+package jmbd.simulation;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import jdk.dio.Device;
+import jdk.dio.DeviceDescriptor;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Behaviour common to all simulated devices (open/close state, locking, byte
+ * order and buffer access).
+ *
+ * Simulated devices are not opened through DeviceManager so they come without
+ * a descriptor, code that needs a name for them (e.g. MetricsRegistry) falls
+ * back to identity based ones.
+ *
+ * @author savvas
+ * @param <P>
+ */
+public abstract class SimulatedDevice<P extends Device<? super P>> implements Device<P> {
+
+    private static final int IO_BUFFER_SIZE = 64;
+
+    private volatile boolean open = true;
+
+    private ByteBuffer inputBuffer;
+    private ByteBuffer outputBuffer;
+
+    @Override
+    public void tryLock(int timeout) throws IOException {
+
+        // nothing else can open a simulated device so exclusive access is always granted..
+        ensureOpen();
+    }
+
+    @Override
+    public void unlock() throws IOException {
+
+        // NOP
+    }
+
+    @Override
+    public boolean isOpen() {
+
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        open = false;
+    }
+
+    @Override
+    public int getByteOrder() throws IOException {
+
+        return BIG_ENDIAN;
+    }
+
+    @Override
+    public <U extends P> DeviceDescriptor<U> getDescriptor() {
+
+        return null;
+    }
+
+    public synchronized ByteBuffer getInputBuffer() throws IOException {
+
+        if (inputBuffer == null) {
+            inputBuffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+        }
+        return inputBuffer;
+    }
+
+    public synchronized ByteBuffer getOutputBuffer() throws IOException {
+
+        if (outputBuffer == null) {
+            outputBuffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+        }
+        return outputBuffer;
+    }
+
+    /**
+     * Any byte buffer is fine for a simulated device so, unlike real drivers,
+     * callers always get their own buffer back.
+     *
+     * @param buffer
+     * @param size
+     * @return
+     * @throws IOException
+     */
+    public ByteBuffer prepareBuffer(Buffer buffer, int size) throws IOException {
+
+        return buffer instanceof ByteBuffer ? (ByteBuffer) buffer : null;
+    }
+
+    /**
+     * ENSURES:
+     *
+     * isOpen() OR IOException thrown
+     *
+     * @throws IOException
+     */
+    protected void ensureOpen() throws IOException {
+
+        if (!open) {
+            throw new IOException(getClass().getSimpleName() + " is closed");
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package jmbd.simulation;
+
+import java.io.IOException;
+import jdk.dio.gpio.GPIOPin;
+import jdk.dio.gpio.GPIOPinConfig;
+import jdk.dio.gpio.PinEvent;
+import jdk.dio.gpio.PinListener;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * GPIOPin connecting the MIDlet to a device model.
+ *
+ * The pin carries two levels: the one the host drives (output direction,
+ * observed by models through PinObserver) and the one a model drives (input
+ * direction, read by the host and delivered to its PinListener according to
+ * the configured trigger).
+ *
+ * Unlike real drivers, pin events are delivered on the thread of the model
+ * that drove the pin so listeners should hand events over instead of doing
+ * bus work (PinEventQueue does exactly that).
+ *
+ * @author savvas
+ */
+public class SimulatedGPIOPin extends SimulatedDevice<GPIOPin> implements GPIOPin {
+
+    private static final PinObserver[] NO_OBSERVERS = new PinObserver[0];
+
+    private final int pinNumber;
+
+    private volatile int direction;
+    private volatile int trigger = GPIOPinConfig.TRIGGER_NONE;
+    private volatile boolean hostValue;
+    private volatile boolean externalValue;
+    private volatile PinListener listener;
+
+    // copy-on-write, changes are rare and notifications must not allocate..
+    private volatile PinObserver[] observers = NO_OBSERVERS;
+
+    /**
+     * REQUIRES:
+     *
+     * direction IN {DIR_INPUT_ONLY, DIR_OUTPUT_ONLY, DIR_BOTH_INIT_INPUT,
+     * DIR_BOTH_INIT_OUTPUT}
+     *
+     * @param pinNumber
+     * @param direction
+     * @param initValue
+     */
+    public SimulatedGPIOPin(int pinNumber, int direction, boolean initValue) {
+
+        assert direction >= GPIOPinConfig.DIR_INPUT_ONLY && direction <= GPIOPinConfig.DIR_BOTH_INIT_OUTPUT : "direction not valid";
+
+        this.pinNumber = pinNumber;
+        this.direction = direction;
+        this.hostValue = initValue;
+        this.externalValue = initValue;
+    }
+
+    public int getPinNumber() {
+
+        return pinNumber;
+    }
+
+    @Override
+    public int getDirection() throws IOException {
+
+        return direction;
+    }
+
+    @Override
+    public void setDirection(int direction) throws IOException {
+
+        ensureOpen();
+
+        assert direction >= GPIOPinConfig.DIR_INPUT_ONLY && direction <= GPIOPinConfig.DIR_BOTH_INIT_OUTPUT : "direction not valid";
+
+        this.direction = direction;
+    }
+
+    @Override
+    public int getTrigger() throws IOException {
+
+        return trigger;
+    }
+
+    @Override
+    public void setTrigger(int trigger) throws IOException {
+
+        ensureOpen();
+
+        this.trigger = trigger;
+    }
+
+    /**
+     * Level driven by the host when configured for output, level driven by the
+     * model otherwise.
+     *
+     * @return
+     * @throws IOException
+     */
+    @Override
+    public boolean getValue() throws IOException {
+
+        ensureOpen();
+
+        return isOutput() ? hostValue : externalValue;
+    }
+
+    /**
+     * REQUIRES:
+     *
+     * pin configured for output
+     *
+     * ENSURES:
+     *
+     * all observers notified if the value changed
+     *
+     * @param value
+     * @throws IOException
+     */
+    @Override
+    public void setValue(boolean value) throws IOException {
+
+        ensureOpen();
+
+        if (!isOutput()) {
+            throw new UnsupportedOperationException("Pin " + pinNumber + " not configured for output");
+        }
+
+        boolean previous = hostValue;
+        hostValue = value;
+
+        if (previous != value) {
+            PinObserver[] current = observers;
+            for (PinObserver observer : current) {
+                observer.pinChanged(this, value);
+            }
+        }
+    }
+
+    @Override
+    public void setInputListener(PinListener listener) throws IOException {
+
+        ensureOpen();
+
+        this.listener = listener;
+    }
+
+    /**
+     * Level last driven by the host, regardless of current direction (models
+     * sample data lines through this).
+     *
+     * @return
+     */
+    public boolean getHostValue() {
+
+        return hostValue;
+    }
+
+    /**
+     * Level driven by the model side.
+     *
+     * ENSURES:
+     *
+     * listener notified if the pin is an input and the change matches the
+     * trigger
+     *
+     * @param value
+     */
+    public void drive(boolean value) {
+
+        boolean previous = externalValue;
+        externalValue = value;
+
+        PinListener current = listener;
+        if (current != null && isOpen() && !isOutput() && fires(previous, value)) {
+            current.valueChanged(new PinEvent(this, value));
+        }
+    }
+
+    public synchronized void addObserver(PinObserver observer) {
+
+        assert observer != null : "observer is null";
+
+        PinObserver[] updated = new PinObserver[observers.length + 1];
+        System.arraycopy(observers, 0, updated, 0, observers.length);
+        updated[observers.length] = observer;
+        observers = updated;
+    }
+
+    private boolean isOutput() {
+
+        return direction == GPIOPinConfig.DIR_OUTPUT_ONLY || direction == GPIOPinConfig.DIR_BOTH_INIT_OUTPUT;
+    }
+
+    private boolean fires(boolean previous, boolean value) {
+
+        switch (trigger) {
+            case GPIOPinConfig.TRIGGER_RISING_EDGE:
+                return !previous && value;
+            case GPIOPinConfig.TRIGGER_FALLING_EDGE:
+                return previous && !value;
+            case GPIOPinConfig.TRIGGER_BOTH_EDGES:
+                return previous != value;
+            case GPIOPinConfig.TRIGGER_HIGH_LEVEL:
+                return value;
+            case GPIOPinConfig.TRIGGER_LOW_LEVEL:
+                return !value;
+            case GPIOPinConfig.TRIGGER_BOTH_LEVELS:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        return "SimulatedGPIOPin{" + "pinNumber=" + pinNumber + ", direction=" + direction + ", hostValue=" + hostValue + ", externalValue=" + externalValue + '}';
+    }
+}
@@ -0,0 +1,326 @@
+package jmbd.simulation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.dio.i2cbus.I2CCombinedMessage;
+import jdk.dio.i2cbus.I2CDevice;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * I2CDevice backed by an I2CSlaveModel instead of real hardware.
+ *
+ * Every operation is turned into the start/write/read/stop sequence a real
+ * controller would put on the wire (sub-addresses msb first, repeated start
+ * before reading) and the bus is kept busy for as long as all those bytes
+ * (slave address bytes included) take to transfer.
+ *
+ * @author savvas
+ */
+public class SimulatedI2CDevice extends SimulatedDevice<I2CDevice> implements I2CDevice {
+
+    private final I2CSlaveModel model;
+    private final SimulatedBus bus;
+
+    private final Bus combinedMessageFactory = new Bus() {
+
+        @Override
+        public I2CCombinedMessage createCombinedMessage() {
+
+            return new SimulatedCombinedMessage();
+        }
+    };
+
+    /**
+     * REQUIRES:
+     *
+     * 1) model not null
+     *
+     * 2) bus not null
+     *
+     * @param model
+     * @param bus
+     */
+    public SimulatedI2CDevice(I2CSlaveModel model, SimulatedBus bus) {
+
+        assert model != null : "model is null";
+        assert bus != null : "bus is null";
+
+        this.model = model;
+        this.bus = bus;
+    }
+
+    public I2CSlaveModel getModel() {
+
+        return model;
+    }
+
+    public SimulatedBus getSimulatedBus() {
+
+        return bus;
+    }
+
+    /**
+     * @return same Bus every time
+     * @throws IOException
+     */
+    @Override
+    public Bus getBus() throws IOException {
+
+        ensureOpen();
+
+        return combinedMessageFactory;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        ensureOpen();
+
+        synchronized (bus) {
+            model.start(true);
+            int value = model.read();
+            model.stop();
+            bus.occupy(2);
+            return value;
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+
+        return read(0, dst);
+    }
+
+    @Override
+    public int read(int skip, ByteBuffer dst) throws IOException {
+
+        ensureOpen();
+
+        synchronized (bus) {
+            model.start(true);
+            int read = receive(skip, dst);
+            model.stop();
+            bus.occupy(1 + skip + read);
+            return read;
+        }
+    }
+
+    @Override
+    public int read(int subaddress, int subaddressSize, ByteBuffer dst) throws IOException {
+
+        return read(subaddress, subaddressSize, 0, dst);
+    }
+
+    @Override
+    public int read(int subaddress, int subaddressSize, int skip, ByteBuffer dst) throws IOException {
+
+        ensureOpen();
+
+        synchronized (bus) {
+            model.start(false);
+            sendSubaddress(subaddress, subaddressSize);
+            model.start(true);
+            int read = receive(skip, dst);
+            model.stop();
+            bus.occupy(2 + subaddressSize + skip + read);
+            return read;
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+
+        ensureOpen();
+
+        synchronized (bus) {
+            model.start(false);
+            int written = send(src);
+            model.stop();
+            bus.occupy(1 + written);
+            return written;
+        }
+    }
+
+    @Override
+    public void write(int srcData) throws IOException {
+
+        ensureOpen();
+
+        synchronized (bus) {
+            model.start(false);
+            model.write(srcData & 0xFF);
+            model.stop();
+            bus.occupy(2);
+        }
+    }
+
+    @Override
+    public int write(int subaddress, int subaddressSize, ByteBuffer src) throws IOException {
+
+        ensureOpen();
+
+        synchronized (bus) {
+            model.start(false);
+            sendSubaddress(subaddress, subaddressSize);
+            int written = send(src);
+            model.stop();
+            bus.occupy(1 + subaddressSize + written);
+            return written;
+        }
+    }
+
+    @Override
+    public void begin() throws IOException {
+
+        // transactions are serialised through the bus already..
+        ensureOpen();
+    }
+
+    @Override
+    public void end() throws IOException {
+
+        // NOP
+    }
+
+    private void sendSubaddress(int subaddress, int subaddressSize) {
+
+        assert subaddressSize >= 1 && subaddressSize <= 4 : "subaddressSize not in [1 - 4] range";
+
+        for (int i = subaddressSize - 1; i >= 0; i--) {
+            model.write((subaddress >>> (i * 8)) & 0xFF);
+        }
+    }
+
+    private int send(ByteBuffer src) {
+
+        int count = src.remaining();
+        for (int i = 0; i < count; i++) {
+            model.write(src.get() & 0xFF);
+        }
+        return count;
+    }
+
+    private int receive(int skip, ByteBuffer dst) {
+
+        assert skip >= 0 : "skip is negative";
+
+        for (int i = 0; i < skip; i++) {
+            model.read();
+        }
+        int count = dst.remaining();
+        for (int i = 0; i < count; i++) {
+            dst.put((byte) model.read());
+        }
+        return count;
+    }
+
+    /**
+     * Runs all appended messages one after the other while holding the bus,
+     * each one starting with a (repeated) start condition. Messages must
+     * target SimulatedI2CDevices attached to the same bus.
+     *
+     * Messages are meant to be built once and transferred repeatedly:
+     * transfer() does not allocate and returns the same counts array every
+     * time (overwritten by the next transfer).
+     */
+    private final class SimulatedCombinedMessage implements I2CCombinedMessage {
+
+        private final List<Message> messages = new ArrayList<>();
+        private int[] counts = new int[0];
+
+        @Override
+        public I2CCombinedMessage appendRead(I2CDevice slave, ByteBuffer rxBuf) throws IOException {
+
+            return appendRead(slave, 0, rxBuf);
+        }
+
+        @Override
+        public I2CCombinedMessage appendRead(I2CDevice slave, int rxSkip, ByteBuffer rxBuf) throws IOException {
+
+            messages.add(new Message(target(slave), true, rxSkip, rxBuf));
+            return this;
+        }
+
+        @Override
+        public I2CCombinedMessage appendWrite(I2CDevice slave, ByteBuffer txBuf) throws IOException {
+
+            messages.add(new Message(target(slave), false, 0, txBuf));
+            return this;
+        }
+
+        @Override
+        public int[] transfer() throws IOException {
+
+            ensureOpen();
+
+            if (counts.length != messages.size()) {
+                // appended to since the last transfer
+                counts = new int[messages.size()];
+            }
+
+            synchronized (bus) {
+                int bytes = 0;
+                for (int m = 0; m < counts.length; m++) {
+                    Message message = messages.get(m);
+                    message.slave.model.start(message.read);
+                    counts[m] = message.read ? message.slave.receive(message.skip, message.buffer) : message.slave.send(message.buffer);
+                    bytes += 1 + message.skip + counts[m];
+                }
+                // stop goes to every slave that took part so that each one sees its transaction ending
+                for (int m = 0; m < counts.length; m++) {
+                    I2CSlaveModel slaveModel = messages.get(m).slave.model;
+                    if (firstIndexOf(slaveModel) == m) {
+                        slaveModel.stop();
+                    }
+                }
+                bus.occupy(bytes);
+            }
+            return counts;
+        }
+
+        private int firstIndexOf(I2CSlaveModel slaveModel) {
+
+            int m = 0;
+            while (messages.get(m).slave.model != slaveModel) {
+                m++;
+            }
+            return m;
+        }
+
+        private SimulatedI2CDevice target(I2CDevice slave) throws IOException {
+
+            if (!(slave instanceof SimulatedI2CDevice) || ((SimulatedI2CDevice) slave).bus != bus) {
+                throw new IOException("Slave not a simulated device attached to " + bus.getName());
+            }
+            return (SimulatedI2CDevice) slave;
+        }
+    }
+
+    private static final class Message {
+
+        final SimulatedI2CDevice slave;
+        final boolean read;
+        final int skip;
+        final ByteBuffer buffer;
+
+        Message(SimulatedI2CDevice slave, boolean read, int skip, ByteBuffer buffer) {
+
+            this.slave = slave;
+            this.read = read;
+            this.skip = skip;
+            this.buffer = buffer;
+        }
+    }
+}
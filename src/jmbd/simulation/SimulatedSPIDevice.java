@@ -0,0 +1,313 @@
+package jmbd.simulation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.dio.spibus.SPICompositeMessage;
+import jdk.dio.spibus.SPIDevice;
+
+/**
+ * THIS SOFTWARE IS PROVIDED BY Savvas Moysidis “AS IS” AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL Savvas Moysidis BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * SPIDevice backed by an SpiSlaveModel instead of real hardware.
+ *
+ * Each operation is one CS-framed transfer. Bytes are clocked full-duplex:
+ * when the master has nothing (more) to send zeroes go out and whatever comes
+ * back beyond the receive buffer is dropped, same as with a real controller.
+ *
+ * Words are sent msb first.
+ *
+ * @author savvas
+ */
+public class SimulatedSPIDevice extends SimulatedDevice<SPIDevice> implements SPIDevice {
+
+    private final SpiSlaveModel model;
+    private final SimulatedBus bus;
+    private final int wordLength;
+
+    /**
+     * REQUIRES:
+     *
+     * 1) model not null
+     *
+     * 2) bus not null
+     *
+     * 3) wordLength IN {8, 16, 24, 32}
+     *
+     * @param model
+     * @param bus
+     * @param wordLength
+     */
+    public SimulatedSPIDevice(SpiSlaveModel model, SimulatedBus bus, int wordLength) {
+
+        assert model != null : "model is null";
+        assert bus != null : "bus is null";
+        assert wordLength > 0 && wordLength <= 32 && wordLength % 8 == 0 : "wordLength not one of 8, 16, 24, 32";
+
+        this.model = model;
+        this.bus = bus;
+        this.wordLength = wordLength;
+    }
+
+    public SpiSlaveModel getModel() {
+
+        return model;
+    }
+
+    public SimulatedBus getSimulatedBus() {
+
+        return bus;
+    }
+
+    @Override
+    public SPICompositeMessage createCompositeMessage() {
+
+        return new SimulatedCompositeMessage();
+    }
+
+    @Override
+    public int getWordLength() throws IOException {
+
+        return wordLength;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        return writeAndRead(0);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+
+        return read(0, dst);
+    }
+
+    @Override
+    public int read(int skip, ByteBuffer dst) throws IOException {
+
+        ensureOpen();
+
+        synchronized (bus) {
+            model.select();
+            int read = exchange(null, skip, dst);
+            model.deselect();
+            return read;
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+
+        ensureOpen();
+
+        synchronized (bus) {
+            model.select();
+            int written = src.remaining();
+            exchange(src, 0, null);
+            model.deselect();
+            return written;
+        }
+    }
+
+    @Override
+    public void write(int txData) throws IOException {
+
+        writeAndRead(txData);
+    }
+
+    @Override
+    public int writeAndRead(ByteBuffer src, ByteBuffer dst) throws IOException {
+
+        return writeAndRead(src, 0, dst);
+    }
+
+    @Override
+    public int writeAndRead(ByteBuffer src, int skip, ByteBuffer dst) throws IOException {
+
+        ensureOpen();
+
+        synchronized (bus) {
+            model.select();
+            int read = exchange(src, skip, dst);
+            model.deselect();
+            return read;
+        }
+    }
+
+    @Override
+    public int writeAndRead(int txData) throws IOException {
+
+        ensureOpen();
+
+        synchronized (bus) {
+            int rxData = 0;
+            model.select();
+            for (int shift = wordLength - 8; shift >= 0; shift -= 8) {
+                rxData = (rxData << 8) | model.exchange((txData >>> shift) & 0xFF);
+            }
+            model.deselect();
+            bus.occupy(wordLength / 8);
+            return rxData;
+        }
+    }
+
+    @Override
+    public void begin() throws IOException {
+
+        ensureOpen();
+    }
+
+    @Override
+    public void end() throws IOException {
+
+        // NOP
+    }
+
+    /**
+     * Clocks max(src.remaining(), skip + dst.remaining()) bytes, either buffer
+     * may be null.
+     *
+     * REQUIRES:
+     *
+     * Thread.holdsLock(bus)
+     *
+     * @return number of bytes stored into dst
+     */
+    private int exchange(ByteBuffer src, int skip, ByteBuffer dst) {
+
+        assert skip >= 0 : "skip is negative";
+
+        int toSend = src == null ? 0 : src.remaining();
+        int toReceive = dst == null ? 0 : dst.remaining();
+        int count = Math.max(toSend, skip + toReceive);
+
+        for (int i = 0; i < count; i++) {
+            int mosi = i < toSend ? src.get() & 0xFF : 0;
+            int miso = model.exchange(mosi);
+            if (i >= skip && i - skip < toReceive) {
+                dst.put((byte) miso);
+            }
+        }
+        bus.occupy(count);
+
+        return toReceive;
+    }
+
+    /**
+     * All appended operations run within a single CS frame, delays busy-wait
+     * while holding the bus.
+     *
+     * Messages are meant to be built once and transferred repeatedly:
+     * transfer() does not allocate and returns the same counts array every
+     * time (overwritten by the next transfer).
+     */
+    private final class SimulatedCompositeMessage implements SPICompositeMessage {
+
+        private final List<Operation> operations = new ArrayList<>();
+        private int[] counts = new int[0];
+
+        @Override
+        public SPICompositeMessage appendRead(ByteBuffer rxBuf) throws IOException {
+
+            return appendWriteAndRead(null, 0, rxBuf);
+        }
+
+        @Override
+        public SPICompositeMessage appendRead(int rxSkip, ByteBuffer rxBuf) throws IOException {
+
+            return appendWriteAndRead(null, rxSkip, rxBuf);
+        }
+
+        @Override
+        public SPICompositeMessage appendWrite(ByteBuffer txBuf) throws IOException {
+
+            return appendWriteAndRead(txBuf, 0, null);
+        }
+
+        @Override
+        public SPICompositeMessage appendWriteAndRead(ByteBuffer src, ByteBuffer dst) throws IOException {
+
+            return appendWriteAndRead(src, 0, dst);
+        }
+
+        @Override
+        public SPICompositeMessage appendWriteAndRead(ByteBuffer src, int skip, ByteBuffer dst) throws IOException {
+
+            operations.add(new Operation(src, skip, dst, 0));
+            return this;
+        }
+
+        @Override
+        public SPICompositeMessage appendDelay(int delay) throws IOException {
+
+            assert delay >= 0 : "delay is negative";
+
+            operations.add(new Operation(null, 0, null, delay));
+            return this;
+        }
+
+        @Override
+        public SPIDevice getTargetedDevice() {
+
+            return SimulatedSPIDevice.this;
+        }
+
+        @Override
+        public int[] transfer() throws IOException {
+
+            ensureOpen();
+
+            if (counts.length != operations.size()) {
+                // appended to since the last transfer
+                counts = new int[operations.size()];
+            }
+
+            synchronized (bus) {
+                model.select();
+                for (int o = 0; o < counts.length; o++) {
+                    Operation operation = operations.get(o);
+                    if (operation.delayMicros > 0) {
+                        counts[o] = 0;
+                        long stopAt = System.nanoTime() + operation.delayMicros * 1_000L;
+                        while (stopAt > System.nanoTime()) {
+                            Thread.yield();
+                        }
+                    } else {
+                        int sent = operation.src == null ? 0 : operation.src.remaining();
+                        int received = exchange(operation.src, operation.skip, operation.dst);
+                        counts[o] = operation.dst == null ? sent : received;
+                    }
+                }
+                model.deselect();
+            }
+            return counts;
+        }
+    }
+
+    private static final class Operation {
+
+        final ByteBuffer src;
+        final int skip;
+        final ByteBuffer dst;
+        final int delayMicros;
+
+        Operation(ByteBuffer src, int skip, ByteBuffer dst, int delayMicros) {
+
+            this.src = src;
+            this.skip = skip;
+            this.dst = dst;
+            this.delayMicros = delayMicros;
+        }
+    }
+}
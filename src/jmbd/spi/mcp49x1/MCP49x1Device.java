@@ -126,7 +126,7 @@ public class MCP49x1Device extends CommonOperationsMIDlet {
     @Override
     protected void destroyApp(boolean unconditional) throws MIDletStateChangeException {
 
-        closeIgnoringExceptions(mcp4901Device);
+        closeDeviceIgnoringExceptions(mcp4901Device);
         closeIgnoringExceptions(csPin);
     }
 }
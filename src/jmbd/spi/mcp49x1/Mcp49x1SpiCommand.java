@@ -1,5 +1,6 @@
 package jmbd.spi.mcp49x1;
 
+import jmbd.commons.ByteBufferAccessOptimisation;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 
@@ -42,7 +43,7 @@ public abstract class Mcp49x1SpiCommand {
 
         this.mcp49x1SpiSlave = mcp49x1SpiSlave;
         // always a two-byte command
-        buffer = ByteBuffer.allocateDirect(2);
+        buffer = ByteBufferAccessOptimisation.forDevice(mcp49x1SpiSlave.getDevice()).acquire(2);
     }
 
     public int[] getConfigurationLegalValues() {
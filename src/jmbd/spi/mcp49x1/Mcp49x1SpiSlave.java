@@ -1,5 +1,8 @@
 package jmbd.spi.mcp49x1;
 
+import jmbd.commons.error.DeviceErrorPolicy;
+import jmbd.commons.metrics.MetricsRegistry;
+import jmbd.commons.metrics.TransactionMetrics;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import jdk.dio.gpio.GPIOPin;
@@ -27,6 +30,8 @@ public class Mcp49x1SpiSlave {
 
     protected SPIDevice device;
     protected GPIOPin csPin;
+    protected TransactionMetrics metrics;
+    protected DeviceErrorPolicy errorPolicy = DeviceErrorPolicy.failFast(Mcp49x1SpiSlave.class.getName());
 
     /**
      * REQUIRES:
@@ -68,6 +73,12 @@ public class Mcp49x1SpiSlave {
         assert device.isOpen() : "SPI device is closed";
 
         this.device = device;
+        this.metrics = MetricsRegistry.getDefault().metricsFor("spi", device);
+    }
+
+    public SPIDevice getDevice() {
+
+        return device;
     }
 
     /**
@@ -94,7 +105,29 @@ public class Mcp49x1SpiSlave {
         }
     }
 
+    public DeviceErrorPolicy getErrorPolicy() {
+
+        return errorPolicy;
+    }
+
     /**
+     * REQUIRES:
+     *
+     * errorPolicy not null
+     *
+     * @param errorPolicy
+     */
+    public void setErrorPolicy(DeviceErrorPolicy errorPolicy) {
+
+        assert errorPolicy != null : "errorPolicy is null";
+
+        this.errorPolicy = errorPolicy;
+    }
+
+    /**
+     * Failed writes are retried/abandoned/escalated as getErrorPolicy()
+     * decides.
+     *
      * REQUIRES:
      *
      * 1) payload != null
@@ -108,14 +141,29 @@ public class Mcp49x1SpiSlave {
         assert payload != null : "payload is null";
         assert payload.remaining() == 2 : "Payload doesn't contain exactly two bytes to store";
 
-        try {
-            prepareForWrite();
-            device.write(payload);
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
-        } finally {
-            // let's "high" CS pin in case of exception too since that would leave the device in a consistent state (i.e. non-write mode)
-            updateVout();
+        int position = payload.position();
+
+        for (int attempt = 0;; attempt++) {
+
+            long start = metrics.begin();
+
+            try {
+                prepareForWrite();
+                int written = device.write(payload);
+                metrics.end(start, written);
+                errorPolicy.onSuccess(attempt);
+                return;
+            } catch (IOException ex) {
+                metrics.fail(start);
+                // whole word goes out again on retry
+                payload.position(position);
+                if (!errorPolicy.onFailure(ex, attempt)) {
+                    return;
+                }
+            } finally {
+                // let's "high" CS pin in case of exception too since that would leave the device in a consistent state (i.e. non-write mode)
+                updateVout();
+            }
         }
     }
 